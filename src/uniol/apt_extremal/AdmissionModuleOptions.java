@@ -0,0 +1,140 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal;
+
+import java.util.Locale;
+
+import uniol.apt.module.exception.ModuleException;
+
+import uniol.apt_extremal.util.AdmissionControl;
+import uniol.apt_extremal.util.Budget;
+import uniol.apt_extremal.util.ConeEstimate.CostClass;
+import uniol.apt_extremal.util.CostAdmissionControl;
+import uniol.apt_extremal.util.ExtremalRayEngine;
+import uniol.apt_extremal.util.WorkerPoolEngine;
+
+/**
+ * Options for the admission control that are shared by the modules of this package. They are written as
+ * name=class or route=class:megabytes, where class is the most expensive {@link CostClass} that is handled normally.
+ * @author Uli Schlachter
+ */
+class AdmissionModuleOptions {
+	/** Description of the admission options for the long description of a module */
+	static final String DESCRIPTION = "Expensive jobs are handled with maxcost=C, which rejects them, downgrade=C, "
+		+ "which only uses some extremal rays, and route=C:M, which moves them to a worker process with M "
+		+ "megabytes of heap. C is the most expensive cost class that is handled normally (trivial, small, "
+		+ "medium, large) and is based on an estimate of the number of extremal rays.";
+
+	private AdmissionModuleOptions() {
+	}
+
+	/**
+	 * Check if an option of a module is an admission option. This only looks at the name, so that admission options
+	 * without a value are reported by {@link #parse(CostAdmissionControl, String)}.
+	 * @param option The option.
+	 * @return true if the option should be handled by {@link #parse(CostAdmissionControl, String)}.
+	 */
+	static boolean isAdmissionOption(String option) {
+		switch (getName(option)) {
+			case "maxcost":
+			case "downgrade":
+			case "route":
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Apply an admission option to an admission control.
+	 * @param control The admission control so far or null if no admission option was given yet.
+	 * @param option The option in the form name=class or route=class:megabytes.
+	 * @return The admission control with the option.
+	 * @throws ModuleException If the option cannot be parsed.
+	 */
+	static CostAdmissionControl parse(CostAdmissionControl control, String option) throws ModuleException {
+		if (control == null)
+			control = new CostAdmissionControl();
+		String name = getName(option);
+		int index = option.indexOf('=');
+		String value = index < 0 ? "" : option.substring(index + 1).trim();
+		switch (name) {
+			case "maxcost":
+				return control.setRejectAbove(parseCostClass(option, name + "=class", value));
+			case "downgrade":
+				// Downgraded jobs may keep as many intermediate rays as the class allows
+				CostClass costClass = parseCostClass(option, name + "=class", value);
+				return control.setDowngradeAbove(costClass, new Budget()
+						.setMaxRays(costClass.getMaxRays()).setPartialResultAllowed(true));
+			default:
+				int colon = value.indexOf(':');
+				if (colon < 0)
+					throw new ModuleException("Cannot parse '" + option
+							+ "': Expected route=class:megabytes");
+				CostClass routeAbove = parseCostClass(option, "route=class:megabytes",
+						value.substring(0, colon).trim());
+				long megabytes;
+				try {
+					megabytes = Long.parseLong(value.substring(colon + 1).trim());
+				} catch (NumberFormatException e) {
+					throw new ModuleException("Cannot parse '" + option + "': Invalid heap size");
+				}
+				if (megabytes <= 0)
+					throw new ModuleException("Cannot parse '" + option + "': Invalid heap size");
+				// Only stop the worker of an earlier route once its replacement is valid
+				ExtremalRayEngine replaced = control.getRouteEngine();
+				control = control.setRouteAbove(routeAbove, new WorkerPoolEngine(1, megabytes << 20,
+							WorkerPoolEngine.Algorithm.POLCO_EXACT));
+				if (replaced instanceof WorkerPoolEngine)
+					((WorkerPoolEngine) replaced).close();
+				return control;
+		}
+	}
+
+	/**
+	 * Stop the worker process to which jobs were routed.
+	 * @param control The admission control or null.
+	 */
+	static void close(AdmissionControl control) {
+		if (!(control instanceof CostAdmissionControl))
+			return;
+		ExtremalRayEngine engine = ((CostAdmissionControl) control).getRouteEngine();
+		if (engine instanceof WorkerPoolEngine)
+			((WorkerPoolEngine) engine).close();
+	}
+
+	static private String getName(String option) {
+		int index = option.indexOf('=');
+		String name = index < 0 ? option : option.substring(0, index);
+		return name.trim().toLowerCase(Locale.ROOT);
+	}
+
+	static private CostClass parseCostClass(String option, String form, String value) throws ModuleException {
+		if (value.isEmpty())
+			throw new ModuleException("Cannot parse '" + option + "': Expected " + form);
+		try {
+			return CostClass.valueOf(value.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new ModuleException("Cannot parse '" + option + "': Unknown cost class '" + value + "'");
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
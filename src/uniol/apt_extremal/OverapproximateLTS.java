@@ -37,7 +37,16 @@ import uniol.apt.analysis.synthesize.SynthesizePN;
 import uniol.apt.analysis.synthesize.UnreachableException;
 import uniol.apt.analysis.synthesize.separation.SeparationUtility;
 
+import uniol.apt_extremal.util.AdmissionControl;
+import uniol.apt_extremal.util.AdmissionRejectedException;
+import uniol.apt_extremal.util.Budget;
+import uniol.apt_extremal.util.BudgetExceededException;
+import uniol.apt_extremal.util.ConeEstimate;
+import uniol.apt_extremal.util.ConstraintOrdering;
+import uniol.apt_extremal.util.ExtremalRayEngine;
 import uniol.apt_extremal.util.PolyhedralCone;
+import uniol.apt_extremal.util.RayConsumer;
+import uniol.apt_extremal.util.VariableSymmetry;
 
 /**
  * Overapproximate a transition system by a Petri net. See "Petri Net Synthesis" by Badouel, Bernardinello, Darondeau
@@ -46,6 +55,102 @@ import uniol.apt_extremal.util.PolyhedralCone;
  */
 public class OverapproximateLTS {
 
+	/**
+	 * Options for the over-approximation. Instances of this class are immutable.
+	 */
+	static public class Options {
+		final private Budget budget;
+		final private SynthesisListener listener;
+		final private ExtremalRayEngine engine;
+		final private ConstraintOrdering ordering;
+		final private long spillThreshold;
+		final private AdmissionControl admissionControl;
+
+		private Options(Budget budget, SynthesisListener listener, ExtremalRayEngine engine,
+				ConstraintOrdering ordering, long spillThreshold, AdmissionControl admissionControl) {
+			this.budget = budget;
+			this.listener = listener;
+			this.engine = engine;
+			this.ordering = ordering;
+			this.spillThreshold = spillThreshold;
+			this.admissionControl = admissionControl;
+		}
+
+		public Options() {
+			this(Budget.UNLIMITED, null, PolyhedralCone.DEFAULT_ENGINE, ConstraintOrdering.MIN_INDEX, -1,
+					null);
+		}
+
+		public Budget getBudget() {
+			return budget;
+		}
+
+		public SynthesisListener getListener() {
+			return listener;
+		}
+
+		public ExtremalRayEngine getEngine() {
+			return engine;
+		}
+
+		public ConstraintOrdering getConstraintOrdering() {
+			return ordering;
+		}
+
+		public long getSpillThreshold() {
+			return spillThreshold;
+		}
+
+		public AdmissionControl getAdmissionControl() {
+			return admissionControl;
+		}
+
+		public Options setBudget(Budget budget) {
+			return new Options(budget, this.listener, this.engine, this.ordering, this.spillThreshold,
+					this.admissionControl);
+		}
+
+		public Options setListener(SynthesisListener listener) {
+			return new Options(this.budget, listener, this.engine, this.ordering, this.spillThreshold,
+					this.admissionControl);
+		}
+
+		public Options setEngine(ExtremalRayEngine engine) {
+			return new Options(this.budget, this.listener, engine, this.ordering, this.spillThreshold,
+					this.admissionControl);
+		}
+
+		public Options setConstraintOrdering(ConstraintOrdering ordering) {
+			return new Options(this.budget, this.listener, this.engine, ordering, this.spillThreshold,
+					this.admissionControl);
+		}
+
+		/**
+		 * Collect the extremal rays in a {@link uniol.apt_extremal.util.RayStore} before regions are built
+		 * from them. The store keeps the given number of bytes of rays outside of the Java heap and spills
+		 * further rays to a temporary file. With a negative threshold, which is the default, regions are built
+		 * while the rays are found.
+		 * @param spillThreshold The number of bytes of rays that are kept in memory or a negative number.
+		 * @return The new options.
+		 */
+		public Options setSpillThreshold(long spillThreshold) {
+			return new Options(this.budget, this.listener, this.engine, this.ordering, spillThreshold,
+					this.admissionControl);
+		}
+
+		/**
+		 * Let the given admission control decide about the enumeration of the extremal regions, based on an
+		 * estimate of the cone. A rejected enumeration fails with an {@link AdmissionRejectedException}. By
+		 * default, every enumeration is accepted.
+		 * @param admissionControl The admission control or null.
+		 * @return The new options.
+		 */
+		public Options setAdmissionControl(AdmissionControl admissionControl) {
+			return new Options(this.budget, this.listener, this.engine, this.ordering, this.spillThreshold,
+					admissionControl);
+		}
+	}
+
 	/**
 	 * Calculate the minimal Petri net over-approximation containing all extremal regions of the given lts.
 	 * @param ts The lts to over-approximate.
@@ -53,8 +158,24 @@ public class OverapproximateLTS {
 	 * @return The minimal over-approximation containing all extremal regions.
 	 */
 	static public PetriNet overapproximatePN(TransitionSystem ts, boolean pure) {
+		return overapproximatePN(ts, pure, new Options());
+	}
+
+	/**
+	 * Calculate the minimal Petri net over-approximation containing all extremal regions of the given lts. If the
+	 * budget in the options allows partial results, the result may contain only some of the extremal regions and
+	 * thus be a coarser over-approximation.
+	 * @param ts The lts to over-approximate.
+	 * @param pure Should only pure regions be considered?
+	 * @param options The options to use.
+	 * @return The minimal over-approximation containing all extremal regions.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	static public PetriNet overapproximatePN(TransitionSystem ts, boolean pure, Options options) {
 		RegionUtility utility = new RegionUtility(ts);
-		return SynthesizePN.synthesizePetriNet(utility, pure ? overapproximatePure(utility) : overapproximateImpure(utility));
+		Set<Region> regions = pure ? overapproximatePure(utility, options)
+			: overapproximateImpure(utility, options);
+		return synthesizePetriNet(utility, regions, options);
 	}
 
 	/**
@@ -64,8 +185,42 @@ public class OverapproximateLTS {
 	 * @return The minimal over-approximation containing some extremal regions.
 	 */
 	static public PetriNet overapproximateAndSimplifyPN(TransitionSystem ts, boolean pure) {
+		return overapproximateAndSimplifyPN(ts, pure, new Options());
+	}
+
+	/**
+	 * Calculate the minimal Petri net over-approximation containing some of the extremal regions of the given lts.
+	 * @param ts The lts to over-approximate.
+	 * @param pure Should only pure regions be considered?
+	 * @param options The options to use.
+	 * @return The minimal over-approximation containing some extremal regions.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	static public PetriNet overapproximateAndSimplifyPN(TransitionSystem ts, boolean pure, Options options) {
 		RegionUtility utility = new RegionUtility(ts);
-		return SynthesizePN.synthesizePetriNet(utility, overapproximateAndSimplify(utility, pure));
+		return synthesizePetriNet(utility, overapproximateAndSimplify(utility, pure, options), options);
+	}
+
+	/**
+	 * Estimate the cost of calculating the extremal regions of the given lts without calculating them.
+	 * @param ts The lts to over-approximate.
+	 * @param pure Should only pure regions be considered?
+	 * @return The estimate of the cone of regions.
+	 * @see PolyhedralCone#estimate()
+	 */
+	static public ConeEstimate estimate(TransitionSystem ts, boolean pure) {
+		RegionUtility utility = new RegionUtility(ts);
+		PolyhedralCone cone = pure ? createPureCone(utility, new Options())
+			: createImpureCone(utility, new Options());
+		return cone.estimate();
+	}
+
+	static private PetriNet synthesizePetriNet(RegionUtility utility, Set<Region> regions, Options options) {
+		PhaseTimer timer = new PhaseTimer(options.getListener());
+		timer.begin();
+		PetriNet result = SynthesizePN.synthesizePetriNet(utility, regions);
+		timer.end(SynthesisPhase.NET_BUILDING);
+		return result;
 	}
 
 	/**
@@ -75,8 +230,25 @@ public class OverapproximateLTS {
 	 * @return A set of extremal regions
 	 */
 	static public Set<Region> overapproximateAndSimplify(RegionUtility utility, boolean pure) {
-		Set<Region> result = pure ? overapproximatePure(utility) : overapproximateImpure(utility);
+		return overapproximateAndSimplify(utility, pure, new Options());
+	}
+
+	/**
+	 * Calculate the extremal regions of the given lts.
+	 * @param ts The lts to over-approximate.
+	 * @param pure Should only pure regions be considered?
+	 * @param options The options to use.
+	 * @return A set of extremal regions
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	static public Set<Region> overapproximateAndSimplify(RegionUtility utility, boolean pure, Options options) {
+		Set<Region> result = pure ? overapproximatePure(utility, options)
+			: overapproximateImpure(utility, options);
+		PhaseTimer timer = new PhaseTimer(options.getListener());
+		timer.begin();
 		SynthesizePN.minimizeRegions(utility, result, false);
+		timer.end(SynthesisPhase.MINIMIZE_REGIONS);
+		timer.size("regions.minimized", result.size());
 		return result;
 	}
 
@@ -86,12 +258,71 @@ public class OverapproximateLTS {
 	 * @return A set of extremal regions
 	 */
 	static public Set<Region> overapproximateImpure(RegionUtility utility) {
+		return overapproximateImpure(utility, new Options());
+	}
+
+	/**
+	 * Calculate the extremal regions of the given lts.
+	 * @param ts The lts to over-approximate.
+	 * @param options The options to use.
+	 * @return A set of extremal regions
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	static public Set<Region> overapproximateImpure(RegionUtility utility, Options options) {
+		PhaseTimer timer = new PhaseTimer(options.getListener());
+		timer.begin();
+		PolyhedralCone cone = createImpureCone(utility, options);
+		int numberOfEvents = utility.getNumberOfEvents();
+		timer.end(SynthesisPhase.CONE_BUILDING);
+
+		timer.begin();
+		cone.setSymmetry(VariableSymmetry.detect(cone, getEventVariables(numberOfEvents, false)));
+		timer.end(SynthesisPhase.SYMMETRY_DETECTION);
+
+		return calculateExtremalRegions(utility, cone, false, options, timer);
+	}
+
+	/**
+	 * Calculate the pure extremal regions of the given lts.
+	 * @param ts The lts to over-approximate.
+	 * @return A set of extremal regions
+	 */
+	static public Set<Region> overapproximatePure(RegionUtility utility) {
+		return overapproximatePure(utility, new Options());
+	}
+
+	/**
+	 * Calculate the pure extremal regions of the given lts.
+	 * @param ts The lts to over-approximate.
+	 * @param options The options to use.
+	 * @return A set of extremal regions
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	static public Set<Region> overapproximatePure(RegionUtility utility, Options options) {
+		PhaseTimer timer = new PhaseTimer(options.getListener());
+		timer.begin();
+		PolyhedralCone cone = createPureCone(utility, options);
+		int numberOfEvents = utility.getNumberOfEvents();
+		timer.end(SynthesisPhase.CONE_BUILDING);
+
+		timer.begin();
+		cone.setSymmetry(VariableSymmetry.detect(cone, getEventVariables(numberOfEvents, true)));
+		timer.end(SynthesisPhase.SYMMETRY_DETECTION);
+
+		return calculateExtremalRegions(utility, cone, true, options, timer);
+	}
+
+	// The cone of all regions of the lts
+	static private PolyhedralCone createImpureCone(RegionUtility utility, Options options) {
 		TransitionSystem ts = utility.getTransitionSystem();
 		SpanningTree<TransitionSystem, Arc, State> tree = utility.getSpanningTree();
 		int numberOfEvents = utility.getNumberOfEvents();
 
 		// Calculate the polyhedral cone
 		PolyhedralCone cone = new PolyhedralCone(1 + 2*numberOfEvents);
+		cone.setEngine(options.getEngine());
+		cone.setConstraintOrdering(options.getConstraintOrdering());
+		cone.setAdmissionControl(options.getAdmissionControl());
 		requireNonNegativeVariables(cone, 1 + 2*numberOfEvents);
 
 		// Result must be cycle-consistent: After a cycle we reach the same marking again
@@ -125,21 +356,20 @@ public class OverapproximateLTS {
 			}
 		}
 
-		return calculateExtremalRegions(utility, cone, false);
+		return cone;
 	}
 
-	/**
-	 * Calculate the pure extremal regions of the given lts.
-	 * @param ts The lts to over-approximate.
-	 * @return A set of extremal regions
-	 */
-	static public Set<Region> overapproximatePure(RegionUtility utility) {
+	// The cone of all pure regions of the lts
+	static private PolyhedralCone createPureCone(RegionUtility utility, Options options) {
 		TransitionSystem ts = utility.getTransitionSystem();
 		SpanningTree<TransitionSystem, Arc, State> tree = utility.getSpanningTree();
 		int numberOfEvents = utility.getNumberOfEvents();
 
 		// Calculate the polyhedral cone
 		PolyhedralCone cone = new PolyhedralCone(1 + numberOfEvents);
+		cone.setEngine(options.getEngine());
+		cone.setConstraintOrdering(options.getConstraintOrdering());
+		cone.setAdmissionControl(options.getAdmissionControl());
 
 		// require initial marking to be non-negative
 		int[] initialInequality = new int[1 + numberOfEvents];
@@ -178,25 +408,66 @@ public class OverapproximateLTS {
 			}
 		}
 
-		return calculateExtremalRegions(utility, cone, true);
+		return cone;
 	}
 
-	static private Set<Region> calculateExtremalRegions(RegionUtility utility, PolyhedralCone cone, boolean pure) {
-		Set<Region> result = new HashSet<>();
-		int numberOfEvents = utility.getNumberOfEvents();
-		for (List<BigInteger> ray : cone.findExtremalRays()) {
-			if (!pure) {
-				result.add(new Region.Builder(utility,
-							ray.subList(numberOfEvents+1, 2*numberOfEvents+1),
-							ray.subList(1, numberOfEvents+1))
-						.withInitialMarking(ray.get(0)));
-			} else {
-				Region.Builder builder = new Region.Builder(utility);
-				for (int index = 0; index < numberOfEvents; index++)
-					builder.addWeightOn(index, ray.get(index + 1));
-				result.add(builder.withInitialMarking(ray.get(0)));
+	static private Set<Region> calculateExtremalRegions(final RegionUtility utility, PolyhedralCone cone,
+			final boolean pure, Options options, PhaseTimer timer) {
+		final Set<Region> result = new HashSet<>();
+		final int numberOfEvents = utility.getNumberOfEvents();
+		timer.size("states", utility.getTransitionSystem().getNodes().size());
+		timer.size("events", numberOfEvents);
+		timer.size("equations", cone.getEquations().size());
+		timer.size("inequalities", cone.getInequalities().size());
+
+		// Regions are built while the rays are found, so that the rays do not have to be collected first
+		RayConsumer regionBuilder = new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				if (!pure) {
+					result.add(new Region.Builder(utility,
+								ray.subList(numberOfEvents+1, 2*numberOfEvents+1),
+								ray.subList(1, numberOfEvents+1))
+							.withInitialMarking(ray.get(0)));
+				} else {
+					Region.Builder builder = new Region.Builder(utility);
+					for (int index = 0; index < numberOfEvents; index++)
+						builder.addWeightOn(index, ray.get(index + 1));
+					result.add(builder.withInitialMarking(ray.get(0)));
+				}
 			}
+		};
+		timer.enumerate(cone, options.getBudget(), options.getSpillThreshold(), regionBuilder,
+				SynthesisPhase.REGION_BUILDING);
+
+		// The cone of pure regions can contain lines. The rays only span its pointed part, so both directions
+		// of each line are regions as well.
+		List<List<BigInteger>> lineality = cone.findLinealityBasis();
+		for (List<BigInteger> line : lineality) {
+			regionBuilder.accept(line);
+			regionBuilder.accept(negate(line));
 		}
+		timer.size("lines", lineality.size());
+		timer.size("regions", result.size());
+		return result;
+	}
+
+	// Get the variables belonging to each event, so that symmetries between events can be detected
+	static private int[][] getEventVariables(int numberOfEvents, boolean pure) {
+		int[][] result = new int[numberOfEvents][];
+		for (int event = 0; event < numberOfEvents; event++) {
+			if (pure)
+				result[event] = new int[] { 1 + event };
+			else
+				result[event] = new int[] { 1 + event, 1 + numberOfEvents + event };
+		}
+		return result;
+	}
+
+	static private List<BigInteger> negate(List<BigInteger> vector) {
+		List<BigInteger> result = new ArrayList<>(vector.size());
+		for (BigInteger entry : vector)
+			result.add(entry.negate());
 		return result;
 	}
 
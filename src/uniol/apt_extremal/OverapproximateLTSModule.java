@@ -19,7 +19,6 @@
 
 package uniol.apt_extremal;
 
-import uniol.apt.util.Pair;
 import uniol.apt.adt.ts.TransitionSystem;
 import uniol.apt.adt.pn.PetriNet;
 import uniol.apt.module.AbstractModule;
@@ -32,12 +31,25 @@ import uniol.apt.module.ModuleOutput;
 import uniol.apt.module.ModuleOutputSpec;
 import uniol.apt.module.exception.ModuleException;
 
+import uniol.apt_extremal.util.AdmissionRejectedException;
+import uniol.apt_extremal.util.CostAdmissionControl;
+import uniol.apt_extremal.util.PolcoAdapterPool;
+import uniol.apt_extremal.util.PolcoConfiguration;
+import uniol.apt_extremal.util.PolcoEngine;
+
 /**
  * Provide lts over-approximation as a module.
  * @author Uli Schlachter
  */
 @AptModule
 public class OverapproximateLTSModule extends AbstractModule implements Module {
+	/**
+	 * Create the module. Apt creates its modules at startup, so polco is loaded in the background from here.
+	 */
+	public OverapproximateLTSModule() {
+		PolcoAdapterPool.warmUpInBackground();
+	}
+
 	@Override
 	public String getShortDescription() {
 		return "Calculate the minimal Petri net overapproximation of an lts";
@@ -46,7 +58,9 @@ public class OverapproximateLTSModule extends AbstractModule implements Module {
 	@Override
 	public String getLongDescription() {
 		return getShortDescription() + ".\n\n"
-			+ "Supported options are pure and optimise.";
+			+ "Supported options are pure, optimise and metrics. With metrics, timings and sizes of the "
+			+ "phases of the calculation are returned as key=value lines. "
+			+ PolcoModuleOptions.DESCRIPTION + " " + AdmissionModuleOptions.DESCRIPTION;
 	}
 
 	@Override
@@ -64,46 +78,81 @@ public class OverapproximateLTSModule extends AbstractModule implements Module {
 	public void provide(ModuleOutputSpec outputSpec) {
 		outputSpec.addReturnValue("pn", PetriNet.class,
 				ModuleOutputSpec.PROPERTY_FILE, ModuleOutputSpec.PROPERTY_RAW);
+		outputSpec.addReturnValue("metrics", String.class, ModuleOutputSpec.PROPERTY_RAW);
 	}
 
 	@Override
 	public void run(ModuleInput input, ModuleOutput output) throws ModuleException {
-		Pair<Boolean, Boolean> options = parseOptions(input.getParameter("options", String.class));
+		Settings settings = parseOptions(input.getParameter("options", String.class));
 		TransitionSystem lts = input.getParameter("lts", TransitionSystem.class);
+		OverapproximateLTS.Options options = new OverapproximateLTS.Options();
+		SynthesisMetrics metrics = null;
+		if (settings.metrics) {
+			metrics = new SynthesisMetrics();
+			options = options.setListener(metrics);
+		}
+		if (settings.polco != null)
+			options = options.setEngine(new PolcoEngine(settings.polco));
+		if (settings.admission != null)
+			options = options.setAdmissionControl(settings.admission);
 		PetriNet pn;
-		boolean pure = options.getFirst();
-		if (options.getSecond())
-			pn = OverapproximateLTS.overapproximateAndSimplifyPN(lts, pure);
-		else
-			pn = OverapproximateLTS.overapproximatePN(lts, pure);
+		try {
+			if (settings.optimise)
+				pn = OverapproximateLTS.overapproximateAndSimplifyPN(lts, settings.pure, options);
+			else
+				pn = OverapproximateLTS.overapproximatePN(lts, settings.pure, options);
+		} catch (AdmissionRejectedException e) {
+			throw new ModuleException(e.getMessage());
+		} finally {
+			AdmissionModuleOptions.close(settings.admission);
+		}
 		output.setReturnValue("pn", PetriNet.class, pn);
+		if (metrics != null)
+			output.setReturnValue("metrics", String.class, metrics.toString());
 	}
 
-	static private Pair<Boolean, Boolean> parseOptions(String options) throws ModuleException {
+	static private class Settings {
+		private boolean pure = false;
+		private boolean optimise = false;
+		private boolean metrics = false;
+		private PolcoConfiguration polco = null;
+		private CostAdmissionControl admission = null;
+	}
+
+	static private Settings parseOptions(String options) throws ModuleException {
+		Settings settings = new Settings();
 		// Explicitly allow empty string
 		options = options.trim();
 		if (options.isEmpty())
-			return new Pair<Boolean, Boolean>(false, false);
-
-		boolean pure = false;
-		boolean optimise = false;
+			return settings;
 
 		for (String opt : options.split(",")) {
+			if (PolcoModuleOptions.isPolcoOption(opt.trim())) {
+				settings.polco = PolcoModuleOptions.parse(settings.polco, opt.trim());
+				continue;
+			}
+			if (AdmissionModuleOptions.isAdmissionOption(opt.trim())) {
+				settings.admission = AdmissionModuleOptions.parse(settings.admission, opt.trim());
+				continue;
+			}
 			switch (opt.trim().toLowerCase()) {
 				case "none":
 					break;
 				case "pure":
-					pure = true;
+					settings.pure = true;
 					break;
 				case "optimise":
 				case "optimize":
-					optimise = true;
+					settings.optimise = true;
+					break;
+				case "metrics":
+					settings.metrics = true;
 					break;
 				default:
 					throw new ModuleException("Cannot parse '" + opt + "': Unknown option");
 			}
 		}
-		return new Pair<Boolean, Boolean>(pure, optimise);
+		return settings;
 	}
 
 	@Override
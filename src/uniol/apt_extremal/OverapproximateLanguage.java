@@ -32,9 +32,18 @@ import uniol.apt.adt.pn.Place;
 import uniol.apt.adt.pn.Transition;
 import uniol.apt.adt.ts.ParikhVector;
 
+import uniol.apt_extremal.util.AdmissionControl;
+import uniol.apt_extremal.util.AdmissionRejectedException;
+import uniol.apt_extremal.util.Budget;
+import uniol.apt_extremal.util.BudgetExceededException;
+import uniol.apt_extremal.util.ConeEstimate;
+import uniol.apt_extremal.util.ConstraintOrdering;
+import uniol.apt_extremal.util.ExtremalRayEngine;
 import uniol.apt_extremal.util.LinearSet;
 import uniol.apt_extremal.util.PolyhedralCone;
+import uniol.apt_extremal.util.RayConsumer;
 import uniol.apt_extremal.util.SemilinearSet;
+import uniol.apt_extremal.util.VariableSymmetry;
 
 import static uniol.apt.adt.automaton.FiniteAutomatonUtility.*;
 import static uniol.apt.util.DebugUtil.debug;
@@ -60,6 +69,14 @@ public class OverapproximateLanguage {
 				return cone;
 			}
 
+			@Override
+			protected int[][] getSymbolVariables(List<Symbol> alphabet) {
+				int[][] result = new int[alphabet.size()][];
+				for (int index = 0; index < alphabet.size(); index++)
+					result[index] = new int[] { 1 + index };
+				return result;
+			}
+
 			@Override
 			protected int[] getVectorFromPV(List<Symbol> alphabet, ParikhVector pv) {
 				int[] vector = new int[1 + alphabet.size()];
@@ -117,6 +134,14 @@ public class OverapproximateLanguage {
 				return cone;
 			}
 
+			@Override
+			protected int[][] getSymbolVariables(List<Symbol> alphabet) {
+				int[][] result = new int[alphabet.size()][];
+				for (int index = 0; index < alphabet.size(); index++)
+					result[index] = new int[] { 1 + index, 1 + alphabet.size() + index };
+				return result;
+			}
+
 			@Override
 			protected int[] getVectorFromPV(List<Symbol> alphabet, ParikhVector pv) {
 				int[] vector = new int[1 + 2*alphabet.size()];
@@ -161,6 +186,8 @@ public class OverapproximateLanguage {
 
 		abstract protected PolyhedralCone createCone(List<Symbol> alphabet);
 
+		abstract protected int[][] getSymbolVariables(List<Symbol> alphabet);
+
 		abstract protected int[] getVectorFromPV(List<Symbol> alphabet, ParikhVector pv);
 
 		abstract protected int[] getVectorEnablingWord(List<Symbol> alphabet, ParikhVector pv, Symbol toEnable);
@@ -168,17 +195,32 @@ public class OverapproximateLanguage {
 		abstract protected void createPlace(List<Symbol> alphabet, List<BigInteger> vector, PetriNet pn);
 	}
 
-	static class Options {
+	static public class Options {
 		final private Mode mode;
 		final private boolean bounded;
-
-		private Options(Mode mode, boolean bounded) {
+		final private Budget budget;
+		final private SynthesisListener listener;
+		final private ExtremalRayEngine engine;
+		final private ConstraintOrdering ordering;
+		final private long spillThreshold;
+		final private AdmissionControl admissionControl;
+
+		private Options(Mode mode, boolean bounded, Budget budget, SynthesisListener listener,
+				ExtremalRayEngine engine, ConstraintOrdering ordering, long spillThreshold,
+				AdmissionControl admissionControl) {
 			this.mode = mode;
 			this.bounded = bounded;
+			this.budget = budget;
+			this.listener = listener;
+			this.engine = engine;
+			this.ordering = ordering;
+			this.spillThreshold = spillThreshold;
+			this.admissionControl = admissionControl;
 		}
 
 		public Options() {
-			this(Mode.IMPURE, false);
+			this(Mode.IMPURE, false, Budget.UNLIMITED, null, PolyhedralCone.DEFAULT_ENGINE,
+					ConstraintOrdering.MIN_INDEX, -1, null);
 		}
 
 		public Mode getMode() {
@@ -189,65 +231,200 @@ public class OverapproximateLanguage {
 			return bounded;
 		}
 
+		public Budget getBudget() {
+			return budget;
+		}
+
+		public SynthesisListener getListener() {
+			return listener;
+		}
+
+		public ExtremalRayEngine getEngine() {
+			return engine;
+		}
+
+		public ConstraintOrdering getConstraintOrdering() {
+			return ordering;
+		}
+
+		public long getSpillThreshold() {
+			return spillThreshold;
+		}
+
+		public AdmissionControl getAdmissionControl() {
+			return admissionControl;
+		}
+
 		public Options setMode(Mode mode) {
-			return new Options(mode, this.bounded);
+			return new Options(mode, this.bounded, this.budget, this.listener, this.engine, this.ordering,
+					this.spillThreshold, this.admissionControl);
 		}
 
 		public Options setBounded(boolean bounded) {
-			return new Options(this.mode, bounded);
+			return new Options(this.mode, bounded, this.budget, this.listener, this.engine, this.ordering,
+					this.spillThreshold, this.admissionControl);
+		}
+
+		public Options setBudget(Budget budget) {
+			return new Options(this.mode, this.bounded, budget, this.listener, this.engine, this.ordering,
+					this.spillThreshold, this.admissionControl);
+		}
+
+		public Options setListener(SynthesisListener listener) {
+			return new Options(this.mode, this.bounded, this.budget, listener, this.engine, this.ordering,
+					this.spillThreshold, this.admissionControl);
+		}
+
+		public Options setEngine(ExtremalRayEngine engine) {
+			return new Options(this.mode, this.bounded, this.budget, this.listener, engine, this.ordering,
+					this.spillThreshold, this.admissionControl);
+		}
+
+		public Options setConstraintOrdering(ConstraintOrdering ordering) {
+			return new Options(this.mode, this.bounded, this.budget, this.listener, this.engine, ordering,
+					this.spillThreshold, this.admissionControl);
+		}
+
+		/**
+		 * Collect the extremal rays in a {@link uniol.apt_extremal.util.RayStore} before places are created
+		 * from them. The store keeps the given number of bytes of rays outside of the Java heap and spills
+		 * further rays to a temporary file. With a negative threshold, which is the default, places are created
+		 * while the rays are found.
+		 * @param spillThreshold The number of bytes of rays that are kept in memory or a negative number.
+		 * @return The new options.
+		 */
+		public Options setSpillThreshold(long spillThreshold) {
+			return new Options(this.mode, this.bounded, this.budget, this.listener, this.engine,
+					this.ordering, spillThreshold, this.admissionControl);
+		}
+
+		/**
+		 * Let the given admission control decide about the enumeration of the places, based on an estimate of
+		 * the cone. A rejected enumeration fails with an {@link AdmissionRejectedException}. By default, every
+		 * enumeration is accepted.
+		 * @param admissionControl The admission control or null.
+		 * @return The new options.
+		 */
+		public Options setAdmissionControl(AdmissionControl admissionControl) {
+			return new Options(this.mode, this.bounded, this.budget, this.listener, this.engine,
+					this.ordering, this.spillThreshold, admissionControl);
 		}
 	}
 
 	/**
 	 * Calculate the minimal Petri net overapproximation of the regular language represented by the given finite
-	 * automaton. The resulting Petri net is unique up to language equivalence.
+	 * automaton. The resulting Petri net is unique up to language equivalence. If the budget in the options allows
+	 * partial results and is exceeded, the Petri net has fewer places and is a coarser overapproximation.
 	 * @param automaton The automaton to overapproximate.
 	 * @param options The options to use for synthesis
 	 * @return An overapproximating Petri net.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
 	 */
 	static public PetriNet overapproximate(FiniteAutomaton automaton, Options options) {
-		Mode mode = options.getMode();
+		final Mode mode = options.getMode();
+		PhaseTimer timer = new PhaseTimer(options.getListener());
 		// Prepare the automatons
+		timer.begin();
 		DeterministicFiniteAutomaton dea = constructDFA(prefixClosure(automaton));
-		List<Symbol> alphabet = new ArrayList<>(dea.getAlphabet());
-
-		FiniteAutomaton sigmaStar = getEmptyLanguage();
-		for (Symbol sym : alphabet) {
-			sigmaStar = union(sigmaStar, getAtomicLanguage(sym));
-		}
-		sigmaStar = constructDFA(kleeneStar(sigmaStar));
+		final List<Symbol> alphabet = new ArrayList<>(dea.getAlphabet());
+		timer.end(SynthesisPhase.DFA_CONSTRUCTION);
+		timer.size("alphabet", alphabet.size());
 
 		// Calculate the polyhedral cone
-		PolyhedralCone cone = mode.createCone(alphabet);
-		for (Symbol sym : alphabet) {
-			addInequalitiesFor(cone, options, alphabet, dea, sigmaStar, sym);
-		}
+		PolyhedralCone cone = createCone(dea, alphabet, options, timer);
+		// Symbols that can be interchanged lead to orbits of places, of which only one place is calculated
+		timer.begin();
+		cone.setSymmetry(VariableSymmetry.detect(cone, mode.getSymbolVariables(alphabet)));
+		timer.end(SynthesisPhase.SYMMETRY_DETECTION);
+		timer.size("equations", cone.getEquations().size());
+		timer.size("inequalities", cone.getInequalities().size());
 
 		// Generate a Petri net
 		debug("cone:");
 		debug(cone);
-		PetriNet pn = new PetriNet();
+		final PetriNet pn = new PetriNet();
 		for (Symbol sym : alphabet)
 			pn.createTransition(sym.getEvent());
 
+		// Places are created while the rays are found, so that the rays do not have to be collected first
 		debug("rays:");
-		for (List<BigInteger> ray : cone.findExtremalRays()) {
-			debug("  ", ray);
-			mode.createPlace(alphabet, ray, pn);
+		timer.enumerate(cone, options.getBudget(), options.getSpillThreshold(), new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				debug("  ", ray);
+				mode.createPlace(alphabet, ray, pn);
+			}
+		}, SynthesisPhase.REGION_BUILDING);
+		if (cone.isResultPartial())
+			debug("Budget exceeded, only some extremal rays were used");
+
+		// In pure mode the cone can contain lines. The rays only span its pointed part, so both directions of
+		// each line become places as well.
+		debug("lines:");
+		for (List<BigInteger> line : cone.findLinealityBasis()) {
+			debug("  ", line);
+			mode.createPlace(alphabet, line, pn);
+			mode.createPlace(alphabet, negate(line), pn);
 		}
 
 		return pn;
 	}
 
+	/**
+	 * Estimate the cost of calculating the places of the minimal Petri net overapproximation of the regular
+	 * language represented by the given finite automaton without calculating them. This still needs the Parikh
+	 * images of the language, but not the extremal rays.
+	 * @param automaton The automaton to overapproximate.
+	 * @param options The options to use for synthesis
+	 * @return The estimate of the cone of places.
+	 * @see PolyhedralCone#estimate()
+	 */
+	static public ConeEstimate estimate(FiniteAutomaton automaton, Options options) {
+		PhaseTimer timer = new PhaseTimer(options.getListener());
+		DeterministicFiniteAutomaton dea = constructDFA(prefixClosure(automaton));
+		return createCone(dea, new ArrayList<>(dea.getAlphabet()), options, timer).estimate();
+	}
+
+	// Calculate the polyhedral cone of places for the given prefix-closed automaton
+	static private PolyhedralCone createCone(DeterministicFiniteAutomaton dea, List<Symbol> alphabet,
+			Options options, PhaseTimer timer) {
+		timer.begin();
+		FiniteAutomaton sigmaStar = getEmptyLanguage();
+		for (Symbol sym : alphabet) {
+			sigmaStar = union(sigmaStar, getAtomicLanguage(sym));
+		}
+		sigmaStar = constructDFA(kleeneStar(sigmaStar));
+		timer.end(SynthesisPhase.DFA_CONSTRUCTION);
+
+		PolyhedralCone cone = options.getMode().createCone(alphabet);
+		cone.setEngine(options.getEngine());
+		cone.setConstraintOrdering(options.getConstraintOrdering());
+		cone.setAdmissionControl(options.getAdmissionControl());
+		for (Symbol sym : alphabet) {
+			addInequalitiesFor(cone, options, alphabet, dea, sigmaStar, sym, timer);
+		}
+		return cone;
+	}
+
 	static private void addInequalitiesFor(PolyhedralCone cone, Options options, List<Symbol> alphabet,
-			DeterministicFiniteAutomaton dea, FiniteAutomaton sigmaStar, Symbol sym) {
+			DeterministicFiniteAutomaton dea, FiniteAutomaton sigmaStar, Symbol sym, PhaseTimer timer) {
 		Mode mode = options.getMode();
 		// Calculate an automaton for all words ending with the given symbol
+		timer.begin();
 		dea = intersection(dea, constructDFA(concatenate(sigmaStar, getAtomicLanguage(sym))));
+		timer.end(SynthesisPhase.DFA_CONSTRUCTION);
 
+		timer.begin();
 		SemilinearSet set = FiniteAutomatonToSemilinearSet.toSemilinearSet(dea);
+		timer.end(SynthesisPhase.PARIKH_IMAGE);
 		debugFormat("Words ending with %s are semi-linear set %s", sym, set);
+
+		timer.begin();
+		int linearSets = 0;
+		int periods = 0;
 		for (LinearSet linear : set) {
+			linearSets++;
+			periods += linear.getPeriods().size();
 			cone.addInequality(mode.getVectorEnablingWord(alphabet, linear.getConstant(), sym));
 
 			for (ParikhVector pv : linear.getPeriods()) {
@@ -260,6 +437,16 @@ public class OverapproximateLanguage {
 				}
 			}
 		}
+		timer.end(SynthesisPhase.CONE_BUILDING);
+		timer.size("linearSets." + sym.getEvent(), linearSets);
+		timer.size("periods." + sym.getEvent(), periods);
+	}
+
+	static private List<BigInteger> negate(List<BigInteger> vector) {
+		List<BigInteger> result = new ArrayList<>(vector.size());
+		for (BigInteger entry : vector)
+			result.add(entry.negate());
+		return result;
 	}
 }
 
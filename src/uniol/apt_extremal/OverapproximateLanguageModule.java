@@ -33,6 +33,11 @@ import uniol.apt.module.exception.ModuleException;
 
 import uniol.apt_extremal.OverapproximateLanguage.Mode;
 import uniol.apt_extremal.OverapproximateLanguage.Options;
+import uniol.apt_extremal.util.AdmissionRejectedException;
+import uniol.apt_extremal.util.CostAdmissionControl;
+import uniol.apt_extremal.util.PolcoAdapterPool;
+import uniol.apt_extremal.util.PolcoConfiguration;
+import uniol.apt_extremal.util.PolcoEngine;
 
 /**
  * Provide regular language overapproximation as a module.
@@ -40,6 +45,13 @@ import uniol.apt_extremal.OverapproximateLanguage.Options;
  */
 @AptModule
 public class OverapproximateLanguageModule extends AbstractModule implements Module {
+	/**
+	 * Create the module. Apt creates its modules at startup, so polco is loaded in the background from here.
+	 */
+	public OverapproximateLanguageModule() {
+		PolcoAdapterPool.warmUpInBackground();
+	}
+
 	@Override
 	public String getShortDescription() {
 		return "Calculate the minimal Petri net overapproximation of a regular language";
@@ -48,7 +60,9 @@ public class OverapproximateLanguageModule extends AbstractModule implements Mod
 	@Override
 	public String getLongDescription() {
 		return getShortDescription() + ".\n\n"
-			+ "Supported options are pure and bounded.";
+			+ "Supported options are pure, bounded and metrics. With metrics, timings and sizes of the "
+			+ "phases of the calculation are returned as key=value lines. "
+			+ PolcoModuleOptions.DESCRIPTION + " " + AdmissionModuleOptions.DESCRIPTION;
 	}
 
 	@Override
@@ -66,14 +80,24 @@ public class OverapproximateLanguageModule extends AbstractModule implements Mod
 	public void provide(ModuleOutputSpec outputSpec) {
 		outputSpec.addReturnValue("pn", PetriNet.class,
 				ModuleOutputSpec.PROPERTY_FILE, ModuleOutputSpec.PROPERTY_RAW);
+		outputSpec.addReturnValue("metrics", String.class, ModuleOutputSpec.PROPERTY_RAW);
 	}
 
 	@Override
 	public void run(ModuleInput input, ModuleOutput output) throws ModuleException {
 		Options options = parseOptions(input.getParameter("options", String.class));
 		FiniteAutomaton language = input.getParameter("language", FiniteAutomaton.class);
-		PetriNet pn = OverapproximateLanguage.overapproximate(language, options);
+		PetriNet pn;
+		try {
+			pn = OverapproximateLanguage.overapproximate(language, options);
+		} catch (AdmissionRejectedException e) {
+			throw new ModuleException(e.getMessage());
+		} finally {
+			AdmissionModuleOptions.close(options.getAdmissionControl());
+		}
 		output.setReturnValue("pn", PetriNet.class, pn);
+		if (options.getListener() != null)
+			output.setReturnValue("metrics", String.class, options.getListener().toString());
 	}
 
 	@Override
@@ -88,7 +112,17 @@ public class OverapproximateLanguageModule extends AbstractModule implements Mod
 			return new Options();
 
 		Options opts = new Options();
+		PolcoConfiguration polco = null;
+		CostAdmissionControl admission = null;
 		for (String opt : options.split(",")) {
+			if (PolcoModuleOptions.isPolcoOption(opt.trim())) {
+				polco = PolcoModuleOptions.parse(polco, opt.trim());
+				continue;
+			}
+			if (AdmissionModuleOptions.isAdmissionOption(opt.trim())) {
+				admission = AdmissionModuleOptions.parse(admission, opt.trim());
+				continue;
+			}
 			switch (opt.trim().toLowerCase()) {
 				case "none":
 					break;
@@ -98,10 +132,17 @@ public class OverapproximateLanguageModule extends AbstractModule implements Mod
 				case "bounded":
 					opts = opts.setBounded(true);
 					break;
+				case "metrics":
+					opts = opts.setListener(new SynthesisMetrics());
+					break;
 				default:
 					throw new ModuleException("Cannot parse '" + opt + "': Unknown option");
 			}
 		}
+		if (polco != null)
+			opts = opts.setEngine(new PolcoEngine(polco));
+		if (admission != null)
+			opts = opts.setAdmissionControl(admission);
 		return opts;
 	}
 }
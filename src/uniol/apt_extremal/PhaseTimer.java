@@ -0,0 +1,197 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigInteger;
+import java.util.List;
+
+import uniol.apt_extremal.util.Budget;
+import uniol.apt_extremal.util.PolyhedralCone;
+import uniol.apt_extremal.util.RayConsumer;
+import uniol.apt_extremal.util.RayStore;
+
+/**
+ * Measures phases of a synthesis for a {@link SynthesisListener}. Without a listener, nothing is measured.
+ * @author Uli Schlachter
+ */
+class PhaseTimer {
+	static private final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	private final SynthesisListener listener;
+	private long startNanos;
+	private long startBytes;
+
+	/**
+	 * Constructor.
+	 * @param listener The listener that receives the measurements or null.
+	 */
+	PhaseTimer(SynthesisListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Check if anything is measured.
+	 * @return true if there is a listener.
+	 */
+	boolean isEnabled() {
+		return listener != null;
+	}
+
+	/**
+	 * Start measuring a phase.
+	 */
+	void begin() {
+		if (listener == null)
+			return;
+		startNanos = System.nanoTime();
+		startBytes = allocatedBytes();
+	}
+
+	/**
+	 * Finish measuring a phase that was started with {@link #begin()} and report it.
+	 * @param phase The phase.
+	 */
+	void end(SynthesisPhase phase) {
+		if (listener == null)
+			return;
+		long bytes = allocatedBytes();
+		report(phase, System.nanoTime() - startNanos, bytes < 0 ? -1 : bytes - startBytes);
+	}
+
+	/**
+	 * Report a phase that was measured elsewhere.
+	 * @param phase The phase.
+	 * @param nanos The time of the phase.
+	 * @param bytes The allocated bytes or -1.
+	 */
+	void report(SynthesisPhase phase, long nanos, long bytes) {
+		if (listener != null)
+			listener.phaseFinished(phase, nanos, bytes);
+	}
+
+	/**
+	 * Report a size.
+	 * @param name The name of the size.
+	 * @param value The size.
+	 */
+	void size(String name, long value) {
+		if (listener != null)
+			listener.sizeRecorded(name, value);
+	}
+
+	/**
+	 * Enumerate the extremal rays of a cone and pass them to a consumer. The cone is reported to the listener
+	 * before the enumeration starts. The time spent in the consumer is reported as its own phase and the rest as
+	 * {@link SynthesisPhase#ENUMERATION}. The number of rays is reported as the size "rays".
+	 * @param cone The cone whose extremal rays are enumerated.
+	 * @param budget The limits for the enumeration.
+	 * @param consumer The consumer that receives the rays.
+	 * @param consumerPhase The phase that the consumer belongs to.
+	 */
+	void enumerate(PolyhedralCone cone, Budget budget, final RayConsumer consumer, SynthesisPhase consumerPhase) {
+		if (listener == null) {
+			cone.findExtremalRays(budget, consumer);
+			return;
+		}
+		listener.coneBuilt(cone);
+
+		// rays, nanos and bytes spent in the consumer
+		final long[] consumerSums = new long[3];
+		long nanos = System.nanoTime();
+		long bytes = allocatedBytes();
+		cone.findExtremalRays(budget, new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				long nanos = System.nanoTime();
+				long bytes = allocatedBytes();
+				consumer.accept(ray);
+				consumerSums[0]++;
+				consumerSums[1] += System.nanoTime() - nanos;
+				consumerSums[2] += allocatedBytes() - bytes;
+			}
+		});
+		nanos = System.nanoTime() - nanos;
+		bytes = bytes < 0 ? -1 : allocatedBytes() - bytes - consumerSums[2];
+		report(SynthesisPhase.ENUMERATION, nanos - consumerSums[1], bytes);
+		report(consumerPhase, consumerSums[1], bytes < 0 ? -1 : consumerSums[2]);
+		size("rays", consumerSums[0]);
+	}
+
+	/**
+	 * Enumerate the extremal rays of a cone and pass them to a consumer, possibly collecting them in a {@link
+	 * RayStore} first. With a store, the consumer only runs after the enumeration finished and the number of bytes
+	 * of the encoded rays and of the part of them that was spilled to disk are reported as the sizes "rays.bytes"
+	 * and "rays.spilled".
+	 * @param cone The cone whose extremal rays are enumerated.
+	 * @param budget The limits for the enumeration.
+	 * @param spillThreshold The memory threshold of the ray store or a negative number to pass the rays to the
+	 * consumer directly.
+	 * @param consumer The consumer that receives the rays.
+	 * @param consumerPhase The phase that the consumer belongs to.
+	 * @throws IOError If the ray store cannot spill to disk.
+	 * @see #enumerate(PolyhedralCone, Budget, RayConsumer, SynthesisPhase)
+	 */
+	void enumerate(PolyhedralCone cone, Budget budget, long spillThreshold, RayConsumer consumer,
+			SynthesisPhase consumerPhase) {
+		if (spillThreshold < 0) {
+			enumerate(cone, budget, consumer, consumerPhase);
+			return;
+		}
+		if (listener != null)
+			listener.coneBuilt(cone);
+
+		try (RayStore store = new RayStore(cone.getNumberOfVariables(), spillThreshold, null)) {
+			begin();
+			cone.findExtremalRays(budget, store);
+			end(SynthesisPhase.ENUMERATION);
+			size("rays", store.size());
+			size("rays.bytes", store.getEncodedBytes());
+			size("rays.spilled", store.getSpilledBytes());
+
+			begin();
+			RayStore.Cursor cursor = store.cursor();
+			while (cursor.hasNext())
+				consumer.accept(cursor.next());
+			end(consumerPhase);
+		} catch (IOException e) {
+			throw new IOError(e);
+		}
+	}
+
+	/**
+	 * Get the number of bytes that the current thread allocated so far.
+	 * @return The number of bytes or -1 if this cannot be measured.
+	 */
+	static long allocatedBytes() {
+		if (!(THREAD_BEAN instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+		if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
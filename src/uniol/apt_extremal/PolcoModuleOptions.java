@@ -0,0 +1,80 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal;
+
+import java.util.Locale;
+
+import uniol.apt.module.exception.ModuleException;
+
+import uniol.apt_extremal.util.PolcoConfiguration;
+
+/**
+ * Options of the polco library that are shared by the modules of this package. They are written as
+ * polco.name=value, for example polco.memory=out-core, with the names and values of {@link
+ * PolcoConfiguration#setOption(String, String)}.
+ * @author Uli Schlachter
+ */
+class PolcoModuleOptions {
+	/** The prefix of the polco options */
+	static final String PREFIX = "polco.";
+
+	/** Description of the polco options for the long description of a module */
+	static final String DESCRIPTION = "Polco is tuned with options polco.name=value, where name is one of mode "
+		+ "(exact, fast), arithmetic (fractional, bigint, varint, rawint, double), adj (an adjacency test "
+		+ "like pattern-tree-rank), memory (in-core, out-core, sort-out-core), tmpdir and maxthreads.";
+
+	private PolcoModuleOptions() {
+	}
+
+	/**
+	 * Check if an option of a module is a polco option. This only looks at the prefix, so that malformed polco
+	 * options are reported by {@link #parse(PolcoConfiguration, String)}.
+	 * @param option The option.
+	 * @return true if the option should be handled by {@link #parse(PolcoConfiguration, String)}.
+	 */
+	static boolean isPolcoOption(String option) {
+		return option.toLowerCase(Locale.ROOT).startsWith(PREFIX);
+	}
+
+	/**
+	 * Apply a polco option to a configuration.
+	 * @param configuration The configuration so far or null if no polco option was given yet.
+	 * @param option The option in the form polco.name=value.
+	 * @return The configuration with the option.
+	 * @throws ModuleException If the option cannot be parsed.
+	 */
+	static PolcoConfiguration parse(PolcoConfiguration configuration, String option) throws ModuleException {
+		int index = option.indexOf('=');
+		String name = index < 0 ? "" : option.substring(PREFIX.length(), index);
+		String value = index < 0 ? "" : option.substring(index + 1).trim();
+		// The name has to follow the prefix directly
+		if (name.trim().isEmpty() || Character.isWhitespace(name.charAt(0)) || value.isEmpty())
+			throw new ModuleException("Cannot parse '" + option + "': Expected " + PREFIX + "name=value");
+		if (configuration == null)
+			configuration = new PolcoConfiguration();
+		try {
+			return configuration.setOption(name.trim(), value);
+		} catch (IllegalArgumentException e) {
+			throw new ModuleException("Cannot parse '" + option + "': " + e.getMessage());
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
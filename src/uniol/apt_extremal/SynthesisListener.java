@@ -0,0 +1,57 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal;
+
+import uniol.apt_extremal.util.PolyhedralCone;
+
+/**
+ * Receives measurements while a Petri net is synthesized. A phase may be reported several times, for example once
+ * per symbol of an alphabet; the measurements of all reports belong together.
+ * @author Uli Schlachter
+ */
+public interface SynthesisListener {
+	/**
+	 * Called when a phase or a part of it is finished.
+	 * @param phase The phase.
+	 * @param nanos The wall-clock time that the phase took in nanoseconds.
+	 * @param allocatedBytes The number of bytes that the calling thread allocated during the phase or -1 if the JVM
+	 * cannot measure this. Allocations by other threads, for example of a fork-join pool, are not included.
+	 */
+	public void phaseFinished(SynthesisPhase phase, long nanos, long allocatedBytes);
+
+	/**
+	 * Called when the size of some intermediate result is known.
+	 * @param name The name of the measured size, for example "rays".
+	 * @param value The size.
+	 */
+	public void sizeRecorded(String name, long value);
+
+	/**
+	 * Called when the cone whose extremal rays describe the result is complete, right before its rays are
+	 * enumerated. This allows to capture the cone, for example with
+	 * {@link uniol.apt_extremal.util.PolyhedralFormat}, and to replay it offline. The listener must not modify the
+	 * cone.
+	 * @param cone The cone.
+	 */
+	public void coneBuilt(PolyhedralCone cone);
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,112 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import uniol.apt_extremal.util.PolyhedralCone;
+
+/**
+ * Synthesis listener that sums up all measurements. The result can be written as structured text with one
+ * key=value pair per line.
+ * @author Uli Schlachter
+ */
+public class SynthesisMetrics implements SynthesisListener {
+	private final Map<SynthesisPhase, long[]> phases = new EnumMap<>(SynthesisPhase.class);
+	private final Map<String, Long> sizes = new LinkedHashMap<>();
+
+	@Override
+	synchronized public void phaseFinished(SynthesisPhase phase, long nanos, long allocatedBytes) {
+		long[] sums = phases.get(phase);
+		if (sums == null) {
+			sums = new long[2];
+			phases.put(phase, sums);
+		}
+		sums[0] += nanos;
+		if (allocatedBytes < 0 || sums[1] < 0)
+			sums[1] = -1;
+		else
+			sums[1] += allocatedBytes;
+	}
+
+	@Override
+	synchronized public void sizeRecorded(String name, long value) {
+		Long old = sizes.get(name);
+		sizes.put(name, old == null ? value : old + value);
+	}
+
+	@Override
+	public void coneBuilt(PolyhedralCone cone) {
+		// The cone itself is not a measurement
+	}
+
+	/**
+	 * Get the total time of a phase.
+	 * @param phase The phase.
+	 * @return The time in nanoseconds or 0 if the phase was not reported.
+	 */
+	synchronized public long getNanos(SynthesisPhase phase) {
+		long[] sums = phases.get(phase);
+		return sums == null ? 0 : sums[0];
+	}
+
+	/**
+	 * Get the number of bytes that were allocated in a phase.
+	 * @param phase The phase.
+	 * @return The number of bytes, 0 if the phase was not reported or -1 if it could not be measured.
+	 */
+	synchronized public long getAllocatedBytes(SynthesisPhase phase) {
+		long[] sums = phases.get(phase);
+		return sums == null ? 0 : sums[1];
+	}
+
+	/**
+	 * Get a recorded size. Sizes that are recorded several times are summed up.
+	 * @param name The name of the size.
+	 * @return The size or null if it was not recorded.
+	 */
+	synchronized public Long getSize(String name) {
+		return sizes.get(name);
+	}
+
+	/**
+	 * Write all measurements as structured text. Each line has the form phase.NAME.nanos=VALUE,
+	 * phase.NAME.allocatedBytes=VALUE or size.NAME=VALUE.
+	 * @return The measurements.
+	 */
+	@Override
+	synchronized public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		for (Map.Entry<SynthesisPhase, long[]> entry : phases.entrySet()) {
+			String name = entry.getKey().name().toLowerCase();
+			buffer.append("phase.").append(name).append(".nanos=").append(entry.getValue()[0]).append('\n');
+			buffer.append("phase.").append(name).append(".allocatedBytes=").append(entry.getValue()[1])
+				.append('\n');
+		}
+		for (Map.Entry<String, Long> entry : sizes.entrySet())
+			buffer.append("size.").append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+		return buffer.toString();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
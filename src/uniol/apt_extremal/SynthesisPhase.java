@@ -0,0 +1,46 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal;
+
+/**
+ * The phases of synthesizing a Petri net that are reported to a {@link SynthesisListener}.
+ * @author Uli Schlachter
+ */
+public enum SynthesisPhase {
+	/** Construction of deterministic finite automata for a language */
+	DFA_CONSTRUCTION,
+	/** Calculation of the Parikh image of a language as a semi-linear set */
+	PARIKH_IMAGE,
+	/** Construction of the polyhedral cone of all regions */
+	CONE_BUILDING,
+	/** Detection of symmetries between events */
+	SYMMETRY_DETECTION,
+	/** Enumeration of the extremal rays of the cone */
+	ENUMERATION,
+	/** Construction of regions or places from extremal rays */
+	REGION_BUILDING,
+	/** Removal of redundant regions */
+	MINIMIZE_REGIONS,
+	/** Construction of the Petri net from regions */
+	NET_BUILDING;
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
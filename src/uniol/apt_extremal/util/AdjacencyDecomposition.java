@@ -0,0 +1,192 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Enumerate the extremal rays of a pointed, symmetric cone by the adjacency decomposition method. Only one
+ * representative of each orbit of extremal rays is kept. Starting from one extremal ray, the neighbours of each
+ * representative are found as the extremal rays of a local cone that only contains the constraints which are tight
+ * at the representative. Since the graph of extremal rays of a pointed cone is connected, this finds all orbits.
+ * Each orbit is expanded into its rays when its representative is handled.
+ * @author Uli Schlachter
+ */
+class AdjacencyDecomposition {
+	private final PolyhedralCone cone;
+	private final VariableSymmetry symmetry;
+	private final int numVariables;
+	private final BigInteger[][] equations;
+	private final BigInteger[][] inequalities;
+
+	/**
+	 * Constructor.
+	 * @param cone The normalized cone whose extremal rays should be enumerated.
+	 * @param symmetry Symmetries of the cone.
+	 */
+	AdjacencyDecomposition(PolyhedralCone cone, VariableSymmetry symmetry) {
+		this.cone = cone;
+		this.symmetry = symmetry;
+		this.numVariables = cone.getNumberOfVariables();
+		this.equations = cone.getEquationMatrix();
+		this.inequalities = cone.getInequalityMatrix();
+	}
+
+	/**
+	 * Enumerate the extremal rays of the cone.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @return false if this method cannot be used because the cone is not pointed or no extremal ray to start
+	 * from was found. Nothing was passed to the consumer in this case.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	boolean enumerate(BudgetMonitor monitor, RayConsumer consumer) {
+		List<BigInteger[]> rows = new ArrayList<>(Arrays.asList(equations));
+		rows.addAll(Arrays.asList(inequalities));
+		if (!ExactLinearAlgebra.nullspace(rows, numVariables).isEmpty())
+			return false;
+		BigInteger[] start = findStartRay();
+		if (start == null)
+			return false;
+
+		Set<List<BigInteger>> representatives = new HashSet<>();
+		Deque<BigInteger[]> queue = new ArrayDeque<>();
+		start = symmetry.canonicalize(start);
+		representatives.add(Arrays.asList(start));
+		queue.add(start);
+		try {
+			while (!queue.isEmpty()) {
+				monitor.check();
+				BigInteger[] ray = queue.poll();
+				symmetry.expandOrbit(ray, consumer);
+				for (BigInteger[] neighbour : findNeighbours(ray, monitor)) {
+					neighbour = symmetry.canonicalize(neighbour);
+					if (representatives.add(Arrays.asList(neighbour)))
+						queue.add(neighbour);
+				}
+			}
+		} catch (BudgetExceededException e) {
+			if (!monitor.getBudget().isPartialResultAllowed())
+				throw e;
+			monitor.setPartial();
+		}
+		return true;
+	}
+
+	// Try the unit vectors and their negations: The cones built by the front-ends usually contain some of them
+	private BigInteger[] findStartRay() {
+		for (int i = 0; i < numVariables; i++) {
+			for (BigInteger value : Arrays.asList(BigInteger.ONE, BigInteger.ONE.negate())) {
+				BigInteger[] vector = ExactLinearAlgebra.zero(numVariables);
+				vector[i] = value;
+				if (isExtremalRay(vector))
+					return vector;
+			}
+		}
+		return null;
+	}
+
+	private boolean isExtremalRay(BigInteger[] vector) {
+		List<BigInteger[]> tight = new ArrayList<>();
+		for (BigInteger[] row : equations) {
+			if (ExactLinearAlgebra.dot(row, vector).signum() != 0)
+				return false;
+			tight.add(row);
+		}
+		for (BigInteger[] row : inequalities) {
+			int signum = ExactLinearAlgebra.dot(row, vector).signum();
+			if (signum < 0)
+				return false;
+			if (signum == 0)
+				tight.add(row);
+		}
+		return ExactLinearAlgebra.rank(tight, numVariables) == numVariables - 1;
+	}
+
+	// The directions of the edges at the ray are the extremal rays of the cone that only has the constraints that
+	// are tight at the ray, intersected with the orthogonal complement of the ray. Each edge ends at a neighbour.
+	private List<BigInteger[]> findNeighbours(BigInteger[] ray, BudgetMonitor monitor) {
+		final PolyhedralCone local = new PolyhedralCone(numVariables);
+		local.setEngine(cone.getEngine());
+		local.setCheckpointStore(cone.getCheckpointStore());
+		local.setConstraintOrdering(cone.getConstraintOrdering());
+		for (BigInteger[] row : equations)
+			local.addEquation(row);
+		local.addEquation(ray);
+
+		final List<BigInteger[]> loose = new ArrayList<>();
+		final List<BigInteger> looseValues = new ArrayList<>();
+		for (BigInteger[] row : inequalities) {
+			BigInteger value = ExactLinearAlgebra.dot(row, ray);
+			if (value.signum() == 0) {
+				local.addInequality(row);
+			} else {
+				loose.add(row);
+				looseValues.add(value);
+			}
+		}
+
+		final List<BigInteger[]> result = new ArrayList<>();
+		if (local.getInequalities().isEmpty() || loose.isEmpty())
+			return result;
+		local.normalize();
+		final BigInteger[] origin = ray;
+		local.enumerateExtremalRays(monitor, new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> direction) {
+				result.add(walkAlongEdge(origin, direction.toArray(new BigInteger[0]), loose,
+							looseValues));
+			}
+		});
+		return result;
+	}
+
+	// Find the other extremal ray of the two-dimensional face spanned by the ray and the direction. On this face,
+	// ray*alpha + direction satisfies a loose row a iff alpha >= -a*direction / a*ray. The neighbour is at the
+	// largest of these bounds.
+	static BigInteger[] walkAlongEdge(BigInteger[] ray, BigInteger[] direction, List<BigInteger[]> loose,
+			List<BigInteger> looseValues) {
+		BigInteger numerator = null;
+		BigInteger denominator = null;
+		for (int i = 0; i < loose.size(); i++) {
+			BigInteger value = ExactLinearAlgebra.dot(loose.get(i), direction).negate();
+			BigInteger rayValue = looseValues.get(i);
+			if (numerator == null
+					|| value.multiply(denominator).compareTo(numerator.multiply(rayValue)) > 0) {
+				numerator = value;
+				denominator = rayValue;
+			}
+		}
+		BigInteger[] result = new BigInteger[ray.length];
+		for (int i = 0; i < ray.length; i++)
+			result[i] = denominator.multiply(direction[i]).add(numerator.multiply(ray[i]));
+		return ExactLinearAlgebra.normalize(result);
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
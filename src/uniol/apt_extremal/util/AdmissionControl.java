@@ -0,0 +1,128 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+/**
+ * Decides whether and how the extremal rays of a cone are enumerated, based on an estimate of the cost. Before a
+ * {@link PolyhedralCone} with an admission control enumerates its extremal rays from scratch, it estimates itself and
+ * follows the decision: A rejected enumeration fails with an {@link AdmissionRejectedException}, a downgraded one runs
+ * with a smaller budget and a routed one with another engine.
+ * @author Uli Schlachter
+ * @see PolyhedralCone#setAdmissionControl(AdmissionControl)
+ */
+public interface AdmissionControl {
+	/**
+	 * The number of probes for the estimate that is handed to {@link #admit}.
+	 * @return The number of probes or zero if the upper bound is enough.
+	 * @see PolyhedralCone#estimate(int)
+	 */
+	public int getNumberOfProbes();
+
+	/**
+	 * Decide about an enumeration.
+	 * @param estimate The estimate of the cone whose extremal rays should be enumerated.
+	 * @return The decision.
+	 */
+	public Decision admit(ConeEstimate estimate);
+
+	/**
+	 * The decision about an enumeration. Instances of this class are immutable.
+	 */
+	static public class Decision {
+		/** Enumerate with the budget and engine that were requested */
+		static public final Decision ACCEPT = new Decision(null, null, null);
+
+		private final String rejection;
+		private final Budget budget;
+		private final ExtremalRayEngine engine;
+
+		private Decision(String rejection, Budget budget, ExtremalRayEngine engine) {
+			this.rejection = rejection;
+			this.budget = budget;
+			this.engine = engine;
+		}
+
+		/**
+		 * Create a decision that rejects the enumeration.
+		 * @param reason Why the enumeration is rejected.
+		 * @return The decision.
+		 */
+		static public Decision reject(String reason) {
+			assert reason != null;
+			return new Decision(reason, null, null);
+		}
+
+		/**
+		 * Check if the enumeration is rejected.
+		 * @return true if the enumeration must not run.
+		 */
+		public boolean isRejected() {
+			return rejection != null;
+		}
+
+		/**
+		 * Get the reason why the enumeration is rejected.
+		 * @return The reason or null if it is not rejected.
+		 */
+		public String getRejectionReason() {
+			return rejection;
+		}
+
+		/**
+		 * Get the budget that replaces the requested one.
+		 * @return The budget or null if the requested budget is used.
+		 */
+		public Budget getBudget() {
+			return budget;
+		}
+
+		/**
+		 * Get the engine that replaces the engine of the cone.
+		 * @return The engine or null if the engine of the cone is used.
+		 */
+		public ExtremalRayEngine getEngine() {
+			return engine;
+		}
+
+		/**
+		 * Downgrade the enumeration to the given budget, which usually allows partial results.
+		 * @param budget The budget to use instead of the requested one.
+		 * @return The new decision.
+		 */
+		public Decision setBudget(Budget budget) {
+			if (isRejected())
+				throw new IllegalStateException("A rejected enumeration does not run");
+			return new Decision(null, budget, engine);
+		}
+
+		/**
+		 * Route the enumeration to the given engine, for example a {@link WorkerPoolEngine} with more memory.
+		 * @param engine The engine to use instead of the engine of the cone.
+		 * @return The new decision.
+		 */
+		public Decision setEngine(ExtremalRayEngine engine) {
+			if (isRejected())
+				throw new IllegalStateException("A rejected enumeration does not run");
+			return new Decision(null, budget, engine);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
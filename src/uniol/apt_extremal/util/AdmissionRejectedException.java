@@ -0,0 +1,50 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+/**
+ * Exception thrown when an {@link AdmissionControl} rejects the enumeration of the extremal rays of a cone.
+ * @author Uli Schlachter
+ */
+public class AdmissionRejectedException extends RuntimeException {
+	static private final long serialVersionUID = 1L;
+
+	private final ConeEstimate estimate;
+
+	/**
+	 * Constructor.
+	 * @param reason Why the enumeration was rejected.
+	 * @param estimate The estimate on which the decision was based.
+	 */
+	public AdmissionRejectedException(String reason, ConeEstimate estimate) {
+		super(String.format("Enumeration rejected (%s) for cone with %s", reason, estimate));
+		this.estimate = estimate;
+	}
+
+	/**
+	 * Get the estimate on which the decision was based.
+	 * @return The estimate.
+	 */
+	public ConeEstimate getEstimate() {
+		return estimate;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
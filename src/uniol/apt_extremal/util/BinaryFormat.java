@@ -0,0 +1,182 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compact binary encoding of integer vectors, cones and sets of rays. Lengths are written as variable-length
+ * integers and each entry as its length-prefixed two's-complement representation, so that small entries take two
+ * bytes.
+ * @author Uli Schlachter
+ */
+public class BinaryFormat {
+	private BinaryFormat() {
+	}
+
+	/**
+	 * Write a non-negative integer in a variable-length encoding with seven bits per byte.
+	 * @param output Where to write to.
+	 * @param value The value to write.
+	 * @throws IOException If writing fails.
+	 */
+	static public void writeVarInt(DataOutput output, int value) throws IOException {
+		if (value < 0)
+			throw new IllegalArgumentException("Negative values are not supported: " + value);
+		while ((value & ~0x7f) != 0) {
+			output.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	/**
+	 * Read a non-negative integer that was written by {@link #writeVarInt}.
+	 * @param input Where to read from.
+	 * @return The value that was read.
+	 * @throws IOException If reading fails or the data is malformed.
+	 */
+	static public int readVarInt(DataInput input) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			result |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				if (result < 0)
+					throw new IOException("Malformed variable-length integer");
+				return result;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+
+	/**
+	 * Write a vector.
+	 * @param output Where to write to.
+	 * @param vector The vector to write. Its length is not written.
+	 * @throws IOException If writing fails.
+	 */
+	static public void writeVector(DataOutput output, List<BigInteger> vector) throws IOException {
+		for (BigInteger entry : vector) {
+			byte[] bytes = entry.toByteArray();
+			writeVarInt(output, bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	/**
+	 * Read a vector that was written by {@link #writeVector}.
+	 * @param input Where to read from.
+	 * @param length The number of entries of the vector.
+	 * @return The vector.
+	 * @throws IOException If reading fails or the data is malformed.
+	 */
+	static public BigInteger[] readVector(DataInput input, int length) throws IOException {
+		BigInteger[] result = new BigInteger[length];
+		for (int i = 0; i < length; i++) {
+			int size = readVarInt(input);
+			if (size == 0)
+				throw new IOException("Malformed vector entry");
+			byte[] bytes = new byte[size];
+			input.readFully(bytes);
+			result[i] = new BigInteger(bytes);
+		}
+		return result;
+	}
+
+	/**
+	 * Write a cone: The number of variables, then the number of equations and the equations and finally the
+	 * number of inequalities and the inequalities.
+	 * @param output Where to write to.
+	 * @param cone The cone to write.
+	 * @throws IOException If writing fails.
+	 */
+	static public void writeCone(DataOutput output, PolyhedralCone cone) throws IOException {
+		writeVarInt(output, cone.getNumberOfVariables());
+		for (BigInteger[][] rows : Arrays.asList(cone.getEquationMatrix(), cone.getInequalityMatrix())) {
+			writeVarInt(output, rows.length);
+			for (BigInteger[] row : rows)
+				writeVector(output, Arrays.asList(row));
+		}
+	}
+
+	/**
+	 * Read a cone that was written by {@link #writeCone}.
+	 * @param input Where to read from.
+	 * @return The cone.
+	 * @throws IOException If reading fails or the data is malformed.
+	 */
+	static public PolyhedralCone readCone(DataInput input) throws IOException {
+		int numVariables = readVarInt(input);
+		PolyhedralCone cone = new PolyhedralCone(numVariables);
+		int numEquations = readVarInt(input);
+		for (int i = 0; i < numEquations; i++)
+			cone.addEquation(readVector(input, numVariables));
+		int numInequalities = readVarInt(input);
+		for (int i = 0; i < numInequalities; i++)
+			cone.addInequality(readVector(input, numVariables));
+		return cone;
+	}
+
+	/**
+	 * Write a set of rays, all of the same dimension.
+	 * @param output Where to write to.
+	 * @param numVariables The dimension of the rays.
+	 * @param rays The rays to write.
+	 * @throws IOException If writing fails.
+	 */
+	static public void writeRays(DataOutput output, int numVariables, Collection<List<BigInteger>> rays)
+			throws IOException {
+		writeVarInt(output, numVariables);
+		writeVarInt(output, rays.size());
+		for (List<BigInteger> ray : rays) {
+			assert ray.size() == numVariables;
+			writeVector(output, ray);
+		}
+	}
+
+	/**
+	 * Read a set of rays that was written by {@link #writeRays}.
+	 * @param input Where to read from.
+	 * @param numVariables The expected dimension of the rays.
+	 * @return The set of rays.
+	 * @throws IOException If reading fails, the data is malformed or has the wrong dimension.
+	 */
+	static public Set<List<BigInteger>> readRays(DataInput input, int numVariables) throws IOException {
+		int dimension = readVarInt(input);
+		if (dimension != numVariables)
+			throw new IOException("Expected rays of dimension " + numVariables + ", but got " + dimension);
+		int count = readVarInt(input);
+		Set<List<BigInteger>> result = new HashSet<>();
+		for (int i = 0; i < count; i++)
+			result.add(Arrays.asList(readVector(input, numVariables)));
+		return result;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,257 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Enumerate the extremal rays of a cone whose constraints split into blocks that share no variables. Such a cone is
+ * the product of the cones of its blocks, so its extremal rays are the extremal rays of the blocks, padded with
+ * zeros for the variables of the other blocks. The blocks are the connected components of the graph in which each
+ * constraint connects the variables that it uses.
+ * @author Uli Schlachter
+ */
+class BlockDecomposition {
+	private final PolyhedralCone cone;
+	private final int numVariables;
+	// The variables of each block in ascending order; unconstrained variables belong to no block
+	private final List<int[]> blocks;
+	private boolean unconstrained = false;
+
+	/**
+	 * Constructor.
+	 * @param cone The normalized cone whose extremal rays should be enumerated.
+	 */
+	BlockDecomposition(PolyhedralCone cone) {
+		this.cone = cone;
+		this.numVariables = cone.getNumberOfVariables();
+		this.blocks = findBlocks();
+	}
+
+	/**
+	 * Get the number of blocks of the cone.
+	 * @return The number of blocks.
+	 */
+	int getNumberOfBlocks() {
+		return blocks.size();
+	}
+
+	/**
+	 * Get the cones of the constraints on each block, in the variables of the block. Unconstrained variables are
+	 * left out, since they only add lines to the cone.
+	 * @return One cone per block.
+	 */
+	List<PolyhedralCone> getBlockCones() {
+		List<PolyhedralCone> result = new ArrayList<>(blocks.size());
+		for (int[] block : blocks)
+			result.add(restrictTo(block));
+		return result;
+	}
+
+	/**
+	 * Enumerate the extremal rays of the cone. With an unlimited budget, the blocks are enumerated in parallel and
+	 * the rays are passed to the consumer by the calling thread when all blocks are done. Else the blocks are
+	 * enumerated one after another within the budget.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @return false if this method cannot be used because the cone has only one block, some variable is not
+	 * constrained at all or some block is not pointed. Nothing was passed to the consumer in this case.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	boolean enumerate(BudgetMonitor monitor, final RayConsumer consumer) {
+		if (blocks.size() < 2 || unconstrained)
+			return false;
+
+		// The rays of a block with a line are only unique up to its lineality space, and different engines pick
+		// different representatives. Such blocks are left to the engine on the complete cone.
+		List<PolyhedralCone> subcones = new ArrayList<>(blocks.size());
+		for (int[] block : blocks) {
+			PolyhedralCone subcone = restrictTo(block);
+			List<BigInteger[]> rows = new ArrayList<>(Arrays.asList(subcone.getEquationMatrix()));
+			rows.addAll(Arrays.asList(subcone.getInequalityMatrix()));
+			if (!ExactLinearAlgebra.nullspace(rows, block.length).isEmpty())
+				return false;
+			subcones.add(subcone);
+		}
+
+		if (monitor.getBudget().isLimited()) {
+			for (int i = 0; i < blocks.size(); i++) {
+				final int[] block = blocks.get(i);
+				subcones.get(i).enumerateExtremalRays(monitor, new RayConsumer() {
+					@Override
+					public void accept(List<BigInteger> ray) {
+						consumer.accept(pad(block, ray));
+					}
+				});
+			}
+			return true;
+		}
+
+		ForkJoinPool pool = DoubleDescriptionEngine.getSharedPool();
+		if (cone.getEngine() instanceof DoubleDescriptionEngine)
+			pool = ((DoubleDescriptionEngine) cone.getEngine()).getPool();
+		for (List<BigInteger> ray : pool.invoke(new BlockTask(subcones, monitor, 0, blocks.size())))
+			consumer.accept(ray);
+		return true;
+	}
+
+	// Union-find over the variables: All variables used by one constraint end up in the same set
+	private List<int[]> findBlocks() {
+		int[] parent = new int[numVariables];
+		boolean[] constrained = new boolean[numVariables];
+		for (int i = 0; i < numVariables; i++)
+			parent[i] = i;
+		for (Iterable<ConstraintRow> rows : Arrays.asList(cone.getEquations(), cone.getInequalities())) {
+			for (ConstraintRow row : rows) {
+				int first = -1;
+				for (int k = 0; k < row.getNumberOfStoredEntries(); k++) {
+					if (row.signumOfStoredEntry(k) == 0)
+						continue;
+					int variable = row.getIndexOfStoredEntry(k);
+					constrained[variable] = true;
+					if (first < 0)
+						first = variable;
+					else
+						parent[find(parent, variable)] = find(parent, first);
+				}
+			}
+		}
+
+		// An unconstrained variable is a line of the cone; such cones are not decomposed
+		int[] blockOfRoot = new int[numVariables];
+		Arrays.fill(blockOfRoot, -1);
+		int[] sizes = new int[numVariables];
+		int numBlocks = 0;
+		for (int i = 0; i < numVariables; i++) {
+			if (!constrained[i]) {
+				unconstrained = true;
+				continue;
+			}
+			int root = find(parent, i);
+			if (blockOfRoot[root] < 0)
+				blockOfRoot[root] = numBlocks++;
+			sizes[blockOfRoot[root]]++;
+		}
+
+		List<int[]> result = new ArrayList<>(numBlocks);
+		for (int b = 0; b < numBlocks; b++)
+			result.add(new int[sizes[b]]);
+		int[] filled = new int[numBlocks];
+		for (int i = 0; i < numVariables; i++) {
+			if (!constrained[i])
+				continue;
+			int b = blockOfRoot[find(parent, i)];
+			result.get(b)[filled[b]++] = i;
+		}
+		return result;
+	}
+
+	static private int find(int[] parent, int variable) {
+		while (parent[variable] != variable) {
+			parent[variable] = parent[parent[variable]];
+			variable = parent[variable];
+		}
+		return variable;
+	}
+
+	// The cone of the constraints on the given block, in the variables of the block
+	private PolyhedralCone restrictTo(int[] block) {
+		PolyhedralCone result = new PolyhedralCone(block.length);
+		result.setEngine(cone.getEngine());
+		result.setCheckpointStore(cone.getCheckpointStore());
+		result.setConstraintOrdering(cone.getConstraintOrdering());
+		for (ConstraintRow row : cone.getEquations())
+			if (belongsTo(row, block))
+				result.addEquation(restrict(row, block));
+		for (ConstraintRow row : cone.getInequalities())
+			if (belongsTo(row, block))
+				result.addInequality(restrict(row, block));
+		return result;
+	}
+
+	// A row belongs to the block that contains its first non-zero entry
+	static private boolean belongsTo(ConstraintRow row, int[] block) {
+		for (int k = 0; k < row.getNumberOfStoredEntries(); k++)
+			if (row.signumOfStoredEntry(k) != 0)
+				return Arrays.binarySearch(block, row.getIndexOfStoredEntry(k)) >= 0;
+		return false;
+	}
+
+	static private ConstraintRow restrict(ConstraintRow row, int[] block) {
+		BigInteger[] entries = new BigInteger[block.length];
+		for (int j = 0; j < block.length; j++)
+			entries[j] = row.get(block[j]);
+		return ConstraintRow.of(entries);
+	}
+
+	private List<BigInteger> pad(int[] block, List<BigInteger> ray) {
+		BigInteger[] result = ExactLinearAlgebra.zero(numVariables);
+		for (int j = 0; j < block.length; j++)
+			result[block[j]] = ray.get(j);
+		return Arrays.asList(result);
+	}
+
+	// Enumerates the blocks in the given range and returns their padded rays
+	private class BlockTask extends RecursiveTask<List<List<BigInteger>>> {
+		static private final long serialVersionUID = 1L;
+
+		private final List<PolyhedralCone> subcones;
+		private final BudgetMonitor monitor;
+		private final int from;
+		private final int to;
+
+		BlockTask(List<PolyhedralCone> subcones, BudgetMonitor monitor, int from, int to) {
+			this.subcones = subcones;
+			this.monitor = monitor;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<List<BigInteger>> compute() {
+			if (to - from > 1) {
+				int middle = (from + to) / 2;
+				BlockTask second = new BlockTask(subcones, monitor, middle, to);
+				second.fork();
+				BlockTask first = new BlockTask(subcones, monitor, from, middle);
+				List<List<BigInteger>> result = first.compute();
+				result.addAll(second.join());
+				return result;
+			}
+
+			final int[] block = blocks.get(from);
+			final List<List<BigInteger>> result = new ArrayList<>();
+			subcones.get(from).enumerateExtremalRays(monitor, new RayConsumer() {
+				@Override
+				public void accept(List<BigInteger> ray) {
+					result.add(pad(block, ray));
+				}
+			});
+			return result;
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
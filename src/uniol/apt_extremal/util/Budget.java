@@ -0,0 +1,144 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits for a single enumeration of extremal rays. If a limit is exceeded, the enumeration fails with a {@link
+ * BudgetExceededException}, unless partial results are allowed. The enumeration also stops when the calling thread
+ * is interrupted. Instances of this class are immutable.
+ * @author Uli Schlachter
+ */
+public class Budget {
+	/** A budget without any limits */
+	static public final Budget UNLIMITED = new Budget();
+
+	static private final long NO_LIMIT = Long.MAX_VALUE;
+
+	private final long timeLimitNanos;
+	private final long maxRays;
+	private final long maxMemory;
+	private final boolean partialResultAllowed;
+
+	private Budget(long timeLimitNanos, long maxRays, long maxMemory, boolean partialResultAllowed) {
+		this.timeLimitNanos = timeLimitNanos;
+		this.maxRays = maxRays;
+		this.maxMemory = maxMemory;
+		this.partialResultAllowed = partialResultAllowed;
+	}
+
+	/**
+	 * Create a budget without any limits.
+	 */
+	public Budget() {
+		this(NO_LIMIT, NO_LIMIT, NO_LIMIT, false);
+	}
+
+	/**
+	 * Get the wall-clock time that an enumeration may take.
+	 * @param unit The unit of the result.
+	 * @return The time limit or Long.MAX_VALUE if there is no limit.
+	 */
+	public long getTimeLimit(TimeUnit unit) {
+		if (timeLimitNanos == NO_LIMIT)
+			return NO_LIMIT;
+		return unit.convert(timeLimitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Get the maximal number of intermediate rays that an enumeration may create.
+	 * @return The limit or Long.MAX_VALUE if there is no limit.
+	 */
+	public long getMaxRays() {
+		return maxRays;
+	}
+
+	/**
+	 * Get the maximal estimated memory in bytes that the intermediate rays of an enumeration may take.
+	 * @return The limit or Long.MAX_VALUE if there is no limit.
+	 */
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	/**
+	 * Check if the rays found so far should be returned when a limit is exceeded.
+	 * @return true if partial results are returned, false if an exception is thrown.
+	 */
+	public boolean isPartialResultAllowed() {
+		return partialResultAllowed;
+	}
+
+	/**
+	 * Check if this budget has any limits.
+	 * @return true if any limit is set.
+	 */
+	public boolean isLimited() {
+		return timeLimitNanos != NO_LIMIT || maxRays != NO_LIMIT || maxMemory != NO_LIMIT;
+	}
+
+	/**
+	 * Limit the wall-clock time of an enumeration.
+	 * @param time The time limit.
+	 * @param unit The unit of the time limit.
+	 * @return A budget with the given time limit.
+	 */
+	public Budget setTimeLimit(long time, TimeUnit unit) {
+		if (time < 0)
+			throw new IllegalArgumentException("Time limit must not be negative: " + time);
+		return new Budget(unit.toNanos(time), maxRays, maxMemory, partialResultAllowed);
+	}
+
+	/**
+	 * Limit the number of intermediate rays of an enumeration.
+	 * @param maxRays The maximal number of rays.
+	 * @return A budget with the given limit.
+	 */
+	public Budget setMaxRays(long maxRays) {
+		if (maxRays < 0)
+			throw new IllegalArgumentException("Ray limit must not be negative: " + maxRays);
+		return new Budget(timeLimitNanos, maxRays, maxMemory, partialResultAllowed);
+	}
+
+	/**
+	 * Limit the estimated memory that the intermediate rays of an enumeration take.
+	 * @param maxMemory The maximal memory in bytes.
+	 * @return A budget with the given limit.
+	 */
+	public Budget setMaxMemory(long maxMemory) {
+		if (maxMemory < 0)
+			throw new IllegalArgumentException("Memory limit must not be negative: " + maxMemory);
+		return new Budget(timeLimitNanos, maxRays, maxMemory, partialResultAllowed);
+	}
+
+	/**
+	 * Decide what happens when a limit is exceeded. Partial results are a subset of the extremal rays of the
+	 * cone.
+	 * @param partialResultAllowed true if the rays found so far should be returned, false if a {@link
+	 * BudgetExceededException} should be thrown.
+	 * @return A budget with the given behaviour.
+	 */
+	public Budget setPartialResultAllowed(boolean partialResultAllowed) {
+		return new Budget(timeLimitNanos, maxRays, maxMemory, partialResultAllowed);
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,122 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+/**
+ * Exception thrown when the enumeration of extremal rays exceeds its {@link Budget} or is interrupted. The exception
+ * describes how far the enumeration got.
+ * @author Uli Schlachter
+ */
+public class BudgetExceededException extends RuntimeException {
+	static private final long serialVersionUID = 1L;
+
+	/**
+	 * The reason why an enumeration was stopped.
+	 */
+	public enum Reason {
+		/** The time limit was reached */
+		TIME,
+		/** The limit on the number of intermediate rays was reached */
+		RAYS,
+		/** The limit on the memory of the intermediate rays was reached */
+		MEMORY,
+		/** The thread doing the enumeration was interrupted */
+		INTERRUPTED;
+	}
+
+	private final Reason reason;
+	private final int processedConstraints;
+	private final int numConstraints;
+	private final long numRays;
+	private final long estimatedMemory;
+	private final long elapsedMillis;
+
+	/**
+	 * Constructor.
+	 * @param reason Why the enumeration was stopped.
+	 * @param processedConstraints The number of constraints that were completely processed.
+	 * @param numConstraints The number of constraints that had to be processed.
+	 * @param numRays The number of intermediate rays.
+	 * @param estimatedMemory The estimated memory of the intermediate rays in bytes.
+	 * @param elapsedMillis The time that the enumeration took.
+	 */
+	public BudgetExceededException(Reason reason, int processedConstraints, int numConstraints, long numRays,
+			long estimatedMemory, long elapsedMillis) {
+		super(String.format("Budget exceeded (%s) after processing %d of %d constraints with %d intermediate "
+					+ "rays (about %d bytes) in %d ms", reason, processedConstraints,
+					numConstraints, numRays, estimatedMemory, elapsedMillis));
+		this.reason = reason;
+		this.processedConstraints = processedConstraints;
+		this.numConstraints = numConstraints;
+		this.numRays = numRays;
+		this.estimatedMemory = estimatedMemory;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Get the reason why the enumeration was stopped.
+	 * @return The reason.
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * Get the number of constraints that were completely processed.
+	 * @return The number of processed constraints.
+	 */
+	public int getNumberOfProcessedConstraints() {
+		return processedConstraints;
+	}
+
+	/**
+	 * Get the number of constraints that had to be processed.
+	 * @return The number of constraints.
+	 */
+	public int getNumberOfConstraints() {
+		return numConstraints;
+	}
+
+	/**
+	 * Get the number of intermediate rays when the enumeration was stopped.
+	 * @return The number of rays.
+	 */
+	public long getNumberOfRays() {
+		return numRays;
+	}
+
+	/**
+	 * Get the estimated memory of the intermediate rays when the enumeration was stopped.
+	 * @return The memory in bytes.
+	 */
+	public long getEstimatedMemory() {
+		return estimatedMemory;
+	}
+
+	/**
+	 * Get the time that the enumeration took until it was stopped.
+	 * @return The time in milliseconds.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,129 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of a single enumeration of extremal rays and checks it against its {@link Budget}. The checks may be
+ * done from any thread, interruption refers to the thread that created the monitor.
+ * @author Uli Schlachter
+ */
+class BudgetMonitor {
+	private final Budget budget;
+	private final Thread owner = Thread.currentThread();
+	private final long start = System.nanoTime();
+	private final long timeLimit;
+	private volatile int processedConstraints = 0;
+	private volatile int numConstraints = 0;
+	private volatile int numRays = 0;
+	private volatile long bytesPerRay = 0;
+	private final AtomicLong createdRays = new AtomicLong();
+	private boolean partial = false;
+
+	/**
+	 * Start monitoring an enumeration.
+	 * @param budget The limits of the enumeration.
+	 */
+	BudgetMonitor(Budget budget) {
+		this.budget = budget;
+		this.timeLimit = budget.getTimeLimit(TimeUnit.NANOSECONDS);
+	}
+
+	Budget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Check if the memory of the rays has to be estimated.
+	 * @return true if there is a memory limit.
+	 */
+	boolean isMemoryLimited() {
+		return budget.getMaxMemory() != Long.MAX_VALUE;
+	}
+
+	/**
+	 * Set the number of constraints that the enumeration processes.
+	 * @param numConstraints The number of constraints.
+	 */
+	void setNumberOfConstraints(int numConstraints) {
+		this.numConstraints = numConstraints;
+	}
+
+	/**
+	 * Record the state before the next constraint is processed and check the budget.
+	 * @param processedConstraints The number of constraints that were already processed.
+	 * @param numRays The current number of rays.
+	 * @param bytesPerRay The estimated memory per ray.
+	 */
+	void startStep(int processedConstraints, int numRays, long bytesPerRay) {
+		this.processedConstraints = processedConstraints;
+		this.numRays = numRays;
+		this.bytesPerRay = bytesPerRay;
+		createdRays.set(0);
+		check();
+	}
+
+	/**
+	 * Record that new rays were created by the current step and check the budget.
+	 * @param count The number of new rays.
+	 */
+	void addRays(int count) {
+		createdRays.addAndGet(count);
+		check();
+	}
+
+	/**
+	 * Check the budget.
+	 * @throws BudgetExceededException If any limit was exceeded or the thread was interrupted.
+	 */
+	void check() {
+		long rays = numRays + createdRays.get();
+		if (owner.isInterrupted())
+			throw fail(BudgetExceededException.Reason.INTERRUPTED, rays);
+		if (System.nanoTime() - start > timeLimit)
+			throw fail(BudgetExceededException.Reason.TIME, rays);
+		if (rays > budget.getMaxRays())
+			throw fail(BudgetExceededException.Reason.RAYS, rays);
+		if (rays * bytesPerRay > budget.getMaxMemory())
+			throw fail(BudgetExceededException.Reason.MEMORY, rays);
+	}
+
+	private BudgetExceededException fail(BudgetExceededException.Reason reason, long rays) {
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		return new BudgetExceededException(reason, processedConstraints, numConstraints, rays,
+				rays * bytesPerRay, elapsed);
+	}
+
+	/**
+	 * Check if the enumeration only produced a partial result.
+	 * @return true if a limit was exceeded and partial results were returned.
+	 */
+	boolean isPartial() {
+		return partial;
+	}
+
+	void setPartial() {
+		partial = true;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
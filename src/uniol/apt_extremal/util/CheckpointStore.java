@@ -0,0 +1,195 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checkpoints of long-running enumerations on disk. While the double description method works on a cone, it
+ * periodically saves the constraints that it processed so far and its current intermediate rays to a file that is
+ * named after the canonical hash of the cone. A later enumeration of the same cone, for example after the JVM was
+ * restarted, continues from the latest checkpoint instead of starting over. A checkpoint is only used if all the
+ * constraints that it processed are constraints of the cone. The double description method then adds the remaining
+ * constraints of the cone, so a checkpoint never contributes constraints that the cone does not have. The file is
+ * deleted once the enumeration is complete. Like with the {@link RayCache}, files are written to a temporary
+ * name and atomically renamed, and problems with the directory never make a computation fail. One instance can be
+ * used by several threads at the same time.
+ * @author Uli Schlachter
+ */
+public class CheckpointStore {
+	static private final int MAGIC = 0x41505443; // "APTC"
+	static private final int VERSION = 1;
+	static private final String SUFFIX = ".checkpoint";
+
+	private final Path directory;
+	private final long intervalNanos;
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong resumed = new AtomicLong();
+
+	/**
+	 * Create a store in the given directory. The directory is created if it does not exist.
+	 * @param directory The directory in which the checkpoints are stored.
+	 * @param interval The minimal time between two checkpoints of the same enumeration. The first checkpoint is
+	 * written once an enumeration has run for this long, so short enumerations never write any.
+	 * @param unit The unit of the interval.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	public CheckpointStore(Path directory, long interval, TimeUnit unit) throws IOException {
+		if (interval < 0)
+			throw new IllegalArgumentException("The interval cannot be negative: " + interval);
+		this.directory = Files.createDirectories(directory);
+		this.intervalNanos = unit.toNanos(interval);
+	}
+
+	/**
+	 * Get the number of checkpoints that were written.
+	 * @return The number of written checkpoints.
+	 */
+	public long getNumberOfWrittenCheckpoints() {
+		return written.get();
+	}
+
+	/**
+	 * Get the number of enumerations that continued from a checkpoint.
+	 * @return The number of resumed enumerations.
+	 */
+	public long getNumberOfResumedEnumerations() {
+		return resumed.get();
+	}
+
+	/**
+	 * Start the checkpoints of an enumeration of a cone.
+	 * @param cone The cone that is enumerated. It is normalized by this call.
+	 * @return The checkpoints of the enumeration.
+	 */
+	Session open(PolyhedralCone cone) {
+		return new Session(cone.getNumberOfVariables(), cone.getCanonicalHash());
+	}
+
+	/**
+	 * The checkpoints of one enumeration of a cone.
+	 */
+	class Session {
+		private final int numVariables;
+		private final String key;
+		private final Path file;
+		private long lastSaved = System.nanoTime();
+
+		private Session(int numVariables, String key) {
+			this.numVariables = numVariables;
+			this.key = key;
+			this.file = directory.resolve(key + SUFFIX);
+		}
+
+		/**
+		 * Load the latest checkpoint of the cone.
+		 * @param cone The cone whose enumeration is resumed.
+		 * @param pool The fork-join pool on which the computation continues.
+		 * @return The saved double description of the cone or null if there is no valid checkpoint.
+		 */
+		DoubleDescription resume(PolyhedralCone cone, ForkJoinPool pool) {
+			DoubleDescription result;
+			try (InputStream stream = Files.newInputStream(file)) {
+				DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+				if (input.readInt() != MAGIC || input.readUnsignedByte() != VERSION
+						|| !input.readUTF().equals(key))
+					return null;
+				result = DoubleDescription.read(input, numVariables, pool);
+			} catch (IOException e) {
+				return null;
+			}
+			// Protect against hash collisions: Every saved constraint must be one of the cone
+			if (!new HashSet<>(cone.getEquations()).containsAll(result.getEquations())
+					|| !new HashSet<>(cone.getInequalities()).containsAll(result.getInequalities()))
+				return null;
+			resumed.incrementAndGet();
+			return result;
+		}
+
+		/**
+		 * Save the state of an enumeration if the last checkpoint is old enough.
+		 * @param description The current double description of the cone.
+		 */
+		void saveIfDue(DoubleDescription description) {
+			long now = System.nanoTime();
+			if (now - lastSaved < intervalNanos)
+				return;
+			save(description);
+			lastSaved = System.nanoTime();
+		}
+
+		/**
+		 * Delete the checkpoint of the finished enumeration.
+		 */
+		void finish() {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				// A stale checkpoint only costs disk space; it is still valid for this cone
+			}
+		}
+
+		private void save(DoubleDescription description) {
+			Path temporary = null;
+			try {
+				temporary = Files.createTempFile(directory, key, ".tmp");
+				try (OutputStream stream = Files.newOutputStream(temporary)) {
+					DataOutputStream output = new DataOutputStream(
+							new BufferedOutputStream(stream));
+					output.writeInt(MAGIC);
+					output.writeByte(VERSION);
+					output.writeUTF(key);
+					description.write(output);
+					output.flush();
+				}
+				Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+				temporary = null;
+				written.incrementAndGet();
+			} catch (IOException e) {
+				// Checkpoints are optional, so failing to write one is fine
+			} finally {
+				if (temporary != null) {
+					try {
+						Files.deleteIfExists(temporary);
+					} catch (IOException e) {
+						// Ignore, there is nothing left to do
+					}
+				}
+			}
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
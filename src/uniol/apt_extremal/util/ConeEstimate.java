@@ -0,0 +1,294 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An estimate of how expensive it is to enumerate the extremal rays of a cone, calculated without enumerating them.
+ * The estimate consists of the size of the normalized cone, the dimension of its pointed part, an upper bound on the
+ * number of extremal rays and, if the cone was probed, a statistical estimate of their number. Instances of this
+ * class are immutable.
+ * @author Uli Schlachter
+ * @see PolyhedralCone#estimate(int)
+ */
+public class ConeEstimate {
+	/** The number of probes that {@link PolyhedralCone#estimate()} uses */
+	static public final int DEFAULT_NUMBER_OF_PROBES = 10;
+
+	// Probes are reproducible, so that the same cone always gets the same estimate
+	static private final long PROBE_SEED = 0;
+
+	/**
+	 * Classes of the expected cost of an enumeration, named by the number of extremal rays that are expected.
+	 */
+	public enum CostClass {
+		/** At most a hundred rays */
+		TRIVIAL(100),
+		/** At most ten thousand rays */
+		SMALL(10000),
+		/** At most a million rays */
+		MEDIUM(1000000),
+		/** At most a hundred million rays */
+		LARGE(100000000),
+		/** More than a hundred million rays */
+		HUGE(Long.MAX_VALUE);
+
+		private final long maxRays;
+
+		private CostClass(long maxRays) {
+			this.maxRays = maxRays;
+		}
+
+		/**
+		 * Get the largest number of extremal rays that belongs to this class.
+		 * @return The number of rays or Long.MAX_VALUE for {@link #HUGE}.
+		 */
+		public long getMaxRays() {
+			return maxRays;
+		}
+
+		/**
+		 * Get the class to which the given number of extremal rays belongs.
+		 * @param numRays The number of rays.
+		 * @return The smallest class that allows this number of rays.
+		 */
+		static public CostClass of(double numRays) {
+			for (CostClass costClass : values())
+				if (numRays <= costClass.maxRays)
+					return costClass;
+			return HUGE;
+		}
+	}
+
+	private final int numVariables;
+	private final int numEquations;
+	private final int numInequalities;
+	private final int dimension;
+	private final int linealityDimension;
+	private final int numBlocks;
+	private final BigInteger rayBound;
+	private final double expectedRays;
+	private final CostClass costClass;
+
+	ConeEstimate(int numVariables, int numEquations, int numInequalities, int dimension, int linealityDimension,
+			int numBlocks, BigInteger rayBound, double expectedRays) {
+		this.numVariables = numVariables;
+		this.numEquations = numEquations;
+		this.numInequalities = numInequalities;
+		this.dimension = dimension;
+		this.linealityDimension = linealityDimension;
+		this.numBlocks = numBlocks;
+		this.rayBound = rayBound;
+		this.expectedRays = expectedRays;
+		// The bound always holds, so an estimate above it is cut off
+		if (Double.isNaN(expectedRays) || rayBound.doubleValue() < expectedRays)
+			this.costClass = CostClass.of(rayBound.doubleValue());
+		else
+			this.costClass = CostClass.of(expectedRays);
+	}
+
+	/**
+	 * Estimate the given normalized cone.
+	 * @param cone The cone to estimate.
+	 * @param numProbes The number of random paths through the search tree of a {@link ReverseSearchEngine} that
+	 * are followed to estimate the number of rays, or zero to only calculate the upper bound.
+	 * @return The estimate.
+	 * @throws BudgetExceededException If the calling thread is interrupted while probing.
+	 */
+	static ConeEstimate of(PolyhedralCone cone, int numProbes) {
+		int numVariables = cone.getNumberOfVariables();
+		List<BigInteger[]> equations = Arrays.asList(cone.getEquationMatrix());
+		List<BigInteger[]> inequalities = Arrays.asList(cone.getInequalityMatrix());
+		List<BigInteger[]> rows = new ArrayList<>(equations);
+		rows.addAll(inequalities);
+		int rank = ExactLinearAlgebra.rank(rows, numVariables);
+		int dimension = rank - ExactLinearAlgebra.rank(equations, numVariables);
+
+		// The cone is the product of its blocks, so the bounds of the blocks add up
+		BlockDecomposition decomposition = new BlockDecomposition(cone);
+		BigInteger rayBound = BigInteger.ZERO;
+		for (PolyhedralCone block : decomposition.getBlockCones())
+			rayBound = rayBound.add(getRayBound(block));
+
+		double expectedRays = Double.NaN;
+		if (numProbes > 0 && rayBound.compareTo(BigInteger.valueOf(CostClass.TRIVIAL.getMaxRays())) > 0) {
+			// The reverse search needs the pointed part of the cone
+			PolyhedralCone pointed = new PolyhedralCone(numVariables);
+			for (BigInteger[] row : equations)
+				pointed.addEquation(row);
+			for (BigInteger[] row : inequalities)
+				pointed.addInequality(row);
+			if (rank < numVariables)
+				for (BigInteger[] line : ExactLinearAlgebra.nullspace(rows, numVariables))
+					pointed.addEquation(line);
+			expectedRays = new ReverseSearchEngine().estimateNumberOfRays(pointed, numProbes,
+					new Random(PROBE_SEED));
+		}
+
+		return new ConeEstimate(numVariables, equations.size(), inequalities.size(), dimension,
+				numVariables - rank, decomposition.getNumberOfBlocks(), rayBound, expectedRays);
+	}
+
+	// The bound for a cone that does not decompose further
+	static private BigInteger getRayBound(PolyhedralCone cone) {
+		int numVariables = cone.getNumberOfVariables();
+		List<BigInteger[]> equations = Arrays.asList(cone.getEquationMatrix());
+		List<BigInteger[]> rows = new ArrayList<>(equations);
+		rows.addAll(Arrays.asList(cone.getInequalityMatrix()));
+		int dimension = ExactLinearAlgebra.rank(rows, numVariables) - ExactLinearAlgebra.rank(equations,
+				numVariables);
+		return getRayBound(cone.getInequalities().size(), dimension);
+	}
+
+	/**
+	 * Calculate the maximal number of extremal rays of a pointed cone with at most the given number of facets and
+	 * at most the given dimension. Intersecting such a cone with a hyperplane gives a polytope of one dimension
+	 * less, whose number of vertices is limited by McMullen's upper bound theorem. The bound is not monotonic in
+	 * the dimension, so the maximum over all smaller dimensions is taken: Some inequalities of a cone might hold
+	 * with equality and reduce its dimension.
+	 * @param numFacets The number of inequalities of the cone.
+	 * @param dimension The dimension of the cone.
+	 * @return The upper bound.
+	 */
+	static BigInteger getRayBound(int numFacets, int dimension) {
+		if (dimension <= 0 || numFacets <= 0)
+			return BigInteger.ZERO;
+		// A cone of dimension one is a single ray
+		BigInteger result = BigInteger.ONE;
+		for (int polytopeDimension = 1; polytopeDimension < dimension; polytopeDimension++) {
+			if (numFacets <= polytopeDimension)
+				break;
+			int lower = polytopeDimension / 2;
+			int upper = polytopeDimension - lower;
+			BigInteger bound = binomial(numFacets - upper, lower)
+				.add(binomial(numFacets - lower - 1, upper - 1));
+			result = result.max(bound);
+		}
+		return result;
+	}
+
+	static private BigInteger binomial(int n, int k) {
+		if (k < 0 || n < k)
+			return BigInteger.ZERO;
+		k = Math.min(k, n - k);
+		BigInteger result = BigInteger.ONE;
+		for (int i = 1; i <= k; i++)
+			result = result.multiply(BigInteger.valueOf(n - k + i)).divide(BigInteger.valueOf(i));
+		return result;
+	}
+
+	/**
+	 * Get the number of variables of the cone.
+	 * @return The number of variables.
+	 */
+	public int getNumberOfVariables() {
+		return numVariables;
+	}
+
+	/**
+	 * Get the number of equations of the normalized cone.
+	 * @return The number of equations.
+	 */
+	public int getNumberOfEquations() {
+		return numEquations;
+	}
+
+	/**
+	 * Get the number of inequalities of the normalized cone.
+	 * @return The number of inequalities.
+	 */
+	public int getNumberOfInequalities() {
+		return numInequalities;
+	}
+
+	/**
+	 * Get the dimension of the pointed part of the cone, which is the number of variables minus the rank of the
+	 * equations and minus the dimension of the lineality space. Inequalities that can only hold with equality are
+	 * not detected, so the real dimension can be smaller.
+	 * @return The dimension.
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * Get the dimension of the lineality space of the cone.
+	 * @return The dimension.
+	 * @see PolyhedralCone#findLinealityBasis()
+	 */
+	public int getLinealityDimension() {
+		return linealityDimension;
+	}
+
+	/**
+	 * Get the number of blocks of constraints that share no variables. The blocks are enumerated separately.
+	 * @return The number of blocks.
+	 */
+	public int getNumberOfBlocks() {
+		return numBlocks;
+	}
+
+	/**
+	 * Get an upper bound on the number of extremal rays. It is the sum of the bounds of the upper bound theorem for
+	 * the blocks of the cone and usually far larger than the real number.
+	 * @return The bound.
+	 */
+	public BigInteger getRayBound() {
+		return rayBound;
+	}
+
+	/**
+	 * Get the estimated number of extremal rays from probing the cone.
+	 * @return The estimate or NaN if the cone was not probed.
+	 */
+	public double getExpectedRays() {
+		return expectedRays;
+	}
+
+	/**
+	 * Get the class of the expected cost of the enumeration. It is based on the estimated number of rays if the
+	 * cone was probed and on the upper bound otherwise. Symmetries and the intermediate rays of the double
+	 * description method are not taken into account.
+	 * @return The cost class.
+	 */
+	public CostClass getCostClass() {
+		return costClass;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(numVariables).append(" variables, ").append(numEquations).append(" equations, ")
+			.append(numInequalities).append(" inequalities, dimension ").append(dimension)
+			.append(", lineality ").append(linealityDimension).append(", ").append(numBlocks)
+			.append(" blocks, at most ").append(rayBound).append(" rays");
+		if (!Double.isNaN(expectedRays))
+			buffer.append(String.format(", about %.0f expected", expectedRays));
+		buffer.append(", cost ").append(costClass);
+		return buffer.toString();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,244 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The order in which the inequalities of a cone are processed and the order of its variables. The cost of the double
+ * description method depends heavily on the order of the inequalities, since it determines the sizes of the
+ * intermediate cones. The order of the variables decides which lineality vectors are used up first. Instances of this
+ * class are immutable.
+ * <p>
+ * The strategies are applied to the cone that is handed to the engine. The {@link DoubleDescriptionEngine}
+ * processes the inequalities in exactly this order. Polco sorts the inequalities again by its own rules, so for the
+ * {@link PolcoEngine} mainly the order of the variables has an effect.
+ * @author Uli Schlachter
+ */
+public class ConstraintOrdering {
+	/**
+	 * The available strategies.
+	 */
+	public enum Strategy {
+		/** Keep the inequalities and variables in the order in which they were added. */
+		MIN_INDEX,
+		/** Sort inequalities and the columns of the constraint matrix lexicographically. */
+		LEXICOGRAPHIC,
+		/**
+		 * Process next the inequality that cuts off the most rays of the current intermediate cone. This is
+		 * decided anew in each step and only supported by the {@link DoubleDescriptionEngine}.
+		 */
+		MAX_CUTOFF,
+		/** Shuffle inequalities and variables with a pseudo-random generator with a fixed seed. */
+		RANDOM,
+		/** Process the inequalities and variables with the fewest non-zero entries first. */
+		SPARSITY_FIRST,
+		/** Pick one of the other strategies based on the size and density of the constraint matrix. */
+		AUTO;
+	}
+
+	/** The default ordering, which keeps the order of the cone */
+	static public final ConstraintOrdering MIN_INDEX = new ConstraintOrdering(Strategy.MIN_INDEX);
+
+	/** The automatic choice of an ordering */
+	static public final ConstraintOrdering AUTO = new ConstraintOrdering(Strategy.AUTO);
+
+	// Below this fraction of non-zero entries, a constraint matrix counts as sparse
+	static private final double SPARSE_DENSITY = 1.0 / 3;
+	// With at most this many inequalities per variable, choosing by cutoff in each step is cheap enough
+	static private final int MAX_CUTOFF_ROWS_PER_VARIABLE = 2;
+
+	private final Strategy strategy;
+	private final long seed;
+
+	/**
+	 * Create an ordering.
+	 * @param strategy The strategy to use.
+	 */
+	public ConstraintOrdering(Strategy strategy) {
+		this(strategy, 0);
+	}
+
+	/**
+	 * Create an ordering.
+	 * @param strategy The strategy to use.
+	 * @param seed The seed for {@link Strategy#RANDOM}.
+	 */
+	public ConstraintOrdering(Strategy strategy, long seed) {
+		this.strategy = strategy;
+		this.seed = seed;
+	}
+
+	/**
+	 * Get the strategy of this ordering.
+	 * @return The strategy.
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Get the seed that is used by {@link Strategy#RANDOM}.
+	 * @return The seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Resolve {@link Strategy#AUTO} for the given cone. Sparse matrices are handled with {@link
+	 * Strategy#SPARSITY_FIRST}, cones with few inequalities per variable with {@link Strategy#MAX_CUTOFF} and
+	 * everything else with {@link Strategy#LEXICOGRAPHIC}.
+	 * @param cone The cone which should be ordered.
+	 * @return This ordering or, if it is automatic, the ordering that was chosen for the cone.
+	 */
+	ConstraintOrdering resolve(PolyhedralCone cone) {
+		if (strategy != Strategy.AUTO)
+			return this;
+
+		int numVariables = cone.getNumberOfVariables();
+		Collection<ConstraintRow> inequalities = cone.getInequalities();
+		long nonZeros = 0;
+		for (ConstraintRow row : inequalities)
+			nonZeros += countNonZeros(row);
+		long entries = (long) inequalities.size() * numVariables;
+		if (entries > 0 && nonZeros < SPARSE_DENSITY * entries)
+			return new ConstraintOrdering(Strategy.SPARSITY_FIRST, seed);
+		if (inequalities.size() <= MAX_CUTOFF_ROWS_PER_VARIABLE * numVariables)
+			return new ConstraintOrdering(Strategy.MAX_CUTOFF, seed);
+		return new ConstraintOrdering(Strategy.LEXICOGRAPHIC, seed);
+	}
+
+	/**
+	 * Order the inequalities of a cone. {@link Strategy#MAX_CUTOFF} keeps the given order, since its choice depends
+	 * on the intermediate cones.
+	 * @param rows The inequalities in the order in which they were added.
+	 * @return The inequalities in the order in which they should be processed.
+	 */
+	List<ConstraintRow> orderRows(Collection<ConstraintRow> rows) {
+		List<ConstraintRow> result = new ArrayList<>(rows);
+		switch (strategy) {
+			case LEXICOGRAPHIC:
+				Collections.sort(result);
+				break;
+			case RANDOM:
+				Collections.shuffle(result, new Random(seed));
+				break;
+			case SPARSITY_FIRST:
+				// The sort is stable, so rows with equally many non-zero entries keep their order
+				Collections.sort(result, new Comparator<ConstraintRow>() {
+					@Override
+					public int compare(ConstraintRow first, ConstraintRow second) {
+						return Integer.compare(countNonZeros(first), countNonZeros(second));
+					}
+				});
+				break;
+			case AUTO:
+				throw new IllegalStateException("The automatic ordering has to be resolved first");
+			default:
+				break;
+		}
+		return result;
+	}
+
+	/**
+	 * Order the variables of a cone.
+	 * @param cone The cone.
+	 * @return The permutation of the variables: Position j of the ordered cone is variable result[j] of the cone.
+	 */
+	int[] orderColumns(PolyhedralCone cone) {
+		int numVariables = cone.getNumberOfVariables();
+		final BigInteger[][] columns = new BigInteger[numVariables][];
+		final int[] nonZeros = new int[numVariables];
+		BigInteger[][] rows = cone.getInequalityMatrix();
+		for (int j = 0; j < numVariables; j++) {
+			columns[j] = new BigInteger[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				columns[j][i] = rows[i][j];
+				if (rows[i][j].signum() != 0)
+					nonZeros[j]++;
+			}
+		}
+
+		List<Integer> order = new ArrayList<>(numVariables);
+		for (int j = 0; j < numVariables; j++)
+			order.add(j);
+		switch (strategy) {
+			case LEXICOGRAPHIC:
+				Collections.sort(order, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer first, Integer second) {
+						BigInteger[] a = columns[first];
+						BigInteger[] b = columns[second];
+						for (int i = 0; i < a.length; i++) {
+							int result = a[i].compareTo(b[i]);
+							if (result != 0)
+								return result;
+						}
+						return 0;
+					}
+				});
+				break;
+			case RANDOM:
+				Collections.shuffle(order, new Random(seed));
+				break;
+			case SPARSITY_FIRST:
+				Collections.sort(order, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer first, Integer second) {
+						return Integer.compare(nonZeros[first], nonZeros[second]);
+					}
+				});
+				break;
+			case AUTO:
+				throw new IllegalStateException("The automatic ordering has to be resolved first");
+			default:
+				break;
+		}
+
+		int[] result = new int[numVariables];
+		for (int j = 0; j < numVariables; j++)
+			result[j] = order.get(j);
+		return result;
+	}
+
+	static private int countNonZeros(ConstraintRow row) {
+		int result = 0;
+		for (int k = 0; k < row.getNumberOfStoredEntries(); k++)
+			if (row.signumOfStoredEntry(k) != 0)
+				result++;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		if (strategy == Strategy.RANDOM)
+			return strategy + "(" + seed + ")";
+		return strategy.toString();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
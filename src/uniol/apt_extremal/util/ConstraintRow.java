@@ -0,0 +1,378 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable row of a constraint matrix. Rows are stored compactly: Entries are kept as primitive longs unless one of
+ * them does not fit, and rows with mostly zero entries only store their non-zero entries. Each row carries a 64-bit
+ * fingerprint of its entries, so that comparing rows for equality is cheap.
+ * @author Uli Schlachter
+ */
+public final class ConstraintRow implements Comparable<ConstraintRow> {
+	static private final long FINGERPRINT_SEED = 0x9e3779b97f4a7c15L;
+
+	private final int length;
+	// Indices of the stored entries in increasing order or null if all entries are stored
+	private final int[] indices;
+	// The stored entries, exactly one of these two is non-null
+	private final long[] values;
+	private final BigInteger[] bigValues;
+	private final long fingerprint;
+
+	private ConstraintRow(int length, int[] indices, long[] values, BigInteger[] bigValues) {
+		this.length = length;
+		this.indices = indices;
+		this.values = values;
+		this.bigValues = bigValues;
+
+		long hash = FINGERPRINT_SEED ^ length;
+		for (int k = 0; k < getNumberOfStoredEntries(); k++) {
+			long value;
+			if (values != null)
+				value = values[k];
+			else if (bigValues[k].bitLength() < 64)
+				value = bigValues[k].longValue();
+			else
+				value = bigValues[k].hashCode();
+			if (value == 0)
+				continue;
+			hash = mix(hash ^ getIndexOfStoredEntry(k));
+			hash = mix(hash + value);
+		}
+		this.fingerprint = hash;
+	}
+
+	/**
+	 * Create a row.
+	 * @param entries The entries of the row.
+	 * @return The row.
+	 */
+	static public ConstraintRow of(long... entries) {
+		int nonZeros = 0;
+		for (long entry : entries)
+			if (entry != 0)
+				nonZeros++;
+		if (!isSparse(nonZeros, entries.length))
+			return new ConstraintRow(entries.length, null, entries.clone(), null);
+
+		int[] indices = new int[nonZeros];
+		long[] values = new long[nonZeros];
+		int k = 0;
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i] != 0) {
+				indices[k] = i;
+				values[k++] = entries[i];
+			}
+		}
+		return new ConstraintRow(entries.length, indices, values, null);
+	}
+
+	/**
+	 * Create a row.
+	 * @param entries The entries of the row.
+	 * @return The row.
+	 */
+	static public ConstraintRow of(int... entries) {
+		long[] values = new long[entries.length];
+		for (int i = 0; i < entries.length; i++)
+			values[i] = entries[i];
+		return of(values);
+	}
+
+	/**
+	 * Create a row.
+	 * @param entries The entries of the row.
+	 * @return The row.
+	 */
+	static public ConstraintRow of(BigInteger... entries) {
+		boolean small = true;
+		int nonZeros = 0;
+		for (BigInteger entry : entries) {
+			if (entry.signum() != 0)
+				nonZeros++;
+			if (entry.bitLength() >= 64)
+				small = false;
+		}
+		if (small) {
+			long[] values = new long[entries.length];
+			for (int i = 0; i < entries.length; i++)
+				values[i] = entries[i].longValue();
+			return of(values);
+		}
+		if (!isSparse(nonZeros, entries.length))
+			return new ConstraintRow(entries.length, null, null, entries.clone());
+
+		int[] indices = new int[nonZeros];
+		BigInteger[] values = new BigInteger[nonZeros];
+		int k = 0;
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i].signum() != 0) {
+				indices[k] = i;
+				values[k++] = entries[i];
+			}
+		}
+		return new ConstraintRow(entries.length, indices, null, values);
+	}
+
+	/**
+	 * Create a row.
+	 * @param entries The entries of the row.
+	 * @return The row.
+	 */
+	static public ConstraintRow of(Collection<BigInteger> entries) {
+		return of(entries.toArray(new BigInteger[0]));
+	}
+
+	// Storing index and value of an entry takes about 1.5 times the space of storing just the value
+	static private boolean isSparse(int nonZeros, int length) {
+		return 3 * nonZeros < 2 * length;
+	}
+
+	// The finalizer of the SplitMix64 generator
+	static private long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	/**
+	 * Get the number of entries of this row, including zeros.
+	 * @return The length of the row.
+	 */
+	public int size() {
+		return length;
+	}
+
+	/**
+	 * Get an entry of this row.
+	 * @param index The index of the entry.
+	 * @return The entry.
+	 */
+	public BigInteger get(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index " + index + " is not in [0, " + length + ")");
+		int k = indices == null ? index : Arrays.binarySearch(indices, index);
+		if (k < 0)
+			return BigInteger.ZERO;
+		return getStoredEntry(k);
+	}
+
+	/**
+	 * Get the sign of an entry of this row.
+	 * @param index The index of the entry.
+	 * @return -1, 0 or 1 if the entry is negative, zero or positive.
+	 */
+	public int signum(int index) {
+		int k = indices == null ? index : Arrays.binarySearch(indices, index);
+		if (k < 0)
+			return 0;
+		return values != null ? Long.signum(values[k]) : bigValues[k].signum();
+	}
+
+	/**
+	 * Get the 64-bit fingerprint of this row. Equal rows have equal fingerprints.
+	 * @return The fingerprint.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Check if all entries of this row are zero.
+	 * @return true if this is the zero row.
+	 */
+	public boolean isZero() {
+		for (int k = 0; k < getNumberOfStoredEntries(); k++)
+			if (signumOfStoredEntry(k) != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Calculate the scalar product of this row with a vector. Zero entries of this row are skipped.
+	 * @param vector The vector, which must have the same length as this row.
+	 * @return The scalar product.
+	 */
+	public BigInteger dot(BigInteger[] vector) {
+		assert vector.length == length;
+		BigInteger result = BigInteger.ZERO;
+		for (int k = 0; k < getNumberOfStoredEntries(); k++) {
+			BigInteger entry = vector[getIndexOfStoredEntry(k)];
+			if (values == null) {
+				result = result.add(bigValues[k].multiply(entry));
+			} else if (values[k] == 1) {
+				result = result.add(entry);
+			} else if (values[k] == -1) {
+				result = result.subtract(entry);
+			} else if (values[k] != 0) {
+				result = result.add(entry.multiply(BigInteger.valueOf(values[k])));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the row with all entries negated.
+	 * @return The negated row.
+	 */
+	public ConstraintRow negate() {
+		if (values != null) {
+			long[] result = new long[values.length];
+			for (int k = 0; k < values.length; k++) {
+				if (values[k] == Long.MIN_VALUE)
+					return negateBig();
+				result[k] = -values[k];
+			}
+			return new ConstraintRow(length, indices, result, null);
+		}
+		return negateBig();
+	}
+
+	private ConstraintRow negateBig() {
+		BigInteger[] result = toArray();
+		for (int i = 0; i < length; i++)
+			result[i] = result[i].negate();
+		return of(result);
+	}
+
+	/**
+	 * Get the row divided by the greatest common divisor of its entries.
+	 * @return The normalized row. This is the row itself if there is nothing to divide.
+	 */
+	public ConstraintRow normalize() {
+		if (values == null) {
+			BigInteger[] result = toArray();
+			ExactLinearAlgebra.normalize(result);
+			return of(result);
+		}
+
+		long gcd = 0;
+		for (long value : values) {
+			if (value == Long.MIN_VALUE)
+				return of(ExactLinearAlgebra.normalize(toArray()));
+			gcd = gcd(gcd, Math.abs(value));
+		}
+		if (gcd <= 1)
+			return this;
+		long[] result = new long[values.length];
+		for (int k = 0; k < values.length; k++)
+			result[k] = values[k] / gcd;
+		return new ConstraintRow(length, indices, result, null);
+	}
+
+	static private long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	/**
+	 * Get the entries of this row as a new array.
+	 * @return The entries.
+	 */
+	public BigInteger[] toArray() {
+		BigInteger[] result = new BigInteger[length];
+		if (indices != null)
+			Arrays.fill(result, BigInteger.ZERO);
+		for (int k = 0; k < getNumberOfStoredEntries(); k++)
+			result[getIndexOfStoredEntry(k)] = getStoredEntry(k);
+		return result;
+	}
+
+	/**
+	 * Get a read-only list view of this row.
+	 * @return The entries.
+	 */
+	public List<BigInteger> asList() {
+		return new AbstractList<BigInteger>() {
+			@Override
+			public BigInteger get(int index) {
+				return ConstraintRow.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return length;
+			}
+		};
+	}
+
+	// The stored entries are all non-zero entries and, for dense rows, also the zero entries
+	int getNumberOfStoredEntries() {
+		return values != null ? values.length : bigValues.length;
+	}
+
+	int getIndexOfStoredEntry(int k) {
+		return indices == null ? k : indices[k];
+	}
+
+	BigInteger getStoredEntry(int k) {
+		return values != null ? BigInteger.valueOf(values[k]) : bigValues[k];
+	}
+
+	int signumOfStoredEntry(int k) {
+		return values != null ? Long.signum(values[k]) : bigValues[k].signum();
+	}
+
+	@Override
+	public int compareTo(ConstraintRow other) {
+		assert length == other.length;
+		for (int i = 0; i < length; i++) {
+			int result = get(i).compareTo(other.get(i));
+			if (result != 0)
+				return result;
+		}
+		return 0;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof ConstraintRow))
+			return false;
+		ConstraintRow other = (ConstraintRow) o;
+		// The representation of a row is uniquely determined by its entries
+		return fingerprint == other.fingerprint && length == other.length
+			&& Arrays.equals(indices, other.indices) && Arrays.equals(values, other.values)
+			&& Arrays.equals(bigValues, other.bigValues);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return asList().toString();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,164 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import uniol.apt_extremal.util.ConeEstimate.CostClass;
+
+/**
+ * Admission control based on the cost class of the estimate. Enumerations above a cost class can be rejected,
+ * downgraded to a budget or routed to another engine. A routed engine is only used for the enumeration that was
+ * routed and not for later ones of the same cone. If several thresholds are exceeded, rejecting wins and a
+ * downgraded enumeration is also routed. The routed engine then has to enforce the budget, which only the engines
+ * named at {@link PolyhedralCone#findExtremalRays(Budget)} can, such as a {@link WorkerPoolEngine}. With any other
+ * engine, a downgraded enumeration uses the double description method instead. By default, every enumeration is
+ * accepted. Instances of this class are immutable.
+ * @author Uli Schlachter
+ */
+public class CostAdmissionControl implements AdmissionControl {
+	private final int numProbes;
+	private final CostClass rejectAbove;
+	private final CostClass downgradeAbove;
+	private final Budget downgradeBudget;
+	private final CostClass routeAbove;
+	private final ExtremalRayEngine routeEngine;
+
+	private CostAdmissionControl(int numProbes, CostClass rejectAbove, CostClass downgradeAbove,
+			Budget downgradeBudget, CostClass routeAbove, ExtremalRayEngine routeEngine) {
+		this.numProbes = numProbes;
+		this.rejectAbove = rejectAbove;
+		this.downgradeAbove = downgradeAbove;
+		this.downgradeBudget = downgradeBudget;
+		this.routeAbove = routeAbove;
+		this.routeEngine = routeEngine;
+	}
+
+	/**
+	 * Create an admission control that accepts every enumeration.
+	 */
+	public CostAdmissionControl() {
+		this(ConeEstimate.DEFAULT_NUMBER_OF_PROBES, CostClass.HUGE, CostClass.HUGE, null, CostClass.HUGE, null);
+	}
+
+	@Override
+	public int getNumberOfProbes() {
+		return numProbes;
+	}
+
+	@Override
+	public Decision admit(ConeEstimate estimate) {
+		CostClass cost = estimate.getCostClass();
+		if (cost.compareTo(rejectAbove) > 0)
+			return Decision.reject("cost " + cost + " exceeds " + rejectAbove);
+		Decision result = Decision.ACCEPT;
+		if (cost.compareTo(downgradeAbove) > 0)
+			result = result.setBudget(downgradeBudget);
+		if (cost.compareTo(routeAbove) > 0)
+			result = result.setEngine(routeEngine);
+		return result;
+	}
+
+	/**
+	 * Get the most expensive cost class that is not rejected.
+	 * @return The cost class.
+	 */
+	public CostClass getRejectAbove() {
+		return rejectAbove;
+	}
+
+	/**
+	 * Get the most expensive cost class that is not downgraded.
+	 * @return The cost class.
+	 */
+	public CostClass getDowngradeAbove() {
+		return downgradeAbove;
+	}
+
+	/**
+	 * Get the budget of downgraded enumerations.
+	 * @return The budget or null if nothing is downgraded.
+	 */
+	public Budget getDowngradeBudget() {
+		return downgradeBudget;
+	}
+
+	/**
+	 * Get the most expensive cost class that is not routed to another engine.
+	 * @return The cost class.
+	 */
+	public CostClass getRouteAbove() {
+		return routeAbove;
+	}
+
+	/**
+	 * Get the engine to which expensive enumerations are routed.
+	 * @return The engine or null if nothing is routed.
+	 */
+	public ExtremalRayEngine getRouteEngine() {
+		return routeEngine;
+	}
+
+	/**
+	 * Set the number of probes of the estimates. Without probes, the cost class is based on the upper bound on the
+	 * number of extremal rays, which is far more pessimistic.
+	 * @param numProbes The number of probes or zero.
+	 * @return The new admission control.
+	 */
+	public CostAdmissionControl setNumberOfProbes(int numProbes) {
+		if (numProbes < 0)
+			throw new IllegalArgumentException("Number of probes must not be negative: " + numProbes);
+		return new CostAdmissionControl(numProbes, rejectAbove, downgradeAbove, downgradeBudget, routeAbove,
+				routeEngine);
+	}
+
+	/**
+	 * Reject enumerations whose cost class is above the given one.
+	 * @param costClass The most expensive class that is accepted.
+	 * @return The new admission control.
+	 */
+	public CostAdmissionControl setRejectAbove(CostClass costClass) {
+		return new CostAdmissionControl(numProbes, costClass, downgradeAbove, downgradeBudget, routeAbove,
+				routeEngine);
+	}
+
+	/**
+	 * Downgrade enumerations whose cost class is above the given one to the given budget.
+	 * @param costClass The most expensive class that keeps the requested budget.
+	 * @param budget The budget for more expensive enumerations, which usually allows partial results.
+	 * @return The new admission control.
+	 */
+	public CostAdmissionControl setDowngradeAbove(CostClass costClass, Budget budget) {
+		assert budget != null;
+		return new CostAdmissionControl(numProbes, rejectAbove, costClass, budget, routeAbove, routeEngine);
+	}
+
+	/**
+	 * Route enumerations whose cost class is above the given one to the given engine.
+	 * @param costClass The most expensive class that keeps the engine of the cone.
+	 * @param engine The engine for more expensive enumerations.
+	 * @return The new admission control.
+	 */
+	public CostAdmissionControl setRouteAbove(CostClass costClass, ExtremalRayEngine engine) {
+		assert engine != null;
+		return new CostAdmissionControl(numProbes, rejectAbove, downgradeAbove, downgradeBudget, costClass,
+				engine);
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,604 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The double description of a polyhedral cone: The cone is the sum of the linear space spanned by the lineality
+ * vectors and the cone spanned by the rays. Constraints can be added one at a time, each of them refines the
+ * description in place. The adjacency tests and the combination of rays within each step are distributed over a
+ * fork-join pool.
+ * @author Uli Schlachter
+ */
+class DoubleDescription {
+	// Below this number of ray pairs, a task is handled sequentially
+	static private final int SEQUENTIAL_THRESHOLD = 1024;
+
+	private final int numVariables;
+	private final ForkJoinPool pool;
+	private final List<BigInteger[]> lineality = new ArrayList<>();
+	private List<Ray> rays = new ArrayList<>();
+	// The constraints in the order in which they were added; the zeros of a ray refer to indices of inequalities
+	private final List<ConstraintRow> equations = new ArrayList<>();
+	private final List<ConstraintRow> inequalities = new ArrayList<>();
+	private BudgetMonitor monitor = null;
+	private boolean maxCutoff = false;
+	private CheckpointStore.Session checkpoints = null;
+
+	/**
+	 * Create the double description of the whole space.
+	 * @param numVariables The dimension of the space.
+	 * @param pool The fork-join pool on which the computation is done.
+	 */
+	DoubleDescription(int numVariables, ForkJoinPool pool) {
+		this.numVariables = numVariables;
+		this.pool = pool;
+		for (int i = 0; i < numVariables; i++) {
+			BigInteger[] vector = ExactLinearAlgebra.zero(numVariables);
+			vector[i] = BigInteger.ONE;
+			lineality.add(vector);
+		}
+	}
+
+	/**
+	 * Create the double description of a pointed cone from its known extremal rays.
+	 * @param numVariables The dimension of the space.
+	 * @param pool The fork-join pool on which the computation is done.
+	 * @param equations The equations of the cone.
+	 * @param inequalities The inequalities of the cone.
+	 * @param extremalRays The extremal rays of the cone.
+	 * @return The double description.
+	 */
+	static DoubleDescription fromExtremalRays(int numVariables, ForkJoinPool pool,
+			Collection<ConstraintRow> equations, Collection<ConstraintRow> inequalities,
+			Collection<List<BigInteger>> extremalRays) {
+		DoubleDescription result = new DoubleDescription(numVariables, pool);
+		result.lineality.clear();
+		result.equations.addAll(equations);
+		result.inequalities.addAll(inequalities);
+		for (List<BigInteger> vector : extremalRays) {
+			Ray ray = new Ray(vector.toArray(new BigInteger[0]), new long[0]);
+			int i = 0;
+			for (ConstraintRow inequality : inequalities) {
+				if (inequality.dot(ray.vector).signum() == 0)
+					ray.setZero(i);
+				i++;
+			}
+			result.rays.add(ray);
+		}
+		return result;
+	}
+
+	/**
+	 * Choose the order of the inequalities in {@link #addAll} dynamically: Once the cone is pointed, the next
+	 * inequality is the one that cuts off the most rays of the current cone.
+	 * @param maxCutoff true to choose the inequalities by cutoff, false to add them in the given order.
+	 */
+	void setMaxCutoff(boolean maxCutoff) {
+		this.maxCutoff = maxCutoff;
+	}
+
+	/**
+	 * Save the state of {@link #addAll} to the given checkpoints from time to time.
+	 * @param checkpoints The checkpoints of this enumeration or null to not save any.
+	 */
+	void setCheckpoints(CheckpointStore.Session checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	/**
+	 * Get the number of rays in the current description.
+	 * @return The number of rays.
+	 */
+	int getNumberOfRays() {
+		return rays.size();
+	}
+
+	/**
+	 * Intersect the described cone with the hyperplane row*x = 0.
+	 * @param row The coefficients of the equation.
+	 */
+	void addEquation(ConstraintRow row) {
+		BigInteger[] line = removeLinealityFor(row);
+		equations.add(row);
+		if (line != null)
+			return;
+		rays = combine(row, -1, false);
+	}
+
+	/**
+	 * Intersect the described cone with the half-space row*x &gt;= 0.
+	 * @param row The coefficients of the inequality.
+	 */
+	void addInequality(ConstraintRow row) {
+		int index = inequalities.size();
+		inequalities.add(row);
+		BigInteger[] line = removeLinealityFor(row);
+		if (line != null) {
+			// The rest of the cone is now inside the hyperplane and the line turns into a ray
+			for (Ray ray : rays)
+				ray.setZero(index);
+			Ray ray = new Ray(line, new long[(index + 63) / 64]);
+			for (int i = 0; i < index; i++)
+				ray.setZero(i);
+			rays.add(ray);
+			return;
+		}
+		rays = combine(row, index, true);
+	}
+
+	/**
+	 * Add several constraints and get the extremal rays of the resulting cone. If the budget is exceeded and
+	 * partial results are allowed, the monitor is marked as partial and only some extremal rays are returned.
+	 * Once the budget was exceeded, this description is unusable.
+	 * @param equations The equations to add.
+	 * @param inequalities The inequalities to add.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @return The set of extremal rays.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	Set<List<BigInteger>> addAll(List<ConstraintRow> equations, List<ConstraintRow> inequalities,
+			BudgetMonitor monitor) {
+		RayCollector collector = new RayCollector();
+		addAll(equations, inequalities, monitor, collector);
+		return collector.getRays();
+	}
+
+	/**
+	 * Add several constraints and pass the extremal rays of the resulting cone to a consumer. If the budget is
+	 * exceeded and partial results are allowed, the monitor is marked as partial and only some extremal rays are
+	 * passed on. Once the budget was exceeded, this description is unusable. Constraints that already are part of
+	 * this description, for example because it was resumed from a checkpoint, are skipped.
+	 * @param equations The equations to add.
+	 * @param inequalities The inequalities to add.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	void addAll(List<ConstraintRow> equations, List<ConstraintRow> inequalities, BudgetMonitor monitor,
+			RayConsumer consumer) {
+		List<ConstraintRow> rows = new ArrayList<>(equations);
+		rows.removeAll(new HashSet<>(this.equations));
+		int numNewEquations = rows.size();
+		rows.addAll(inequalities);
+		rows.subList(numNewEquations, rows.size()).removeAll(new HashSet<>(this.inequalities));
+		monitor.setNumberOfConstraints(rows.size());
+		this.monitor = monitor;
+		int processed = 0;
+		try {
+			while (processed < rows.size()) {
+				long bytesPerRay = monitor.isMemoryLimited() ? estimateBytesPerRay() : 0;
+				monitor.startStep(processed, rays.size(), bytesPerRay);
+				if (maxCutoff && processed >= numNewEquations && lineality.isEmpty())
+					Collections.swap(rows, processed, findMaxCutoff(rows, processed));
+				ConstraintRow row = rows.get(processed);
+				if (processed < numNewEquations)
+					addEquation(row);
+				else
+					addInequality(row);
+				processed++;
+				if (checkpoints != null)
+					checkpoints.saveIfDue(this);
+			}
+		} catch (BudgetExceededException e) {
+			if (!monitor.getBudget().isPartialResultAllowed())
+				throw e;
+			monitor.setPartial();
+			getRaysSatisfying(rows.subList(processed, rows.size()), numNewEquations - processed, consumer);
+			return;
+		} finally {
+			this.monitor = null;
+		}
+		getRays(consumer);
+	}
+
+	// Find the index of the row from the given one on which the most rays of the current cone violate
+	private int findMaxCutoff(List<ConstraintRow> rows, int from) {
+		int result = from;
+		int maxViolated = -1;
+		for (int i = from; i < rows.size(); i++) {
+			int violated = 0;
+			for (Ray ray : rays)
+				if (rows.get(i).dot(ray.vector).signum() < 0)
+					violated++;
+			if (violated > maxViolated) {
+				result = i;
+				maxViolated = violated;
+			}
+		}
+		return result;
+	}
+
+	// Pass on the rays that satisfy the given rows, the first numEquations of which are equations. The current
+	// cone contains the final one, so if it is pointed, these rays are also extremal rays of the final cone.
+	private void getRaysSatisfying(List<ConstraintRow> rows, int numEquations, RayConsumer consumer) {
+		if (!lineality.isEmpty())
+			return;
+		rayLoop:
+		for (Ray ray : rays) {
+			for (int i = 0; i < rows.size(); i++) {
+				int signum = rows.get(i).dot(ray.vector).signum();
+				if (signum < 0 || (signum > 0 && i < numEquations))
+					continue rayLoop;
+			}
+			consumer.accept(Arrays.asList(ExactLinearAlgebra.normalize(ray.vector.clone())));
+		}
+	}
+
+	// Roughly estimate the memory used by each ray
+	private long estimateBytesPerRay() {
+		if (rays.isEmpty())
+			return 0;
+		long bytes = 0;
+		for (Ray ray : rays) {
+			// Object headers, the arrays and one BigInteger with its magnitude array per entry
+			bytes += 64 + 8 * ray.zeros.length + 4 * numVariables;
+			for (BigInteger entry : ray.vector)
+				bytes += 56 + 4 * ((entry.bitLength() + 31) / 32);
+		}
+		return bytes / rays.size();
+	}
+
+	/**
+	 * Get the extremal rays of the described cone. Rays are only determined up to the lineality space, so they are
+	 * projected onto its orthogonal complement.
+	 * @return The set of extremal rays.
+	 */
+	Set<List<BigInteger>> getRays() {
+		RayCollector collector = new RayCollector();
+		getRays(collector);
+		return collector.getRays();
+	}
+
+	/**
+	 * Pass the extremal rays of the described cone to a consumer, projected like in {@link #getRays()}. Distinct
+	 * rays of the description stay distinct after the projection, so every ray is passed on once.
+	 * @param consumer The consumer that receives the extremal rays.
+	 */
+	void getRays(RayConsumer consumer) {
+		List<BigInteger[]> orthogonal = orthogonalize(lineality);
+		for (Ray ray : rays) {
+			BigInteger[] vector = ray.vector;
+			for (BigInteger[] line : orthogonal) {
+				BigInteger numerator = ExactLinearAlgebra.dot(vector, line);
+				if (numerator.signum() != 0)
+					vector = linearCombination(ExactLinearAlgebra.dot(line, line), vector,
+							numerator.negate(), line);
+			}
+			consumer.accept(Arrays.asList(ExactLinearAlgebra.normalize(vector.clone())));
+		}
+	}
+
+	/**
+	 * Write this description together with the constraints that were added to it, so that {@link #read} can
+	 * restore it.
+	 * @param output Where to write to.
+	 * @throws IOException If writing fails.
+	 */
+	void write(DataOutput output) throws IOException {
+		for (List<ConstraintRow> rows : Arrays.asList(equations, inequalities)) {
+			BinaryFormat.writeVarInt(output, rows.size());
+			for (ConstraintRow row : rows)
+				BinaryFormat.writeVector(output, row.asList());
+		}
+		BinaryFormat.writeVarInt(output, lineality.size());
+		for (BigInteger[] line : lineality)
+			BinaryFormat.writeVector(output, Arrays.asList(line));
+		BinaryFormat.writeVarInt(output, rays.size());
+		for (Ray ray : rays) {
+			BinaryFormat.writeVector(output, Arrays.asList(ray.vector));
+			BinaryFormat.writeVarInt(output, ray.zeros.length);
+			for (long word : ray.zeros)
+				output.writeLong(word);
+		}
+	}
+
+	/**
+	 * Read a description that was written by {@link #write}.
+	 * @param input Where to read from.
+	 * @param numVariables The dimension of the space.
+	 * @param pool The fork-join pool on which further computations are done.
+	 * @return The description.
+	 * @throws IOException If reading fails or the data is malformed.
+	 */
+	static DoubleDescription read(DataInput input, int numVariables, ForkJoinPool pool) throws IOException {
+		DoubleDescription result = new DoubleDescription(numVariables, pool);
+		result.lineality.clear();
+		for (List<ConstraintRow> rows : Arrays.asList(result.equations, result.inequalities)) {
+			int count = BinaryFormat.readVarInt(input);
+			for (int i = 0; i < count; i++)
+				rows.add(ConstraintRow.of(BinaryFormat.readVector(input, numVariables)));
+		}
+		int numLines = BinaryFormat.readVarInt(input);
+		if (numLines > numVariables)
+			throw new IOException("Too many lineality vectors: " + numLines);
+		for (int i = 0; i < numLines; i++)
+			result.lineality.add(BinaryFormat.readVector(input, numVariables));
+		int numRays = BinaryFormat.readVarInt(input);
+		int maxWords = (result.inequalities.size() + 63) / 64;
+		for (int i = 0; i < numRays; i++) {
+			BigInteger[] vector = BinaryFormat.readVector(input, numVariables);
+			int numWords = BinaryFormat.readVarInt(input);
+			if (numWords > maxWords)
+				throw new IOException("Too many zero bits: " + numWords);
+			long[] zeros = new long[numWords];
+			for (int w = 0; w < numWords; w++)
+				zeros[w] = input.readLong();
+			result.rays.add(new Ray(vector, zeros));
+		}
+		return result;
+	}
+
+	/**
+	 * Get the equations that were added to this description so far, in the order in which they were added.
+	 * @return The equations.
+	 */
+	List<ConstraintRow> getEquations() {
+		return Collections.unmodifiableList(equations);
+	}
+
+	/**
+	 * Get the inequalities that were added to this description so far, in the order in which they were added.
+	 * @return The inequalities.
+	 */
+	List<ConstraintRow> getInequalities() {
+		return Collections.unmodifiableList(inequalities);
+	}
+
+	// If a lineality vector is not orthogonal to the given row, move the whole cone into the hyperplane
+	// row*x = 0 and return the removed vector (oriented so that row*x > 0). Otherwise return null.
+	private BigInteger[] removeLinealityFor(ConstraintRow row) {
+		int pivot = -1;
+		BigInteger pivotValue = null;
+		for (int i = 0; i < lineality.size(); i++) {
+			BigInteger value = row.dot(lineality.get(i));
+			if (value.signum() != 0) {
+				pivot = i;
+				pivotValue = value;
+				break;
+			}
+		}
+		if (pivot < 0)
+			return null;
+
+		BigInteger[] line = lineality.remove(pivot);
+		if (pivotValue.signum() < 0) {
+			line = negate(line);
+			pivotValue = pivotValue.negate();
+		}
+		for (int i = 0; i < lineality.size(); i++)
+			lineality.set(i, project(lineality.get(i), row, line, pivotValue));
+		for (int i = 0; i < rays.size(); i++) {
+			Ray ray = rays.get(i);
+			rays.set(i, new Ray(project(ray.vector, row, line, pivotValue), ray.zeros));
+		}
+		return line;
+	}
+
+	// Move the vector along the line so that it is orthogonal to row, with row*line = lineValue > 0
+	static private BigInteger[] project(BigInteger[] vector, ConstraintRow row, BigInteger[] line,
+			BigInteger lineValue) {
+		BigInteger value = row.dot(vector);
+		if (value.signum() == 0)
+			return vector;
+		return linearCombination(lineValue, vector, value.negate(), line);
+	}
+
+	// Intersect the cone with row*x = 0 (if inequality is false) or with row*x >= 0
+	private List<Ray> combine(ConstraintRow row, int index, boolean inequality) {
+		List<Ray> positive = new ArrayList<>();
+		List<Ray> negative = new ArrayList<>();
+		List<BigInteger> positiveValues = new ArrayList<>();
+		List<BigInteger> negativeValues = new ArrayList<>();
+		List<Ray> result = new ArrayList<>();
+		for (Ray ray : rays) {
+			BigInteger value = row.dot(ray.vector);
+			switch (value.signum()) {
+				case 0:
+					if (inequality)
+						ray.setZero(index);
+					result.add(ray);
+					break;
+				case 1:
+					positive.add(ray);
+					positiveValues.add(value);
+					break;
+				default:
+					negative.add(ray);
+					negativeValues.add(value.negate());
+					break;
+			}
+		}
+		if (inequality)
+			result.addAll(positive);
+		if (positive.isEmpty() || negative.isEmpty())
+			return result;
+
+		// Two rays can only be adjacent if they share enough constraints to define a two-dimensional face
+		int minCommonZeros = numVariables - lineality.size() - equations.size() - 2;
+		CombineTask task = new CombineTask(positive, positiveValues, negative, negativeValues,
+				0, positive.size(), index, minCommonZeros);
+		if (monitor != null)
+			monitor.check();
+		if ((long) positive.size() * negative.size() <= SEQUENTIAL_THRESHOLD)
+			result.addAll(task.compute());
+		else
+			result.addAll(pool.invoke(task));
+		return result;
+	}
+
+	// Check if no other ray satisfies all the constraints that both given rays satisfy with equality
+	private boolean isAdjacent(long[] common, Ray first, Ray second) {
+		for (Ray ray : rays) {
+			if (ray == first || ray == second)
+				continue;
+			if (contains(ray.zeros, common))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * An extremal ray together with the set of inequalities that it satisfies with equality.
+	 */
+	static private class Ray {
+		final BigInteger[] vector;
+		long[] zeros;
+
+		Ray(BigInteger[] vector, long[] zeros) {
+			this.vector = vector;
+			this.zeros = zeros;
+		}
+
+		void setZero(int index) {
+			int word = index >>> 6;
+			if (word >= zeros.length)
+				zeros = Arrays.copyOf(zeros, word + 1);
+			zeros[word] |= 1L << index;
+		}
+	}
+
+	/**
+	 * Combine pairs of adjacent rays from a range of the positive rays with all negative rays.
+	 */
+	private class CombineTask extends RecursiveTask<List<Ray>> {
+		static private final long serialVersionUID = 1L;
+
+		private final List<Ray> positive;
+		private final List<BigInteger> positiveValues;
+		private final List<Ray> negative;
+		private final List<BigInteger> negativeValues;
+		private final int from;
+		private final int to;
+		private final int index;
+		private final int minCommonZeros;
+
+		CombineTask(List<Ray> positive, List<BigInteger> positiveValues, List<Ray> negative,
+				List<BigInteger> negativeValues, int from, int to, int index, int minCommonZeros) {
+			this.positive = positive;
+			this.positiveValues = positiveValues;
+			this.negative = negative;
+			this.negativeValues = negativeValues;
+			this.from = from;
+			this.to = to;
+			this.index = index;
+			this.minCommonZeros = minCommonZeros;
+		}
+
+		@Override
+		protected List<Ray> compute() {
+			if (to - from > 1 && (long) (to - from) * negative.size() > SEQUENTIAL_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				CombineTask left = new CombineTask(positive, positiveValues, negative, negativeValues,
+						from, middle, index, minCommonZeros);
+				CombineTask right = new CombineTask(positive, positiveValues, negative, negativeValues,
+						middle, to, index, minCommonZeros);
+				left.fork();
+				List<Ray> result = new ArrayList<>(right.compute());
+				result.addAll(left.join());
+				return result;
+			}
+
+			List<Ray> result = new ArrayList<>();
+			for (int i = from; i < to; i++) {
+				int before = result.size();
+				Ray p = positive.get(i);
+				for (int j = 0; j < negative.size(); j++) {
+					Ray n = negative.get(j);
+					long[] common = new long[Math.min(p.zeros.length, n.zeros.length)];
+					int count = 0;
+					for (int w = 0; w < common.length; w++) {
+						common[w] = p.zeros[w] & n.zeros[w];
+						count += Long.bitCount(common[w]);
+					}
+					if (count < minCommonZeros || !isAdjacent(common, p, n))
+						continue;
+
+					// positiveValue * n + negativeValue * p lies on the hyperplane
+					BigInteger[] vector = linearCombination(positiveValues.get(i), n.vector,
+							negativeValues.get(j), p.vector);
+					Ray ray = new Ray(vector, common);
+					if (index >= 0)
+						ray.setZero(index);
+					result.add(ray);
+				}
+				if (monitor != null)
+					monitor.addRays(result.size() - before);
+			}
+			return result;
+		}
+	}
+
+	static private boolean contains(long[] superset, long[] subset) {
+		for (int w = 0; w < subset.length; w++) {
+			long word = w < superset.length ? superset[w] : 0;
+			if ((subset[w] & ~word) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	static private BigInteger[] negate(BigInteger[] vector) {
+		BigInteger[] result = new BigInteger[vector.length];
+		for (int i = 0; i < vector.length; i++)
+			result[i] = vector[i].negate();
+		return result;
+	}
+
+	// Calculate a*x + b*y and divide by the gcd of the entries
+	static private BigInteger[] linearCombination(BigInteger a, BigInteger[] x, BigInteger b, BigInteger[] y) {
+		BigInteger[] result = new BigInteger[x.length];
+		for (int i = 0; i < x.length; i++)
+			result[i] = a.multiply(x[i]).add(b.multiply(y[i]));
+		return ExactLinearAlgebra.normalize(result);
+	}
+
+	// Calculate an orthogonal basis (Gram-Schmidt) of the span of the given integer vectors
+	static private List<BigInteger[]> orthogonalize(List<BigInteger[]> vectors) {
+		if (vectors.isEmpty())
+			return Collections.emptyList();
+		List<BigInteger[]> result = new ArrayList<>();
+		for (BigInteger[] vector : vectors) {
+			for (BigInteger[] other : result) {
+				BigInteger numerator = ExactLinearAlgebra.dot(vector, other);
+				if (numerator.signum() != 0)
+					vector = linearCombination(ExactLinearAlgebra.dot(other, other), vector,
+							numerator.negate(), other);
+			}
+			result.add(vector);
+		}
+		return result;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
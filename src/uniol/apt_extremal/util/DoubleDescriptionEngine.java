@@ -0,0 +1,153 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Extremal ray engine implementing the double description method in exact arithmetic. The constraints are added one
+ * at a time to a description of the cone by its lineality space and its extremal rays. The adjacency tests and the
+ * combination of rays within each step are distributed over a fork-join pool.
+ * @author Uli Schlachter
+ */
+public class DoubleDescriptionEngine implements StreamingExtremalRayEngine {
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create an engine that uses the JVM-wide shared fork-join pool.
+	 */
+	public DoubleDescriptionEngine() {
+		this(PoolHolder.POOL);
+	}
+
+	/**
+	 * Create an engine.
+	 * @param pool The fork-join pool on which the computation is done.
+	 */
+	public DoubleDescriptionEngine(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Get the fork-join pool on which this engine computes.
+	 * @return The pool.
+	 */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Get the JVM-wide fork-join pool that is used by engines without an explicit pool.
+	 * @return The shared pool.
+	 */
+	static ForkJoinPool getSharedPool() {
+		return PoolHolder.POOL;
+	}
+
+	@Override
+	public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+		return findExtremalRays(cone, new BudgetMonitor(Budget.UNLIMITED));
+	}
+
+	/**
+	 * Calculate the extremal rays of the given cone within a budget.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @return The set of extremal rays or a subset of it if the budget was exceeded and partial results are
+	 * allowed.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone, BudgetMonitor monitor) {
+		RayCollector collector = new RayCollector();
+		findExtremalRays(cone, monitor, collector);
+		return collector.getRays();
+	}
+
+	@Override
+	public void findExtremalRays(PolyhedralCone cone, RayConsumer consumer) {
+		findExtremalRays(cone, new BudgetMonitor(Budget.UNLIMITED), consumer);
+	}
+
+	/**
+	 * Calculate the extremal rays of the given cone within a budget and pass them to a consumer. If the cone has a
+	 * {@link CheckpointStore}, the computation continues from the latest checkpoint of the cone and saves new ones
+	 * while it runs.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays or a subset of them if the budget was
+	 * exceeded and partial results are allowed.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	void findExtremalRays(PolyhedralCone cone, BudgetMonitor monitor, RayConsumer consumer) {
+		CheckpointStore.Session checkpoints = null;
+		DoubleDescription description = null;
+		if (cone.getCheckpointStore() != null) {
+			checkpoints = cone.getCheckpointStore().open(cone);
+			description = checkpoints.resume(cone, pool);
+		}
+		if (description == null)
+			description = new DoubleDescription(cone.getNumberOfVariables(), pool);
+		description.setMaxCutoff(cone.getConstraintOrdering().getStrategy()
+				== ConstraintOrdering.Strategy.MAX_CUTOFF);
+		description.setCheckpoints(checkpoints);
+		description.addAll(new ArrayList<>(cone.getEquations()), new ArrayList<>(cone.getInequalities()),
+				monitor, consumer);
+		if (checkpoints != null && !monitor.isPartial())
+			checkpoints.finish();
+	}
+
+	/**
+	 * Get the double description of the given cone for incremental updates. If the cone is pointed, the
+	 * description is built from the given extremal rays, else it is calculated from scratch.
+	 * @param cone The cone to describe.
+	 * @param rays The extremal rays of the cone.
+	 * @return A double description of the cone.
+	 */
+	DoubleDescription describe(PolyhedralCone cone, Set<List<BigInteger>> rays) {
+		int numVariables = cone.getNumberOfVariables();
+		List<BigInteger[]> rows = new ArrayList<>(Arrays.asList(cone.getEquationMatrix()));
+		rows.addAll(Arrays.asList(cone.getInequalityMatrix()));
+		if (!ExactLinearAlgebra.nullspace(rows, numVariables).isEmpty())
+			return describeFromScratch(cone);
+		return DoubleDescription.fromExtremalRays(numVariables, pool, cone.getEquations(),
+				cone.getInequalities(), rays);
+	}
+
+	private DoubleDescription describeFromScratch(PolyhedralCone cone) {
+		DoubleDescription description = new DoubleDescription(cone.getNumberOfVariables(), pool);
+		for (ConstraintRow equation : cone.getEquations())
+			description.addEquation(equation);
+		for (ConstraintRow inequality : cone.getInequalities())
+			description.addInequality(inequality);
+		return description;
+	}
+
+	// Lazily created pool shared by all engines that do not get an explicit pool
+	static private class PoolHolder {
+		static private final ForkJoinPool POOL = new ForkJoinPool();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
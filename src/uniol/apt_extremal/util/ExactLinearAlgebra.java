@@ -0,0 +1,198 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exact linear algebra on integer matrices. All computations are done fraction-free on {@link BigInteger}s.
+ * @author Uli Schlachter
+ */
+public class ExactLinearAlgebra {
+	private ExactLinearAlgebra() {
+	}
+
+	/**
+	 * Calculate the scalar product of two vectors.
+	 * @param a The first vector.
+	 * @param b The second vector. This must have at least as many entries as the first one.
+	 * @return The scalar product.
+	 */
+	static public BigInteger dot(BigInteger[] a, BigInteger[] b) {
+		BigInteger result = BigInteger.ZERO;
+		for (int i = 0; i < a.length; i++)
+			if (a[i].signum() != 0 && b[i].signum() != 0)
+				result = result.add(a[i].multiply(b[i]));
+		return result;
+	}
+
+	/**
+	 * Divide a vector by the greatest common divisor of its entries. The vector is modified in-place.
+	 * @param vector The vector to normalize.
+	 * @return The given vector.
+	 */
+	static public BigInteger[] normalize(BigInteger[] vector) {
+		BigInteger gcd = BigInteger.ZERO;
+		for (BigInteger entry : vector) {
+			gcd = gcd.gcd(entry);
+			if (gcd.equals(BigInteger.ONE))
+				return vector;
+		}
+		if (gcd.signum() == 0)
+			return vector;
+		for (int i = 0; i < vector.length; i++)
+			vector[i] = vector[i].divide(gcd);
+		return vector;
+	}
+
+	/**
+	 * Calculate the rank of a matrix.
+	 * @param rows The rows of the matrix.
+	 * @param numColumns The number of columns of the matrix.
+	 * @return The rank of the matrix.
+	 */
+	static public int rank(List<BigInteger[]> rows, int numColumns) {
+		return reduce(rows, numColumns).size();
+	}
+
+	/**
+	 * Calculate a basis of the null space { x | Mx = 0 } of a matrix M. Each basis vector is an integer vector
+	 * whose entries have no common divisor.
+	 * @param rows The rows of the matrix.
+	 * @param numColumns The number of columns of the matrix.
+	 * @return A basis of the null space.
+	 */
+	static public List<BigInteger[]> nullspace(List<BigInteger[]> rows, int numColumns) {
+		List<BigInteger[]> reduced = reduce(rows, numColumns);
+		int[] pivotColumns = new int[reduced.size()];
+		boolean[] isPivot = new boolean[numColumns];
+		BigInteger lcm = BigInteger.ONE;
+		for (int i = 0; i < reduced.size(); i++) {
+			pivotColumns[i] = pivotColumn(reduced.get(i));
+			isPivot[pivotColumns[i]] = true;
+			BigInteger pivot = reduced.get(i)[pivotColumns[i]].abs();
+			lcm = lcm.divide(lcm.gcd(pivot)).multiply(pivot);
+		}
+
+		List<BigInteger[]> result = new ArrayList<>();
+		for (int free = 0; free < numColumns; free++) {
+			if (isPivot[free])
+				continue;
+
+			// Set x[free] = lcm, all other free variables to zero, and solve for the pivot variables
+			BigInteger[] vector = zero(numColumns);
+			vector[free] = lcm;
+			for (int i = 0; i < reduced.size(); i++) {
+				BigInteger[] row = reduced.get(i);
+				BigInteger pivot = row[pivotColumns[i]];
+				vector[pivotColumns[i]] = row[free].multiply(lcm).divide(pivot).negate();
+			}
+			result.add(normalize(vector));
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate a fraction-free reduced row echelon form of a matrix. The first non-zero entry of each row is its
+	 * pivot and each pivot column is zero in all other rows.
+	 * @param rows The rows of the matrix.
+	 * @param numColumns The number of columns of the matrix.
+	 * @return The non-zero rows of the echelon form.
+	 */
+	static public List<BigInteger[]> echelonForm(List<BigInteger[]> rows, int numColumns) {
+		return reduce(rows, numColumns);
+	}
+
+	/**
+	 * Reduce a vector modulo the row space of a matrix. The result is zero in the pivot columns of the echelon form
+	 * and its entries have no common divisor. Thus, vectors whose difference lies in the row space and which only
+	 * differ by a positive factor have the same result.
+	 * @param vector The vector to reduce. It is not modified.
+	 * @param echelonForm The echelon form of the matrix as calculated by {@link #echelonForm}.
+	 * @return The reduced vector.
+	 */
+	static public BigInteger[] remainder(BigInteger[] vector, List<BigInteger[]> echelonForm) {
+		BigInteger[] result = vector.clone();
+		for (BigInteger[] pivotRow : echelonForm)
+			eliminate(result, pivotRow, pivotColumn(pivotRow));
+		return normalize(result);
+	}
+
+	/**
+	 * Create a vector containing only zeros.
+	 * @param length The length of the vector.
+	 * @return The zero vector.
+	 */
+	static public BigInteger[] zero(int length) {
+		BigInteger[] result = new BigInteger[length];
+		for (int i = 0; i < length; i++)
+			result[i] = BigInteger.ZERO;
+		return result;
+	}
+
+	static private int pivotColumn(BigInteger[] row) {
+		for (int i = 0; i < row.length; i++)
+			if (row[i].signum() != 0)
+				return i;
+		return -1;
+	}
+
+	// Calculate a fraction-free reduced row echelon form: Each pivot column is zero outside of its pivot row.
+	static private List<BigInteger[]> reduce(List<BigInteger[]> rows, int numColumns) {
+		List<BigInteger[]> result = new ArrayList<>();
+		for (BigInteger[] original : rows) {
+			BigInteger[] row = original.clone();
+			// Eliminate existing pivots from the new row
+			for (BigInteger[] pivotRow : result)
+				eliminate(row, pivotRow, pivotColumn(pivotRow));
+			int column = pivotColumn(row);
+			if (column < 0)
+				continue;
+			normalize(row);
+			// Eliminate the new pivot from the existing rows
+			for (BigInteger[] other : result)
+				eliminate(other, row, column);
+			result.add(row);
+		}
+		return result;
+	}
+
+	// Modify target so that target[column] becomes zero
+	static private void eliminate(BigInteger[] target, BigInteger[] pivotRow, int column) {
+		BigInteger factor = target[column];
+		if (factor.signum() == 0)
+			return;
+		BigInteger pivot = pivotRow[column];
+		BigInteger gcd = pivot.gcd(factor);
+		BigInteger targetFactor = pivot.divide(gcd);
+		BigInteger pivotFactor = factor.divide(gcd);
+		if (targetFactor.signum() < 0) {
+			targetFactor = targetFactor.negate();
+			pivotFactor = pivotFactor.negate();
+		}
+		for (int i = 0; i < target.length; i++)
+			target[i] = target[i].multiply(targetFactor).subtract(pivotRow[i].multiply(pivotFactor));
+		normalize(target);
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
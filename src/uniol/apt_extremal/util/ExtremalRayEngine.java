@@ -0,0 +1,40 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An algorithm for calculating the extremal rays of a polyhedral cone.
+ * @author Uli Schlachter
+ */
+public interface ExtremalRayEngine {
+	/**
+	 * Calculate the extremal rays of a cone. Each ray is returned as an integer vector whose entries have no common
+	 * divisor. Implementations must not modify the cone and must be safe for use by multiple threads.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @return The set of extremal rays.
+	 */
+	public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone);
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,259 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Engine that splits the enumeration of one pointed cone into independent parts. For chosen variables x_i that are
+ * not restricted in sign, the cone is intersected with each combination of the half-spaces x_i &gt;= 0 and x_i &lt;=
+ * 0. Every extremal ray of the cone is an extremal ray of one of these parts. A ray of a part that is non-zero in
+ * all chosen variables is extremal in the cone as well, since the additional constraints are not tight there. A ray
+ * that is zero in some chosen variable is only kept if the constraints of the cone that are tight for it have rank
+ * n-1, and such rays are deduplicated, since they can belong to several parts.
+ * <p>
+ * The parts are handed to another engine concurrently. With a {@link WorkerPoolEngine}, they run in separate
+ * processes, so that a single cone can use more heap and more cores than one JVM offers.
+ * @author Uli Schlachter
+ */
+public class PartitionedEngine implements StreamingExtremalRayEngine {
+	private final StreamingExtremalRayEngine engine;
+	private final int numSplits;
+	private final int parallelism;
+
+	/**
+	 * Create an engine that splits cones into parts which are enumerated by the workers of a pool, one part per
+	 * worker at a time.
+	 * @param pool The pool that enumerates the parts.
+	 * @param numSplits The number of variables that are split on. This results in up to 2^numSplits parts.
+	 */
+	public PartitionedEngine(WorkerPoolEngine pool, int numSplits) {
+		this(pool, numSplits, pool.getNumberOfWorkers());
+	}
+
+	/**
+	 * Create an engine that splits cones into parts which are enumerated by another engine.
+	 * @param engine The engine that enumerates the parts.
+	 * @param numSplits The number of variables that are split on. This results in up to 2^numSplits parts.
+	 * @param parallelism The number of parts that are enumerated at the same time.
+	 */
+	public PartitionedEngine(StreamingExtremalRayEngine engine, int numSplits, int parallelism) {
+		if (numSplits < 0 || numSplits > 16)
+			throw new IllegalArgumentException("The number of splits must be between 0 and 16: "
+					+ numSplits);
+		if (parallelism <= 0)
+			throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+		this.engine = engine;
+		this.numSplits = numSplits;
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+		RayCollector collector = new RayCollector();
+		findExtremalRays(cone, collector);
+		return collector.getRays();
+	}
+
+	/**
+	 * Calculate the extremal rays of a cone by enumerating its parts concurrently. The consumer is called by the
+	 * threads that handle the parts, but never by two threads at the same time. Cones that are not pointed or
+	 * that have no variable to split on are handed to the other engine as a whole.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @throws BudgetExceededException If the calling thread is interrupted.
+	 */
+	@Override
+	public void findExtremalRays(PolyhedralCone cone, RayConsumer consumer) {
+		final int numVariables = cone.getNumberOfVariables();
+		final List<BigInteger[]> rows = new ArrayList<>(Arrays.asList(cone.getEquationMatrix()));
+		rows.addAll(Arrays.asList(cone.getInequalityMatrix()));
+		final int[] splits = chooseSplitVariables(cone);
+		// The rays of a cone with a line are only unique up to its lineality space
+		if (splits.length == 0 || !ExactLinearAlgebra.nullspace(rows, numVariables).isEmpty()) {
+			engine.findExtremalRays(cone, consumer);
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>();
+		final Merger merger = new Merger(consumer, numVariables);
+		for (int mask = 0; mask < 1 << splits.length; mask++) {
+			final PolyhedralCone part = createPart(cone, splits, mask);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					engine.findExtremalRays(part, new RayConsumer() {
+						@Override
+						public void accept(List<BigInteger> ray) {
+							for (int variable : splits) {
+								if (ray.get(variable).signum() == 0) {
+									if (isExtremal(rows, numVariables, ray))
+										merger.acceptShared(ray);
+									return;
+								}
+							}
+							merger.accept(ray);
+						}
+					});
+					return null;
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (Callable<Void> task : tasks)
+				futures.add(executor.submit(task));
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BudgetExceededException(BudgetExceededException.Reason.INTERRUPTED, 0, 0, 0, 0, 0);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new AssertionError(cause);
+		} finally {
+			executor.shutdownNow();
+			merger.close();
+		}
+	}
+
+	// Pick the variables without a sign constraint that appear in the most constraints
+	private int[] chooseSplitVariables(PolyhedralCone cone) {
+		int numVariables = cone.getNumberOfVariables();
+		boolean[] signConstrained = new boolean[numVariables];
+		final int[] uses = new int[numVariables];
+		for (Collection<ConstraintRow> rows : Arrays.asList(cone.getEquations(), cone.getInequalities())) {
+			for (ConstraintRow row : rows) {
+				int nonZeros = 0;
+				int last = -1;
+				for (int k = 0; k < row.getNumberOfStoredEntries(); k++) {
+					if (row.signumOfStoredEntry(k) == 0)
+						continue;
+					last = row.getIndexOfStoredEntry(k);
+					uses[last]++;
+					nonZeros++;
+				}
+				if (nonZeros == 1)
+					signConstrained[last] = true;
+			}
+		}
+
+		List<Integer> candidates = new ArrayList<>();
+		for (int i = 0; i < numVariables; i++)
+			if (!signConstrained[i] && uses[i] > 0)
+				candidates.add(i);
+		// The sort is stable, so ties keep the lower index first
+		Collections.sort(candidates, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(uses[b], uses[a]);
+			}
+		});
+		int[] result = new int[Math.min(numSplits, candidates.size())];
+		for (int i = 0; i < result.length; i++)
+			result[i] = candidates.get(i);
+		return result;
+	}
+
+	// The part of the cone in which the sign of split variable j is given by bit j of the mask
+	static private PolyhedralCone createPart(PolyhedralCone cone, int[] splits, int mask) {
+		int numVariables = cone.getNumberOfVariables();
+		PolyhedralCone part = new PolyhedralCone(numVariables);
+		for (ConstraintRow row : cone.getEquations())
+			part.addEquation(row);
+		for (ConstraintRow row : cone.getInequalities())
+			part.addInequality(row);
+		for (int j = 0; j < splits.length; j++) {
+			long[] row = new long[numVariables];
+			row[splits[j]] = (mask & (1 << j)) == 0 ? 1 : -1;
+			part.addInequality(row);
+		}
+		return part;
+	}
+
+	// Check if a ray of the pointed cone with the given constraints is extremal by the rank of its tight
+	// constraints
+	static private boolean isExtremal(List<BigInteger[]> rows, int numVariables, List<BigInteger> ray) {
+		List<BigInteger[]> tight = new ArrayList<>();
+		for (BigInteger[] row : rows) {
+			BigInteger sum = BigInteger.ZERO;
+			for (int j = 0; j < numVariables; j++)
+				sum = sum.add(row[j].multiply(ray.get(j)));
+			if (sum.signum() == 0)
+				tight.add(row);
+		}
+		return ExactLinearAlgebra.rank(tight, numVariables) == numVariables - 1;
+	}
+
+	// Serializes the calls to the consumer and drops duplicates of rays that can belong to several parts. After an
+	// error, parts that are still running may produce rays, which are ignored once the merger is closed.
+	static private class Merger {
+		private final RayConsumer consumer;
+		private final RayStore shared;
+		private boolean closed = false;
+
+		private Merger(RayConsumer consumer, int numVariables) {
+			this.consumer = consumer;
+			this.shared = new RayStore(numVariables);
+		}
+
+		synchronized private void accept(List<BigInteger> ray) {
+			if (!closed)
+				consumer.accept(ray);
+		}
+
+		synchronized private void acceptShared(List<BigInteger> ray) {
+			if (!closed && shared.add(ray))
+				consumer.accept(ray);
+		}
+
+		synchronized private void close() {
+			closed = true;
+			try {
+				shared.close();
+			} catch (IOException e) {
+				// Only the temporary file can fail to close and this store never spills
+				throw new AssertionError(e);
+			}
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
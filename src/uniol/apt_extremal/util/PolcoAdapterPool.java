@@ -0,0 +1,265 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ch.javasoft.metabolic.efm.config.Arithmetic;
+import ch.javasoft.polco.adapter.PolcoAdapter;
+
+/**
+ * A thread-safe pool of configured polco adapters. Creating a {@link PolcoAdapter} parses polco's configuration and
+ * is expensive compared to solving a small cone, so adapters are kept around and handed out again. A thread borrows an
+ * adapter via {@link #borrow()}, uses it exclusively and hands it back via {@link #release(PolcoAdapter)}.
+ * <p>
+ * Polco keeps parts of its state in static fields, so two computations running at the same time in one JVM corrupt
+ * each other even if they use different adapters. Every call into polco has to hold {@link #POLCO_LOCK}.
+ * @author Uli Schlachter
+ */
+public class PolcoAdapterPool {
+	/** The default number of idle adapters that a pool keeps around */
+	static public final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+	// Serializes all calls into polco in this JVM, see the class documentation
+	static final ReentrantLock POLCO_LOCK = new ReentrantLock();
+
+	static private final Map<PolcoConfiguration, PolcoAdapterPool> OTHER_INSTANCES = new HashMap<>();
+
+	static private final AtomicBoolean BACKGROUND_WARM_UP_STARTED = new AtomicBoolean();
+
+	private final Deque<PolcoAdapter> idle = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger numIdle = new AtomicInteger();
+	private final AtomicInteger numCreated = new AtomicInteger();
+	private final int maxIdle;
+	private final PolcoConfiguration configuration;
+
+	/**
+	 * Create a new, empty pool of adapters that use polco's default, exact arithmetic.
+	 * @param maxIdle The maximal number of idle adapters to keep. Adapters that are released while the pool is
+	 * full are dropped.
+	 */
+	public PolcoAdapterPool(int maxIdle) {
+		this(maxIdle, new PolcoConfiguration());
+	}
+
+	/**
+	 * Create a new, empty pool.
+	 * @param maxIdle The maximal number of idle adapters to keep. Adapters that are released while the pool is
+	 * full are dropped.
+	 * @param arithmetic The arithmetic that polco should use for the main computation.
+	 */
+	public PolcoAdapterPool(int maxIdle, Arithmetic arithmetic) {
+		this(maxIdle, new PolcoConfiguration().setArithmetic(arithmetic));
+	}
+
+	/**
+	 * Create a new, empty pool.
+	 * @param maxIdle The maximal number of idle adapters to keep. Adapters that are released while the pool is
+	 * full are dropped.
+	 * @param configuration The configuration of the adapters. Its arithmetic mode is ignored.
+	 */
+	public PolcoAdapterPool(int maxIdle, PolcoConfiguration configuration) {
+		if (maxIdle < 0)
+			throw new IllegalArgumentException("The number of idle adapters cannot be negative: "
+					+ maxIdle);
+		this.maxIdle = maxIdle;
+		this.configuration = configuration.setArithmeticMode(PolcoEngine.ArithmeticMode.EXACT);
+	}
+
+	/**
+	 * Get the pool of exact adapters that is shared by all users in this JVM. The shared pool is warmed up with
+	 * one adapter when it is first used. Long-running services should call {@link #warmUp(int)} on it during
+	 * startup.
+	 * @return The shared pool.
+	 */
+	static public PolcoAdapterPool getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Warm up the pool of {@link #getInstance()} in a daemon thread, so that loading polco overlaps with whatever
+	 * the caller does until its first cone. Only the first call has an effect.
+	 */
+	static public void warmUpInBackground() {
+		if (!BACKGROUND_WARM_UP_STARTED.compareAndSet(false, true))
+			return;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				getInstance();
+			}
+		}, "polco warm-up");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Get the pool of adapters with the given arithmetic that is shared by all users in this JVM.
+	 * @param arithmetic The arithmetic that the adapters should use.
+	 * @return The shared pool.
+	 */
+	static public PolcoAdapterPool getInstance(Arithmetic arithmetic) {
+		return getInstance(new PolcoConfiguration().setArithmetic(arithmetic));
+	}
+
+	/**
+	 * Get the pool of adapters with the given configuration that is shared by all users in this JVM. Its adapters
+	 * stay in the pool for later users, so nobody has to release them.
+	 * @param configuration The configuration of the adapters. Its arithmetic mode is ignored.
+	 * @return The shared pool.
+	 */
+	static public PolcoAdapterPool getInstance(PolcoConfiguration configuration) {
+		configuration = configuration.setArithmeticMode(PolcoEngine.ArithmeticMode.EXACT);
+		if (configuration.equals(new PolcoConfiguration()))
+			return Holder.INSTANCE;
+		synchronized (OTHER_INSTANCES) {
+			PolcoAdapterPool pool = OTHER_INSTANCES.get(configuration);
+			if (pool == null) {
+				pool = new PolcoAdapterPool(DEFAULT_MAX_IDLE, configuration);
+				OTHER_INSTANCES.put(configuration, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Get the arithmetic that the adapters of this pool use.
+	 * @return The arithmetic
+	 */
+	public Arithmetic getArithmetic() {
+		return configuration.getArithmetic();
+	}
+
+	/**
+	 * Get the configuration of the adapters of this pool.
+	 * @return The configuration, whose arithmetic mode is always {@link PolcoEngine.ArithmeticMode#EXACT}.
+	 */
+	public PolcoConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Borrow an adapter from this pool. If no idle adapter is available, a new one is created.
+	 * @return An adapter that the calling thread may use exclusively until it is released.
+	 */
+	public PolcoAdapter borrow() {
+		PolcoAdapter adapter = idle.pollFirst();
+		if (adapter != null) {
+			numIdle.decrementAndGet();
+			return adapter;
+		}
+		return createAdapter();
+	}
+
+	/**
+	 * Return an adapter to this pool.
+	 * @param adapter The adapter which was previously obtained from {@link #borrow()}.
+	 */
+	public void release(PolcoAdapter adapter) {
+		if (numIdle.incrementAndGet() > maxIdle) {
+			numIdle.decrementAndGet();
+			return;
+		}
+		idle.offerFirst(adapter);
+	}
+
+	/**
+	 * Make sure that the given number of adapters is idle in this pool and that polco's code paths are loaded.
+	 * Each new adapter solves a trivial cone once so that class initialization does not happen during the first
+	 * real computation.
+	 * @param count The number of adapters that should be available.
+	 */
+	public void warmUp(int count) {
+		BigInteger[][] equations = new BigInteger[0][];
+		BigInteger[][] inequalities = new BigInteger[][] {
+			{ BigInteger.ONE, BigInteger.ZERO },
+			{ BigInteger.ONE, BigInteger.ONE },
+		};
+		count = Math.min(count, maxIdle);
+		while (numIdle.get() < count) {
+			PolcoAdapter adapter = createAdapter();
+			POLCO_LOCK.lock();
+			try {
+				adapter.getBigIntegerRays(equations, inequalities);
+			} finally {
+				POLCO_LOCK.unlock();
+			}
+			release(adapter);
+		}
+	}
+
+	/**
+	 * Drop all idle adapters from this pool.
+	 */
+	public void clear() {
+		while (idle.pollFirst() != null)
+			numIdle.decrementAndGet();
+	}
+
+	/**
+	 * Get the number of adapters that are currently idle in this pool.
+	 * @return The number of idle adapters.
+	 */
+	public int getNumberOfIdleAdapters() {
+		return numIdle.get();
+	}
+
+	/**
+	 * Get the number of adapters that this pool had to create so far.
+	 * @return The number of created adapters.
+	 */
+	public int getNumberOfCreatedAdapters() {
+		return numCreated.get();
+	}
+
+	private PolcoAdapter createAdapter() {
+		// http://www.csb.ethz.ch/tools/polco
+		POLCO_LOCK.lock();
+		try {
+			PolcoAdapter adapter = new PolcoAdapter(configuration.toOptions());
+			numCreated.incrementAndGet();
+			return adapter;
+		} catch (Exception e) {
+			// Polco only fails here if it rejects one of the options, so name all of them
+			throw new IllegalStateException("Polco cannot create an adapter with " + configuration + ": "
+					+ e.getMessage(), e);
+		} finally {
+			POLCO_LOCK.unlock();
+		}
+	}
+
+	// Initialization-on-demand holder so that the shared pool is warmed up exactly once
+	static private class Holder {
+		static private final PolcoAdapterPool INSTANCE = new PolcoAdapterPool(DEFAULT_MAX_IDLE);
+
+		static {
+			INSTANCE.warmUp(1);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,276 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+
+import ch.javasoft.metabolic.efm.config.Arithmetic;
+import ch.javasoft.polco.adapter.Options;
+
+/**
+ * Tuning options for the polco library as used by {@link PolcoEngine}. The defaults are polco's own defaults and
+ * exact arithmetic. Instances of this class are immutable.
+ * @author Uli Schlachter
+ */
+public class PolcoConfiguration {
+	/** The names of the adjacency tests that polco offers for computations within one process */
+	static public final Set<String> ADJACENCY_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+					"pattern-tree-minzero", "pattern-tree-rank", "pattern-tree-mod-rank",
+					"pattern-tree-rank-update-modpi", "pattern-tree-rank-update-modp",
+					"pattern-tree-rank-update-frac", "pattern-tree-rank-update-frac2",
+					"pattern-tree-rank-update-dbl", "pattern-tree-rank-update-dbl2", "fast-rank",
+					"mod-rank", "rankup-modpi-incore", "rankup-modpi-outcore")));
+
+	private final PolcoEngine.ArithmeticMode arithmeticMode;
+	private final Arithmetic arithmetic;
+	private final String adjacencyMethod;
+	private final Options.Memory memory;
+	private final File temporaryDirectory;
+	private final int maxThreads;
+
+	private PolcoConfiguration(PolcoEngine.ArithmeticMode arithmeticMode, Arithmetic arithmetic,
+			String adjacencyMethod, Options.Memory memory, File temporaryDirectory, int maxThreads) {
+		this.arithmeticMode = arithmeticMode;
+		this.arithmetic = arithmetic;
+		this.adjacencyMethod = adjacencyMethod;
+		this.memory = memory;
+		this.temporaryDirectory = temporaryDirectory;
+		this.maxThreads = maxThreads;
+	}
+
+	/**
+	 * Create a configuration with polco's defaults.
+	 */
+	public PolcoConfiguration() {
+		this(PolcoEngine.ArithmeticMode.EXACT, Arithmetic.fractional, null, Options.Memory.in_core, null, 0);
+	}
+
+	/**
+	 * Get the way in which {@link PolcoEngine} combines floating point and exact arithmetic.
+	 * @return The arithmetic mode.
+	 */
+	public PolcoEngine.ArithmeticMode getArithmeticMode() {
+		return arithmeticMode;
+	}
+
+	/**
+	 * Get the arithmetic of polco's main computation in {@link PolcoEngine.ArithmeticMode#EXACT} mode and for the
+	 * exact fallback of {@link PolcoEngine.ArithmeticMode#FAST} mode.
+	 * @return The arithmetic.
+	 */
+	public Arithmetic getArithmetic() {
+		return arithmetic;
+	}
+
+	/**
+	 * Get the test that polco uses to find adjacent rays.
+	 * @return The name of the adjacency test or null if polco's default is used.
+	 */
+	public String getAdjacencyMethod() {
+		return adjacencyMethod;
+	}
+
+	/**
+	 * Get where polco keeps its intermediate rays.
+	 * @return The memory model.
+	 */
+	public Options.Memory getMemory() {
+		return memory;
+	}
+
+	/**
+	 * Get the directory in which polco keeps intermediate rays if they are not kept in memory.
+	 * @return The directory or null if the default directory for temporary files is used.
+	 */
+	public File getTemporaryDirectory() {
+		return temporaryDirectory;
+	}
+
+	/**
+	 * Get the number of threads that polco uses within one computation.
+	 * @return The number of threads or zero if polco uses one thread per processor.
+	 */
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	/**
+	 * Choose how {@link PolcoEngine} combines floating point and exact arithmetic.
+	 * @param arithmeticMode The arithmetic mode.
+	 * @return A configuration with the given arithmetic mode.
+	 */
+	public PolcoConfiguration setArithmeticMode(PolcoEngine.ArithmeticMode arithmeticMode) {
+		return new PolcoConfiguration(Objects.requireNonNull(arithmeticMode), arithmetic,
+				adjacencyMethod, memory, temporaryDirectory, maxThreads);
+	}
+
+	/**
+	 * Choose the arithmetic of polco's main computation. Pre- and post-processing stay exact, but only exact
+	 * arithmetics guarantee that all extremal rays are found.
+	 * @param arithmetic The arithmetic.
+	 * @return A configuration with the given arithmetic.
+	 */
+	public PolcoConfiguration setArithmetic(Arithmetic arithmetic) {
+		return new PolcoConfiguration(arithmeticMode, Objects.requireNonNull(arithmetic),
+				adjacencyMethod, memory, temporaryDirectory, maxThreads);
+	}
+
+	/**
+	 * Choose the test that polco uses to find adjacent rays.
+	 * @param adjacencyMethod One of {@link #ADJACENCY_METHODS} or null for polco's default.
+	 * @return A configuration with the given adjacency test.
+	 */
+	public PolcoConfiguration setAdjacencyMethod(String adjacencyMethod) {
+		if (adjacencyMethod != null && !ADJACENCY_METHODS.contains(adjacencyMethod))
+			throw new IllegalArgumentException("Unknown adjacency method: " + adjacencyMethod);
+		return new PolcoConfiguration(arithmeticMode, arithmetic, adjacencyMethod, memory,
+				temporaryDirectory, maxThreads);
+	}
+
+	/**
+	 * Choose where polco keeps its intermediate rays.
+	 * @param memory The memory model.
+	 * @return A configuration with the given memory model.
+	 */
+	public PolcoConfiguration setMemory(Options.Memory memory) {
+		return new PolcoConfiguration(arithmeticMode, arithmetic, adjacencyMethod,
+				Objects.requireNonNull(memory), temporaryDirectory, maxThreads);
+	}
+
+	/**
+	 * Choose the directory in which polco keeps intermediate rays if they are not kept in memory.
+	 * @param temporaryDirectory The directory or null for the default directory for temporary files.
+	 * @return A configuration with the given directory.
+	 */
+	public PolcoConfiguration setTemporaryDirectory(File temporaryDirectory) {
+		return new PolcoConfiguration(arithmeticMode, arithmetic, adjacencyMethod, memory,
+				temporaryDirectory, maxThreads);
+	}
+
+	/**
+	 * Limit the number of threads that polco uses within one computation. Computations of different threads are
+	 * still serialized, see {@link PolcoEngine}.
+	 * @param maxThreads The number of threads or zero for one thread per processor.
+	 * @return A configuration with the given limit.
+	 */
+	public PolcoConfiguration setMaxThreads(int maxThreads) {
+		if (maxThreads < 0)
+			throw new IllegalArgumentException("The number of threads must not be negative: " + maxThreads);
+		return new PolcoConfiguration(arithmeticMode, arithmetic, adjacencyMethod, memory,
+				temporaryDirectory, maxThreads);
+	}
+
+	/**
+	 * Set an option from its textual form. The names and values follow polco's command line:
+	 * <ul>
+	 * <li>mode: exact or fast, see {@link PolcoEngine.ArithmeticMode}</li>
+	 * <li>arithmetic: fractional, bigint, varint, rawint or double</li>
+	 * <li>adj: one of {@link #ADJACENCY_METHODS} or default</li>
+	 * <li>memory: in-core, out-core or sort-out-core</li>
+	 * <li>tmpdir: a directory</li>
+	 * <li>maxthreads: a number, where 0 means one thread per processor</li>
+	 * </ul>
+	 * @param name The name of the option.
+	 * @param value The value of the option.
+	 * @return A configuration with the given option.
+	 * @throws IllegalArgumentException If the option or its value are unknown.
+	 */
+	public PolcoConfiguration setOption(String name, String value) {
+		String lowerValue = value.toLowerCase(Locale.ROOT);
+		try {
+			switch (name.toLowerCase(Locale.ROOT)) {
+				case "mode":
+					return setArithmeticMode(PolcoEngine.ArithmeticMode.valueOf(
+								value.toUpperCase(Locale.ROOT)));
+				case "arithmetic":
+					return setArithmetic(Arithmetic.valueOf(lowerValue.equals("double") ? "double_"
+								: lowerValue));
+				case "adj":
+					return setAdjacencyMethod(lowerValue.equals("default") ? null : lowerValue);
+				case "memory":
+					return setMemory(Options.Memory.valueOf(lowerValue.replace('-', '_')));
+				case "tmpdir":
+					return setTemporaryDirectory(new File(value));
+				case "maxthreads":
+					return setMaxThreads(Integer.parseInt(value));
+				default:
+					break;
+			}
+		} catch (IllegalArgumentException e) {
+			// Enum.valueOf() and Integer.parseInt() do not mention the option in their messages
+			throw new IllegalArgumentException("Invalid value for polco option " + name + ": " + value, e);
+		}
+		throw new IllegalArgumentException("Unknown polco option: " + name);
+	}
+
+	/**
+	 * Create polco's options for this configuration. The arithmetic mode is not part of them, since it is
+	 * handled by {@link PolcoEngine}.
+	 * @return The options.
+	 */
+	Options toOptions() {
+		Options options = new Options();
+		// Only the main computation is affected, pre- and post-processing stay exact
+		options.setArithmetic(arithmetic);
+		if (adjacencyMethod != null)
+			options.setAdjacencyMethod(adjacencyMethod);
+		options.setMemory(memory);
+		if (memory != Options.Memory.in_core)
+			options.setTmpDir(temporaryDirectory != null ? temporaryDirectory
+					: new File(System.getProperty("java.io.tmpdir")));
+		if (maxThreads != 0)
+			options.setMaxThreads(maxThreads);
+		options.setLoglevel(Level.OFF);
+		return options;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof PolcoConfiguration))
+			return false;
+		PolcoConfiguration other = (PolcoConfiguration) o;
+		return arithmeticMode == other.arithmeticMode && arithmetic == other.arithmetic
+			&& Objects.equals(adjacencyMethod, other.adjacencyMethod)
+			&& memory == other.memory && Objects.equals(temporaryDirectory, other.temporaryDirectory)
+			&& maxThreads == other.maxThreads;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(arithmeticMode, arithmetic, adjacencyMethod, memory, temporaryDirectory,
+				maxThreads);
+	}
+
+	@Override
+	public String toString() {
+		return "PolcoConfiguration[mode=" + arithmeticMode + ", arithmetic=" + arithmetic + ", adj="
+			+ adjacencyMethod + ", memory=" + memory + ", tmpdir=" + temporaryDirectory + ", maxthreads="
+			+ maxThreads + "]";
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,352 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ch.javasoft.metabolic.efm.config.Arithmetic;
+import ch.javasoft.polco.adapter.PolcoAdapter;
+
+/**
+ * Extremal ray engine that uses the polco library. Polco's adapters are borrowed from {@link PolcoAdapterPool}s.
+ * Instances can be shared between threads, but polco itself is not reentrant, so the calls into polco of all threads in
+ * a JVM are serialized. Enumerations that should really run in parallel need a {@link DoubleDescriptionEngine} or a
+ * {@link WorkerPoolEngine}.
+ * @author Uli Schlachter
+ */
+public class PolcoEngine implements StreamingExtremalRayEngine {
+	/**
+	 * The arithmetic that is used for finding extremal rays.
+	 */
+	public enum ArithmeticMode {
+		/** Do all computations in exact arithmetic. */
+		EXACT,
+		/**
+		 * Find the rays in floating point arithmetic and reconstruct each of them exactly from the constraints
+		 * that it satisfies with equality. The reconstructed rays are verified to be extremal and to include
+		 * the other extremal ray of each two-dimensional face that contains one of them, which makes them
+		 * complete. If the coefficients are too large for this, the cone contains a line or the verification
+		 * fails, the computation is repeated in exact arithmetic. The result is the same as with
+		 * {@link #EXACT}.
+		 */
+		FAST;
+	}
+
+	// Hadamard's bound on the sub-determinants that define a ray must stay below this many bits so that polco's
+	// floating point computation does not lose precision.
+	static private final int FAST_MAX_BITS = 50;
+	// Relative tolerance for deciding if a floating point ray satisfies an inequality with equality
+	static private final double FAST_TOLERANCE = 1e-9;
+
+	private final PolcoAdapterPool adapterPool;
+	private final PolcoAdapterPool fastAdapterPool;
+	private final ArithmeticMode arithmeticMode;
+
+	/**
+	 * Create an engine that uses exact arithmetic and the JVM-wide shared adapter pool.
+	 */
+	public PolcoEngine() {
+		this(ArithmeticMode.EXACT);
+	}
+
+	/**
+	 * Create an engine that uses the JVM-wide shared adapter pools.
+	 * @param arithmeticMode The arithmetic to use.
+	 */
+	public PolcoEngine(ArithmeticMode arithmeticMode) {
+		this(PolcoAdapterPool.getInstance(), arithmeticMode);
+	}
+
+	/**
+	 * Create an engine that uses the JVM-wide shared adapter pools for the given configuration. The pools keep
+	 * their adapters for the lifetime of the JVM so that later engines with the same configuration can reuse them,
+	 * so such an engine does not have to be released.
+	 * @param configuration The configuration of polco.
+	 */
+	public PolcoEngine(PolcoConfiguration configuration) {
+		this(PolcoAdapterPool.getInstance(configuration), configuration.getArithmeticMode());
+	}
+
+	/**
+	 * Create an engine.
+	 * @param adapterPool The pool from which adapters for exact computations are borrowed. The floating point
+	 * computations use the same configuration apart from the arithmetic.
+	 * @param arithmeticMode The arithmetic to use.
+	 */
+	public PolcoEngine(PolcoAdapterPool adapterPool, ArithmeticMode arithmeticMode) {
+		this.adapterPool = adapterPool;
+		this.fastAdapterPool = PolcoAdapterPool.getInstance(adapterPool.getConfiguration()
+				.setArithmetic(Arithmetic.double_));
+		this.arithmeticMode = arithmeticMode;
+	}
+
+	/**
+	 * Get the arithmetic that is used for finding extremal rays.
+	 * @return The arithmetic.
+	 */
+	public ArithmeticMode getArithmeticMode() {
+		return arithmeticMode;
+	}
+
+	/**
+	 * Get the configuration of polco that this engine uses.
+	 * @return The configuration.
+	 */
+	public PolcoConfiguration getConfiguration() {
+		return adapterPool.getConfiguration().setArithmeticMode(arithmeticMode);
+	}
+
+	@Override
+	public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+		RayCollector collector = new RayCollector();
+		findExtremalRays(cone, collector);
+		return collector.getRays();
+	}
+
+	@Override
+	public void findExtremalRays(PolyhedralCone cone, RayConsumer consumer) {
+		int numVariables = cone.getNumberOfVariables();
+		BigInteger[][] eq = cone.getEquationMatrix();
+		BigInteger[][] iq = cone.getInequalityMatrix();
+
+		if (arithmeticMode == ArithmeticMode.FAST) {
+			// All rays have to be verified before the first one is passed on
+			Set<List<BigInteger>> result = findExtremalRaysFast(numVariables, eq, iq);
+			if (result != null) {
+				for (List<BigInteger> ray : result)
+					consumer.accept(ray);
+				return;
+			}
+		}
+
+		BigInteger[][] rays;
+		lockPolco();
+		try {
+			PolcoAdapter adapter = adapterPool.borrow();
+			try {
+				rays = adapter.getBigIntegerRays(eq, iq);
+			} finally {
+				adapterPool.release(adapter);
+			}
+		} finally {
+			PolcoAdapterPool.POLCO_LOCK.unlock();
+		}
+
+		// Polco does not return duplicate rays
+		for (int i = 0; i < rays.length; i++)
+			consumer.accept(Arrays.asList(rays[i]));
+	}
+
+	// Returns null if the floating point result cannot be verified
+	private Set<List<BigInteger>> findExtremalRaysFast(int numVariables, BigInteger[][] eq, BigInteger[][] iq) {
+		if (!isSmallForFloatingPoint(numVariables, eq, iq))
+			return null;
+
+		// The rays of a cone containing a line are not unique, so they cannot be reconstructed
+		List<BigInteger[]> allRows = new ArrayList<>(Arrays.asList(eq));
+		allRows.addAll(Arrays.asList(iq));
+		if (!ExactLinearAlgebra.nullspace(allRows, numVariables).isEmpty())
+			return null;
+
+		double[][] rays;
+		lockPolco();
+		try {
+			PolcoAdapter adapter = fastAdapterPool.borrow();
+			try {
+				rays = adapter.getDoubleRays(eq, iq);
+			} finally {
+				fastAdapterPool.release(adapter);
+			}
+		} finally {
+			PolcoAdapterPool.POLCO_LOCK.unlock();
+		}
+
+		// A cone without rays cannot be told apart from rays that were all lost
+		if (rays.length == 0)
+			return null;
+
+		Set<List<BigInteger>> result = new HashSet<>();
+		for (int i = 0; i < rays.length; i++) {
+			BigInteger[] ray = reconstructRay(numVariables, rays[i], eq, iq);
+			if (ray == null)
+				return null;
+			result.add(Arrays.asList(ray));
+		}
+		// Two approximations that lead to the same ray mean that some other ray was not found
+		if (result.size() != rays.length)
+			return null;
+		if (!isComplete(numVariables, eq, iq, result))
+			return null;
+		return result;
+	}
+
+	// Wait until no other thread is inside polco
+	static private void lockPolco() {
+		try {
+			PolcoAdapterPool.POLCO_LOCK.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BudgetExceededException(BudgetExceededException.Reason.INTERRUPTED, 0, 0, 0, 0, 0);
+		}
+	}
+
+	// Check that the sub-determinants of the constraint matrix are small enough for double precision
+	static private boolean isSmallForFloatingPoint(int numVariables, BigInteger[][] eq, BigInteger[][] iq) {
+		List<Double> norms = new ArrayList<>(eq.length + iq.length);
+		for (BigInteger[][] rows : Arrays.asList(eq, iq))
+			for (BigInteger[] row : rows) {
+				double norm = 0;
+				for (BigInteger entry : row)
+					norm += entry.doubleValue() * entry.doubleValue();
+				// Zero rows do not contribute to any sub-determinant
+				if (norm > 0)
+					norms.add(Math.log(norm) / Math.log(2) / 2);
+			}
+		Collections.sort(norms, Collections.reverseOrder());
+		double bits = 0;
+		for (int i = 0; i < norms.size() && i < numVariables - 1; i++)
+			bits += norms.get(i);
+		return bits < FAST_MAX_BITS;
+	}
+
+	// Exactly compute the extremal ray that is defined by the constraints which the given ray satisfies with
+	// equality. Returns null if this does not result in a unique, feasible ray.
+	static private BigInteger[] reconstructRay(int numVariables, double[] approximation, BigInteger[][] eq,
+			BigInteger[][] iq) {
+		double scale = 0;
+		for (double entry : approximation)
+			scale = Math.max(scale, Math.abs(entry));
+		if (scale == 0 || Double.isNaN(scale) || Double.isInfinite(scale))
+			return null;
+
+		List<BigInteger[]> tight = new ArrayList<>(Arrays.asList(eq));
+		for (BigInteger[] row : iq) {
+			double value = 0;
+			double magnitude = 0;
+			for (int j = 0; j < numVariables; j++) {
+				value += row[j].doubleValue() * approximation[j];
+				magnitude += Math.abs(row[j].doubleValue());
+			}
+			double tolerance = FAST_TOLERANCE * scale * magnitude;
+			if (value < -tolerance)
+				return null;
+			if (value <= tolerance)
+				tight.add(row);
+		}
+
+		List<BigInteger[]> kernel = ExactLinearAlgebra.nullspace(tight, numVariables);
+		if (kernel.size() != 1)
+			return null;
+		BigInteger[] ray = kernel.get(0);
+
+		double orientation = 0;
+		for (int j = 0; j < numVariables; j++)
+			orientation += ray[j].doubleValue() * approximation[j];
+		if (orientation < 0)
+			for (int j = 0; j < numVariables; j++)
+				ray[j] = ray[j].negate();
+
+		for (BigInteger[] row : iq)
+			if (ExactLinearAlgebra.dot(row, ray).signum() < 0)
+				return null;
+		return ray;
+	}
+
+	// Check that the given extremal rays of a pointed cone are all of its extremal rays. The extremal rays and the
+	// two-dimensional faces between them form a connected graph, so this is the case if the other extremal ray of
+	// each two-dimensional face that contains one of the rays is among them as well.
+	static boolean isComplete(int numVariables, BigInteger[][] eq, BigInteger[][] iq,
+			Set<List<BigInteger>> rays) {
+		// This many linearly independent inequalities are tight at an extremal ray
+		int numTight = numVariables - 1 - ExactLinearAlgebra.rank(Arrays.asList(eq), numVariables);
+		for (List<BigInteger> rayList : rays) {
+			BigInteger[] ray = rayList.toArray(new BigInteger[numVariables]);
+			List<BigInteger[]> tight = new ArrayList<>();
+			List<BigInteger[]> loose = new ArrayList<>();
+			List<BigInteger> looseValues = new ArrayList<>();
+			for (BigInteger[] row : iq) {
+				BigInteger value = ExactLinearAlgebra.dot(row, ray);
+				if (value.signum() != 0) {
+					loose.add(row);
+					looseValues.add(value);
+				} else if (!isZero(row)) {
+					tight.add(row);
+				}
+			}
+			List<BigInteger[]> directions = getFaceDirections(numVariables, eq, tight, ray, numTight);
+			for (BigInteger[] direction : directions) {
+				BigInteger[] neighbour = AdjacencyDecomposition.walkAlongEdge(ray, direction, loose,
+						looseValues);
+				if (!rays.contains(Arrays.asList(neighbour)))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	// Get the directions in which the two-dimensional faces that contain the given extremal ray leave it. These
+	// are the extremal rays of the cone of the constraints that are tight at the ray, intersected with the
+	// hyperplane that is orthogonal to the ray.
+	static private List<BigInteger[]> getFaceDirections(int numVariables, BigInteger[][] eq,
+			List<BigInteger[]> tight, BigInteger[] ray, int numTight) {
+		List<BigInteger[]> result = new ArrayList<>();
+		List<BigInteger[]> equations = new ArrayList<>(Arrays.asList(eq));
+		equations.add(ray);
+		if (tight.size() == numTight) {
+			// The ray is not degenerate, so each face leaves exactly one of the tight inequalities
+			for (BigInteger[] left : tight) {
+				List<BigInteger[]> rows = new ArrayList<>(equations);
+				for (BigInteger[] row : tight)
+					if (row != left)
+						rows.add(row);
+				BigInteger[] direction = ExactLinearAlgebra.nullspace(rows, numVariables).get(0);
+				if (ExactLinearAlgebra.dot(left, direction).signum() < 0)
+					for (int j = 0; j < numVariables; j++)
+						direction[j] = direction[j].negate();
+				result.add(direction);
+			}
+			return result;
+		}
+
+		PolyhedralCone directions = new PolyhedralCone(numVariables);
+		for (BigInteger[] row : equations)
+			directions.addEquation(row);
+		for (BigInteger[] row : tight)
+			directions.addInequality(row);
+		for (List<BigInteger> direction : new DoubleDescriptionEngine().findExtremalRays(directions))
+			result.add(direction.toArray(new BigInteger[numVariables]));
+		return result;
+	}
+
+	static private boolean isZero(BigInteger[] row) {
+		for (BigInteger entry : row)
+			if (entry.signum() != 0)
+				return false;
+		return true;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
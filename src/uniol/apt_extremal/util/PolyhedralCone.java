@@ -19,29 +19,57 @@
 
 package uniol.apt_extremal.util;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.logging.Level;
-
-import ch.javasoft.metabolic.efm.config.Arithmetic;
-import ch.javasoft.polco.adapter.Options;
-import ch.javasoft.polco.adapter.PolcoAdapter;
 
 /**
  * Representation of a polyhedral cone C(A, B) = { x \in Q^n where Ax >= 0 and Bx = 0}.
+ * <p>
+ * Instances are not thread-safe, since even looking up the extremal rays updates cached state, so each cone has to be
+ * confined to one thread at a time. Different cones can be used by different threads at the same time. The engines,
+ * ray caches and symmetries that they share are thread-safe.
  * @author Uli Schlachter
  */
 public class PolyhedralCone {
+	/** The engine that is used for finding extremal rays unless another one is set */
+	static public final ExtremalRayEngine DEFAULT_ENGINE = new PolcoEngine();
+
+	// Used for incremental updates when the configured engine cannot do them
+	static private final DoubleDescriptionEngine INCREMENTAL_ENGINE = new DoubleDescriptionEngine();
+
 	private final int numVariables;
-	private final Collection<List<BigInteger>> equations = new LinkedHashSet<>();
-	private final Collection<List<BigInteger>> inequalities = new LinkedHashSet<>();
+	private ExtremalRayEngine engine = DEFAULT_ENGINE;
+	private RayCache rayCache = null;
+	private CheckpointStore checkpointStore = null;
+	private VariableSymmetry symmetry = null;
+	private ConstraintOrdering ordering = ConstraintOrdering.MIN_INDEX;
+	private AdmissionControl admissionControl = null;
+	// Duplicate rows are detected through the fingerprints of the rows
+	private final Collection<ConstraintRow> equations = new LinkedHashSet<>();
+	private final Collection<ConstraintRow> inequalities = new LinkedHashSet<>();
+	private int numRemovedConstraints = 0;
+	private boolean resultPartial = false;
+
+	// The extremal rays from the last enumeration. Constraints added afterwards are applied incrementally to a
+	// double description of the cone instead of starting over.
+	private Set<List<BigInteger>> knownRays = null;
+	private DoubleDescription description = null;
+	private final List<ConstraintRow> pendingEquations = new ArrayList<>();
+	private final List<ConstraintRow> pendingInequalities = new ArrayList<>();
 
 	/**
 	 * Construct a new equation system.
@@ -59,10 +87,7 @@ public class PolyhedralCone {
 	 * variable.
 	 */
 	public void addEquation(Collection<BigInteger> coefficients) {
-		assert coefficients.size() == numVariables;
-		// We have to remove the trivial equation 0 = 0
-		if (Collections.frequency(coefficients, BigInteger.ZERO) != numVariables)
-			equations.add(new ArrayList<>(coefficients));
+		addEquation(ConstraintRow.of(coefficients));
 	}
 
 	/**
@@ -71,7 +96,7 @@ public class PolyhedralCone {
 	 * variable.
 	 */
 	public void addEquation(BigInteger... coefficients) {
-		addEquation(toBigIntegerList(coefficients));
+		addEquation(ConstraintRow.of(coefficients));
 	}
 
 	/**
@@ -80,7 +105,31 @@ public class PolyhedralCone {
 	 * variable.
 	 */
 	public void addEquation(int... coefficients) {
-		addEquation(toBigIntegerList(coefficients));
+		addEquation(ConstraintRow.of(coefficients));
+	}
+
+	/**
+	 * Add an equation Bx = 0 to the cone.
+	 * @param coefficients List of coefficients for the equation. This must have exactly one entry for each
+	 * variable.
+	 */
+	public void addEquation(long... coefficients) {
+		addEquation(ConstraintRow.of(coefficients));
+	}
+
+	/**
+	 * Add an equation Bx = 0 to the cone.
+	 * @param row The coefficients for the equation. This must have exactly one entry for each variable.
+	 */
+	public void addEquation(ConstraintRow row) {
+		assert row.size() == numVariables;
+		// We have to remove the trivial equation 0 = 0
+		if (row.isZero())
+			return;
+		prepareIncrementalUpdate();
+		symmetry = null;
+		if (equations.add(row) && knownRays != null)
+			pendingEquations.add(row);
 	}
 
 	/**
@@ -89,8 +138,7 @@ public class PolyhedralCone {
 	 * variable.
 	 */
 	public void addInequality(Collection<BigInteger> coefficients) {
-		assert coefficients.size() == numVariables;
-		inequalities.add(new ArrayList<>(coefficients));
+		addInequality(ConstraintRow.of(coefficients));
 	}
 
 	/**
@@ -99,7 +147,7 @@ public class PolyhedralCone {
 	 * variable.
 	 */
 	public void addInequality(BigInteger... coefficients) {
-		addInequality(toBigIntegerList(coefficients));
+		addInequality(ConstraintRow.of(coefficients));
 	}
 
 	/**
@@ -108,69 +156,718 @@ public class PolyhedralCone {
 	 * variable.
 	 */
 	public void addInequality(int... coefficients) {
-		addInequality(toBigIntegerList(coefficients));
+		addInequality(ConstraintRow.of(coefficients));
+	}
+
+	/**
+	 * Add an inequality Ax >= 0 to the cone.
+	 * @param coefficients List of coefficients for the inequality. This must have exactly one entry for each
+	 * variable.
+	 */
+	public void addInequality(long... coefficients) {
+		addInequality(ConstraintRow.of(coefficients));
+	}
+
+	/**
+	 * Add an inequality Ax >= 0 to the cone.
+	 * @param row The coefficients for the inequality. This must have exactly one entry for each variable.
+	 */
+	public void addInequality(ConstraintRow row) {
+		assert row.size() == numVariables;
+		prepareIncrementalUpdate();
+		symmetry = null;
+		if (inequalities.add(row) && knownRays != null)
+			pendingInequalities.add(row);
+	}
+
+	/**
+	 * Set the engine that is used for finding extremal rays. By default, {@link #DEFAULT_ENGINE} is used.
+	 * @param engine The engine to use.
+	 */
+	public void setEngine(ExtremalRayEngine engine) {
+		assert engine != null;
+		this.engine = engine;
+	}
+
+	/**
+	 * Get the engine that is used for finding extremal rays.
+	 * @return The engine.
+	 */
+	public ExtremalRayEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Set the cache that is consulted before extremal rays are enumerated. By default, no cache is used.
+	 * @param rayCache The cache to use or null to disable caching.
+	 */
+	public void setRayCache(RayCache rayCache) {
+		this.rayCache = rayCache;
+	}
+
+	/**
+	 * Get the cache that is consulted before extremal rays are enumerated.
+	 * @return The cache or null if none is used.
+	 */
+	public RayCache getRayCache() {
+		return rayCache;
+	}
+
+	/**
+	 * Set the store to which long-running enumerations save their progress and from which they resume. Other
+	 * engines cannot save their progress, so with a checkpoint store the double description method is always used,
+	 * even instead of a {@link ReverseSearchEngine} or a {@link WorkerPoolEngine}. By default, no checkpoints are
+	 * written.
+	 * @param checkpointStore The store to use or null to disable checkpoints.
+	 */
+	public void setCheckpointStore(CheckpointStore checkpointStore) {
+		this.checkpointStore = checkpointStore;
+	}
+
+	/**
+	 * Get the store to which long-running enumerations save their progress.
+	 * @return The store or null if no checkpoints are written.
+	 */
+	public CheckpointStore getCheckpointStore() {
+		return checkpointStore;
+	}
+
+	/**
+	 * Set the symmetries of this cone. If the cone is pointed, only one extremal ray of each orbit under these
+	 * symmetries is enumerated with the adjacency decomposition method and the orbits are expanded afterwards.
+	 * Adding a constraint to this cone removes the symmetries, since they might not hold anymore.
+	 * @param symmetry The symmetries as detected by {@link VariableSymmetry#detect} for this cone or null.
+	 */
+	public void setSymmetry(VariableSymmetry symmetry) {
+		this.symmetry = symmetry;
+	}
+
+	/**
+	 * Get the symmetries of this cone that are used for enumerating extremal rays.
+	 * @return The symmetries or null if none are used.
+	 */
+	public VariableSymmetry getSymmetry() {
+		return symmetry;
+	}
+
+	/**
+	 * Set the order in which the constraints and variables are handed to the engine. By default, {@link
+	 * ConstraintOrdering#MIN_INDEX} is used, which keeps the order in which they were added.
+	 * @param ordering The ordering to use.
+	 */
+	public void setConstraintOrdering(ConstraintOrdering ordering) {
+		this.ordering = ordering;
+	}
+
+	/**
+	 * Get the order in which the constraints and variables are handed to the engine.
+	 * @return The ordering.
+	 */
+	public ConstraintOrdering getConstraintOrdering() {
+		return ordering;
+	}
+
+	/**
+	 * Set the admission control that decides about each enumeration of the extremal rays of this cone from scratch.
+	 * Incremental updates of known rays are not estimated. An engine to which an enumeration is routed replaces the
+	 * engine of this cone. By default, every enumeration is accepted.
+	 * @param admissionControl The admission control to use or null.
+	 */
+	public void setAdmissionControl(AdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	/**
+	 * Get the admission control that decides about each enumeration of the extremal rays of this cone.
+	 * @return The admission control or null if every enumeration is accepted.
+	 */
+	public AdmissionControl getAdmissionControl() {
+		return admissionControl;
+	}
+
+	/**
+	 * Get the number of variables of this cone.
+	 * @return The number of variables.
+	 */
+	public int getNumberOfVariables() {
+		return numVariables;
+	}
+
+	/**
+	 * Get the equations of this cone as a matrix B, so that the cone satisfies Bx = 0.
+	 * @return A new array containing one row per equation.
+	 */
+	public BigInteger[][] getEquationMatrix() {
+		return toBigIntegerArray(equations);
+	}
+
+	/**
+	 * Get the inequalities of this cone as a matrix A, so that the cone satisfies Ax &gt;= 0.
+	 * @return A new array containing one row per inequality.
+	 */
+	public BigInteger[][] getInequalityMatrix() {
+		return toBigIntegerArray(inequalities);
+	}
+
+	/**
+	 * Get the equations of this cone without copying them.
+	 * @return A read-only view of the rows of B, so that the cone satisfies Bx = 0.
+	 */
+	public Collection<ConstraintRow> getEquations() {
+		return Collections.unmodifiableCollection(equations);
+	}
+
+	/**
+	 * Get the inequalities of this cone without copying them.
+	 * @return A read-only view of the rows of A, so that the cone satisfies Ax &gt;= 0.
+	 */
+	public Collection<ConstraintRow> getInequalities() {
+		return Collections.unmodifiableCollection(inequalities);
+	}
+
+	/**
+	 * Normalize the constraints of this cone without changing the cone itself. Each row is divided by the greatest
+	 * common divisor of its entries and equations are scaled so that their first non-zero entry is positive. Pairs
+	 * of inequalities a*x >= 0 and -a*x >= 0 are merged into the equation a*x = 0. Trivial inequalities 0 >= 0,
+	 * duplicate rows, inequalities which are implied by an equation and non-negative combinations of the
+	 * inequalities x[i] >= 0 are removed. This is done automatically before the extremal rays are calculated.
+	 * @return The number of rows that were removed by this call.
+	 */
+	public int normalize() {
+		int before = equations.size() + inequalities.size();
+
+		Set<ConstraintRow> newEquations = new LinkedHashSet<>();
+		for (ConstraintRow row : equations)
+			newEquations.add(canonicalEquation(row));
+
+		Set<ConstraintRow> newInequalities = new LinkedHashSet<>();
+		for (ConstraintRow row : inequalities) {
+			ConstraintRow normalized = row.normalize();
+			if (!normalized.isZero())
+				newInequalities.add(normalized);
+		}
+
+		// a*x >= 0 and -a*x >= 0 together are a*x = 0
+		for (ConstraintRow row : new ArrayList<>(newInequalities)) {
+			if (newInequalities.contains(row.negate()))
+				newEquations.add(canonicalEquation(row));
+		}
+
+		// Inequalities that coincide with an equation are implied by it
+		for (Iterator<ConstraintRow> iter = newInequalities.iterator(); iter.hasNext();) {
+			if (newEquations.contains(canonicalEquation(iter.next())))
+				iter.remove();
+		}
+
+		// Inequalities with non-negative coefficients only on non-negative variables are implied
+		boolean[] nonNegative = new boolean[numVariables];
+		for (ConstraintRow row : newInequalities) {
+			int variable = getUnitVariable(row);
+			if (variable >= 0)
+				nonNegative[variable] = true;
+		}
+		for (Iterator<ConstraintRow> iter = newInequalities.iterator(); iter.hasNext();) {
+			ConstraintRow row = iter.next();
+			if (getUnitVariable(row) < 0 && isNonNegativeCombination(row, nonNegative))
+				iter.remove();
+		}
+
+		equations.clear();
+		equations.addAll(newEquations);
+		inequalities.clear();
+		inequalities.addAll(newInequalities);
+
+		int removed = before - equations.size() - inequalities.size();
+		numRemovedConstraints += removed;
+		return removed;
 	}
 
-	static private Collection<BigInteger> toBigIntegerList(int... entries) {
-		ArrayList<BigInteger> result = new ArrayList<>(entries.length);
-		for (int i = 0; i < entries.length; i++)
-			result.add(BigInteger.valueOf(entries[i]));
+	/**
+	 * Get the number of rows that were removed while normalizing this cone.
+	 * @return The total number of removed rows.
+	 * @see #normalize()
+	 */
+	public int getNumberOfRemovedConstraints() {
+		return numRemovedConstraints;
+	}
+
+	// If the row is the unit vector e_i, return i, else -1
+	static private int getUnitVariable(ConstraintRow row) {
+		int result = -1;
+		for (int k = 0; k < row.getNumberOfStoredEntries(); k++) {
+			int signum = row.signumOfStoredEntry(k);
+			if (signum == 0)
+				continue;
+			if (result >= 0 || !row.getStoredEntry(k).equals(BigInteger.ONE))
+				return -1;
+			result = row.getIndexOfStoredEntry(k);
+		}
 		return result;
 	}
 
-	static private Collection<BigInteger> toBigIntegerList(BigInteger... entries) {
-		ArrayList<BigInteger> result = new ArrayList<>(entries.length);
-		for (int i = 0; i < entries.length; i++)
-			result.add(entries[i]);
+	static private boolean isNonNegativeCombination(ConstraintRow row, boolean[] nonNegative) {
+		for (int k = 0; k < row.getNumberOfStoredEntries(); k++) {
+			int signum = row.signumOfStoredEntry(k);
+			if (signum < 0 || (signum > 0 && !nonNegative[row.getIndexOfStoredEntry(k)]))
+				return false;
+		}
+		return true;
+	}
+
+	static private ConstraintRow canonicalEquation(ConstraintRow row) {
+		ConstraintRow result = row.normalize();
+		for (int k = 0; k < result.getNumberOfStoredEntries(); k++) {
+			int signum = result.signumOfStoredEntry(k);
+			if (signum > 0)
+				return result;
+			if (signum < 0)
+				return result.negate();
+		}
 		return result;
 	}
 
 	/**
-	 * Calculate the extremal rays of this cone.
+	 * Calculate a basis of the lineality space { x | Ax = 0 and Bx = 0 } of this cone, which is the largest linear
+	 * subspace that the cone contains. The cone is the sum of this space and the pointed cone spanned by the rays
+	 * that {@link #findExtremalRays()} returns, so these rays together with the basis vectors and their negations
+	 * generate the cone.
+	 * @return The basis vectors as integer vectors whose entries have no common divisor. The list is empty if the
+	 * cone is pointed.
+	 */
+	public List<List<BigInteger>> findLinealityBasis() {
+		normalize();
+		List<List<BigInteger>> result = new ArrayList<>();
+		for (BigInteger[] vector : ExactLinearAlgebra.nullspace(getConstraintRows(), numVariables))
+			result.add(Arrays.asList(vector));
+		return result;
+	}
+
+	/**
+	 * Estimate the cost of enumerating the extremal rays of this cone with {@link
+	 * ConeEstimate#DEFAULT_NUMBER_OF_PROBES} probes.
+	 * @return The estimate.
+	 * @see #estimate(int)
+	 */
+	public ConeEstimate estimate() {
+		return estimate(ConeEstimate.DEFAULT_NUMBER_OF_PROBES);
+	}
+
+	/**
+	 * Estimate the cost of enumerating the extremal rays of this cone without enumerating them. The cone is
+	 * normalized first. Unless the upper bound on the number of rays is already small, each probe follows a random
+	 * path through the search tree of a {@link ReverseSearchEngine}, which costs a few enumerations of the
+	 * neighbours of a ray per level of the tree.
+	 * @param numProbes The number of probes or zero to only calculate the upper bound.
+	 * @return The estimate.
+	 * @throws BudgetExceededException If the thread is interrupted while probing.
+	 */
+	public ConeEstimate estimate(int numProbes) {
+		if (numProbes < 0)
+			throw new IllegalArgumentException("Number of probes must not be negative: " + numProbes);
+		normalize();
+		return ConeEstimate.of(this, numProbes);
+	}
+
+	/**
+	 * Calculate the extremal rays of this cone. The result is remembered. If constraints are added to this cone
+	 * afterwards, the next call refines the remembered rays with the double description method instead of
+	 * enumerating everything again. If the cone contains a line, its rays are only unique up to the lineality
+	 * space L. In this case, the extremal rays of the pointed cone that is the intersection of this cone with the
+	 * orthogonal complement of L are returned, see {@link #findLinealityBasis()}.
 	 * @return The set of extremal rays.
 	 */
 	public Set<List<BigInteger>> findExtremalRays() {
-		BigInteger[][] eq = toBigIntegerArray(equations);
-		BigInteger[][] iq = toBigIntegerArray(inequalities);
-
-		// http://www.csb.ethz.ch/tools/polco
-		Options options = new Options();
-		//options.setArithmetic(Arithmetic.bigint, Arithmetic.bigint, Arithmetic.bigint);
-		options.setLoglevel(Level.OFF);
-		PolcoAdapter adapter;
+		return findExtremalRays(Budget.UNLIMITED);
+	}
+
+	/**
+	 * Calculate the extremal rays of this cone within the given budget. Only the {@link DoubleDescriptionEngine},
+	 * the {@link ReverseSearchEngine} and the {@link WorkerPoolEngine} can be stopped while they run, so a limited
+	 * budget uses the double description method instead of other engines. If the budget is exceeded and partial
+	 * results are allowed, a subset of the extremal rays is returned and {@link #isResultPartial()} returns true.
+	 * @param budget The limits for this calculation.
+	 * @return The set of extremal rays.
+	 * @throws BudgetExceededException If the budget is exceeded or the thread is interrupted and partial results
+	 * are not allowed.
+	 * @throws AdmissionRejectedException If the admission control rejects the enumeration.
+	 */
+	public Set<List<BigInteger>> findExtremalRays(Budget budget) {
+		Set<List<BigInteger>> result = updateExtremalRays(budget);
+		if (resultPartial)
+			return result;
+		return new HashSet<>(result);
+	}
+
+	/**
+	 * Calculate the extremal rays of this cone and pass each of them to the given consumer as soon as it is known.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @see #findExtremalRays(Budget, RayConsumer)
+	 */
+	public void findExtremalRays(RayConsumer consumer) {
+		findExtremalRays(Budget.UNLIMITED, consumer);
+	}
+
+	/**
+	 * Calculate the extremal rays of this cone within the given budget and pass each of them to the given consumer
+	 * as soon as it is known. Unlike {@link #findExtremalRays(Budget)}, the rays are not collected in a set first.
+	 * Thus, they are also not remembered for incremental updates, unless they already were known before or a ray
+	 * cache is set, which both need the complete set of rays.
+	 * @param budget The limits for this calculation.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @throws BudgetExceededException If the budget is exceeded or the thread is interrupted and partial results
+	 * are not allowed. In this case, the consumer may already have received some rays.
+	 * @throws AdmissionRejectedException If the admission control rejects the enumeration.
+	 */
+	public void findExtremalRays(Budget budget, RayConsumer consumer) {
+		if (knownRays != null || rayCache != null) {
+			for (List<BigInteger> ray : updateExtremalRays(budget))
+				consumer.accept(ray);
+			return;
+		}
+
+		normalize();
+		resultPartial = false;
+		// Without inequalities, this cone is a linear subspace which has no extremal rays
+		if (inequalities.isEmpty())
+			return;
+		ExtremalRayEngine ownEngine = engine;
 		try {
-			adapter = new PolcoAdapter(options);
-		} catch (Exception e) {
-			// TODO: Better error handling
-			throw new RuntimeException(e);
+			BudgetMonitor monitor = new BudgetMonitor(admit(budget));
+			enumerateExtremalRays(monitor, consumer);
+			resultPartial = monitor.isPartial();
+		} finally {
+			engine = ownEngine;
 		}
+	}
 
-		BigInteger[][] rays = adapter.getBigIntegerRays(eq, iq);
-		Set<List<BigInteger>> result = new HashSet<>();
-		for (int i = 0; i < rays.length; i++)
-			result.add(Arrays.asList(rays[i]));
+	// Calculate the extremal rays and return either the remembered set or a partial result
+	private Set<List<BigInteger>> updateExtremalRays(Budget budget) {
+		normalize();
+		resultPartial = false;
+		ExtremalRayEngine ownEngine = engine;
+		if (knownRays == null && !inequalities.isEmpty())
+			budget = admit(budget);
+		BudgetMonitor monitor = new BudgetMonitor(budget);
+		Set<List<BigInteger>> result;
+		try {
+			if (knownRays == null) {
+				// Without inequalities, this cone is a linear subspace which has no extremal rays
+				if (inequalities.isEmpty())
+					result = new HashSet<>();
+				else
+					result = enumerateExtremalRays(monitor);
+			} else if (description != null) {
+				result = description.addAll(pendingEquations, pendingInequalities, monitor);
+				pendingEquations.clear();
+				pendingInequalities.clear();
+			} else {
+				result = knownRays;
+			}
+		} catch (BudgetExceededException e) {
+			forgetKnownRays();
+			throw e;
+		} finally {
+			engine = ownEngine;
+		}
+
+		if (monitor.isPartial()) {
+			forgetKnownRays();
+			resultPartial = true;
+			return result;
+		}
+		knownRays = result;
+		return knownRays;
+	}
+
+	// Let the admission control decide about an enumeration from scratch and return the budget to use. A routed
+	// engine replaces the engine of this cone until the caller restores it after this enumeration.
+	private Budget admit(Budget budget) {
+		if (admissionControl == null)
+			return budget;
+		ConeEstimate estimate = ConeEstimate.of(this, admissionControl.getNumberOfProbes());
+		AdmissionControl.Decision decision = admissionControl.admit(estimate);
+		if (decision.isRejected())
+			throw new AdmissionRejectedException(decision.getRejectionReason(), estimate);
+		if (decision.getEngine() != null)
+			engine = decision.getEngine();
+		if (decision.getBudget() != null)
+			return decision.getBudget();
+		return budget;
+	}
+
+	/**
+	 * Check if the last call to {@link #findExtremalRays(Budget)} or {@link #findExtremalRays(Budget,
+	 * RayConsumer)} exceeded its budget and returned only some of the extremal rays.
+	 * @return true if the last result was partial.
+	 */
+	public boolean isResultPartial() {
+		return resultPartial;
+	}
+
+	// The double description is unusable after an interrupted update, so the next call starts from scratch
+	private void forgetKnownRays() {
+		knownRays = null;
+		description = null;
+		pendingEquations.clear();
+		pendingInequalities.clear();
+	}
+
+	/**
+	 * Calculate a hash of this cone that does not depend on the order in which constraints were added. The cone
+	 * is normalized first, so cones whose constraints only differ by scaling or by redundant rows get the same
+	 * hash.
+	 * @return The SHA-256 hash of the canonical form of this cone as a hexadecimal string.
+	 */
+	public String getCanonicalHash() {
+		normalize();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			DataOutputStream output = new DataOutputStream(new DigestOutputStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+			}, digest));
+			BinaryFormat.writeVarInt(output, numVariables);
+			for (Collection<ConstraintRow> rows : Arrays.asList(equations, inequalities)) {
+				List<ConstraintRow> sorted = new ArrayList<>(rows);
+				Collections.sort(sorted);
+				BinaryFormat.writeVarInt(output, sorted.size());
+				for (ConstraintRow row : sorted)
+					BinaryFormat.writeVector(output, row.asList());
+			}
+			output.flush();
+			return String.format("%064x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException | IOException e) {
+			// Every Java platform supports SHA-256 and writing to a digest cannot fail
+			throw new AssertionError(e);
+		}
+	}
+
+	private Set<List<BigInteger>> enumerateExtremalRays(BudgetMonitor monitor) {
+		Set<List<BigInteger>> result = null;
+		if (rayCache != null)
+			result = rayCache.get(this);
+		if (result != null)
+			return result;
+
+		RayCollector collector = new RayCollector();
+		enumerateExtremalRays(monitor, collector);
+		result = collector.getRays();
+		if (rayCache != null && !monitor.isPartial())
+			rayCache.put(this, result);
+		return result;
+	}
+
+	/**
+	 * Enumerate the extremal rays of this normalized cone without remembering them.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	void enumerateExtremalRays(BudgetMonitor monitor, final RayConsumer consumer) {
+		// Rays of a cone with a line are only unique up to its lineality space L. The pointed part of the cone
+		// in the orthogonal complement of L has unique rays, so all engines agree on them and none of them has
+		// to carry the lines through the enumeration.
+		List<BigInteger[]> lineality = ExactLinearAlgebra.nullspace(getConstraintRows(), numVariables);
+		if (!lineality.isEmpty()) {
+			restrictToComplement(lineality).enumerateExtremalRays(monitor, consumer);
+			return;
+		}
+
+		if (symmetry != null && !symmetry.isTrivial()
+				&& new AdjacencyDecomposition(this, symmetry).enumerate(monitor, consumer))
+			return;
+
+		// Blocks of constraints that share no variables are enumerated separately
+		if (new BlockDecomposition(this).enumerate(monitor, consumer))
+			return;
+
+		if (!equations.isEmpty()) {
+			// Enumerate in the solution space of the equations: With a basis K of it, x = K*y and Ax >= 0
+			// becomes (AK)y >= 0 in fewer variables
+			final List<BigInteger[]> basis = ExactLinearAlgebra.nullspace(
+					Arrays.asList(getEquationMatrix()), numVariables);
+			if (basis.isEmpty())
+				return;
+			PolyhedralCone reduced = reduceTo(basis);
+			if (reduced != null) {
+				reduced.enumerateExtremalRays(monitor, new RayConsumer() {
+					@Override
+					public void accept(List<BigInteger> ray) {
+						consumer.accept(expand(basis, ray));
+					}
+				});
+				return;
+			}
+		}
+
+		final ConstraintOrdering resolved = ordering.resolve(this);
+		if (resolved.getStrategy() != ConstraintOrdering.Strategy.MIN_INDEX) {
+			final int[] permutation = resolved.orderColumns(this);
+			PolyhedralCone ordered = permute(permutation, resolved);
+			ordered.runEngine(monitor, new RayConsumer() {
+				@Override
+				public void accept(List<BigInteger> ray) {
+					BigInteger[] result = new BigInteger[numVariables];
+					for (int j = 0; j < numVariables; j++)
+						result[permutation[j]] = ray.get(j);
+					consumer.accept(Arrays.asList(result));
+				}
+			});
+			return;
+		}
+		runEngine(monitor, consumer);
+	}
+
+	// Hand this cone to the engine
+	private void runEngine(BudgetMonitor monitor, RayConsumer consumer) {
+		// Tiny cones are solved directly instead of setting up the default engine. Any other engine, including
+		// an explicitly chosen double description method, was chosen on purpose, and limited budgets and
+		// partial results are left to the engines.
+		Budget budget = monitor.getBudget();
+		if (engine == DEFAULT_ENGINE && !budget.isLimited()
+				&& !budget.isPartialResultAllowed() && checkpointStore == null) {
+			monitor.check();
+			if (SmallConeSolver.enumerate(this, consumer))
+				return;
+		}
+		if (engine instanceof DoubleDescriptionEngine) {
+			((DoubleDescriptionEngine) engine).findExtremalRays(this, monitor, consumer);
+		} else if (engine instanceof ReverseSearchEngine && checkpointStore == null) {
+			((ReverseSearchEngine) engine).findExtremalRays(this, monitor, consumer);
+		} else if (engine instanceof WorkerPoolEngine && checkpointStore == null) {
+			((WorkerPoolEngine) engine).findExtremalRays(this, monitor, consumer);
+		} else if (monitor.getBudget().isLimited() || checkpointStore != null) {
+			INCREMENTAL_ENGINE.findExtremalRays(this, monitor, consumer);
+		} else {
+			monitor.check();
+			try {
+				if (engine instanceof StreamingExtremalRayEngine)
+					((StreamingExtremalRayEngine) engine).findExtremalRays(this, consumer);
+				else
+					for (List<BigInteger> ray : engine.findExtremalRays(this))
+						consumer.accept(ray);
+			} catch (RuntimeException e) {
+				// Polco fails with a wrapped InterruptedException when the thread is interrupted
+				monitor.check();
+				throw e;
+			}
+		}
+	}
+
+	// Create the cone with the variables in the given order and the inequalities ordered by the given ordering
+	private PolyhedralCone permute(int[] permutation, ConstraintOrdering rowOrdering) {
+		PolyhedralCone result = new PolyhedralCone(numVariables);
+		result.engine = engine;
+		result.checkpointStore = checkpointStore;
+		result.ordering = rowOrdering;
+		BigInteger[] coefficients = new BigInteger[numVariables];
+		for (ConstraintRow row : equations) {
+			for (int j = 0; j < numVariables; j++)
+				coefficients[j] = row.get(permutation[j]);
+			result.equations.add(ConstraintRow.of(coefficients));
+		}
+		// The rows are ordered as the engine sees them, that is after their columns were permuted
+		List<ConstraintRow> permuted = new ArrayList<>();
+		for (ConstraintRow row : inequalities) {
+			for (int j = 0; j < numVariables; j++)
+				coefficients[j] = row.get(permutation[j]);
+			permuted.add(ConstraintRow.of(coefficients));
+		}
+		result.inequalities.addAll(rowOrdering.orderRows(permuted));
 		return result;
 	}
 
-	static private BigInteger[][] toBigIntegerArray(Collection<List<BigInteger>> rows) {
+	// All rows of this cone, equations first
+	private List<BigInteger[]> getConstraintRows() {
+		List<BigInteger[]> rows = new ArrayList<>(Arrays.asList(getEquationMatrix()));
+		rows.addAll(Arrays.asList(getInequalityMatrix()));
+		return rows;
+	}
+
+	// Create the intersection of this cone with the orthogonal complement of the space spanned by the given
+	// vectors. A variable symmetry of this cone maps its lineality space to itself, so it is kept.
+	private PolyhedralCone restrictToComplement(List<BigInteger[]> vectors) {
+		PolyhedralCone result = new PolyhedralCone(numVariables);
+		result.engine = engine;
+		result.checkpointStore = checkpointStore;
+		result.ordering = ordering;
+		result.equations.addAll(equations);
+		result.inequalities.addAll(inequalities);
+		for (BigInteger[] vector : vectors)
+			result.addEquation(vector);
+		result.normalize();
+		result.symmetry = symmetry;
+		return result;
+	}
+
+	// Create the cone { y | A*K*y >= 0 } for the basis K of the solution space of the equations. Returns null if
+	// this cone contains a line: Its rays are then only unique up to the lineality space, and mapping them back
+	// would not give the same rays as enumerating this cone directly.
+	private PolyhedralCone reduceTo(List<BigInteger[]> basis) {
+		PolyhedralCone reduced = new PolyhedralCone(basis.size());
+		reduced.engine = engine;
+		reduced.checkpointStore = checkpointStore;
+		reduced.ordering = ordering;
+		BigInteger[] coefficients = new BigInteger[basis.size()];
+		for (ConstraintRow row : inequalities) {
+			for (int j = 0; j < basis.size(); j++)
+				coefficients[j] = row.dot(basis.get(j));
+			reduced.addInequality(ConstraintRow.of(coefficients));
+		}
+		reduced.normalize();
+		if (!ExactLinearAlgebra.nullspace(Arrays.asList(reduced.getInequalityMatrix()), basis.size()).isEmpty())
+			return null;
+		return reduced;
+	}
+
+	// Map a ray y of the reduced cone back to K*y
+	static private List<BigInteger> expand(List<BigInteger[]> basis, List<BigInteger> ray) {
+		BigInteger[] result = ExactLinearAlgebra.zero(basis.get(0).length);
+		for (int j = 0; j < basis.size(); j++) {
+			BigInteger factor = ray.get(j);
+			if (factor.signum() == 0)
+				continue;
+			BigInteger[] vector = basis.get(j);
+			for (int i = 0; i < result.length; i++)
+				if (vector[i].signum() != 0)
+					result[i] = result[i].add(factor.multiply(vector[i]));
+		}
+		return Arrays.asList(ExactLinearAlgebra.normalize(result));
+	}
+
+	// Called before a constraint is added: Make sure that the known rays can be refined incrementally
+	private void prepareIncrementalUpdate() {
+		if (knownRays == null || description != null)
+			return;
+		DoubleDescriptionEngine incrementalEngine;
+		if (engine instanceof DoubleDescriptionEngine)
+			incrementalEngine = (DoubleDescriptionEngine) engine;
+		else
+			incrementalEngine = INCREMENTAL_ENGINE;
+		description = incrementalEngine.describe(this, knownRays);
+	}
+
+	static private BigInteger[][] toBigIntegerArray(Collection<ConstraintRow> rows) {
 		BigInteger[][] result = new BigInteger[rows.size()][];
 		int index = 0;
-		for (List<BigInteger> row : rows)
-			result[index++] = row.toArray(new BigInteger[0]);
+		for (ConstraintRow row : rows)
+			result[index++] = row.toArray();
 		return result;
 	}
 
-	static private void toStringHelper(StringBuilder buffer, Collection<List<BigInteger>> rows, String operation) {
-		for (List<BigInteger> row : rows) {
+	static private void toStringHelper(StringBuilder buffer, Collection<ConstraintRow> rows, String operation) {
+		for (ConstraintRow row : rows) {
 			boolean first = true;
-			for (int j = 0; j < row.size(); j++) {
-				if (row.get(j).equals(BigInteger.ZERO))
+			for (int k = 0; k < row.getNumberOfStoredEntries(); k++) {
+				if (row.signumOfStoredEntry(k) == 0)
 					continue;
 
 				if (!first)
 					buffer.append(" + ");
 
-				buffer.append(row.get(j)).append("*x[").append(j).append("]");
+				buffer.append(row.getStoredEntry(k)).append("*x[").append(row.getIndexOfStoredEntry(k))
+					.append("]");
 				first = false;
 			}
 			if (first)
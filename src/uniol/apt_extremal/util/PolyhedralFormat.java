@@ -0,0 +1,313 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reading and writing cones and sets of rays in the text formats of cdd and lrs. A cone is written as an
+ * H-representation: Each row "0 a_1 ... a_n" stands for the inequality a*x &gt;= 0 and the rows listed in the
+ * "linearity" line are equations. A set of rays is written as a V-representation: The rows "0 r_1 ... r_n" are the
+ * rays and the row "1 0 ... 0" is the origin, which tools like lrs need to interpret the rays as a cone.
+ * <p>
+ * The readers accept integer and rational entries, comments starting with "*" and the row count "*****" that lrs
+ * writes when the number of rows is not known in advance. Other options of the formats are ignored. Inputs that
+ * are not cones, for example inequalities with a non-zero constant or vertices other than the origin, are
+ * rejected.
+ * @author Uli Schlachter
+ */
+public class PolyhedralFormat {
+	static private final String H_REPRESENTATION = "H-representation";
+	static private final String V_REPRESENTATION = "V-representation";
+
+	private PolyhedralFormat() {
+	}
+
+	/**
+	 * Write a cone as an H-representation.
+	 * @param writer Where to write to.
+	 * @param cone The cone to write.
+	 * @throws IOException If writing fails.
+	 */
+	static public void writeHRepresentation(Writer writer, PolyhedralCone cone) throws IOException {
+		BigInteger[][] equations = cone.getEquationMatrix();
+		BigInteger[][] inequalities = cone.getInequalityMatrix();
+		writer.write(H_REPRESENTATION + "\n");
+		if (equations.length > 0) {
+			writer.write("linearity " + equations.length);
+			for (int i = 1; i <= equations.length; i++)
+				writer.write(" " + i);
+			writer.write("\n");
+		}
+		writer.write("begin\n");
+		writer.write(" " + (equations.length + inequalities.length) + " " + (cone.getNumberOfVariables() + 1)
+				+ " integer\n");
+		for (BigInteger[][] rows : Arrays.asList(equations, inequalities))
+			for (BigInteger[] row : rows)
+				writeRow(writer, BigInteger.ZERO, Arrays.asList(row));
+		writer.write("end\n");
+		writer.flush();
+	}
+
+	/**
+	 * Read a cone from an H-representation.
+	 * @param reader Where to read from.
+	 * @return The cone.
+	 * @throws IOException If reading fails, the data is malformed or does not describe a cone.
+	 */
+	static public PolyhedralCone readHRepresentation(Reader reader) throws IOException {
+		final List<BigInteger[]> rows = new ArrayList<>();
+		Header header = read(new BufferedReader(reader), H_REPRESENTATION, new RowHandler() {
+			@Override
+			public void handle(BigInteger[] row, int index) throws IOException {
+				if (row[0].signum() != 0)
+					throw new IOException("Row " + (index + 1) + " is not homogeneous");
+				rows.add(Arrays.copyOfRange(row, 1, row.length));
+			}
+		});
+
+		PolyhedralCone cone = new PolyhedralCone(header.numColumns - 1);
+		for (int i = 0; i < rows.size(); i++) {
+			if (header.linearity.contains(i + 1))
+				cone.addEquation(rows.get(i));
+			else
+				cone.addInequality(rows.get(i));
+		}
+		return cone;
+	}
+
+	/**
+	 * Write a set of rays as a V-representation.
+	 * @param writer Where to write to.
+	 * @param numVariables The dimension of the rays.
+	 * @param rays The rays to write.
+	 * @throws IOException If writing fails.
+	 */
+	static public void writeVRepresentation(Writer writer, int numVariables, Collection<List<BigInteger>> rays)
+			throws IOException {
+		writer.write(V_REPRESENTATION + "\n");
+		writer.write("begin\n");
+		writer.write(" " + (rays.size() + 1) + " " + (numVariables + 1) + " integer\n");
+		writeRow(writer, BigInteger.ONE, Arrays.asList(ExactLinearAlgebra.zero(numVariables)));
+		for (List<BigInteger> ray : rays) {
+			assert ray.size() == numVariables;
+			writeRow(writer, BigInteger.ZERO, ray);
+		}
+		writer.write("end\n");
+		writer.flush();
+	}
+
+	/**
+	 * Read a set of rays from a V-representation.
+	 * @param reader Where to read from.
+	 * @return The rays, each divided by the greatest common divisor of its entries.
+	 * @throws IOException If reading fails, the data is malformed or does not describe a cone.
+	 */
+	static public Set<List<BigInteger>> readVRepresentation(Reader reader) throws IOException {
+		final Set<List<BigInteger>> result = new HashSet<>();
+		readVRepresentation(reader, new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				result.add(ray);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Read the rays of a V-representation and pass each of them to a consumer as soon as it was read.
+	 * @param reader Where to read from.
+	 * @param consumer The consumer that receives the rays, each divided by the greatest common divisor of its
+	 * entries.
+	 * @return The dimension of the rays.
+	 * @throws IOException If reading fails, the data is malformed or does not describe a cone. The consumer may
+	 * already have received some rays in this case.
+	 */
+	static public int readVRepresentation(Reader reader, final RayConsumer consumer) throws IOException {
+		Header header = read(new BufferedReader(reader), V_REPRESENTATION, new RowHandler() {
+			@Override
+			public void handle(BigInteger[] row, int index) throws IOException {
+				BigInteger[] ray = Arrays.copyOfRange(row, 1, row.length);
+				if (row[0].signum() != 0) {
+					for (BigInteger entry : ray)
+						if (entry.signum() != 0)
+							throw new IOException("Row " + (index + 1) + " is a vertex "
+									+ "other than the origin");
+					return;
+				}
+				consumer.accept(Arrays.asList(ExactLinearAlgebra.normalize(ray)));
+			}
+		});
+		if (!header.linearity.isEmpty())
+			throw new IOException("Lines in a V-representation are not supported");
+		return header.numColumns - 1;
+	}
+
+	static private void writeRow(Writer writer, BigInteger first, List<BigInteger> row) throws IOException {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append(' ').append(first);
+		for (BigInteger entry : row)
+			buffer.append(' ').append(entry);
+		buffer.append('\n');
+		writer.write(buffer.toString());
+	}
+
+	// The information of the header and the options of a file
+	static private class Header {
+		private int numColumns = -1;
+		private final Set<Integer> linearity = new HashSet<>();
+	}
+
+	// Receives the rows of a file, scaled to integers
+	static private interface RowHandler {
+		void handle(BigInteger[] row, int index) throws IOException;
+	}
+
+	static private Header read(BufferedReader reader, String representation, RowHandler handler)
+			throws IOException {
+		Header header = new Header();
+		boolean seenRepresentation = false;
+		boolean seenMatrix = false;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("*"))
+				continue;
+			String[] tokens = line.split("\\s+");
+			if (tokens[0].equals(H_REPRESENTATION) || tokens[0].equals(V_REPRESENTATION)) {
+				if (!tokens[0].equals(representation))
+					throw new IOException("Expected " + representation + ", but got " + tokens[0]);
+				seenRepresentation = true;
+			} else if (tokens[0].equals("linearity")) {
+				readLinearity(tokens, header);
+			} else if (tokens[0].equals("begin")) {
+				if (seenMatrix)
+					throw new IOException("Only one matrix per file is supported");
+				readMatrix(reader, header, handler);
+				seenMatrix = true;
+			}
+			// Everything else is a name or an option that does not change the cone
+		}
+		if (!seenMatrix)
+			throw new IOException("No matrix found");
+		// cdd assumes an H-representation if the file does not say otherwise
+		if (!seenRepresentation && representation.equals(V_REPRESENTATION))
+			throw new IOException("Expected " + representation);
+		return header;
+	}
+
+	static private void readLinearity(String[] tokens, Header header) throws IOException {
+		try {
+			int count = Integer.parseInt(tokens[1]);
+			if (tokens.length != count + 2)
+				throw new IOException("Malformed linearity line");
+			for (int i = 0; i < count; i++)
+				header.linearity.add(Integer.parseInt(tokens[i + 2]));
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Malformed linearity line", e);
+		}
+	}
+
+	static private void readMatrix(BufferedReader reader, Header header, RowHandler handler) throws IOException {
+		String line = reader.readLine();
+		while (line != null && line.trim().isEmpty())
+			line = reader.readLine();
+		if (line == null)
+			throw new IOException("Missing size of the matrix");
+		String[] size = line.trim().split("\\s+");
+		if (size.length != 3)
+			throw new IOException("Malformed size of the matrix: " + line);
+		int numRows;
+		try {
+			numRows = size[0].startsWith("*") ? -1 : Integer.parseInt(size[0]);
+			header.numColumns = Integer.parseInt(size[1]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed size of the matrix: " + line, e);
+		}
+		if (header.numColumns < 1)
+			throw new IOException("The matrix needs at least one column");
+		if (!size[2].equals("integer") && !size[2].equals("rational"))
+			throw new IOException("Unsupported number type " + size[2]);
+
+		// Rows may be split over several lines, so the entries are read as a stream of tokens
+		List<String> tokens = new ArrayList<>();
+		int index = 0;
+		while (true) {
+			line = reader.readLine();
+			if (line == null)
+				throw new IOException("Missing end of the matrix");
+			line = line.trim();
+			if (line.equals("end"))
+				break;
+			if (line.isEmpty())
+				continue;
+			tokens.addAll(Arrays.asList(line.split("\\s+")));
+			while (tokens.size() >= header.numColumns) {
+				List<String> row = tokens.subList(0, header.numColumns);
+				handler.handle(parseRow(row), index++);
+				row.clear();
+			}
+		}
+		if (!tokens.isEmpty())
+			throw new IOException("Incomplete row " + (index + 1));
+		if (numRows >= 0 && numRows != index)
+			throw new IOException("Expected " + numRows + " rows, but got " + index);
+	}
+
+	// Parse a row of integers or fractions and scale it by the least common multiple of the denominators
+	static private BigInteger[] parseRow(List<String> tokens) throws IOException {
+		BigInteger[] numerators = new BigInteger[tokens.size()];
+		BigInteger[] denominators = new BigInteger[tokens.size()];
+		BigInteger lcm = BigInteger.ONE;
+		try {
+			for (int i = 0; i < tokens.size(); i++) {
+				String token = tokens.get(i);
+				int slash = token.indexOf('/');
+				if (slash < 0) {
+					numerators[i] = new BigInteger(token);
+					denominators[i] = BigInteger.ONE;
+				} else {
+					numerators[i] = new BigInteger(token.substring(0, slash));
+					denominators[i] = new BigInteger(token.substring(slash + 1));
+					if (denominators[i].signum() <= 0)
+						throw new IOException("Invalid denominator in " + token);
+					lcm = lcm.divide(lcm.gcd(denominators[i])).multiply(denominators[i]);
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed entry", e);
+		}
+		for (int i = 0; i < numerators.length; i++)
+			numerators[i] = numerators[i].multiply(lcm.divide(denominators[i]));
+		return numerators;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,201 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of extremal rays on disk. Each cone is stored in its own file, named after the canonical hash of
+ * the cone and the engine that calculated it. Files are written to a temporary name and atomically renamed, so that
+ * several JVMs can share one cache directory. When the files take up more than the configured size, the least
+ * recently used ones are deleted. Problems with the cache directory never make a computation fail; they are
+ * treated like a cache miss. One instance can be used by several threads at the same time.
+ * @author Uli Schlachter
+ */
+public class RayCache {
+	static private final int MAGIC = 0x41505452; // "APTR"
+	static private final int VERSION = 1;
+	static private final String SUFFIX = ".rays";
+
+	private final Path directory;
+	private final long maxBytes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Create a cache in the given directory. The directory is created if it does not exist.
+	 * @param directory The directory in which the cache files are stored.
+	 * @param maxBytes The maximal total size of the cache files.
+	 * @throws IOException If the directory cannot be created.
+	 */
+	public RayCache(Path directory, long maxBytes) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Look up the extremal rays of a cone.
+	 * @param cone The cone whose rays are requested. It is normalized by this call.
+	 * @return The extremal rays or null if they are not in the cache.
+	 */
+	public Set<List<BigInteger>> get(PolyhedralCone cone) {
+		String key = getKey(cone);
+		Path file = directory.resolve(key + SUFFIX);
+		try (InputStream stream = Files.newInputStream(file)) {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+			if (input.readInt() != MAGIC || input.readUnsignedByte() != VERSION
+					|| !input.readUTF().equals(key))
+				throw new IOException("Invalid cache file " + file);
+			Set<List<BigInteger>> result = BinaryFormat.readRays(input, cone.getNumberOfVariables());
+			touch(file);
+			hits.incrementAndGet();
+			return result;
+		} catch (IOException e) {
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * Store the extremal rays of a cone.
+	 * @param cone The cone whose rays are stored. It is normalized by this call.
+	 * @param rays The extremal rays of the cone.
+	 */
+	public void put(PolyhedralCone cone, Set<List<BigInteger>> rays) {
+		String key = getKey(cone);
+		Path temporary = null;
+		try {
+			temporary = Files.createTempFile(directory, key, ".tmp");
+			try (OutputStream stream = Files.newOutputStream(temporary)) {
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+				output.writeInt(MAGIC);
+				output.writeByte(VERSION);
+				output.writeUTF(key);
+				BinaryFormat.writeRays(output, cone.getNumberOfVariables(), rays);
+				output.flush();
+			}
+			Files.move(temporary, directory.resolve(key + SUFFIX), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			temporary = null;
+			evict();
+		} catch (IOException e) {
+			// The cache is optional, so failing to fill it is fine
+		} finally {
+			if (temporary != null) {
+				try {
+					Files.deleteIfExists(temporary);
+				} catch (IOException e) {
+					// Ignore, there is nothing left to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the number of lookups that found an entry.
+	 * @return The number of cache hits.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of lookups that did not find an entry.
+	 * @return The number of cache misses.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	static private String getKey(PolyhedralCone cone) {
+		// Each engine gets its own entries, so that a broken engine cannot spoil the results of the others
+		String engine = cone.getEngine().getClass().getSimpleName().toLowerCase();
+		return cone.getCanonicalHash() + "-" + engine;
+	}
+
+	static private void touch(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// A read-only cache still works, but without LRU information
+		}
+	}
+
+	// Delete the least recently used files until the cache is small enough
+	private void evict() throws IOException {
+		final List<Path> files = new ArrayList<>();
+		final List<FileTime> times = new ArrayList<>();
+		final List<Long> sizes = new ArrayList<>();
+		long total = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			for (Path file : stream) {
+				try {
+					FileTime time = Files.getLastModifiedTime(file);
+					long size = Files.size(file);
+					files.add(file);
+					times.add(time);
+					sizes.add(size);
+					total += size;
+				} catch (NoSuchFileException e) {
+					// Evicted concurrently by someone else
+				}
+			}
+		}
+		if (total <= maxBytes)
+			return;
+
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < files.size(); i++)
+			order.add(i);
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return times.get(a).compareTo(times.get(b));
+			}
+		});
+		for (int i : order) {
+			if (total <= maxBytes)
+				break;
+			Files.deleteIfExists(files.get(i));
+			total -= sizes.get(i);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
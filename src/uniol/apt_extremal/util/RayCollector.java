@@ -0,0 +1,49 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ray consumer that collects all rays in a set.
+ * @author Uli Schlachter
+ */
+class RayCollector implements RayConsumer {
+	private final Set<List<BigInteger>> rays = new HashSet<>();
+
+	@Override
+	public void accept(List<BigInteger> ray) {
+		rays.add(ray);
+	}
+
+	/**
+	 * Get the rays that were collected.
+	 * @return The set of rays.
+	 */
+	Set<List<BigInteger>> getRays() {
+		return rays;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,167 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a ray file that was written by {@link RayFileWriter}. The file is mapped into memory in windows of limited
+ * size and the rays are decoded one at a time while they are passed to a consumer, so that files of any size can be
+ * read without keeping their rays in memory.
+ * @author Uli Schlachter
+ */
+public class RayFileReader implements Closeable {
+	// The size of the part of the file that is mapped at once
+	static private final long WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final MappedInputStream stream;
+	private final int numVariables;
+	private final long count;
+
+	/**
+	 * Open a ray file and read its header.
+	 * @param file The file to read.
+	 * @throws IOException If the file cannot be read or is not a ray file.
+	 */
+	public RayFileReader(Path file) throws IOException {
+		this(file, WINDOW_SIZE);
+	}
+
+	/**
+	 * Open a ray file and read its header.
+	 * @param file The file to read.
+	 * @param windowSize The number of bytes that are mapped into memory at once.
+	 * @throws IOException If the file cannot be read or is not a ray file.
+	 */
+	RayFileReader(Path file, long windowSize) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			stream = new MappedInputStream(channel, windowSize);
+			DataInputStream input = new DataInputStream(stream);
+			if (input.readInt() != RayFileWriter.MAGIC || input.readUnsignedByte() != RayFileWriter.VERSION)
+				throw new IOException("Not a ray file: " + file);
+			numVariables = input.readInt();
+			count = input.readLong();
+			if (numVariables < 0 || count < 0)
+				throw new IOException("Invalid header in ray file " + file);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the dimension of the rays in the file.
+	 * @return The dimension.
+	 */
+	public int getNumberOfVariables() {
+		return numVariables;
+	}
+
+	/**
+	 * Get the number of rays in the file.
+	 * @return The number of rays.
+	 */
+	public long getNumberOfRays() {
+		return count;
+	}
+
+	/**
+	 * Read all rays of the file and pass each of them to a consumer as soon as it is decoded. Each call starts
+	 * again at the first ray.
+	 * @param consumer The consumer that receives the rays.
+	 * @throws IOException If reading fails or the file is malformed. The consumer may already have received some
+	 * rays in this case.
+	 */
+	public void readRays(RayConsumer consumer) throws IOException {
+		stream.seek(RayFileWriter.HEADER_SIZE);
+		DataInputStream input = new DataInputStream(stream);
+		for (long i = 0; i < count; i++)
+			consumer.accept(Arrays.asList(BinaryFormat.readVector(input, numVariables)));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Input stream over a file that maps one window of the file at a time
+	static private class MappedInputStream extends InputStream {
+		private final FileChannel channel;
+		private final long size;
+		private final long windowSize;
+		private MappedByteBuffer buffer;
+		private long bufferStart;
+
+		private MappedInputStream(FileChannel channel, long windowSize) throws IOException {
+			this.channel = channel;
+			this.size = channel.size();
+			this.windowSize = windowSize;
+			seek(0);
+		}
+
+		private void seek(long position) throws IOException {
+			bufferStart = Math.min(position, size);
+			long length = Math.min(windowSize, size - bufferStart);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, bufferStart, length);
+		}
+
+		// Make sure that the buffer has remaining bytes, returns false at the end of the file
+		private boolean fill() throws IOException {
+			if (buffer.hasRemaining())
+				return true;
+			long next = bufferStart + buffer.limit();
+			if (next >= size)
+				return false;
+			seek(next);
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill())
+				return -1;
+			return buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (!fill())
+				return -1;
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
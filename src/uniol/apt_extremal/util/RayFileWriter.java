@@ -0,0 +1,124 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes rays to a binary ray file as they are passed to it, so that large sets of rays never have to be kept in
+ * memory. A ray file starts with a header that contains the dimension and the number of rays, followed by the rays in
+ * the encoding of {@link BinaryFormat#writeVector}. The number of rays is filled in when the writer is closed. Ray
+ * files are read with {@link RayFileReader}.
+ * <p>
+ * Since a {@link RayConsumer} cannot throw an {@link IOException}, the first failure to write is remembered and
+ * thrown by {@link #close()}. Rays that are passed on after a failure are dropped.
+ * @author Uli Schlachter
+ */
+public class RayFileWriter implements RayConsumer, Closeable {
+	static final int MAGIC = 0x41505456; // "APTV"
+	static final int VERSION = 1;
+	// Magic, version and dimension come before the number of rays
+	static final int COUNT_OFFSET = 4 + 1 + 4;
+	static final int HEADER_SIZE = COUNT_OFFSET + 8;
+
+	private final int numVariables;
+	private final FileChannel channel;
+	private final DataOutputStream output;
+	private long count = 0;
+	private IOException error = null;
+
+	/**
+	 * Create a ray file. An existing file is overwritten.
+	 * @param file The file to create.
+	 * @param numVariables The dimension of the rays.
+	 * @throws IOException If the file cannot be created.
+	 */
+	public RayFileWriter(Path file, int numVariables) throws IOException {
+		this.numVariables = numVariables;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+		try {
+			output.writeInt(MAGIC);
+			output.writeByte(VERSION);
+			output.writeInt(numVariables);
+			output.writeLong(0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public void accept(List<BigInteger> ray) {
+		if (ray.size() != numVariables)
+			throw new IllegalArgumentException("Expected a ray of dimension " + numVariables + ", but got "
+					+ ray.size());
+		if (error != null)
+			return;
+		try {
+			BinaryFormat.writeVector(output, ray);
+			count++;
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Get the number of rays that were written so far.
+	 * @return The number of rays.
+	 */
+	public long getNumberOfRays() {
+		return count;
+	}
+
+	/**
+	 * Write the number of rays into the header and close the file.
+	 * @throws IOException If writing any ray or the header failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (error == null) {
+				output.flush();
+				ByteBuffer buffer = ByteBuffer.allocate(8);
+				buffer.putLong(0, count);
+				while (buffer.hasRemaining())
+					channel.write(buffer, COUNT_OFFSET + buffer.position());
+			}
+		} finally {
+			channel.close();
+		}
+		if (error != null)
+			throw error;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,396 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact store for large sets of extremal rays. Each ray is normalized by the gcd of its entries and encoded with a
+ * variable-length encoding in which entries between -32 and 31 take a single byte. The encoded rays are kept outside
+ * of the Java heap in direct buffers. Once these buffers reach a given size, further rays are written to a temporary
+ * file that is mapped into memory, so that the operating system can page them out. Duplicate rays are detected with
+ * a hash table that only holds primitive arrays.
+ *
+ * Since a {@link RayConsumer} cannot throw an {@link IOException}, the first failure to grow the temporary file is
+ * remembered, all further rays are dropped and the failure is thrown when a {@link Cursor} is requested.
+ *
+ * This class is not thread-safe.
+ * @author Uli Schlachter
+ */
+public class RayStore implements RayConsumer, Closeable {
+	// The size of each buffer holding encoded rays
+	static private final int CHUNK_BITS = 20;
+
+	private final int numVariables;
+	private final long memoryThreshold;
+	private final Path directory;
+	private final int chunkBits;
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private FileChannel spillChannel = null;
+	private int spilledChunks = 0;
+	private IOException error = null;
+	private boolean closed = false;
+
+	// Offset plus one of each stored ray and its hash, zero marks an empty slot
+	private long[] tableOffsets = new long[16];
+	private int[] tableHashes = new int[16];
+	private int count = 0;
+	private long size = 0;
+	private byte[] scratch = new byte[64];
+
+	/**
+	 * Create a ray store that never spills to disk.
+	 * @param numVariables The dimension of the rays.
+	 */
+	public RayStore(int numVariables) {
+		this(numVariables, Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * Create a ray store.
+	 * @param numVariables The dimension of the rays.
+	 * @param memoryThreshold The number of bytes of encoded rays that are kept in direct buffers before further
+	 * rays are spilled to a temporary file.
+	 * @param directory The directory for the temporary file or null for the default temporary directory.
+	 */
+	public RayStore(int numVariables, long memoryThreshold, Path directory) {
+		this(numVariables, memoryThreshold, directory, CHUNK_BITS);
+	}
+
+	/**
+	 * Create a ray store.
+	 * @param numVariables The dimension of the rays.
+	 * @param memoryThreshold The number of bytes of encoded rays that are kept in direct buffers.
+	 * @param directory The directory for the temporary file or null for the default temporary directory.
+	 * @param chunkBits The logarithm of the size of each buffer.
+	 */
+	RayStore(int numVariables, long memoryThreshold, Path directory, int chunkBits) {
+		if (numVariables < 0)
+			throw new IllegalArgumentException("Negative number of variables: " + numVariables);
+		if (memoryThreshold < 0)
+			throw new IllegalArgumentException("Negative memory threshold: " + memoryThreshold);
+		this.numVariables = numVariables;
+		this.memoryThreshold = memoryThreshold;
+		this.directory = directory;
+		this.chunkBits = chunkBits;
+	}
+
+	/**
+	 * Get the dimension of the rays in this store.
+	 * @return The dimension.
+	 */
+	public int getNumberOfVariables() {
+		return numVariables;
+	}
+
+	/**
+	 * Get the number of different rays in this store.
+	 * @return The number of rays.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get the number of bytes that the encoded rays take.
+	 * @return The number of bytes.
+	 */
+	public long getEncodedBytes() {
+		return size;
+	}
+
+	/**
+	 * Get the number of bytes of encoded rays that were spilled to the temporary file.
+	 * @return The number of bytes.
+	 */
+	public long getSpilledBytes() {
+		// The chunks in memory come first, so every encoded byte after them is in the file
+		long inMemory = (long) (chunks.size() - spilledChunks) << chunkBits;
+		return Math.max(0, size - inMemory);
+	}
+
+	/**
+	 * Add a ray to this store. The ray is divided by the gcd of its entries first.
+	 * @param ray The ray to add.
+	 * @return true if the ray was not yet contained in this store.
+	 */
+	public boolean add(List<BigInteger> ray) {
+		if (closed)
+			throw new IllegalStateException("The ray store was already closed");
+		if (ray.size() != numVariables)
+			throw new IllegalArgumentException("Expected a ray of dimension " + numVariables + ", but got "
+					+ ray.size());
+		if (error != null)
+			return false;
+
+		int length = encode(ExactLinearAlgebra.normalize(ray.toArray(new BigInteger[numVariables])));
+		int hash = hash(scratch, length);
+		int mask = tableOffsets.length - 1;
+		int slot = hash & mask;
+		while (tableOffsets[slot] != 0) {
+			if (tableHashes[slot] == hash && matches(tableOffsets[slot] - 1, length))
+				return false;
+			slot = (slot + 1) & mask;
+		}
+
+		long offset = size;
+		try {
+			ensureCapacity(size + length);
+		} catch (IOException e) {
+			error = e;
+			return false;
+		}
+		for (int i = 0; i < length; i++)
+			put(offset + i, scratch[i]);
+		size += length;
+		tableOffsets[slot] = offset + 1;
+		tableHashes[slot] = hash;
+		count++;
+		if (2 * count > tableOffsets.length)
+			growTable();
+		return true;
+	}
+
+	@Override
+	public void accept(List<BigInteger> ray) {
+		add(ray);
+	}
+
+	/**
+	 * Get a cursor that decodes the rays of this store one at a time in the order in which they were added. The
+	 * store must not be changed while the cursor is used.
+	 * @return The cursor.
+	 * @throws IOException If the store failed to spill rays to its temporary file.
+	 */
+	public Cursor cursor() throws IOException {
+		if (closed)
+			throw new IllegalStateException("The ray store was already closed");
+		if (error != null)
+			throw error;
+		return new Cursor();
+	}
+
+	/**
+	 * Pass all rays of this store to a consumer.
+	 * @param consumer The consumer that receives the rays.
+	 * @throws IOException If the store failed to spill rays to its temporary file.
+	 */
+	public void replay(RayConsumer consumer) throws IOException {
+		Cursor cursor = cursor();
+		while (cursor.hasNext())
+			consumer.accept(cursor.next());
+	}
+
+	/**
+	 * Release the buffers of this store and delete its temporary file.
+	 * @throws IOException If the temporary file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		chunks.clear();
+		tableOffsets = null;
+		tableHashes = null;
+		if (spillChannel != null)
+			spillChannel.close();
+	}
+
+	/**
+	 * Streaming cursor over the rays of a {@link RayStore}. Each call to {@link #next()} decodes a new list.
+	 */
+	public class Cursor implements Iterator<List<BigInteger>> {
+		private final int expectedCount = count;
+		private long offset = 0;
+		private int index = 0;
+
+		private Cursor() {
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < count;
+		}
+
+		@Override
+		public List<BigInteger> next() {
+			if (closed || count != expectedCount)
+				throw new ConcurrentModificationException();
+			if (index >= count)
+				throw new NoSuchElementException();
+			BigInteger[] ray = new BigInteger[numVariables];
+			for (int i = 0; i < numVariables; i++)
+				ray[i] = readEntry();
+			index++;
+			return Arrays.asList(ray);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private long readVarLong() {
+			long result = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = get(offset++);
+				result |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0)
+					return result;
+			}
+		}
+
+		private BigInteger readEntry() {
+			long value = readVarLong();
+			if ((value & 1) == 0) {
+				value >>>= 1;
+				return BigInteger.valueOf((value >>> 1) ^ -(value & 1));
+			}
+			byte[] bytes = new byte[(int) (value >>> 1)];
+			for (int i = 0; i < bytes.length; i++)
+				bytes[i] = get(offset++);
+			return new BigInteger(bytes);
+		}
+	}
+
+	// Encode a ray into the scratch buffer. Entries that fit into 62 bits are written zig-zag encoded, shifted left
+	// by one; larger entries as their length shifted left by one and with the lowest bit set, followed by their
+	// two's-complement representation. Returns the length of the encoding.
+	private int encode(BigInteger[] ray) {
+		int length = 0;
+		for (BigInteger entry : ray) {
+			if (entry.bitLength() <= 61) {
+				long value = entry.longValue();
+				length = putVarLong(length, ((value << 1) ^ (value >> 63)) << 1);
+			} else {
+				byte[] bytes = entry.toByteArray();
+				length = putVarLong(length, ((long) bytes.length << 1) | 1);
+				reserve(length + bytes.length);
+				System.arraycopy(bytes, 0, scratch, length, bytes.length);
+				length += bytes.length;
+			}
+		}
+		return length;
+	}
+
+	private int putVarLong(int position, long value) {
+		reserve(position + 10);
+		while ((value & ~0x7fL) != 0) {
+			scratch[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		scratch[position++] = (byte) value;
+		return position;
+	}
+
+	private void reserve(int length) {
+		if (scratch.length < length)
+			scratch = Arrays.copyOf(scratch, Math.max(length, 2 * scratch.length));
+	}
+
+	static private int hash(byte[] bytes, int length) {
+		int result = 1;
+		for (int i = 0; i < length; i++)
+			result = 31 * result + bytes[i];
+		// Spread the bits, since the table uses the lowest bits of the hash
+		result ^= result >>> 16;
+		result *= 0x85ebca6b;
+		result ^= result >>> 13;
+		return result;
+	}
+
+	// The encoding of a ray is prefix-free, so a stored ray is equal to the scratch buffer if its first bytes are
+	private boolean matches(long offset, int length) {
+		if (offset + length > size)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (get(offset + i) != scratch[i])
+				return false;
+		return true;
+	}
+
+	private void growTable() {
+		long[] oldOffsets = tableOffsets;
+		int[] oldHashes = tableHashes;
+		tableOffsets = new long[2 * oldOffsets.length];
+		tableHashes = new int[2 * oldHashes.length];
+		int mask = tableOffsets.length - 1;
+		for (int i = 0; i < oldOffsets.length; i++) {
+			if (oldOffsets[i] == 0)
+				continue;
+			int slot = oldHashes[i] & mask;
+			while (tableOffsets[slot] != 0)
+				slot = (slot + 1) & mask;
+			tableOffsets[slot] = oldOffsets[i];
+			tableHashes[slot] = oldHashes[i];
+		}
+	}
+
+	// Add chunks until the given number of bytes fits
+	private void ensureCapacity(long bytes) throws IOException {
+		int chunkSize = 1 << chunkBits;
+		while (((long) chunks.size() << chunkBits) < bytes) {
+			long inMemory = (long) (chunks.size() - spilledChunks) << chunkBits;
+			if (inMemory + chunkSize <= memoryThreshold) {
+				chunks.add(ByteBuffer.allocateDirect(chunkSize));
+				continue;
+			}
+			if (spillChannel == null) {
+				Path file = directory == null ? Files.createTempFile("rays", ".bin")
+					: Files.createTempFile(directory, "rays", ".bin");
+				try {
+					spillChannel = FileChannel.open(file, StandardOpenOption.READ,
+							StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+				} catch (IOException e) {
+					Files.deleteIfExists(file);
+					throw e;
+				}
+			}
+			long position = (long) spilledChunks << chunkBits;
+			chunks.add(spillChannel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize));
+			spilledChunks++;
+		}
+	}
+
+	private byte get(long offset) {
+		return chunks.get((int) (offset >>> chunkBits)).get((int) (offset & ((1 << chunkBits) - 1)));
+	}
+
+	private void put(long offset, byte value) {
+		chunks.get((int) (offset >>> chunkBits)).put((int) (offset & ((1 << chunkBits) - 1)), value);
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,147 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Main class of the child processes of a {@link WorkerPoolEngine}. A worker reads cones from its standard input,
+ * calculates their extremal rays and writes them to its standard output. The worker exits when its standard input
+ * is closed.
+ * @author Uli Schlachter
+ */
+public class RayWorker {
+	// Tags of the messages that are exchanged between the engine and its workers
+	static final int TAG_REQUEST = 1;
+	static final int TAG_DONE = 0;
+	static final int TAG_RAY = 1;
+	static final int TAG_ERROR = 2;
+
+	// Wraps failures to write to the engine so that they can leave the ray consumer
+	static private class WriteFailedException extends RuntimeException {
+		static private final long serialVersionUID = 1L;
+
+		private WriteFailedException(IOException cause) {
+			super(cause);
+		}
+	}
+
+	private RayWorker() {
+	}
+
+	static private StreamingExtremalRayEngine createEngine(WorkerPoolEngine.Algorithm algorithm) {
+		switch (algorithm) {
+			case POLCO_EXACT:
+				return new PolcoEngine(PolcoEngine.ArithmeticMode.EXACT);
+			case POLCO_FAST:
+				return new PolcoEngine(PolcoEngine.ArithmeticMode.FAST);
+			case DOUBLE_DESCRIPTION:
+				// The pool runs one computation per worker, parallelism comes from the number of
+				// workers
+				return new DoubleDescriptionEngine(new ForkJoinPool(1));
+			case REVERSE_SEARCH:
+				return new ReverseSearchEngine(new ForkJoinPool(1));
+			default:
+				throw new AssertionError("Unknown algorithm " + algorithm);
+		}
+	}
+
+	/**
+	 * Run a worker.
+	 * @param args The name of the {@link WorkerPoolEngine.Algorithm} to use.
+	 * @throws IOException If the communication with the engine fails.
+	 */
+	static public void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: RayWorker <algorithm>");
+			System.exit(2);
+		}
+		StreamingExtremalRayEngine engine = createEngine(WorkerPoolEngine.Algorithm.valueOf(args[0]));
+
+		// Standard output belongs to the protocol, anything that libraries print goes to standard error
+		final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(FileDescriptor.out)));
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(FileDescriptor.in)));
+		System.setOut(System.err);
+
+		while (true) {
+			int tag;
+			try {
+				tag = input.readUnsignedByte();
+			} catch (EOFException e) {
+				return;
+			}
+			if (tag != TAG_REQUEST)
+				throw new IOException("Unknown request " + tag);
+			PolyhedralCone cone = BinaryFormat.readCone(input);
+			final int numVariables = cone.getNumberOfVariables();
+
+			boolean fatal = false;
+			String error = null;
+			try {
+				engine.findExtremalRays(cone, new RayConsumer() {
+					@Override
+					public void accept(List<BigInteger> ray) {
+						assert ray.size() == numVariables;
+						try {
+							output.writeByte(TAG_RAY);
+							BinaryFormat.writeVector(output, ray);
+						} catch (IOException e) {
+							throw new WriteFailedException(e);
+						}
+					}
+				});
+			} catch (WriteFailedException e) {
+				throw (IOException) e.getCause();
+			} catch (RuntimeException e) {
+				error = e.toString();
+			} catch (Error e) {
+				// The state of this JVM is unknown now, e.g. after an OutOfMemoryError
+				error = e.toString();
+				fatal = true;
+			}
+
+			if (error == null) {
+				output.writeByte(TAG_DONE);
+			} else {
+				output.writeByte(TAG_ERROR);
+				output.writeBoolean(fatal);
+				output.writeUTF(error);
+			}
+			output.flush();
+			if (fatal)
+				System.exit(1);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
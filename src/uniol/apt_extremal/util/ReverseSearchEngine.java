@@ -0,0 +1,510 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Extremal ray engine implementing a reverse search in exact arithmetic. The extremal rays of a pointed cone are the
+ * vertices of a polytope and two rays are neighbours if they span a two-dimensional face of the cone. The vertices
+ * are ordered by a linear objective for which one of them is the unique optimum. Every other vertex has a better
+ * neighbour and its best neighbour is its parent, which makes the vertices a tree. The tree is traversed from the
+ * optimum, which is found by the simplex method, by visiting the worse neighbours of each vertex whose parent is
+ * that vertex.
+ * <p>
+ * In contrast to the double description method, no intermediate rays are kept. The memory that is needed grows
+ * with the depth of the search tree and not with the number of rays, and every ray is handed out as soon as it is
+ * visited. In exchange, the neighbours of a ray are calculated once for the ray itself and once for every better
+ * neighbour, so that this engine does more work per ray. The subtrees are visited in parallel on a fork-join pool.
+ * @author Uli Schlachter
+ */
+public class ReverseSearchEngine implements StreamingExtremalRayEngine {
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create an engine that uses the JVM-wide shared fork-join pool.
+	 */
+	public ReverseSearchEngine() {
+		this(DoubleDescriptionEngine.getSharedPool());
+	}
+
+	/**
+	 * Create an engine.
+	 * @param pool The fork-join pool on which the search is done.
+	 */
+	public ReverseSearchEngine(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+		RayCollector collector = new RayCollector();
+		findExtremalRays(cone, collector);
+		return collector.getRays();
+	}
+
+	/**
+	 * Calculate the extremal rays of a cone by a reverse search. The consumer is called by the threads of the
+	 * pool, but never by two threads at the same time. Cones that are not pointed are handed to a {@link
+	 * DoubleDescriptionEngine}, since their rays are only unique up to the lineality space.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @throws BudgetExceededException If the calling thread is interrupted.
+	 */
+	@Override
+	public void findExtremalRays(PolyhedralCone cone, RayConsumer consumer) {
+		findExtremalRays(cone, new BudgetMonitor(Budget.UNLIMITED), consumer);
+	}
+
+	/**
+	 * Calculate the extremal rays of a cone by a reverse search within a budget. The budget is checked for every
+	 * visited ray and the rays that are handed out count against its ray limit. The search keeps no rays, so its
+	 * memory limit does not apply.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays or a subset of them if the budget was
+	 * exceeded and partial results are allowed.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	void findExtremalRays(PolyhedralCone cone, BudgetMonitor monitor, RayConsumer consumer) {
+		// The search works in coordinates of a basis of the space that satisfies the equations
+		List<BigInteger[]> basis = ExactLinearAlgebra.nullspace(Arrays.asList(cone.getEquationMatrix()),
+				cone.getNumberOfVariables());
+		if (basis.isEmpty())
+			return;
+		List<BigInteger[]> rows = reduceInequalities(cone, basis);
+		if (ExactLinearAlgebra.rank(rows, basis.size()) < basis.size()) {
+			new DoubleDescriptionEngine(pool).findExtremalRays(cone, monitor, consumer);
+			return;
+		}
+		try {
+			new Search(rows, basis, monitor, consumer).run();
+		} catch (BudgetExceededException e) {
+			if (!monitor.getBudget().isPartialResultAllowed())
+				throw e;
+			monitor.setPartial();
+		}
+	}
+
+	/**
+	 * Estimate the number of extremal rays of a pointed cone without enumerating them. Each probe follows a random
+	 * path from the root of the search tree to a leaf and multiplies the numbers of children on the way, which is
+	 * Knuth's unbiased estimator of the size of a tree. The work of a probe grows with the depth of the tree and
+	 * not with the number of rays, but the estimate can be far off for unbalanced trees.
+	 * @param cone The pointed cone whose extremal rays should be counted.
+	 * @param numProbes The number of random paths whose estimates are averaged.
+	 * @param random The source of the random choices.
+	 * @return The estimated number of extremal rays.
+	 * @throws IllegalArgumentException If the cone is not pointed.
+	 * @throws BudgetExceededException If the calling thread is interrupted.
+	 */
+	double estimateNumberOfRays(PolyhedralCone cone, int numProbes, Random random) {
+		assert numProbes > 0;
+		List<BigInteger[]> basis = ExactLinearAlgebra.nullspace(Arrays.asList(cone.getEquationMatrix()),
+				cone.getNumberOfVariables());
+		if (basis.isEmpty())
+			return 0;
+		List<BigInteger[]> rows = reduceInequalities(cone, basis);
+		if (ExactLinearAlgebra.rank(rows, basis.size()) < basis.size())
+			throw new IllegalArgumentException("The cone is not pointed");
+		Search search = new Search(rows, basis, null, null);
+		BigInteger[] root = search.findRoot();
+		if (root == null)
+			return 0;
+		double sum = 0;
+		for (int probe = 0; probe < numProbes; probe++)
+			sum += search.probe(root, random);
+		return sum / numProbes;
+	}
+
+	// Express the inequalities of the cone in coordinates of the given basis, dropping those that become trivial
+	static private List<BigInteger[]> reduceInequalities(PolyhedralCone cone, List<BigInteger[]> basis) {
+		List<BigInteger[]> rows = new ArrayList<>();
+		for (BigInteger[] inequality : cone.getInequalityMatrix()) {
+			BigInteger[] row = new BigInteger[basis.size()];
+			boolean zero = true;
+			for (int j = 0; j < row.length; j++) {
+				row[j] = ExactLinearAlgebra.dot(inequality, basis.get(j));
+				zero &= row[j].signum() == 0;
+			}
+			if (!zero)
+				rows.add(ExactLinearAlgebra.normalize(row));
+		}
+		return rows;
+	}
+
+	// The state of one reverse search
+	private class Search {
+		private final BigInteger[][] rows;
+		private final int dimension;
+		private final List<BigInteger[]> basis;
+		private final BudgetMonitor monitor;
+		private final RayConsumer consumer;
+		// The sum of all rows is positive on every ray, so rays are compared after scaling it to one
+		private final BigInteger[] normal;
+		private BigInteger[] objective;
+		private volatile boolean stopped = false;
+
+		private Search(List<BigInteger[]> rows, List<BigInteger[]> basis, BudgetMonitor monitor,
+				RayConsumer consumer) {
+			this.rows = rows.toArray(new BigInteger[rows.size()][]);
+			this.dimension = basis.size();
+			this.basis = basis;
+			this.monitor = monitor;
+			this.consumer = consumer;
+			this.normal = ExactLinearAlgebra.zero(dimension);
+			for (BigInteger[] row : rows)
+				for (int j = 0; j < dimension; j++)
+					normal[j] = normal[j].add(row[j]);
+		}
+
+		private void run() {
+			BigInteger[] root = findRoot();
+			if (root == null)
+				return;
+			ForkJoinTask<Void> task = pool.submit(new VisitTask(root, null));
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				stopped = true;
+				Thread.currentThread().interrupt();
+				throw new BudgetExceededException(BudgetExceededException.Reason.INTERRUPTED,
+						0, 0, 0, 0, 0);
+			} catch (ExecutionException e) {
+				stopped = true;
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new AssertionError(cause);
+			}
+		}
+
+		// Find an extremal ray with the simplex method and choose the objective so that it is the only optimum
+		private BigInteger[] findRoot() {
+			Dictionary dictionary = new Dictionary(rows, normal);
+			if (!dictionary.maximize())
+				return null;
+			objective = ExactLinearAlgebra.zero(dimension);
+			for (int row : dictionary.getTightRows())
+				for (int j = 0; j < dimension; j++)
+					objective[j] = objective[j].subtract(rows[row][j]);
+			return dictionary.getSolution();
+		}
+
+		// Compare two rays by the objective and then by their coordinates, each scaled to the normal
+		private int compare(BigInteger[] first, BigInteger[] second) {
+			BigInteger firstScale = ExactLinearAlgebra.dot(normal, first);
+			BigInteger secondScale = ExactLinearAlgebra.dot(normal, second);
+			int result = ExactLinearAlgebra.dot(objective, first).multiply(secondScale)
+				.compareTo(ExactLinearAlgebra.dot(objective, second).multiply(firstScale));
+			for (int j = 0; j < dimension && result == 0; j++)
+				result = first[j].multiply(secondScale).compareTo(second[j].multiply(firstScale));
+			return result;
+		}
+
+		// Find the rays that span a two-dimensional face together with the given ray
+		private List<BigInteger[]> findNeighbours(BigInteger[] ray) {
+			BigInteger[] values = new BigInteger[rows.length];
+			// The edges leaving the ray are the extremal rays of its tangent cone, taken modulo the ray
+			DoubleDescription tangent = new DoubleDescription(dimension, pool);
+			tangent.addEquation(ConstraintRow.of(normal));
+			for (int i = 0; i < rows.length; i++) {
+				values[i] = ExactLinearAlgebra.dot(rows[i], ray);
+				if (values[i].signum() == 0)
+					tangent.addInequality(ConstraintRow.of(rows[i]));
+			}
+
+			List<BigInteger[]> result = new ArrayList<>();
+			for (List<BigInteger> edge : tangent.getRays()) {
+				BigInteger[] direction = edge.toArray(new BigInteger[dimension]);
+				// Follow the edge until the first constraint becomes tight. Some constraint decreases
+				// along the edge, since the direction is orthogonal to the normal.
+				int limit = -1;
+				BigInteger limitValue = null;
+				for (int i = 0; i < rows.length; i++) {
+					if (values[i].signum() == 0)
+						continue;
+					BigInteger value = ExactLinearAlgebra.dot(rows[i], direction);
+					if (value.signum() >= 0)
+						continue;
+					if (limit < 0 || value.multiply(values[limit])
+							.compareTo(limitValue.multiply(values[i])) < 0) {
+						limit = i;
+						limitValue = value;
+					}
+				}
+				BigInteger[] neighbour = new BigInteger[dimension];
+				for (int j = 0; j < dimension; j++)
+					neighbour[j] = values[limit].multiply(direction[j])
+						.subtract(limitValue.multiply(ray[j]));
+				result.add(ExactLinearAlgebra.normalize(neighbour));
+			}
+			return result;
+		}
+
+		// Check if the best neighbour of a ray is the given parent
+		private boolean isChildOf(BigInteger[] parent, List<BigInteger[]> neighbours) {
+			for (BigInteger[] neighbour : neighbours)
+				if (compare(neighbour, parent) > 0)
+					return false;
+			return true;
+		}
+
+		// Follow a random path from the given ray to a leaf and estimate the size of the subtree
+		private double probe(BigInteger[] ray, Random random) {
+			double result = 1;
+			double weight = 1;
+			while (true) {
+				if (Thread.currentThread().isInterrupted())
+					throw new BudgetExceededException(BudgetExceededException.Reason.INTERRUPTED,
+							0, 0, 0, 0, 0);
+				List<BigInteger[]> children = new ArrayList<>();
+				for (BigInteger[] neighbour : findNeighbours(ray))
+					if (compare(neighbour, ray) < 0 && isChildOf(ray, findNeighbours(neighbour)))
+						children.add(neighbour);
+				if (children.isEmpty())
+					return result;
+				weight *= children.size();
+				result += weight;
+				ray = children.get(random.nextInt(children.size()));
+			}
+		}
+
+		private void emit(BigInteger[] ray) {
+			BigInteger[] vector = ExactLinearAlgebra.zero(basis.get(0).length);
+			for (int j = 0; j < dimension; j++) {
+				if (ray[j].signum() == 0)
+					continue;
+				BigInteger[] basisVector = basis.get(j);
+				for (int i = 0; i < vector.length; i++)
+					vector[i] = vector[i].add(ray[j].multiply(basisVector[i]));
+			}
+			List<BigInteger> result = Arrays.asList(ExactLinearAlgebra.normalize(vector));
+			synchronized (this) {
+				if (stopped)
+					return;
+				monitor.addRays(1);
+				consumer.accept(result);
+			}
+		}
+
+		// Visit a ray if its best neighbour is the given parent, then visit its worse neighbours
+		private class VisitTask extends RecursiveAction {
+			static private final long serialVersionUID = 1L;
+			private final BigInteger[] ray;
+			private final BigInteger[] parent;
+
+			private VisitTask(BigInteger[] ray, BigInteger[] parent) {
+				this.ray = ray;
+				this.parent = parent;
+			}
+
+			@Override
+			protected void compute() {
+				if (stopped)
+					return;
+				try {
+					visit();
+				} catch (RuntimeException | Error e) {
+					// Do not hand out further rays once the search failed
+					stopped = true;
+					throw e;
+				}
+			}
+
+			private void visit() {
+				monitor.check();
+				List<BigInteger[]> neighbours = findNeighbours(ray);
+				if (parent != null && !isChildOf(parent, neighbours))
+					return;
+				emit(ray);
+
+				List<VisitTask> children = new ArrayList<>();
+				for (BigInteger[] neighbour : neighbours)
+					if (compare(neighbour, ray) < 0)
+						children.add(new VisitTask(neighbour, ray));
+				invokeAll(children);
+			}
+		}
+	}
+
+	// Dictionary of the linear program max 1^T Ax subject to Ax >= 0 and 1^T Ax <= 1 in integer form. Row r reads
+	// denominators[r] * basic[r] = constants[r] + sum_j coefficients[r][j] * cobasic[j]; row 0 is the objective.
+	// The variables 0..n-1 are the free coordinates, n..n+m-1 the slacks of the rows and n+m the slack of the
+	// bound.
+	static private class Dictionary {
+		private final int numVariables;
+		private final int numRows;
+		private final BigInteger[] denominators;
+		private final BigInteger[] constants;
+		private final BigInteger[][] coefficients;
+		private final int[] basic;
+		private final int[] cobasic;
+
+		private Dictionary(BigInteger[][] rows, BigInteger[] normal) {
+			numVariables = normal.length;
+			numRows = rows.length;
+			denominators = new BigInteger[numRows + 2];
+			constants = new BigInteger[numRows + 2];
+			coefficients = new BigInteger[numRows + 2][];
+			basic = new int[numRows + 2];
+			cobasic = new int[numVariables];
+			for (int r = 0; r < numRows + 2; r++) {
+				denominators[r] = BigInteger.ONE;
+				constants[r] = BigInteger.ZERO;
+				basic[r] = numVariables + r - 1;
+			}
+			basic[0] = -1;
+			coefficients[0] = normal.clone();
+			for (int r = 0; r < numRows; r++)
+				coefficients[r + 1] = rows[r].clone();
+			coefficients[numRows + 1] = new BigInteger[numVariables];
+			for (int j = 0; j < numVariables; j++)
+				coefficients[numRows + 1][j] = normal[j].negate();
+			constants[numRows + 1] = BigInteger.ONE;
+			for (int j = 0; j < numVariables; j++)
+				cobasic[j] = j;
+		}
+
+		// Solve the linear program and return false if its optimum is zero, which means that the cone is {0}
+		private boolean maximize() {
+			// Make the free coordinates basic, so that they never take part in a ratio test. All slacks of
+			// the rows are zero in the starting point, so this keeps the dictionary feasible.
+			for (int e = 0; e < numVariables; e++) {
+				int leaving = -1;
+				for (int r = 1; r <= numRows && leaving < 0; r++)
+					if (basic[r] >= numVariables && coefficients[r][e].signum() != 0)
+						leaving = r;
+				if (leaving < 0)
+					throw new AssertionError("The rows do not have full rank");
+				pivot(leaving, e);
+			}
+
+			// Bland's rule: smallest improving variable enters, smallest variable with minimal ratio leaves
+			while (true) {
+				int entering = -1;
+				for (int j = 0; j < numVariables; j++)
+					if (coefficients[0][j].signum() > 0
+							&& (entering < 0 || cobasic[j] < cobasic[entering]))
+						entering = j;
+				if (entering < 0)
+					return constants[0].signum() > 0;
+
+				int leaving = -1;
+				for (int r = 1; r < numRows + 2; r++) {
+					if (basic[r] < numVariables || coefficients[r][entering].signum() >= 0)
+						continue;
+					if (leaving < 0) {
+						leaving = r;
+						continue;
+					}
+					// Compare the ratios constants[r] / -coefficients[r][entering] of both rows
+					int cmp = constants[leaving].multiply(coefficients[r][entering])
+						.compareTo(constants[r].multiply(coefficients[leaving][entering]));
+					if (cmp < 0 || (cmp == 0 && basic[r] < basic[leaving]))
+						leaving = r;
+				}
+				if (leaving < 0)
+					throw new AssertionError("The linear program is bounded");
+				pivot(leaving, entering);
+			}
+		}
+
+		// Exchange the basic variable of the given row with the cobasic variable at the given position
+		private void pivot(int leaving, int entering) {
+			BigInteger pivot = coefficients[leaving][entering];
+			BigInteger[] pivotRow = coefficients[leaving];
+			BigInteger pivotDenominator = denominators[leaving];
+			BigInteger pivotConstant = constants[leaving];
+			for (int r = 0; r < numRows + 2; r++) {
+				if (r == leaving)
+					continue;
+				BigInteger factor = coefficients[r][entering];
+				if (factor.signum() == 0)
+					continue;
+				BigInteger[] row = coefficients[r];
+				denominators[r] = denominators[r].multiply(pivot);
+				constants[r] = constants[r].multiply(pivot).subtract(factor.multiply(pivotConstant));
+				for (int j = 0; j < numVariables; j++)
+					row[j] = j == entering ? factor.multiply(pivotDenominator)
+						: row[j].multiply(pivot).subtract(factor.multiply(pivotRow[j]));
+				reduce(r, pivot.signum() < 0);
+			}
+
+			denominators[leaving] = pivot;
+			constants[leaving] = pivotConstant.negate();
+			for (int j = 0; j < numVariables; j++)
+				pivotRow[j] = j == entering ? pivotDenominator : pivotRow[j].negate();
+			reduce(leaving, pivot.signum() < 0);
+
+			int variable = basic[leaving];
+			basic[leaving] = cobasic[entering];
+			cobasic[entering] = variable;
+		}
+
+		// Divide a row by the greatest common divisor of its entries and optionally negate it
+		private void reduce(int r, boolean negate) {
+			BigInteger gcd = denominators[r].gcd(constants[r]);
+			for (BigInteger coefficient : coefficients[r])
+				gcd = gcd.gcd(coefficient);
+			if (negate)
+				gcd = gcd.negate();
+			denominators[r] = denominators[r].divide(gcd);
+			constants[r] = constants[r].divide(gcd);
+			for (int j = 0; j < numVariables; j++)
+				coefficients[r][j] = coefficients[r][j].divide(gcd);
+		}
+
+		// The rows whose slacks are cobasic; at the optimum these are independent and tight for the solution
+		private List<Integer> getTightRows() {
+			List<Integer> result = new ArrayList<>();
+			for (int variable : cobasic)
+				if (variable >= numVariables && variable < numVariables + numRows)
+					result.add(variable - numVariables);
+			return result;
+		}
+
+		// The current values of the free coordinates, scaled to an integer vector
+		private BigInteger[] getSolution() {
+			BigInteger lcm = BigInteger.ONE;
+			for (int r = 1; r <= numRows; r++)
+				if (basic[r] < numVariables)
+					lcm = lcm.divide(lcm.gcd(denominators[r])).multiply(denominators[r]);
+			BigInteger[] result = new BigInteger[numVariables];
+			for (int r = 1; r <= numRows; r++)
+				if (basic[r] < numVariables)
+					result[basic[r]] = constants[r].multiply(lcm.divide(denominators[r]));
+			return ExactLinearAlgebra.normalize(result);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
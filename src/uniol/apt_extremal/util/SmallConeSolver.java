@@ -0,0 +1,204 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Enumerate the extremal rays of tiny pointed cones without an engine. Every extremal ray of a pointed cone in d
+ * variables is tight on d-1 linearly independent inequalities, so it is proportional to the generalized cross product
+ * of these rows, whose entries are the (d-1)-minors of the rows. For few variables and inequalities, trying all
+ * subsets of d-1 inequalities is far cheaper than setting up an engine, and with small coefficients all of this fits
+ * into longs. The same enumeration is used in every dimension; in two dimensions, each subset is a single
+ * inequality.
+ * @author Uli Schlachter
+ */
+class SmallConeSolver {
+	/** The largest number of variables of a cone that is handled */
+	static final int MAX_VARIABLES = 5;
+
+	/** The largest number of subsets of inequalities that are tried */
+	static final int MAX_SUBSETS = 2000;
+
+	// With entries below 2^10 and at most four rows, minors are below 4! * 2^40 and scalar products of a row with
+	// a cross product below 5 * 2^10 * 4! * 2^40, which is far from overflowing
+	static private final int MAX_BITS = 10;
+
+	private SmallConeSolver() {
+	}
+
+	/**
+	 * Enumerate the extremal rays of a cone if it is small enough.
+	 * @param cone The normalized pointed cone without equations whose extremal rays should be enumerated.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @return false if the cone has equations, too many variables or inequalities or too large coefficients.
+	 * Nothing was passed to the consumer in this case.
+	 */
+	static boolean enumerate(PolyhedralCone cone, RayConsumer consumer) {
+		int numVariables = cone.getNumberOfVariables();
+		int numRows = cone.getInequalities().size();
+		if (numVariables == 0 || numVariables > MAX_VARIABLES || !cone.getEquations().isEmpty())
+			return false;
+		if (numRows < numVariables - 1 || binomial(numRows, numVariables - 1) > MAX_SUBSETS)
+			return false;
+
+		long[][] rows = new long[numRows][numVariables];
+		int index = 0;
+		for (ConstraintRow row : cone.getInequalities()) {
+			for (int k = 0; k < row.getNumberOfStoredEntries(); k++) {
+				BigInteger entry = row.getStoredEntry(k);
+				if (entry.bitLength() > MAX_BITS)
+					return false;
+				rows[index][row.getIndexOfStoredEntry(k)] = entry.longValue();
+			}
+			index++;
+		}
+
+		List<long[]> rays = new ArrayList<>();
+		int size = numVariables - 1;
+		int[] subset = new int[size];
+		for (int i = 0; i < size; i++)
+			subset[i] = i;
+		long[] candidate = new long[numVariables];
+		do {
+			if (crossProduct(rows, subset, candidate) && orient(rows, candidate) && normalize(candidate)
+					&& !contains(rays, candidate))
+				rays.add(candidate.clone());
+		} while (nextSubset(subset, numRows));
+
+		for (long[] ray : rays) {
+			BigInteger[] result = new BigInteger[numVariables];
+			for (int j = 0; j < numVariables; j++)
+				result[j] = BigInteger.valueOf(ray[j]);
+			consumer.accept(Arrays.asList(result));
+		}
+		return true;
+	}
+
+	// Calculate the vector whose scalar product with any x is the determinant of the given rows with x appended.
+	// Returns false if it is zero, which means that the rows are linearly dependent.
+	static private boolean crossProduct(long[][] rows, int[] subset, long[] result) {
+		boolean zero = true;
+		int allColumns = (1 << result.length) - 1;
+		for (int j = 0; j < result.length; j++) {
+			long minor = determinant(rows, subset, 0, allColumns & ~(1 << j));
+			result[j] = (result.length - 1 - j) % 2 == 0 ? minor : -minor;
+			zero &= minor == 0;
+		}
+		return !zero;
+	}
+
+	// Laplace expansion of the determinant of the rows subset[first..] restricted to the given columns
+	static private long determinant(long[][] rows, int[] subset, int first, int columns) {
+		if (first == subset.length)
+			return 1;
+		long[] row = rows[subset[first]];
+		long result = 0;
+		boolean negate = false;
+		for (int j = 0; j < row.length; j++) {
+			if ((columns & (1 << j)) == 0)
+				continue;
+			if (row[j] != 0) {
+				long term = row[j] * determinant(rows, subset, first + 1, columns & ~(1 << j));
+				result += negate ? -term : term;
+			}
+			negate = !negate;
+		}
+		return result;
+	}
+
+	// Negate the candidate if needed so that it satisfies all inequalities. Returns false if neither the candidate
+	// nor its negation does.
+	static private boolean orient(long[][] rows, long[] candidate) {
+		int sign = 0;
+		for (long[] row : rows) {
+			long value = 0;
+			for (int j = 0; j < row.length; j++)
+				value += row[j] * candidate[j];
+			int signum = Long.signum(value);
+			if (signum == 0)
+				continue;
+			if (sign == 0)
+				sign = signum;
+			else if (sign != signum)
+				return false;
+		}
+		// A vector on which every inequality is tight is a line, which a pointed cone does not contain
+		if (sign == 0)
+			return false;
+		if (sign < 0)
+			for (int j = 0; j < candidate.length; j++)
+				candidate[j] = -candidate[j];
+		return true;
+	}
+
+	// Divide the vector by the greatest common divisor of its entries
+	static private boolean normalize(long[] vector) {
+		long gcd = 0;
+		for (long entry : vector)
+			gcd = gcd(gcd, Math.abs(entry));
+		if (gcd > 1)
+			for (int j = 0; j < vector.length; j++)
+				vector[j] /= gcd;
+		return gcd != 0;
+	}
+
+	static private long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	// Degenerate rays are tight on more than d-1 inequalities and thus found several times
+	static private boolean contains(List<long[]> rays, long[] ray) {
+		for (long[] other : rays)
+			if (Arrays.equals(other, ray))
+				return true;
+		return false;
+	}
+
+	// Advance to the next subset in lexicographic order and return false after the last one
+	static private boolean nextSubset(int[] subset, int numRows) {
+		int i = subset.length - 1;
+		while (i >= 0 && subset[i] == numRows - subset.length + i)
+			i--;
+		if (i < 0)
+			return false;
+		subset[i]++;
+		for (int j = i + 1; j < subset.length; j++)
+			subset[j] = subset[j - 1] + 1;
+		return true;
+	}
+
+	static private long binomial(int n, int k) {
+		long result = 1;
+		for (int i = 1; i <= k; i++)
+			result = result * (n - k + i) / i;
+		return result;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
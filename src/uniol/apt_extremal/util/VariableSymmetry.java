@@ -0,0 +1,239 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A group of permutations of the variables of a polyhedral cone that leave the cone invariant. The variables are
+ * grouped into objects, for example all the variables that belong to one event. Objects within the same class can be
+ * interchanged arbitrarily, which permutes their variables simultaneously. Instances are created by {@link #detect}
+ * and are immutable.
+ * @author Uli Schlachter
+ */
+public class VariableSymmetry {
+	static private final Comparator<BigInteger[]> TUPLE_ORDER = new Comparator<BigInteger[]>() {
+		@Override
+		public int compare(BigInteger[] a, BigInteger[] b) {
+			for (int i = 0; i < a.length; i++) {
+				int result = a[i].compareTo(b[i]);
+				if (result != 0)
+					return result;
+			}
+			return 0;
+		}
+	};
+
+	// Each class is a list of interchangeable objects, each object lists its variables
+	private final List<int[][]> classes;
+
+	private VariableSymmetry(List<int[][]> classes) {
+		this.classes = classes;
+	}
+
+	/**
+	 * Find the classes of interchangeable objects of a cone. Two objects are interchangeable if swapping their
+	 * variables maps the constraints of the cone onto constraints that are equivalent modulo its equations. This
+	 * only finds symmetries that are generated by transpositions of objects. The cone is normalized.
+	 * @param cone The cone whose symmetries should be found.
+	 * @param objects The objects that may be interchanged. Each object lists its variables, all objects must have
+	 * the same number of variables and no variable may belong to more than one object.
+	 * @return The symmetries of the cone.
+	 */
+	static public VariableSymmetry detect(PolyhedralCone cone, int[][] objects) {
+		int numVariables = cone.getNumberOfVariables();
+		cone.normalize();
+		List<BigInteger[]> echelonForm = ExactLinearAlgebra.echelonForm(
+				Arrays.asList(cone.getEquationMatrix()), numVariables);
+		BigInteger[][] inequalities = cone.getInequalityMatrix();
+		Set<List<BigInteger>> reducedInequalities = new HashSet<>();
+		for (BigInteger[] row : inequalities)
+			reducedInequalities.add(Arrays.asList(ExactLinearAlgebra.remainder(row, echelonForm)));
+
+		// Interchangeability is an equivalence relation, so each object only has to be compared with one
+		// member of each class
+		List<List<int[]>> found = new ArrayList<>();
+		for (int[] object : objects) {
+			List<int[]> matchingClass = null;
+			for (List<int[]> candidate : found) {
+				int[] permutation = transposition(numVariables, object, candidate.get(0));
+				if (isInvariant(permutation, echelonForm, inequalities, reducedInequalities)) {
+					matchingClass = candidate;
+					break;
+				}
+			}
+			if (matchingClass == null) {
+				matchingClass = new ArrayList<>();
+				found.add(matchingClass);
+			}
+			matchingClass.add(object);
+		}
+
+		List<int[][]> classes = new ArrayList<>();
+		for (List<int[]> objectClass : found)
+			if (objectClass.size() > 1)
+				classes.add(objectClass.toArray(new int[0][]));
+		return new VariableSymmetry(classes);
+	}
+
+	static private int[] transposition(int numVariables, int[] first, int[] second) {
+		int[] permutation = new int[numVariables];
+		for (int i = 0; i < numVariables; i++)
+			permutation[i] = i;
+		for (int i = 0; i < first.length; i++) {
+			permutation[first[i]] = second[i];
+			permutation[second[i]] = first[i];
+		}
+		return permutation;
+	}
+
+	static private BigInteger[] permute(BigInteger[] vector, int[] permutation) {
+		BigInteger[] result = new BigInteger[vector.length];
+		for (int i = 0; i < vector.length; i++)
+			result[permutation[i]] = vector[i];
+		return result;
+	}
+
+	static private boolean isInvariant(int[] permutation, List<BigInteger[]> echelonForm,
+			BigInteger[][] inequalities, Set<List<BigInteger>> reducedInequalities) {
+		for (BigInteger[] row : echelonForm) {
+			BigInteger[] remainder = ExactLinearAlgebra.remainder(permute(row, permutation), echelonForm);
+			for (BigInteger entry : remainder)
+				if (entry.signum() != 0)
+					return false;
+		}
+		for (BigInteger[] row : inequalities) {
+			BigInteger[] remainder = ExactLinearAlgebra.remainder(permute(row, permutation), echelonForm);
+			if (!reducedInequalities.contains(Arrays.asList(remainder)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if this symmetry only contains the identity.
+	 * @return true if no two objects are interchangeable.
+	 */
+	public boolean isTrivial() {
+		return classes.isEmpty();
+	}
+
+	/**
+	 * Get the classes of interchangeable objects. Classes with only one object are omitted.
+	 * @return The classes, each of which lists the variables of its objects.
+	 */
+	public List<int[][]> getClasses() {
+		List<int[][]> result = new ArrayList<>();
+		for (int[][] objectClass : classes) {
+			int[][] copy = new int[objectClass.length][];
+			for (int i = 0; i < objectClass.length; i++)
+				copy[i] = objectClass[i].clone();
+			result.add(copy);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the canonical representative of the orbit of a vector. Within each class, the objects get the values of
+	 * their variables in ascending lexicographic order.
+	 * @param vector The vector.
+	 * @return The representative of its orbit.
+	 */
+	BigInteger[] canonicalize(BigInteger[] vector) {
+		BigInteger[] result = vector.clone();
+		for (int[][] objectClass : classes) {
+			BigInteger[][] tuples = getTuples(objectClass, result);
+			Arrays.sort(tuples, TUPLE_ORDER);
+			setTuples(objectClass, result, tuples);
+		}
+		return result;
+	}
+
+	/**
+	 * Pass every element of the orbit of a canonical representative to a consumer, each of them once.
+	 * @param representative A vector as returned by {@link #canonicalize}.
+	 * @param consumer The consumer that receives the elements of the orbit.
+	 */
+	void expandOrbit(BigInteger[] representative, RayConsumer consumer) {
+		expandOrbit(0, representative.clone(), consumer);
+	}
+
+	private void expandOrbit(int classIndex, BigInteger[] vector, RayConsumer consumer) {
+		if (classIndex == classes.size()) {
+			consumer.accept(Arrays.asList(vector.clone()));
+			return;
+		}
+		int[][] objectClass = classes.get(classIndex);
+		BigInteger[][] tuples = getTuples(objectClass, vector);
+		Arrays.sort(tuples, TUPLE_ORDER);
+		do {
+			setTuples(objectClass, vector, tuples);
+			expandOrbit(classIndex + 1, vector, consumer);
+		} while (nextPermutation(tuples));
+	}
+
+	static private BigInteger[][] getTuples(int[][] objectClass, BigInteger[] vector) {
+		BigInteger[][] tuples = new BigInteger[objectClass.length][];
+		for (int i = 0; i < objectClass.length; i++) {
+			tuples[i] = new BigInteger[objectClass[i].length];
+			for (int j = 0; j < objectClass[i].length; j++)
+				tuples[i][j] = vector[objectClass[i][j]];
+		}
+		return tuples;
+	}
+
+	static private void setTuples(int[][] objectClass, BigInteger[] vector, BigInteger[][] tuples) {
+		for (int i = 0; i < objectClass.length; i++)
+			for (int j = 0; j < objectClass[i].length; j++)
+				vector[objectClass[i][j]] = tuples[i][j];
+	}
+
+	// Rearrange into the next permutation in lexicographic order, skipping over equal tuples. Returns false after
+	// the last permutation.
+	static private boolean nextPermutation(BigInteger[][] tuples) {
+		int i = tuples.length - 2;
+		while (i >= 0 && TUPLE_ORDER.compare(tuples[i], tuples[i + 1]) >= 0)
+			i--;
+		if (i < 0)
+			return false;
+		int j = tuples.length - 1;
+		while (TUPLE_ORDER.compare(tuples[j], tuples[i]) <= 0)
+			j--;
+		swap(tuples, i, j);
+		for (int k = i + 1, l = tuples.length - 1; k < l; k++, l--)
+			swap(tuples, k, l);
+		return true;
+	}
+
+	static private void swap(BigInteger[][] tuples, int i, int j) {
+		BigInteger[] tmp = tuples[i];
+		tuples[i] = tuples[j];
+		tuples[j] = tmp;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,354 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extremal ray engine that sends cones to a pool of child JVMs. Each worker process runs {@link RayWorker} with its
+ * own heap limit, so that polco's static state is not shared and a cone that exhausts its heap only takes down its
+ * worker. Cones and rays are exchanged over the workers' standard input and output in the encoding of
+ * {@link BinaryFormat}.
+ * <p>
+ * Each worker handles one cone at a time. Threads that find no idle worker wait in first-come, first-served order.
+ * A worker that crashes or whose protocol state is unknown is killed and a fresh process is started for the next
+ * cone. Workers are started lazily and exit when the engine is closed or the parent JVM exits.
+ * <p>
+ * A {@link Budget} is enforced in the parent: The rays that a worker streams back are counted against the ray limit,
+ * and a watchdog kills the worker once the time limit is exceeded or the calling thread is interrupted. The worker
+ * of such a cone is restarted for the next cone. The memory of a worker is bounded by its heap limit instead of the
+ * memory limit of the budget.
+ * @author Uli Schlachter
+ */
+public class WorkerPoolEngine implements StreamingExtremalRayEngine, Closeable {
+	/**
+	 * The algorithm that the workers use.
+	 */
+	public enum Algorithm {
+		/** {@link PolcoEngine} with {@link PolcoEngine.ArithmeticMode#EXACT} */
+		POLCO_EXACT,
+		/** {@link PolcoEngine} with {@link PolcoEngine.ArithmeticMode#FAST} */
+		POLCO_FAST,
+		/** {@link DoubleDescriptionEngine} with a single thread per worker */
+		DOUBLE_DESCRIPTION,
+		/** {@link ReverseSearchEngine} with a single thread per worker */
+		REVERSE_SEARCH;
+	}
+
+	// Checks the budget of a running cone in the background, since the thread that waits for the output of the
+	// worker cannot, and kills the worker once the budget is exceeded
+	static private class Watchdog implements Runnable {
+		private final Process process;
+		private final BudgetMonitor monitor;
+		private ScheduledFuture<?> future;
+		private boolean armed = true;
+		private boolean fired = false;
+
+		private Watchdog(Process process, BudgetMonitor monitor) {
+			this.process = process;
+			this.monitor = monitor;
+		}
+
+		synchronized private void start() {
+			future = TimerHolder.TIMER.scheduleWithFixedDelay(this, WATCHDOG_PERIOD_MILLIS,
+					WATCHDOG_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		synchronized public void run() {
+			if (!armed)
+				return;
+			try {
+				monitor.check();
+			} catch (BudgetExceededException e) {
+				armed = false;
+				fired = true;
+				future.cancel(false);
+				process.destroy();
+			}
+		}
+
+		// Stop watching and return true if the worker was killed
+		synchronized private boolean disarm() {
+			if (armed) {
+				armed = false;
+				future.cancel(false);
+			}
+			return fired;
+		}
+	}
+
+	// Lazily created daemon thread that runs the watchdogs of all pools
+	static private class TimerHolder {
+		static private final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "worker pool watchdog");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	// A slot for a worker process; the process is null while the worker is not running
+	static private class Worker {
+		private Process process;
+		private DataOutputStream output;
+		private DataInputStream input;
+	}
+
+	// How often the watchdog of a running cone checks its budget
+	static private final long WATCHDOG_PERIOD_MILLIS = 20;
+
+	private final int numWorkers;
+	private final List<String> command;
+	private final BlockingQueue<Worker> idle;
+	private final AtomicInteger numStarted = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * Create a pool with one worker per available processor, each using polco in exact arithmetic.
+	 * @param maxHeapBytes The maximal heap size of each worker in bytes.
+	 */
+	public WorkerPoolEngine(long maxHeapBytes) {
+		this(Runtime.getRuntime().availableProcessors(), maxHeapBytes, Algorithm.POLCO_EXACT);
+	}
+
+	/**
+	 * Create a pool.
+	 * @param numWorkers The number of worker processes.
+	 * @param maxHeapBytes The maximal heap size of each worker in bytes.
+	 * @param algorithm The algorithm that the workers use.
+	 */
+	public WorkerPoolEngine(int numWorkers, long maxHeapBytes, Algorithm algorithm) {
+		if (numWorkers <= 0)
+			throw new IllegalArgumentException("The number of workers must be positive: " + numWorkers);
+		if (maxHeapBytes < 2 * 1024 * 1024)
+			throw new IllegalArgumentException("The heap of a worker must be at least 2 MiB: "
+					+ maxHeapBytes);
+
+		this.numWorkers = numWorkers;
+		String javaHome = System.getProperty("java.home");
+		command = new ArrayList<>(Arrays.asList(javaHome + File.separator + "bin" + File.separator + "java",
+					"-Xmx" + (maxHeapBytes / 1024) + "k",
+					"-cp", System.getProperty("java.class.path"),
+					RayWorker.class.getName(), algorithm.name()));
+
+		// A fair queue hands out idle workers to the threads in the order in which they started waiting
+		idle = new ArrayBlockingQueue<>(numWorkers, true);
+		for (int i = 0; i < numWorkers; i++)
+			idle.add(new Worker());
+	}
+
+	/**
+	 * Get the number of worker processes of this pool.
+	 * @return The number of workers.
+	 */
+	public int getNumberOfWorkers() {
+		return numWorkers;
+	}
+
+	/**
+	 * Get the number of worker processes that were started so far, including restarts after crashes.
+	 * @return The number of started workers.
+	 */
+	public int getNumberOfStartedWorkers() {
+		return numStarted.get();
+	}
+
+	@Override
+	public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+		RayCollector collector = new RayCollector();
+		findExtremalRays(cone, collector);
+		return collector.getRays();
+	}
+
+	/**
+	 * Calculate the extremal rays of a cone in a worker process and pass them to a consumer as they arrive. The
+	 * calling thread blocks until a worker is idle.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param consumer The consumer that receives the extremal rays.
+	 * @throws IllegalStateException If the engine was closed.
+	 * @throws WorkerFailedException If the worker crashed or reported an error. The consumer might already have
+	 * received some of the rays.
+	 * @throws BudgetExceededException If the calling thread is interrupted while waiting for a worker.
+	 */
+	@Override
+	public void findExtremalRays(PolyhedralCone cone, RayConsumer consumer) {
+		findExtremalRays(cone, new BudgetMonitor(Budget.UNLIMITED), consumer);
+	}
+
+	/**
+	 * Calculate the extremal rays of a cone in a worker process within a budget and pass them to a consumer as
+	 * they arrive. If the budget is exceeded, the worker is killed and the rays that arrived so far are a partial
+	 * result.
+	 * @param cone The cone whose extremal rays should be calculated.
+	 * @param monitor The monitor that checks the budget of this computation.
+	 * @param consumer The consumer that receives the extremal rays or a subset of them if the budget was
+	 * exceeded and partial results are allowed.
+	 * @throws IllegalStateException If the engine was closed.
+	 * @throws WorkerFailedException If the worker crashed or reported an error. The consumer might already have
+	 * received some of the rays.
+	 * @throws BudgetExceededException If the budget is exceeded and partial results are not allowed.
+	 */
+	void findExtremalRays(PolyhedralCone cone, BudgetMonitor monitor, RayConsumer consumer) {
+		try {
+			run(cone, monitor, consumer);
+		} catch (BudgetExceededException e) {
+			if (!monitor.getBudget().isPartialResultAllowed())
+				throw e;
+			monitor.setPartial();
+		}
+	}
+
+	private void run(PolyhedralCone cone, BudgetMonitor monitor, RayConsumer consumer) {
+		monitor.check();
+		Worker worker = acquire();
+		boolean healthy = false;
+		Watchdog watchdog = null;
+		try {
+			if (worker.process == null)
+				start(worker);
+			watchdog = new Watchdog(worker.process, monitor);
+			watchdog.start();
+
+			worker.output.writeByte(RayWorker.TAG_REQUEST);
+			BinaryFormat.writeCone(worker.output, cone);
+			worker.output.flush();
+
+			int numVariables = cone.getNumberOfVariables();
+			while (true) {
+				int tag = worker.input.readUnsignedByte();
+				switch (tag) {
+					case RayWorker.TAG_RAY:
+						BigInteger[] ray = BinaryFormat.readVector(worker.input, numVariables);
+						monitor.addRays(1);
+						consumer.accept(Arrays.asList(ray));
+						break;
+					case RayWorker.TAG_DONE:
+						healthy = true;
+						return;
+					case RayWorker.TAG_ERROR:
+						boolean fatal = worker.input.readBoolean();
+						String message = worker.input.readUTF();
+						healthy = !fatal;
+						throw new WorkerFailedException("Worker failed: " + message);
+					default:
+						throw new IOException("Unknown response " + tag);
+				}
+			}
+		} catch (IOException e) {
+			// The watchdog kills the worker when the budget is exceeded, which ends its output
+			if (watchdog != null && watchdog.disarm())
+				monitor.check();
+			throw new WorkerFailedException("Communication with worker failed", e);
+		} finally {
+			// A worker that was killed by the watchdog is restarted for the next cone
+			if (watchdog != null && watchdog.disarm())
+				healthy = false;
+			if (!healthy || closed)
+				stop(worker);
+			idle.add(worker);
+		}
+	}
+
+	/**
+	 * Stop all idle worker processes and refuse further cones. Workers that are currently busy are stopped when
+	 * they finish.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		List<Worker> workers = new ArrayList<>();
+		idle.drainTo(workers);
+		for (Worker worker : workers) {
+			stop(worker);
+			idle.add(worker);
+		}
+	}
+
+	private Worker acquire() {
+		if (closed)
+			throw new IllegalStateException("This engine was closed");
+		Worker worker;
+		try {
+			worker = idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BudgetExceededException(BudgetExceededException.Reason.INTERRUPTED, 0, 0, 0, 0, 0);
+		}
+		if (closed) {
+			idle.add(worker);
+			throw new IllegalStateException("This engine was closed");
+		}
+		return worker;
+	}
+
+	private void start(Worker worker) throws IOException {
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+		numStarted.incrementAndGet();
+		worker.process = process;
+		worker.output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+		worker.input = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+	}
+
+	static private void stop(Worker worker) {
+		if (worker.process == null)
+			return;
+		worker.process.destroy();
+		try {
+			worker.output.close();
+		} catch (IOException e) {
+			// The process is gone anyway
+		}
+		try {
+			worker.input.close();
+		} catch (IOException e) {
+			// The process is gone anyway
+		}
+		worker.process = null;
+		worker.output = null;
+		worker.input = null;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
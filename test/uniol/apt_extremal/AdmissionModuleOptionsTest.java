@@ -0,0 +1,96 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import uniol.apt.module.exception.ModuleException;
+
+import uniol.apt_extremal.util.ConeEstimate.CostClass;
+import uniol.apt_extremal.util.CostAdmissionControl;
+import uniol.apt_extremal.util.ExtremalRayEngine;
+import uniol.apt_extremal.util.PolyhedralCone;
+
+public class AdmissionModuleOptionsTest {
+	// The cone of the non-negative quadrant
+	static private PolyhedralCone createCone(ExtremalRayEngine engine) {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.setEngine(engine);
+		cone.addInequality(1, 0);
+		cone.addInequality(0, 1);
+		return cone;
+	}
+
+	@Test
+	public void testParse() throws ModuleException {
+		assertThat(AdmissionModuleOptions.isAdmissionOption("maxcost=small"), is(true));
+		assertThat(AdmissionModuleOptions.isAdmissionOption(" Downgrade "), is(true));
+		assertThat(AdmissionModuleOptions.isAdmissionOption("pure"), is(false));
+		CostAdmissionControl control = AdmissionModuleOptions.parse(null, "maxcost = small");
+		assertThat(control.getRejectAbove(), equalTo(CostClass.SMALL));
+	}
+
+	@Test(expectedExceptions = ModuleException.class, expectedExceptionsMessageRegExp = ".*Expected maxcost=class")
+	public void testMissingValue() throws ModuleException {
+		AdmissionModuleOptions.parse(null, "maxcost");
+	}
+
+	@Test(expectedExceptions = ModuleException.class,
+			expectedExceptionsMessageRegExp = ".*Expected downgrade=class")
+	public void testEmptyValue() throws ModuleException {
+		AdmissionModuleOptions.parse(null, "downgrade=");
+	}
+
+	@Test(expectedExceptions = ModuleException.class,
+			expectedExceptionsMessageRegExp = ".*Expected route=class:megabytes")
+	public void testRouteMissingClass() throws ModuleException {
+		AdmissionModuleOptions.parse(null, "route=:64");
+	}
+
+	@Test
+	public void testInvalidRouteKeepsWorker() throws ModuleException {
+		CostAdmissionControl control = AdmissionModuleOptions.parse(null, "route=medium:64");
+		try {
+			AdmissionModuleOptions.parse(control, "route=enormous:64");
+			throw new AssertionError("Invalid cost class was accepted");
+		} catch (ModuleException e) {
+			assertThat(e.getMessage(), containsString("Unknown cost class"));
+		}
+		try {
+			assertThat(createCone(control.getRouteEngine()).findExtremalRays(), hasSize(2));
+		} finally {
+			AdmissionModuleOptions.close(control);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testReplaceRoute() throws ModuleException {
+		CostAdmissionControl first = AdmissionModuleOptions.parse(null, "route=medium:64");
+		CostAdmissionControl second = AdmissionModuleOptions.parse(first, "route=large:64");
+		AdmissionModuleOptions.close(second);
+		assertThat(second.getRouteAbove(), equalTo(CostClass.LARGE));
+		assertThat(second.getRouteEngine(), not(sameInstance(first.getRouteEngine())));
+		createCone(first.getRouteEngine()).findExtremalRays();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
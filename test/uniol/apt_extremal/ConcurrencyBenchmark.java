@@ -0,0 +1,119 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uniol.apt.adt.ts.TransitionSystem;
+
+import uniol.apt_extremal.util.DoubleDescriptionEngine;
+import uniol.apt_extremal.util.ExtremalRayEngine;
+import uniol.apt_extremal.util.PolcoEngine;
+import uniol.apt_extremal.util.WorkerPoolEngine;
+
+/**
+ * Measure how the throughput of the synthesis scales with the number of threads that synthesize Petri nets at the
+ * same time in one JVM. The threads share the engine, but each of them builds its own transition systems. Polco is
+ * not reentrant, so the polco engine should stay at the throughput of a single thread, while a pool of worker
+ * processes scales up to its number of workers. Run via "ant benchmark.concurrency"; the optional argument is the
+ * maximal number of threads, which defaults to the number of available processors.
+ * @author Uli Schlachter
+ */
+public class ConcurrencyBenchmark {
+	static private final int JOBS = 48;
+
+	// A mix of inputs of different sizes
+	static private TransitionSystem getInput(int job) {
+		switch (job % 3) {
+			case 0:
+				return ConstraintOrderingBenchmark.getCycle(8);
+			case 1:
+				return ConstraintOrderingBenchmark.getInterleaving(2);
+			default:
+				return ConstraintOrderingBenchmark.getInterleaving(3);
+		}
+	}
+
+	// Returns the number of synthesized Petri nets per second
+	static private double measure(ExtremalRayEngine engine, int numThreads) throws Exception {
+		final OverapproximateLTS.Options options = new OverapproximateLTS.Options().setEngine(engine);
+		final AtomicInteger nextJob = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			long start = System.nanoTime();
+			for (int i = 0; i < numThreads; i++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						int job = nextJob.getAndIncrement();
+						while (job < JOBS) {
+							TransitionSystem ts = getInput(job);
+							OverapproximateLTS.overapproximatePN(ts, false, options);
+							job = nextJob.getAndIncrement();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures)
+				future.get();
+			return JOBS / ((System.nanoTime() - start) / 1e9);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	static public void main(String[] args) throws Exception {
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 0)
+			maxThreads = Integer.parseInt(args[0]);
+		ExtremalRayEngine dd = new DoubleDescriptionEngine();
+		ExtremalRayEngine polco = new PolcoEngine();
+		WorkerPoolEngine workers = new WorkerPoolEngine(maxThreads, 256 * 1024 * 1024,
+				WorkerPoolEngine.Algorithm.POLCO_EXACT);
+		try {
+			// Warm up the JIT and start the worker processes before measuring
+			measure(dd, maxThreads);
+			measure(polco, maxThreads);
+			measure(workers, maxThreads);
+
+			System.out.println("threads\tdouble description [nets/s]\tpolco [nets/s]\t"
+					+ "polco workers [nets/s]");
+			// Double the number of threads until the maximum is reached
+			for (int i = 1; i < 2 * maxThreads; i *= 2) {
+				int threads = Math.min(i, maxThreads);
+				System.out.format("%d\t%.1f\t%.1f\t%.1f%n", threads, measure(dd, threads),
+						measure(polco, threads), measure(workers, threads));
+			}
+		} finally {
+			workers.close();
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
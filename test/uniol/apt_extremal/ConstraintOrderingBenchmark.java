@@ -0,0 +1,157 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import uniol.apt.adt.automaton.FiniteAutomaton;
+import uniol.apt.adt.automaton.Symbol;
+import uniol.apt.adt.ts.TransitionSystem;
+
+import uniol.apt_extremal.util.ConstraintOrdering;
+import uniol.apt_extremal.util.DoubleDescriptionEngine;
+import uniol.apt_extremal.util.ExtremalRayEngine;
+import uniol.apt_extremal.util.PolcoEngine;
+
+import static uniol.apt.adt.automaton.FiniteAutomatonUtility.*;
+
+/**
+ * Compare the orderings of constraints and variables on LTS and regular expression inputs. Each input is solved with
+ * every ordering, once with the double description engine, which processes the inequalities in the chosen order, and
+ * once with polco, which only sees the chosen order of the variables. Run via "ant benchmark.ordering".
+ * @author Uli Schlachter
+ */
+public class ConstraintOrderingBenchmark {
+	static private final int ITERATIONS = 5;
+
+	static private final List<ConstraintOrdering> ORDERINGS = Arrays.asList(
+			ConstraintOrdering.MIN_INDEX,
+			new ConstraintOrdering(ConstraintOrdering.Strategy.LEXICOGRAPHIC),
+			new ConstraintOrdering(ConstraintOrdering.Strategy.MAX_CUTOFF),
+			new ConstraintOrdering(ConstraintOrdering.Strategy.RANDOM, 42),
+			new ConstraintOrdering(ConstraintOrdering.Strategy.SPARSITY_FIRST),
+			ConstraintOrdering.AUTO);
+
+	// A cycle through n states in which every arc has its own label
+	static TransitionSystem getCycle(int n) {
+		TransitionSystem ts = new TransitionSystem();
+		for (int i = 0; i < n; i++)
+			ts.createState("s" + i);
+		for (int i = 0; i < n; i++)
+			ts.createArc("s" + i, "s" + ((i + 1) % n), "t" + i);
+		ts.setInitialState("s0");
+		return ts;
+	}
+
+	// The interleaving of n independent events that each can occur at most twice
+	static TransitionSystem getInterleaving(int n) {
+		TransitionSystem ts = new TransitionSystem();
+		int numStates = (int) Math.pow(3, n);
+		for (int s = 0; s < numStates; s++)
+			ts.createState("s" + s);
+		for (int s = 0; s < numStates; s++) {
+			int factor = 1;
+			for (int e = 0; e < n; e++) {
+				if ((s / factor) % 3 < 2)
+					ts.createArc("s" + s, "s" + (s + factor), "e" + e);
+				factor *= 3;
+			}
+		}
+		ts.setInitialState("s0");
+		return ts;
+	}
+
+	static private Map<String, TransitionSystem> getLTSInputs() {
+		Map<String, TransitionSystem> result = new LinkedHashMap<>();
+		result.put("cycle(6)", getCycle(6));
+		result.put("cycle(10)", getCycle(10));
+		result.put("interleaving(3)", getInterleaving(3));
+		result.put("interleaving(4)", getInterleaving(4));
+		return result;
+	}
+
+	static private Map<String, FiniteAutomaton> getLanguageInputs() {
+		FiniteAutomaton a = getAtomicLanguage(new Symbol("a"));
+		FiniteAutomaton b = getAtomicLanguage(new Symbol("b"));
+		FiniteAutomaton c = getAtomicLanguage(new Symbol("c"));
+		FiniteAutomaton d = getAtomicLanguage(new Symbol("d"));
+
+		Map<String, FiniteAutomaton> result = new LinkedHashMap<>();
+		result.put("(ab)*", kleeneStar(concatenate(a, b)));
+		result.put("(a|b|c)*", kleeneStar(union(a, union(b, c))));
+		result.put("a*b*c*d*", concatenate(concatenate(kleeneStar(a), kleeneStar(b)),
+					concatenate(kleeneStar(c), kleeneStar(d))));
+		result.put("(abc|bcd)*", kleeneStar(union(concatenate(a, concatenate(b, c)),
+						concatenate(b, concatenate(c, d)))));
+		return result;
+	}
+
+	static private double measureLTS(TransitionSystem ts, ExtremalRayEngine engine, ConstraintOrdering ordering) {
+		OverapproximateLTS.Options options = new OverapproximateLTS.Options()
+			.setEngine(engine).setConstraintOrdering(ordering);
+		long total = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			OverapproximateLTS.overapproximatePN(ts, false, options);
+			total += System.nanoTime() - start;
+		}
+		return total / (ITERATIONS * 1e6);
+	}
+
+	static private double measureLanguage(FiniteAutomaton automaton, ExtremalRayEngine engine,
+			ConstraintOrdering ordering) {
+		OverapproximateLanguage.Options options = new OverapproximateLanguage.Options()
+			.setEngine(engine).setConstraintOrdering(ordering);
+		long total = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			OverapproximateLanguage.overapproximate(automaton, options);
+			total += System.nanoTime() - start;
+		}
+		return total / (ITERATIONS * 1e6);
+	}
+
+	static public void main(String[] args) {
+		ExtremalRayEngine dd = new DoubleDescriptionEngine();
+		ExtremalRayEngine polco = new PolcoEngine();
+
+		System.out.println("input\tordering\tdouble description [ms]\tpolco [ms]");
+		for (Map.Entry<String, TransitionSystem> entry : getLTSInputs().entrySet()) {
+			// Warm up the JIT for this input before measuring
+			measureLTS(entry.getValue(), dd, ConstraintOrdering.MIN_INDEX);
+			for (ConstraintOrdering ordering : ORDERINGS)
+				System.out.format("lts %s\t%s\t%.3f\t%.3f%n", entry.getKey(), ordering,
+						measureLTS(entry.getValue(), dd, ordering),
+						measureLTS(entry.getValue(), polco, ordering));
+		}
+		for (Map.Entry<String, FiniteAutomaton> entry : getLanguageInputs().entrySet()) {
+			measureLanguage(entry.getValue(), dd, ConstraintOrdering.MIN_INDEX);
+			for (ConstraintOrdering ordering : ORDERINGS)
+				System.out.format("regex %s\t%s\t%.3f\t%.3f%n", entry.getKey(), ordering,
+						measureLanguage(entry.getValue(), dd, ordering),
+						measureLanguage(entry.getValue(), polco, ordering));
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
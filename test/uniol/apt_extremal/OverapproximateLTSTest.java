@@ -20,9 +20,16 @@
 package uniol.apt_extremal;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.annotations.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -30,6 +37,7 @@ import static org.hamcrest.Matchers.*;
 
 import uniol.apt.TestTSCollection;
 import uniol.apt.adt.ts.TransitionSystem;
+import uniol.apt.analysis.synthesize.Region;
 import uniol.apt.analysis.synthesize.RegionUtility;
 import static uniol.apt.analysis.synthesize.matcher.Matchers.*;
 
@@ -66,12 +74,12 @@ public class OverapproximateLTSTest {
 	@Test
 	public void testSingleStateWithUnreachableTSPure() {
 		TransitionSystem ts = TestTSCollection.getSingleStateWithUnreachableTS();
+		// The weight of NotA is not constrained at all, so it is a line of the cone
 		assertThat(OverapproximateLTS.overapproximatePure(new RegionUtility(ts)),
-				contains(both(regionWithInitialMarking(1)).and(pureRegionWithWeight("NotA", 0))));
-				// No idea why polco does not produce the following (perhaps it does not handle
-				// unconstrained variables well?)
-				//both(regionWithInitialMarking(0)).and(pureRegionWithWeight("NotA", 1)),
-				//both(regionWithInitialMarking(0)).and(pureRegionWithWeight("NotA", -1))));
+				containsInAnyOrder(
+					both(regionWithInitialMarking(1)).and(pureRegionWithWeight("NotA", 0)),
+					both(regionWithInitialMarking(0)).and(pureRegionWithWeight("NotA", 1)),
+					both(regionWithInitialMarking(0)).and(pureRegionWithWeight("NotA", -1))));
 	}
 
 	@Test
@@ -83,6 +91,21 @@ public class OverapproximateLTSTest {
 					both(regionWithInitialMarking(1)).and(impureRegionWithWeight("a", 1, 1))));
 	}
 
+	@Test
+	public void testSingleStateTSWithLoopMetrics() {
+		TransitionSystem ts = TestTSCollection.getSingleStateTSWithLoop();
+		SynthesisMetrics metrics = new SynthesisMetrics();
+		OverapproximateLTS.overapproximateImpure(new RegionUtility(ts),
+				new OverapproximateLTS.Options().setListener(metrics));
+		assertThat(metrics.getSize("states"), equalTo(1L));
+		assertThat(metrics.getSize("events"), equalTo(1L));
+		assertThat(metrics.getSize("rays"), equalTo(2L));
+		assertThat(metrics.getSize("regions"), equalTo(2L));
+		assertThat(metrics.getNanos(SynthesisPhase.ENUMERATION), greaterThan(0L));
+		assertThat(metrics.toString(), containsString("phase.cone_building.nanos="));
+		assertThat(metrics.toString(), containsString("size.rays=2\n"));
+	}
+
 	@Test
 	public void testSingleStateTSWithLoopPure() {
 		TransitionSystem ts = TestTSCollection.getSingleStateTSWithLoop();
@@ -189,6 +212,47 @@ public class OverapproximateLTSTest {
 					// { init=0, 0:a:0, 0:b:0, 0:c:1 }
 					both(regionWithInitialMarking(0)).and(pureRegionWithWeights(alphabet, Arrays.asList(ZERO, ZERO, ONE)))));
 	}
+
+	@Test
+	public void testPathTSWithRayStore() {
+		RegionUtility utility = new RegionUtility(TestTSCollection.getPathTS());
+		OverapproximateLTS.Options options = new OverapproximateLTS.Options().setSpillThreshold(0);
+		assertThat(OverapproximateLTS.overapproximateImpure(utility, options),
+				equalTo(OverapproximateLTS.overapproximateImpure(utility)));
+		assertThat(OverapproximateLTS.overapproximatePure(utility, options),
+				equalTo(OverapproximateLTS.overapproximatePure(utility)));
+	}
+
+	// Region utilities cannot be shared between threads, so regions are compared via their string representation
+	static private Set<String> toStrings(Set<Region> regions) {
+		Set<String> result = new HashSet<>();
+		for (Region region : regions)
+			result.add(region.toString());
+		return result;
+	}
+
+	@Test
+	public void testConcurrentSynthesis() throws Exception {
+		Set<String> expected = toStrings(OverapproximateLTS.overapproximateImpure(
+					new RegionUtility(TestTSCollection.getPathTS())));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Set<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(new Callable<Set<String>>() {
+					@Override
+					public Set<String> call() {
+						RegionUtility utility = new RegionUtility(TestTSCollection.getPathTS());
+						return toStrings(OverapproximateLTS.overapproximateImpure(utility));
+					}
+				}));
+			}
+			for (Future<Set<String>> future : futures)
+				assertThat(future.get(), equalTo(expected));
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
 
 // vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,90 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import uniol.apt.adt.automaton.FiniteAutomaton;
+import uniol.apt.adt.automaton.Symbol;
+
+import uniol.apt_extremal.util.PolcoAdapterPool;
+import uniol.apt_extremal.util.PolcoEngine;
+
+import static uniol.apt.adt.automaton.FiniteAutomatonUtility.*;
+
+/**
+ * Measure the per-call overhead of {@link OverapproximateLanguage#overapproximate} on small inputs. Each input is
+ * solved repeatedly, once with a warm adapter pool and once with an emptied pool, so that the difference is the setup
+ * cost that pooling saves per call. The cones of these inputs are tiny, so polco is set as the engine explicitly;
+ * otherwise they would be solved without any adapter. Run via "ant benchmark".
+ * @author Uli Schlachter
+ */
+public class OverapproximateLanguageBenchmark {
+	static private final int ITERATIONS = 200;
+
+	static private Map<String, FiniteAutomaton> getInputs() {
+		FiniteAutomaton a = getAtomicLanguage(new Symbol("a"));
+		FiniteAutomaton b = getAtomicLanguage(new Symbol("b"));
+		FiniteAutomaton c = getAtomicLanguage(new Symbol("c"));
+
+		Map<String, FiniteAutomaton> result = new LinkedHashMap<>();
+		result.put("a", a);
+		result.put("a*", kleeneStar(a));
+		result.put("a+b", concatenate(concatenate(a, kleeneStar(a)), b));
+		result.put("(ab)*", kleeneStar(concatenate(a, b)));
+		result.put("(a|b|c)*", kleeneStar(union(a, union(b, c))));
+		return result;
+	}
+
+	static private double measure(FiniteAutomaton automaton, OverapproximateLanguage.Options options,
+			boolean pooled) {
+		PolcoAdapterPool pool = PolcoAdapterPool.getInstance();
+		long total = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			if (!pooled)
+				pool.clear();
+			long start = System.nanoTime();
+			OverapproximateLanguage.overapproximate(automaton, options);
+			total += System.nanoTime() - start;
+		}
+		return total / (ITERATIONS * 1e6);
+	}
+
+	static public void main(String[] args) {
+		OverapproximateLanguage.Options options = new OverapproximateLanguage.Options()
+			.setEngine(new PolcoEngine(PolcoAdapterPool.getInstance(), PolcoEngine.ArithmeticMode.EXACT));
+		PolcoAdapterPool.getInstance().warmUp(1);
+
+		System.out.println("input\tunpooled [ms]\tpooled [ms]\tsaved per call [ms]");
+		for (Map.Entry<String, FiniteAutomaton> entry : getInputs().entrySet()) {
+			// Warm up the JIT for this input before measuring
+			measure(entry.getValue(), options, true);
+
+			double unpooled = measure(entry.getValue(), options, false);
+			PolcoAdapterPool.getInstance().warmUp(1);
+			double pooled = measure(entry.getValue(), options, true);
+			System.out.format("%s\t%.3f\t%.3f\t%.3f%n", entry.getKey(), unpooled, pooled,
+					unpooled - pooled);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
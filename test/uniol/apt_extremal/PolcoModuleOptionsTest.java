@@ -0,0 +1,63 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import uniol.apt.module.exception.ModuleException;
+
+import uniol.apt_extremal.util.PolcoConfiguration;
+import uniol.apt_extremal.util.PolcoEngine;
+
+public class PolcoModuleOptionsTest {
+	static private final String EXPECTED_FORM = ".*Expected polco\\.name=value";
+
+	@Test
+	public void testParse() throws ModuleException {
+		assertThat(PolcoModuleOptions.isPolcoOption("polco.mode=fast"), is(true));
+		assertThat(PolcoModuleOptions.isPolcoOption("pure"), is(false));
+		PolcoConfiguration configuration = PolcoModuleOptions.parse(null, "polco.mode = fast");
+		assertThat(configuration.getArithmeticMode(), equalTo(PolcoEngine.ArithmeticMode.FAST));
+	}
+
+	@Test(expectedExceptions = ModuleException.class, expectedExceptionsMessageRegExp = EXPECTED_FORM)
+	public void testMissingValue() throws ModuleException {
+		PolcoModuleOptions.parse(null, "polco.mode");
+	}
+
+	@Test(expectedExceptions = ModuleException.class, expectedExceptionsMessageRegExp = EXPECTED_FORM)
+	public void testEmptyValue() throws ModuleException {
+		PolcoModuleOptions.parse(null, "polco.mode=");
+	}
+
+	@Test(expectedExceptions = ModuleException.class, expectedExceptionsMessageRegExp = EXPECTED_FORM)
+	public void testEmptyName() throws ModuleException {
+		PolcoModuleOptions.parse(null, "polco.=x");
+	}
+
+	@Test(expectedExceptions = ModuleException.class, expectedExceptionsMessageRegExp = EXPECTED_FORM)
+	public void testSpaceAfterPrefix() throws ModuleException {
+		PolcoModuleOptions.parse(null, "polco. mode=exact");
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,66 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SynthesisMetricsTest {
+	@Test
+	public void testSums() {
+		SynthesisMetrics metrics = new SynthesisMetrics();
+		metrics.phaseFinished(SynthesisPhase.PARIKH_IMAGE, 10, 100);
+		metrics.phaseFinished(SynthesisPhase.PARIKH_IMAGE, 5, 20);
+		metrics.sizeRecorded("rays", 3);
+		metrics.sizeRecorded("rays", 4);
+
+		assertThat(metrics.getNanos(SynthesisPhase.PARIKH_IMAGE), equalTo(15L));
+		assertThat(metrics.getAllocatedBytes(SynthesisPhase.PARIKH_IMAGE), equalTo(120L));
+		assertThat(metrics.getNanos(SynthesisPhase.ENUMERATION), equalTo(0L));
+		assertThat(metrics.getSize("rays"), equalTo(7L));
+		assertThat(metrics.getSize("regions"), nullValue());
+	}
+
+	@Test
+	public void testUnknownAllocations() {
+		SynthesisMetrics metrics = new SynthesisMetrics();
+		metrics.phaseFinished(SynthesisPhase.ENUMERATION, 10, 100);
+		metrics.phaseFinished(SynthesisPhase.ENUMERATION, 10, -1);
+		metrics.phaseFinished(SynthesisPhase.ENUMERATION, 10, 100);
+		assertThat(metrics.getAllocatedBytes(SynthesisPhase.ENUMERATION), equalTo(-1L));
+	}
+
+	@Test
+	public void testToString() {
+		SynthesisMetrics metrics = new SynthesisMetrics();
+		metrics.sizeRecorded("rays", 3);
+		metrics.phaseFinished(SynthesisPhase.ENUMERATION, 10, 100);
+		metrics.phaseFinished(SynthesisPhase.DFA_CONSTRUCTION, 5, 20);
+		assertThat(metrics.toString(), equalTo("phase.dfa_construction.nanos=5\n"
+					+ "phase.dfa_construction.allocatedBytes=20\n"
+					+ "phase.enumeration.nanos=10\n"
+					+ "phase.enumeration.allocatedBytes=100\n"
+					+ "size.rays=3\n"));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,148 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CheckpointStoreTest {
+	private Path directory;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("checkpoints");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		for (Path file : listFiles())
+			Files.delete(file);
+		Files.delete(directory);
+	}
+
+	private List<Path> listFiles() throws IOException {
+		List<Path> result = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream)
+				result.add(file);
+		}
+		return result;
+	}
+
+	// Intermediate rays of the double description method outnumber the eight extremal rays of this cone
+	static private PolyhedralCone createCrossCone(CheckpointStore store, boolean reversed) {
+		List<ConstraintRow> rows = new ArrayList<>(TestCones.createCrossCone(4).getInequalities());
+		if (reversed)
+			Collections.reverse(rows);
+		PolyhedralCone cone = new PolyhedralCone(5);
+		cone.setCheckpointStore(store);
+		for (ConstraintRow row : rows)
+			cone.addInequality(row);
+		return cone;
+	}
+
+	// Start an enumeration that saves a checkpoint after every constraint and stops it before it is done
+	private void interruptEnumeration(CheckpointStore store) throws IOException {
+		try {
+			createCrossCone(store, false).findExtremalRays(new Budget().setMaxRays(8));
+			throw new AssertionError("The enumeration should have been stopped");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), equalTo(BudgetExceededException.Reason.RAYS));
+		}
+		assertThat(listFiles(), hasSize(1));
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		Set<List<BigInteger>> expected = createCrossCone(null, false).findExtremalRays();
+		CheckpointStore store = new CheckpointStore(directory, 0, TimeUnit.SECONDS);
+		interruptEnumeration(store);
+		assertThat(store.getNumberOfWrittenCheckpoints(), greaterThan(0L));
+
+		// The order of the constraints does not matter
+		assertThat(createCrossCone(store, true).findExtremalRays(), equalTo(expected));
+		assertThat(store.getNumberOfResumedEnumerations(), equalTo(1L));
+		assertThat(listFiles(), empty());
+	}
+
+	@Test
+	public void testResumeInNewStore() throws IOException {
+		Set<List<BigInteger>> expected = createCrossCone(null, false).findExtremalRays();
+		interruptEnumeration(new CheckpointStore(directory, 0, TimeUnit.SECONDS));
+
+		CheckpointStore store = new CheckpointStore(directory, 1, TimeUnit.HOURS);
+		assertThat(createCrossCone(store, false).findExtremalRays(), equalTo(expected));
+		assertThat(store.getNumberOfResumedEnumerations(), equalTo(1L));
+	}
+
+	@Test
+	public void testNotAppliedToDifferentCone() throws IOException {
+		CheckpointStore store = new CheckpointStore(directory, 0, TimeUnit.SECONDS);
+		interruptEnumeration(store);
+
+		PolyhedralCone other = createCrossCone(null, false);
+		other.addInequality(0, 1, 0, 0, 0);
+		Set<List<BigInteger>> expected = other.findExtremalRays();
+		assertThat(expected, not(equalTo(createCrossCone(null, false).findExtremalRays())));
+
+		// Pretend that the other cone has the same hash
+		Files.move(listFiles().get(0), directory.resolve(other.getCanonicalHash() + ".checkpoint"));
+		other = createCrossCone(store, false);
+		other.addInequality(0, 1, 0, 0, 0);
+		assertThat(other.findExtremalRays(), equalTo(expected));
+		assertThat(store.getNumberOfResumedEnumerations(), equalTo(0L));
+	}
+
+	@Test
+	public void testCorruptCheckpointIsIgnored() throws IOException {
+		CheckpointStore store = new CheckpointStore(directory, 0, TimeUnit.SECONDS);
+		interruptEnumeration(store);
+		Files.write(listFiles().get(0), new byte[] { 1, 2, 3 });
+
+		assertThat(createCrossCone(store, false).findExtremalRays(),
+				equalTo(createCrossCone(null, false).findExtremalRays()));
+		assertThat(store.getNumberOfResumedEnumerations(), equalTo(0L));
+	}
+
+	@Test
+	public void testShortEnumerationWritesNothing() throws IOException {
+		CheckpointStore store = new CheckpointStore(directory, 1, TimeUnit.HOURS);
+		assertThat(createCrossCone(store, false).findExtremalRays(), hasSize(8));
+		assertThat(store.getNumberOfWrittenCheckpoints(), equalTo(0L));
+		assertThat(listFiles(), empty());
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,184 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Enumerate the same cones on several threads at the same time and check that every thread gets the results of a
+ * sequential computation.
+ */
+public class ConcurrencyTest {
+	static private final int NUM_THREADS = 8;
+	static private final int NUM_RANDOM_CONES = 40;
+
+	private final List<long[][]> inputs = new ArrayList<>();
+	private final List<Set<List<BigInteger>>> expected = new ArrayList<>();
+
+	@BeforeMethod
+	public void setUp() {
+		inputs.clear();
+		expected.clear();
+		Random random = new Random(42);
+		for (int i = 0; i < NUM_RANDOM_CONES; i++) {
+			// Few inequalities with small entries, so that some of the cones contain lines
+			int numVariables = 3 + random.nextInt(4);
+			long[][] rows = new long[numVariables - 1 + random.nextInt(2 * numVariables)][numVariables];
+			for (long[] row : rows)
+				for (int j = 0; j < numVariables; j++)
+					row[j] = random.nextInt(5) - 2;
+			inputs.add(rows);
+		}
+		// The cone {x | x_0 >= |x_i| for all i} over a cube, whose variables x_1, ..., x_4 are interchangeable
+		long[][] cube = new long[8][5];
+		for (int i = 0; i < 4; i++) {
+			cube[2 * i][0] = cube[2 * i + 1][0] = 1;
+			cube[2 * i][i + 1] = 1;
+			cube[2 * i + 1][i + 1] = -1;
+		}
+		inputs.add(cube);
+
+		for (long[][] rows : inputs)
+			expected.add(createCone(rows, new DoubleDescriptionEngine()).findExtremalRays());
+	}
+
+	static private PolyhedralCone createCone(long[][] rows, ExtremalRayEngine engine) {
+		PolyhedralCone cone = new PolyhedralCone(rows[0].length);
+		cone.setEngine(engine);
+		for (long[] row : rows)
+			cone.addInequality(row);
+		return cone;
+	}
+
+	// Let all threads work through all inputs, each starting at a different one, and compare their results
+	private void checkConcurrently(final ExtremalRayEngine engine, final Budget budget, final RayCache cache,
+			final boolean symmetric) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		try {
+			List<Future<List<Set<List<BigInteger>>>>> futures = new ArrayList<>();
+			for (int t = 0; t < NUM_THREADS; t++) {
+				final int offset = t * inputs.size() / NUM_THREADS;
+				futures.add(executor.submit(new Callable<List<Set<List<BigInteger>>>>() {
+					@Override
+					public List<Set<List<BigInteger>>> call() throws InterruptedException {
+						List<Set<List<BigInteger>>> result = new ArrayList<>(Collections.
+							<Set<List<BigInteger>>>nCopies(inputs.size(), null));
+						start.await();
+						for (int i = 0; i < inputs.size(); i++) {
+							int index = (offset + i) % inputs.size();
+							long[][] rows = inputs.get(index);
+							PolyhedralCone cone = createCone(rows, engine);
+							cone.setRayCache(cache);
+							if (symmetric)
+								cone.setSymmetry(VariableSymmetry.detect(cone,
+											getSingletons(rows[0].length)));
+							result.set(index, cone.findExtremalRays(budget));
+						}
+						return result;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<List<Set<List<BigInteger>>>> future : futures)
+				assertThat(future.get(), equalTo(expected));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	static private int[][] getSingletons(int numVariables) {
+		int[][] result = new int[numVariables][];
+		for (int i = 0; i < numVariables; i++)
+			result[i] = new int[] { i };
+		return result;
+	}
+
+	@Test
+	public void testDefaultEngine() throws Exception {
+		checkConcurrently(PolyhedralCone.DEFAULT_ENGINE, Budget.UNLIMITED, null, false);
+	}
+
+	@Test
+	public void testFastPolcoEngine() throws Exception {
+		checkConcurrently(new PolcoEngine(PolcoEngine.ArithmeticMode.FAST), Budget.UNLIMITED, null, false);
+	}
+
+	@Test
+	public void testDoubleDescriptionEngine() throws Exception {
+		checkConcurrently(new DoubleDescriptionEngine(), Budget.UNLIMITED, null, false);
+	}
+
+	@Test
+	public void testSymmetry() throws Exception {
+		checkConcurrently(PolyhedralCone.DEFAULT_ENGINE, Budget.UNLIMITED, null, true);
+	}
+
+	@Test
+	public void testLimitedBudget() throws Exception {
+		// A limited budget makes all threads use the double description engine that the cones share
+		Budget budget = new Budget().setTimeLimit(1, TimeUnit.HOURS);
+		checkConcurrently(PolyhedralCone.DEFAULT_ENGINE, budget, null, false);
+	}
+
+	@Test
+	public void testSharedRayCache() throws Exception {
+		Path directory = Files.createTempDirectory("raycache");
+		try {
+			RayCache cache = new RayCache(directory, Long.MAX_VALUE);
+			checkConcurrently(new DoubleDescriptionEngine(), Budget.UNLIMITED, cache, false);
+			assertThat(cache.getHits() + cache.getMisses(), equalTo((long) NUM_THREADS * inputs.size()));
+
+			// Now everything is in the cache
+			long misses = cache.getMisses();
+			checkConcurrently(new DoubleDescriptionEngine(), Budget.UNLIMITED, cache, false);
+			assertThat(cache.getMisses(), equalTo(misses));
+		} finally {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path file : stream)
+					Files.delete(file);
+			}
+			Files.delete(directory);
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,130 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import uniol.apt_extremal.util.ConeEstimate.CostClass;
+
+import static uniol.apt_extremal.util.TestCones.*;
+
+public class ConeEstimateTest {
+	@Test
+	public void testRayBoundPolygon() {
+		// A cone of dimension three is a cone over a polygon, which has as many vertices as edges
+		for (int m = 3; m < 20; m++)
+			assertThat(ConeEstimate.getRayBound(m, 3), equalTo(BigInteger.valueOf(m)));
+	}
+
+	@Test
+	public void testRayBoundThreeDimensionalPolytope() {
+		for (int m = 4; m < 20; m++)
+			assertThat(ConeEstimate.getRayBound(m, 4), equalTo(BigInteger.valueOf(2 * m - 4)));
+	}
+
+	@Test
+	public void testRayBoundCube() {
+		// The bound is attained by the duals of cyclic polytopes, not by the cube
+		assertThat(ConeEstimate.getRayBound(8, 5), equalTo(BigInteger.valueOf(20)));
+		assertThat(ConeEstimate.getRayBound(14, 8), equalTo(BigInteger.valueOf(240)));
+	}
+
+	@Test
+	public void testRayBoundTrivial() {
+		assertThat(ConeEstimate.getRayBound(5, 0), equalTo(BigInteger.ZERO));
+		assertThat(ConeEstimate.getRayBound(0, 3), equalTo(BigInteger.ZERO));
+		assertThat(ConeEstimate.getRayBound(1, 1), equalTo(BigInteger.ONE));
+		assertThat(ConeEstimate.getRayBound(1, 4), equalTo(BigInteger.ONE));
+	}
+
+	@Test
+	public void testEstimateSizes() {
+		PolyhedralCone cone = new PolyhedralCone(4);
+		cone.addInequality(1, 0, 0, 0);
+		cone.addInequality(2, 0, 0, 0);
+		cone.addInequality(0, 1, 0, 0);
+		cone.addEquation(1, 1, -1, 0);
+		ConeEstimate estimate = cone.estimate();
+		assertThat(estimate.getNumberOfVariables(), equalTo(4));
+		assertThat(estimate.getNumberOfEquations(), equalTo(1));
+		assertThat(estimate.getNumberOfInequalities(), equalTo(2));
+		assertThat(estimate.getDimension(), equalTo(2));
+		// x[3] is not constrained at all
+		assertThat(estimate.getLinealityDimension(), equalTo(1));
+		assertThat(estimate.getNumberOfBlocks(), equalTo(1));
+		assertThat(estimate.getRayBound(), equalTo(BigInteger.valueOf(2)));
+		assertThat(estimate.getExpectedRays(), is(Double.NaN));
+		assertThat(estimate.getCostClass(), equalTo(CostClass.TRIVIAL));
+		assertThat(cone.findExtremalRays(), hasSize(2));
+	}
+
+	@Test
+	public void testEstimateBlocks() {
+		PolyhedralCone cone = new PolyhedralCone(5);
+		cone.addInequality(1, 0, 0, 0, 0);
+		cone.addInequality(0, 1, 0, 0, 0);
+		cone.addInequality(0, 0, 1, 1, 0);
+		cone.addInequality(0, 0, 1, -1, 0);
+		cone.addInequality(0, 0, 0, 0, 1);
+		ConeEstimate estimate = cone.estimate();
+		assertThat(estimate.getNumberOfBlocks(), equalTo(4));
+		assertThat(estimate.getDimension(), equalTo(5));
+		assertThat(estimate.getRayBound(), equalTo(BigInteger.valueOf(5)));
+		assertThat(cone.findExtremalRays(), hasSize(5));
+	}
+
+	@Test
+	public void testEstimateWithoutProbes() {
+		ConeEstimate estimate = createCubeCone(7).estimate(0);
+		assertThat(estimate.getDimension(), equalTo(8));
+		assertThat(estimate.getRayBound(), equalTo(BigInteger.valueOf(240)));
+		assertThat(estimate.getExpectedRays(), is(Double.NaN));
+		assertThat(estimate.getCostClass(), equalTo(CostClass.SMALL));
+	}
+
+	@Test
+	public void testEstimateWithProbes() {
+		ConeEstimate estimate = createCubeCone(7).estimate();
+		assertThat(estimate.getRayBound(), equalTo(BigInteger.valueOf(240)));
+		assertThat(estimate.getExpectedRays(), allOf(greaterThan(32.0), lessThan(512.0)));
+		assertThat(estimate.toString(), containsString("expected"));
+	}
+
+	@Test
+	public void testEstimateIsReproducible() {
+		assertThat(createCubeCone(7).estimate().getExpectedRays(),
+				equalTo(createCubeCone(7).estimate().getExpectedRays()));
+	}
+
+	@Test
+	public void testCostClass() {
+		assertThat(CostClass.of(0), equalTo(CostClass.TRIVIAL));
+		assertThat(CostClass.of(100), equalTo(CostClass.TRIVIAL));
+		assertThat(CostClass.of(101), equalTo(CostClass.SMALL));
+		assertThat(CostClass.of(5e7), equalTo(CostClass.LARGE));
+		assertThat(CostClass.of(1e30), equalTo(CostClass.HUGE));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,127 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ConstraintOrderingTest {
+	static private final ConstraintRow DENSE = ConstraintRow.of(1, -1, 2);
+	static private final ConstraintRow SPARSE = ConstraintRow.of(0, 0, 1);
+	static private final ConstraintRow MIDDLE = ConstraintRow.of(0, 1, 1);
+
+	static private PolyhedralCone createCone() {
+		PolyhedralCone cone = new PolyhedralCone(4);
+		cone.addInequality(1, 0, 0, 0);
+		cone.addInequality(0, 1, 0, 0);
+		cone.addInequality(0, 0, 1, 0);
+		cone.addInequality(0, 0, 0, 1);
+		cone.addInequality(1, 1, -1, 0);
+		cone.addInequality(0, 2, 1, -1);
+		cone.addInequality(3, -1, 0, -1);
+		return cone;
+	}
+
+	@Test
+	public void testMinIndex() {
+		assertThat(ConstraintOrdering.MIN_INDEX.orderRows(Arrays.asList(DENSE, SPARSE, MIDDLE)),
+				contains(DENSE, SPARSE, MIDDLE));
+		assertThat(ConstraintOrdering.MIN_INDEX.orderColumns(createCone()), equalTo(new int[] { 0, 1, 2, 3 }));
+	}
+
+	@Test
+	public void testLexicographic() {
+		ConstraintOrdering ordering = new ConstraintOrdering(ConstraintOrdering.Strategy.LEXICOGRAPHIC);
+		assertThat(ordering.orderRows(Arrays.asList(DENSE, SPARSE, MIDDLE)), contains(SPARSE, MIDDLE, DENSE));
+	}
+
+	@Test
+	public void testLexicographicAfterPermutation() {
+		final List<ConstraintRow> seen = new ArrayList<>();
+		PolyhedralCone cone = createCone();
+		cone.setConstraintOrdering(new ConstraintOrdering(ConstraintOrdering.Strategy.LEXICOGRAPHIC));
+		cone.setEngine(new ExtremalRayEngine() {
+			@Override
+			public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+				seen.addAll(cone.getInequalities());
+				return new DoubleDescriptionEngine().findExtremalRays(cone);
+			}
+		});
+		assertThat(cone.findExtremalRays(), equalTo(createCone().findExtremalRays()));
+		List<ConstraintRow> sorted = new ArrayList<>(seen);
+		Collections.sort(sorted);
+		assertThat(seen, hasSize(7));
+		assertThat(seen, equalTo(sorted));
+	}
+
+	@Test
+	public void testSparsityFirst() {
+		ConstraintOrdering ordering = new ConstraintOrdering(ConstraintOrdering.Strategy.SPARSITY_FIRST);
+		assertThat(ordering.orderRows(Arrays.asList(DENSE, MIDDLE, SPARSE)), contains(SPARSE, MIDDLE, DENSE));
+		// x[1] has four non-zero entries, the others three
+		assertThat(ordering.orderColumns(createCone()), equalTo(new int[] { 0, 2, 3, 1 }));
+	}
+
+	@Test
+	public void testRandomIsReproducible() {
+		ConstraintOrdering ordering = new ConstraintOrdering(ConstraintOrdering.Strategy.RANDOM, 42);
+		List<ConstraintRow> rows = Arrays.asList(DENSE, SPARSE, MIDDLE);
+		assertThat(ordering.orderRows(rows), equalTo(ordering.orderRows(rows)));
+		assertThat(ordering.orderRows(rows), containsInAnyOrder(DENSE, SPARSE, MIDDLE));
+		assertThat(ordering.toString(), equalTo("RANDOM(42)"));
+	}
+
+	@Test
+	public void testAuto() {
+		// Seven inequalities in four variables with 13 of 28 entries non-zero
+		assertThat(ConstraintOrdering.AUTO.resolve(createCone()).getStrategy(),
+				equalTo(ConstraintOrdering.Strategy.MAX_CUTOFF));
+
+		PolyhedralCone sparse = new PolyhedralCone(4);
+		sparse.addInequality(1, 0, 0, 0);
+		sparse.addInequality(0, 1, 0, 0);
+		assertThat(ConstraintOrdering.AUTO.resolve(sparse).getStrategy(),
+				equalTo(ConstraintOrdering.Strategy.SPARSITY_FIRST));
+	}
+
+	@Test
+	public void testSameRaysWithAllStrategies() {
+		Set<List<BigInteger>> expected = createCone().findExtremalRays();
+		for (ConstraintOrdering.Strategy strategy : ConstraintOrdering.Strategy.values()) {
+			for (ExtremalRayEngine engine : Arrays.asList(new DoubleDescriptionEngine(),
+						new PolcoEngine())) {
+				PolyhedralCone cone = createCone();
+				cone.setEngine(engine);
+				cone.setConstraintOrdering(new ConstraintOrdering(strategy, 1));
+				assertThat(strategy.toString(), cone.findExtremalRays(), equalTo(expected));
+			}
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,106 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ConstraintRowTest {
+	static private final BigInteger HUGE = BigInteger.ONE.shiftLeft(100);
+
+	@Test
+	public void testSameRowFromDifferentInputs() {
+		ConstraintRow row = ConstraintRow.of(0, 3, 0, 0, -1);
+		ConstraintRow other = ConstraintRow.of(BigInteger.ZERO, BigInteger.valueOf(3), BigInteger.ZERO,
+				BigInteger.ZERO, BigInteger.ONE.negate());
+		assertThat(row, equalTo(other));
+		assertThat(row.getFingerprint(), equalTo(other.getFingerprint()));
+		assertThat(row.hashCode(), equalTo(other.hashCode()));
+		assertThat(ConstraintRow.of(0L, 3L, 0L, 0L, -1L), equalTo(row));
+	}
+
+	@Test
+	public void testDifferentRows() {
+		assertThat(ConstraintRow.of(1, 0), not(equalTo(ConstraintRow.of(0, 1))));
+		assertThat(ConstraintRow.of(1, 0), not(equalTo(ConstraintRow.of(1, 0, 0))));
+		assertThat(ConstraintRow.of(1, 0).getFingerprint(),
+				not(equalTo(ConstraintRow.of(0, 1).getFingerprint())));
+	}
+
+	@Test
+	public void testSparseEntries() {
+		ConstraintRow row = ConstraintRow.of(0, 0, 0, 7, 0, 0, 0, 0);
+		assertThat(row.size(), equalTo(8));
+		assertThat(row.get(3), equalTo(BigInteger.valueOf(7)));
+		assertThat(row.get(4), equalTo(BigInteger.ZERO));
+		assertThat(row.signum(3), equalTo(1));
+		assertThat(row.signum(0), equalTo(0));
+		assertThat(row.asList(), contains(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO,
+					BigInteger.valueOf(7), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO,
+					BigInteger.ZERO));
+		assertThat(row.isZero(), is(false));
+		assertThat(ConstraintRow.of(0, 0, 0).isZero(), is(true));
+	}
+
+	@Test
+	public void testLargeEntries() {
+		ConstraintRow row = ConstraintRow.of(HUGE, BigInteger.ZERO, BigInteger.ONE);
+		assertThat(row.get(0), equalTo(HUGE));
+		assertThat(row.negate().get(0), equalTo(HUGE.negate()));
+		assertThat(row.negate().negate(), equalTo(row));
+		assertThat(ConstraintRow.of(HUGE, BigInteger.ZERO, HUGE).normalize(),
+				equalTo(ConstraintRow.of(1, 0, 1)));
+	}
+
+	@Test
+	public void testLongMinValue() {
+		ConstraintRow row = ConstraintRow.of(Long.MIN_VALUE, 0);
+		assertThat(row.negate().get(0), equalTo(BigInteger.valueOf(Long.MIN_VALUE).negate()));
+		assertThat(row.normalize(), equalTo(ConstraintRow.of(-1, 0)));
+	}
+
+	@Test
+	public void testNormalize() {
+		assertThat(ConstraintRow.of(4, 0, -6).normalize(), equalTo(ConstraintRow.of(2, 0, -3)));
+		ConstraintRow row = ConstraintRow.of(2, 3);
+		assertThat(row.normalize(), sameInstance(row));
+	}
+
+	@Test
+	public void testDot() {
+		BigInteger[] vector = { BigInteger.valueOf(2), HUGE, BigInteger.valueOf(5) };
+		assertThat(ConstraintRow.of(1, 0, -1).dot(vector), equalTo(BigInteger.valueOf(-3)));
+		assertThat(ConstraintRow.of(3, -1, 2).dot(vector), equalTo(BigInteger.valueOf(16).subtract(HUGE)));
+	}
+
+	@Test
+	public void testOrder() {
+		ConstraintRow[] rows = { ConstraintRow.of(1, 0), ConstraintRow.of(0, 1), ConstraintRow.of(0, -1) };
+		Arrays.sort(rows);
+		assertThat(Arrays.asList(rows), contains(ConstraintRow.of(0, -1), ConstraintRow.of(0, 1),
+					ConstraintRow.of(1, 0)));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
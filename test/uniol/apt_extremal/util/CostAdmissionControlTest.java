@@ -0,0 +1,151 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import uniol.apt_extremal.util.ConeEstimate.CostClass;
+
+public class CostAdmissionControlTest {
+	static private final long HEAP = 64 * 1024 * 1024;
+
+	static private PolyhedralCone createCubeCone(int n, AdmissionControl control) {
+		PolyhedralCone cone = TestCones.createCubeCone(n);
+		cone.setAdmissionControl(control);
+		return cone;
+	}
+
+	@Test
+	public void testAccept() {
+		AdmissionControl control = new CostAdmissionControl();
+		assertThat(createCubeCone(7, control).findExtremalRays(), hasSize(128));
+	}
+
+	@Test
+	public void testCheapConeIsNotRejected() {
+		AdmissionControl control = new CostAdmissionControl().setRejectAbove(CostClass.TRIVIAL);
+		assertThat(createCubeCone(4, control).findExtremalRays(), hasSize(16));
+	}
+
+	@Test
+	public void testReject() {
+		AdmissionControl control = new CostAdmissionControl().setNumberOfProbes(0)
+			.setRejectAbove(CostClass.TRIVIAL);
+		PolyhedralCone cone = createCubeCone(7, control);
+		try {
+			cone.findExtremalRays();
+			throw new AssertionError("Enumeration was not rejected");
+		} catch (AdmissionRejectedException e) {
+			assertThat(e.getEstimate().getRayBound(), equalTo(BigInteger.valueOf(240)));
+			assertThat(e.getEstimate().getCostClass(), equalTo(CostClass.SMALL));
+		}
+	}
+
+	@Test(expectedExceptions = AdmissionRejectedException.class)
+	public void testRejectStreaming() {
+		AdmissionControl control = new CostAdmissionControl().setNumberOfProbes(0)
+			.setRejectAbove(CostClass.TRIVIAL);
+		createCubeCone(7, control).findExtremalRays(new RayCollector());
+	}
+
+	@Test
+	public void testDowngrade() {
+		Budget budget = new Budget().setMaxRays(10).setPartialResultAllowed(true);
+		AdmissionControl control = new CostAdmissionControl().setNumberOfProbes(0)
+			.setDowngradeAbove(CostClass.TRIVIAL, budget);
+		PolyhedralCone cone = createCubeCone(7, control);
+		Set<List<BigInteger>> rays = cone.findExtremalRays();
+		assertThat(cone.isResultPartial(), is(true));
+		assertThat(rays.size(), lessThan(128));
+	}
+
+	@Test
+	public void testRoute() {
+		try (WorkerPoolEngine engine = new WorkerPoolEngine(1, HEAP,
+					WorkerPoolEngine.Algorithm.DOUBLE_DESCRIPTION)) {
+			AdmissionControl control = new CostAdmissionControl().setNumberOfProbes(0)
+				.setRouteAbove(CostClass.TRIVIAL, engine);
+			PolyhedralCone cone = createCubeCone(7, control);
+			assertThat(cone.findExtremalRays(), hasSize(128));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(1));
+			// The routed engine was only used for this enumeration
+			assertThat(cone.getEngine(), sameInstance(PolyhedralCone.DEFAULT_ENGINE));
+
+			PolyhedralCone cheap = createCubeCone(4, control);
+			assertThat(cheap.findExtremalRays(), hasSize(16));
+			assertThat(cheap.getEngine(), sameInstance(PolyhedralCone.DEFAULT_ENGINE));
+		}
+	}
+
+	@Test
+	public void testDowngradedEnumerationIsRouted() {
+		try (WorkerPoolEngine engine = new WorkerPoolEngine(1, HEAP,
+					WorkerPoolEngine.Algorithm.DOUBLE_DESCRIPTION)) {
+			Budget budget = new Budget().setMaxRays(10).setPartialResultAllowed(true);
+			AdmissionControl control = new CostAdmissionControl().setNumberOfProbes(0)
+				.setDowngradeAbove(CostClass.TRIVIAL, budget).setRouteAbove(CostClass.TRIVIAL, engine);
+			PolyhedralCone cone = createCubeCone(7, control);
+			Set<List<BigInteger>> rays = cone.findExtremalRays();
+			assertThat(cone.isResultPartial(), is(true));
+			assertThat(rays, hasSize(10));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(1));
+		}
+	}
+
+	@Test
+	public void testRejectWins() {
+		Budget budget = new Budget().setMaxRays(10).setPartialResultAllowed(true);
+		CostAdmissionControl control = new CostAdmissionControl().setDowngradeAbove(CostClass.TRIVIAL, budget)
+			.setRejectAbove(CostClass.TRIVIAL);
+		ConeEstimate estimate = new ConeEstimate(5, 0, 10, 5, 0, 1, BigInteger.valueOf(1000), Double.NaN);
+		assertThat(control.admit(estimate).isRejected(), is(true));
+		assertThat(control.setRejectAbove(CostClass.SMALL).admit(estimate).getBudget(), sameInstance(budget));
+	}
+
+	@Test
+	public void testIncrementalUpdateIsNotEstimated() {
+		final int[] calls = new int[1];
+		AdmissionControl control = new AdmissionControl() {
+			@Override
+			public int getNumberOfProbes() {
+				return 0;
+			}
+
+			@Override
+			public Decision admit(ConeEstimate estimate) {
+				calls[0]++;
+				return Decision.ACCEPT;
+			}
+		};
+		PolyhedralCone cone = createCubeCone(3, control);
+		assertThat(cone.findExtremalRays(), hasSize(8));
+		cone.addInequality(1, 0, 0, -1);
+		cone.findExtremalRays();
+		assertThat(calls[0], equalTo(1));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,125 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings("unchecked")
+public class DoubleDescriptionEngineTest {
+	private final static BigInteger ZERO = BigInteger.ZERO;
+	private final static BigInteger ONE = BigInteger.ONE;
+
+	static private PolyhedralCone createCone(int numVariables) {
+		PolyhedralCone cone = new PolyhedralCone(numVariables);
+		cone.setEngine(new DoubleDescriptionEngine());
+		return cone;
+	}
+
+	@Test
+	public void testPositiveOrthant() {
+		PolyhedralCone cone = createCone(2);
+		cone.addInequality(1, 0);
+		cone.addInequality(0, 1);
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO),
+					Arrays.asList(ZERO, ONE)));
+	}
+
+	@Test
+	public void testWithEquation() {
+		PolyhedralCone cone = createCone(3);
+		cone.addEquation(0, 2, -2);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(0, 0, 1);
+		cone.addInequality(1, 0, -1);
+		cone.addInequality(1, 1, -2);
+
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO, ZERO),
+					Arrays.asList(ONE, ONE, ONE)));
+	}
+
+	@Test
+	public void testHalfSpace() {
+		// The line along x[1] is not reported; the ray is orthogonal to it
+		PolyhedralCone cone = createCone(2);
+		cone.addInequality(1, 1);
+		assertThat(cone.findExtremalRays(), contains(Arrays.asList(ONE, ONE)));
+	}
+
+	@Test
+	public void testPointedCone() {
+		PolyhedralCone cone = createCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(2, 3, 1);
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ZERO, ZERO, ONE),
+					Arrays.asList(ZERO, ONE, BigInteger.valueOf(-3)),
+					Arrays.asList(ONE, ZERO, BigInteger.valueOf(-2))));
+	}
+
+	@Test
+	public void testEmptyCone() {
+		PolyhedralCone cone = createCone(2);
+		cone.addInequality(1, 0);
+		cone.addInequality(-1, 1);
+		cone.addInequality(0, -1);
+		assertThat(cone.findExtremalRays(), empty());
+	}
+
+	@Test
+	public void testSameAsPolco() {
+		Random random = new Random(42);
+		ExtremalRayEngine engine = new DoubleDescriptionEngine(new ForkJoinPool(2));
+		for (int iteration = 0; iteration < 20; iteration++) {
+			int numVariables = 3 + random.nextInt(4);
+			PolyhedralCone cone = new PolyhedralCone(numVariables);
+			int[] row = new int[numVariables];
+			for (int i = 0; i < numVariables; i++) {
+				Arrays.fill(row, 0);
+				row[i] = 1;
+				cone.addInequality(row);
+			}
+			for (int i = 0; i < 2 * numVariables; i++) {
+				for (int j = 0; j < numVariables; j++)
+					row[j] = random.nextInt(7) - 3;
+				cone.addInequality(row);
+			}
+			for (int j = 0; j < numVariables; j++)
+				row[j] = random.nextInt(3) - 1;
+			cone.addEquation(row);
+			cone.normalize();
+
+			assertThat(cone.toString(), engine.findExtremalRays(cone),
+					equalTo(new PolcoEngine().findExtremalRays(cone)));
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
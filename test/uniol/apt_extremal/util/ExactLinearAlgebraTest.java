@@ -0,0 +1,82 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ExactLinearAlgebraTest {
+	static private BigInteger[] vector(int... entries) {
+		BigInteger[] result = new BigInteger[entries.length];
+		for (int i = 0; i < entries.length; i++)
+			result[i] = BigInteger.valueOf(entries[i]);
+		return result;
+	}
+
+	static private List<List<BigInteger>> asLists(List<BigInteger[]> vectors) {
+		List<List<BigInteger>> result = new ArrayList<>();
+		for (BigInteger[] vector : vectors)
+			result.add(Arrays.asList(vector));
+		return result;
+	}
+
+	@Test
+	public void testNormalize() {
+		assertThat(ExactLinearAlgebra.normalize(vector(4, -6, 0)), equalTo(vector(2, -3, 0)));
+		assertThat(ExactLinearAlgebra.normalize(vector(0, 0)), equalTo(vector(0, 0)));
+	}
+
+	@Test
+	public void testRank() {
+		List<BigInteger[]> rows = Arrays.asList(vector(1, 2, 3), vector(2, 4, 6), vector(0, 1, 1));
+		assertThat(ExactLinearAlgebra.rank(rows, 3), equalTo(2));
+	}
+
+	@Test
+	public void testNullspace() {
+		List<BigInteger[]> rows = Arrays.asList(vector(2, 4, 6), vector(0, 3, 3));
+		assertThat(asLists(ExactLinearAlgebra.nullspace(rows, 3)), contains(Arrays.asList(vector(-1, -1, 1))));
+	}
+
+	@Test
+	public void testNullspaceOfEmptyMatrix() {
+		List<BigInteger[]> rows = new ArrayList<>();
+		assertThat(asLists(ExactLinearAlgebra.nullspace(rows, 2)), contains(
+					Arrays.asList(vector(1, 0)), Arrays.asList(vector(0, 1))));
+	}
+
+	@Test
+	public void testRemainder() {
+		List<BigInteger[]> echelonForm = ExactLinearAlgebra.echelonForm(
+				Collections.singletonList(vector(2, 2, 0)), 3);
+		assertThat(ExactLinearAlgebra.remainder(vector(2, 0, 4), echelonForm), equalTo(vector(0, -1, 2)));
+		assertThat(ExactLinearAlgebra.remainder(vector(2, 1, 2), echelonForm), equalTo(vector(0, -1, 2)));
+		assertThat(ExactLinearAlgebra.remainder(vector(3, 3, 0), echelonForm), equalTo(vector(0, 0, 0)));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,88 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import static uniol.apt_extremal.util.TestCones.*;
+
+public class PartitionedEngineTest {
+	static private final long HEAP = 64 * 1024 * 1024;
+
+	@Test
+	public void testCrossCone() {
+		for (int splits = 0; splits <= 3; splits++) {
+			PartitionedEngine engine = new PartitionedEngine(new DoubleDescriptionEngine(), splits, 2);
+			Set<List<BigInteger>> rays = createCrossCone(4, engine).findExtremalRays();
+			assertThat(rays, hasSize(8));
+			assertThat(rays, equalTo(createCrossCone(4, new DoubleDescriptionEngine()).findExtremalRays()));
+		}
+	}
+
+	@Test
+	public void testEachRayOnce() {
+		final List<List<BigInteger>> rays = new ArrayList<>();
+		new PartitionedEngine(new DoubleDescriptionEngine(), 3, 4).findExtremalRays(
+				createCrossCone(4, new DoubleDescriptionEngine()), new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				rays.add(ray);
+			}
+		});
+		assertThat(rays, hasSize(8));
+	}
+
+	@Test
+	public void testCubeCone() {
+		PartitionedEngine engine = new PartitionedEngine(new DoubleDescriptionEngine(), 2, 4);
+		Set<List<BigInteger>> rays = createCubeCone(4, engine).findExtremalRays();
+		assertThat(rays, hasSize(16));
+		assertThat(rays, equalTo(createCubeCone(4, new DoubleDescriptionEngine()).findExtremalRays()));
+	}
+
+	@Test
+	public void testConeWithLine() {
+		// x_1 is not constrained at all, so this cone is left to the other engine as a whole
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, 0);
+		assertThat(new PartitionedEngine(new DoubleDescriptionEngine(), 2, 2).findExtremalRays(cone),
+				equalTo(new DoubleDescriptionEngine().findExtremalRays(cone)));
+	}
+
+	@Test
+	public void testWorkerProcesses() {
+		try (WorkerPoolEngine pool = new WorkerPoolEngine(2, HEAP, WorkerPoolEngine.Algorithm.POLCO_EXACT)) {
+			Set<List<BigInteger>> rays = createCrossCone(4, new PartitionedEngine(pool, 2))
+				.findExtremalRays();
+			assertThat(rays, equalTo(createCrossCone(4, new DoubleDescriptionEngine()).findExtremalRays()));
+			assertThat(pool.getNumberOfStartedWorkers(), equalTo(2));
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
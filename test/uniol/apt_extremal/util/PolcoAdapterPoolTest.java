@@ -0,0 +1,72 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import ch.javasoft.polco.adapter.PolcoAdapter;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class PolcoAdapterPoolTest {
+	@Test
+	public void testReuse() {
+		PolcoAdapterPool pool = new PolcoAdapterPool(1);
+		PolcoAdapter adapter = pool.borrow();
+		pool.release(adapter);
+		assertThat(pool.borrow(), sameInstance(adapter));
+		assertThat(pool.getNumberOfCreatedAdapters(), equalTo(1));
+	}
+
+	@Test
+	public void testMaxIdle() {
+		PolcoAdapterPool pool = new PolcoAdapterPool(1);
+		PolcoAdapter adapter1 = pool.borrow();
+		PolcoAdapter adapter2 = pool.borrow();
+		assertThat(adapter1, not(sameInstance(adapter2)));
+		pool.release(adapter1);
+		pool.release(adapter2);
+		assertThat(pool.getNumberOfIdleAdapters(), equalTo(1));
+		assertThat(pool.getNumberOfCreatedAdapters(), equalTo(2));
+	}
+
+	@Test
+	public void testWarmUpAndClear() {
+		PolcoAdapterPool pool = new PolcoAdapterPool(3);
+		pool.warmUp(2);
+		assertThat(pool.getNumberOfIdleAdapters(), equalTo(2));
+		pool.clear();
+		assertThat(pool.getNumberOfIdleAdapters(), equalTo(0));
+	}
+
+	@Test
+	public void testConeUsesPool() {
+		PolcoAdapterPool pool = new PolcoAdapterPool(1);
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.setEngine(new PolcoEngine(pool, PolcoEngine.ArithmeticMode.EXACT));
+		cone.addInequality(1, 0);
+		cone.addInequality(0, 1);
+		assertThat(cone.findExtremalRays(), hasSize(2));
+		assertThat(cone.findExtremalRays(), hasSize(2));
+		assertThat(pool.getNumberOfCreatedAdapters(), equalTo(1));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
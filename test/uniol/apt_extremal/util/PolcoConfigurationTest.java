@@ -0,0 +1,115 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+
+import ch.javasoft.metabolic.efm.config.Arithmetic;
+import ch.javasoft.polco.adapter.Options;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import static uniol.apt_extremal.util.TestCones.*;
+
+public class PolcoConfigurationTest {
+	@Test
+	public void testSetOption() {
+		PolcoConfiguration configuration = new PolcoConfiguration()
+			.setOption("mode", "fast")
+			.setOption("arithmetic", "double")
+			.setOption("adj", "pattern-tree-rank")
+			.setOption("memory", "out-core")
+			.setOption("tmpdir", "/tmp/Polco")
+			.setOption("maxthreads", "2");
+		assertThat(configuration.getArithmeticMode(), equalTo(PolcoEngine.ArithmeticMode.FAST));
+		assertThat(configuration.getArithmetic(), equalTo(Arithmetic.double_));
+		assertThat(configuration.getAdjacencyMethod(), equalTo("pattern-tree-rank"));
+		assertThat(configuration.getMemory(), equalTo(Options.Memory.out_core));
+		assertThat(configuration.getTemporaryDirectory(), equalTo(new File("/tmp/Polco")));
+		assertThat(configuration.getMaxThreads(), equalTo(2));
+		assertThat(configuration.setOption("adj", "default").getAdjacencyMethod(), nullValue());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testUnknownOption() {
+		new PolcoConfiguration().setOption("foo", "bar");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testUnknownValue() {
+		new PolcoConfiguration().setOption("memory", "somewhere");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testUnknownAdjacencyMethod() {
+		new PolcoConfiguration().setAdjacencyMethod("bogus");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testNegativeThreads() {
+		new PolcoConfiguration().setOption("maxthreads", "-1");
+	}
+
+	@Test
+	public void testImmutable() {
+		PolcoConfiguration configuration = new PolcoConfiguration();
+		configuration.setMaxThreads(3);
+		assertThat(configuration.getMaxThreads(), equalTo(0));
+		assertThat(configuration, equalTo(new PolcoConfiguration()));
+		assertThat(configuration.setMaxThreads(3), equalTo(new PolcoConfiguration().setMaxThreads(3)));
+	}
+
+	@Test
+	public void testSharedPools() {
+		assertThat(PolcoAdapterPool.getInstance(new PolcoConfiguration()),
+				sameInstance(PolcoAdapterPool.getInstance()));
+		PolcoConfiguration configuration = new PolcoConfiguration().setAdjacencyMethod("pattern-tree-rank");
+		PolcoAdapterPool pool = PolcoAdapterPool.getInstance(configuration);
+		assertThat(pool, not(sameInstance(PolcoAdapterPool.getInstance())));
+		// The arithmetic mode is handled by the engine, so both modes share the adapters
+		PolcoConfiguration fast = configuration.setArithmeticMode(PolcoEngine.ArithmeticMode.FAST);
+		assertThat(PolcoAdapterPool.getInstance(fast), sameInstance(pool));
+		assertThat(new PolcoEngine(configuration).getConfiguration(), equalTo(configuration));
+	}
+
+	@Test
+	public void testConfigurationsFindSameRays() {
+		Set<List<BigInteger>> expected = createRatioCone(5, new DoubleDescriptionEngine()).findExtremalRays();
+		PolcoConfiguration[] configurations = {
+			new PolcoConfiguration().setArithmetic(Arithmetic.bigint),
+			new PolcoConfiguration().setAdjacencyMethod("pattern-tree-mod-rank"),
+			new PolcoConfiguration().setAdjacencyMethod("pattern-tree-rank").setMaxThreads(1),
+			new PolcoConfiguration().setMemory(Options.Memory.out_core),
+			new PolcoConfiguration().setArithmeticMode(PolcoEngine.ArithmeticMode.FAST),
+		};
+		for (PolcoConfiguration configuration : configurations) {
+			Set<List<BigInteger>> rays = createRatioCone(5, new PolcoEngine(configuration))
+				.findExtremalRays();
+			assertThat(configuration.toString(), rays, equalTo(expected));
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,104 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class PolcoEngineTest {
+	// The cone over a square has four extremal rays, each of which lies on two facets
+	static private PolyhedralCone createSquareCone() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 1, 0);
+		cone.addInequality(1, -1, 0);
+		cone.addInequality(1, 0, 1);
+		cone.addInequality(1, 0, -1);
+		return cone;
+	}
+
+	// The cone over an octahedron has six extremal rays, each of which lies on four facets
+	static private PolyhedralCone createOctahedronCone() {
+		PolyhedralCone cone = new PolyhedralCone(4);
+		for (int signs = 0; signs < 8; signs++)
+			cone.addInequality(1, (signs & 1) == 0 ? 1 : -1, (signs & 2) == 0 ? 1 : -1,
+					(signs & 4) == 0 ? 1 : -1);
+		return cone;
+	}
+
+	static private void checkCompleteness(PolyhedralCone cone, int numRays) {
+		Set<List<BigInteger>> rays = new PolcoEngine().findExtremalRays(cone);
+		assertThat(rays, hasSize(numRays));
+		int numVariables = cone.getNumberOfVariables();
+		BigInteger[][] eq = cone.getEquationMatrix();
+		BigInteger[][] iq = cone.getInequalityMatrix();
+		assertThat(PolcoEngine.isComplete(numVariables, eq, iq, rays), is(true));
+		for (List<BigInteger> ray : rays) {
+			Set<List<BigInteger>> incomplete = new HashSet<>(rays);
+			incomplete.remove(ray);
+			assertThat(ray.toString(), PolcoEngine.isComplete(numVariables, eq, iq, incomplete), is(false));
+		}
+	}
+
+	@Test
+	public void testCompleteness() {
+		checkCompleteness(createSquareCone(), 4);
+	}
+
+	@Test
+	public void testCompletenessObtuse() {
+		// No inequality decreases when the face at (1, 0) is left, but its other ray is (-1, 1)
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(0, 1);
+		cone.addInequality(1, 1);
+		checkCompleteness(cone, 2);
+	}
+
+	@Test
+	public void testCompletenessDegenerate() {
+		checkCompleteness(createOctahedronCone(), 6);
+	}
+
+	@Test
+	public void testFastArithmetic() {
+		PolyhedralCone cone = createOctahedronCone();
+		assertThat(new PolcoEngine(PolcoEngine.ArithmeticMode.FAST).findExtremalRays(cone),
+				equalTo(new PolcoEngine().findExtremalRays(cone)));
+	}
+
+	@Test
+	public void testFastArithmeticZeroRow() {
+		// The zero row must not hide that the other coefficients are too large for floating point
+		BigInteger big = BigInteger.ONE.shiftLeft(60);
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(big, BigInteger.ONE);
+		cone.addInequality(0, 1);
+		cone.addInequality(0, 0);
+		assertThat(new PolcoEngine(PolcoEngine.ArithmeticMode.FAST).findExtremalRays(cone),
+				equalTo(new PolcoEngine().findExtremalRays(cone)));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -20,7 +20,11 @@
 package uniol.apt_extremal.util;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -30,6 +34,7 @@ import static org.hamcrest.Matchers.*;
 public class PolyhedralConeTest {
 	private final static BigInteger ZERO = BigInteger.ZERO;
 	private final static BigInteger ONE = BigInteger.ONE;
+	private final static BigInteger TWO = BigInteger.valueOf(2);
 
 	@Test
 	public void testTrivialEquality() {
@@ -55,6 +60,360 @@ public class PolyhedralConeTest {
 					Arrays.asList(ONE, ZERO, ZERO),
 					Arrays.asList(ONE, ONE, ONE)));
 	}
+
+	@Test
+	public void testNormalize() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addEquation(3, 0);
+		cone.addInequality(2, 4);
+		cone.addInequality(1, 2);
+		cone.addInequality(0, 0);
+		cone.addInequality(1, -1);
+		cone.addInequality(-1, 1);
+		cone.addInequality(-1, 0);
+
+		assertThat(cone.normalize(), equalTo(4));
+		assertThat(cone.normalize(), equalTo(0));
+		assertThat(cone.getNumberOfRemovedConstraints(), equalTo(4));
+		assertThat(cone.toString(), equalTo("[\n"
+					+ "1*x[0] = 0\n"
+					+ "1*x[0] + -1*x[1] = 0\n"
+					+ "1*x[0] + 2*x[1] >= 0\n"
+					+ "]"));
+	}
+
+	@Test
+	public void testNormalizeImpliedByNonNegativity() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(2, 3, 0);
+		cone.addInequality(2, 3, 1);
+
+		assertThat(cone.normalize(), equalTo(1));
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ZERO, ZERO, ONE),
+					Arrays.asList(ZERO, ONE, BigInteger.valueOf(-3)),
+					Arrays.asList(ONE, ZERO, BigInteger.valueOf(-2))));
+	}
+
+	@Test
+	public void testOnlyEquationsAfterNormalization() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, -1);
+		cone.addInequality(-1, 1);
+		assertThat(cone.findExtremalRays(), empty());
+	}
+
+	@Test
+	public void testIncrementalInequality() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(0, 0, 1);
+		assertThat(cone.findExtremalRays(), hasSize(3));
+
+		cone.addInequality(1, 1, -2);
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO, ZERO),
+					Arrays.asList(ZERO, ONE, ZERO),
+					Arrays.asList(BigInteger.valueOf(2), ZERO, ONE),
+					Arrays.asList(ZERO, BigInteger.valueOf(2), ONE)));
+	}
+
+	@Test
+	public void testIncrementalEquation() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(0, 0, 1);
+		cone.addInequality(1, 0, -1);
+		cone.addInequality(1, 1, -2);
+		assertThat(cone.findExtremalRays(), hasSize(4));
+
+		cone.addEquation(0, 2, -2);
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO, ZERO),
+					Arrays.asList(ONE, ONE, ONE)));
+	}
+
+	@Test
+	public void testIncrementalFromSubspace() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addEquation(1, -1);
+		assertThat(cone.findExtremalRays(), empty());
+
+		cone.addInequality(1, 0);
+		assertThat(cone.findExtremalRays(), contains(Arrays.asList(ONE, ONE)));
+	}
+
+	@Test
+	public void testFastArithmetic() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.setEngine(new PolcoEngine(PolcoEngine.ArithmeticMode.FAST));
+		cone.addEquation(0, 2, -2);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(0, 0, 1);
+		cone.addInequality(1, 0, -1);
+		cone.addInequality(1, 1, -2);
+
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO, ZERO),
+					Arrays.asList(ONE, ONE, ONE)));
+	}
+
+	@Test
+	public void testFastArithmeticLargeCoefficients() {
+		// Too large for floating point, so this has to fall back to exact arithmetic
+		BigInteger big = BigInteger.ONE.shiftLeft(60);
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.setEngine(new PolcoEngine(PolcoEngine.ArithmeticMode.FAST));
+		cone.addInequality(big, ONE);
+		cone.addInequality(ZERO, ONE);
+
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO),
+					Arrays.asList(ONE.negate(), big)));
+	}
+
+	// The cone of all non-negative vectors whose sum of the first half equals the sum of the second half has
+	// n*n extremal rays and many more intermediate rays
+	static private PolyhedralCone createTransportationCone(int n) {
+		PolyhedralCone cone = new PolyhedralCone(2 * n);
+		int[] row = new int[2 * n];
+		for (int i = 0; i < n; i++) {
+			row[i] = 1;
+			row[n + i] = -1;
+		}
+		cone.addEquation(row);
+		for (int i = 0; i < 2 * n; i++) {
+			row = new int[2 * n];
+			row[i] = 1;
+			cone.addInequality(row);
+		}
+		return cone;
+	}
+
+	@Test
+	public void testBudgetUnlimited() {
+		PolyhedralCone cone = createTransportationCone(4);
+		assertThat(cone.findExtremalRays(new Budget().setMaxRays(1000)), hasSize(16));
+		assertThat(cone.isResultPartial(), is(false));
+	}
+
+	@Test
+	public void testBudgetRaysExceeded() {
+		PolyhedralCone cone = createTransportationCone(4);
+		try {
+			cone.findExtremalRays(new Budget().setMaxRays(5));
+			throw new AssertionError("Expected exception");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), is(BudgetExceededException.Reason.RAYS));
+			assertThat(e.getNumberOfConstraints(), greaterThan(e.getNumberOfProcessedConstraints()));
+			assertThat(e.getNumberOfRays(), greaterThan(5L));
+		}
+
+		// The cone is still usable afterwards
+		assertThat(cone.findExtremalRays(), hasSize(16));
+	}
+
+	@Test
+	public void testBudgetPartialResult() {
+		PolyhedralCone cone = createTransportationCone(4);
+		Set<List<BigInteger>> all = cone.findExtremalRays();
+
+		cone = createTransportationCone(4);
+		Set<List<BigInteger>> partial = cone.findExtremalRays(new Budget().setMaxRays(5)
+				.setPartialResultAllowed(true));
+		assertThat(cone.isResultPartial(), is(true));
+		assertThat(all.containsAll(partial), is(true));
+	}
+
+	@Test
+	public void testBudgetTimeExceeded() {
+		PolyhedralCone cone = createTransportationCone(4);
+		try {
+			cone.findExtremalRays(new Budget().setTimeLimit(0, TimeUnit.NANOSECONDS));
+			throw new AssertionError("Expected exception");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), is(BudgetExceededException.Reason.TIME));
+		}
+	}
+
+	@Test
+	public void testBudgetMemoryExceeded() {
+		PolyhedralCone cone = createTransportationCone(4);
+		try {
+			cone.findExtremalRays(new Budget().setMaxMemory(100));
+			throw new AssertionError("Expected exception");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), is(BudgetExceededException.Reason.MEMORY));
+			assertThat(e.getEstimatedMemory(), greaterThan(100L));
+		}
+	}
+
+	@Test
+	public void testInterrupted() {
+		PolyhedralCone cone = createTransportationCone(4);
+		Thread.currentThread().interrupt();
+		try {
+			cone.findExtremalRays();
+			throw new AssertionError("Expected exception");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), is(BudgetExceededException.Reason.INTERRUPTED));
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	static private class RayList implements RayConsumer {
+		private final List<List<BigInteger>> rays = new ArrayList<>();
+
+		@Override
+		public void accept(List<BigInteger> ray) {
+			rays.add(ray);
+		}
+	}
+
+	@Test
+	public void testStreaming() {
+		Set<List<BigInteger>> expected = createTransportationCone(3).findExtremalRays();
+		assertThat(expected, hasSize(9));
+
+		RayList consumer = new RayList();
+		createTransportationCone(3).findExtremalRays(consumer);
+		assertThat(consumer.rays, containsInAnyOrder(expected.toArray()));
+	}
+
+	@Test
+	public void testStreamingDoubleDescription() {
+		Set<List<BigInteger>> expected = createTransportationCone(3).findExtremalRays();
+
+		PolyhedralCone cone = createTransportationCone(3);
+		cone.setEngine(new DoubleDescriptionEngine());
+		RayList consumer = new RayList();
+		cone.findExtremalRays(consumer);
+		assertThat(consumer.rays, containsInAnyOrder(expected.toArray()));
+	}
+
+	@Test
+	public void testStreamingKnownRays() {
+		PolyhedralCone cone = createTransportationCone(3);
+		Set<List<BigInteger>> expected = cone.findExtremalRays();
+
+		RayList consumer = new RayList();
+		cone.findExtremalRays(consumer);
+		assertThat(consumer.rays, containsInAnyOrder(expected.toArray()));
+	}
+
+	@Test
+	public void testEliminateEquations() {
+		// x[0] = x[1] and x[2] = x[3] + x[4] leave a three-dimensional cone
+		PolyhedralCone cone = new PolyhedralCone(5);
+		cone.addEquation(1, -1, 0, 0, 0);
+		cone.addEquation(0, 0, 1, -1, -1);
+		cone.addInequality(2, 0, -1, 0, 0);
+		cone.addInequality(0, 0, 0, 1, 0);
+		cone.addInequality(0, 0, 0, 0, 1);
+
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ONE, ZERO, ZERO, ZERO),
+					Arrays.asList(ONE, ONE, BigInteger.valueOf(2), BigInteger.valueOf(2), ZERO),
+					Arrays.asList(ONE, ONE, BigInteger.valueOf(2), ZERO, BigInteger.valueOf(2))));
+	}
+
+	@Test
+	public void testEliminateEquationsWithLine() {
+		// The cone contains the line (0, 0, 1, -1), which is split off before the equations are eliminated
+		PolyhedralCone cone = new PolyhedralCone(4);
+		cone.addEquation(1, -1, 0, 0);
+		cone.addEquation(0, 0, 1, 1);
+		cone.addInequality(1, 0, 0, 0);
+
+		assertThat(cone.findExtremalRays(), contains(Arrays.asList(ONE, ONE, ZERO, ZERO)));
+	}
+
+	@Test
+	public void testLinealityBasis() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(1, 1, -1);
+		assertThat(cone.findLinealityBasis(), contains(Arrays.asList(ZERO, ONE, ONE)));
+
+		cone.addInequality(0, 1, 0);
+		assertThat(cone.findLinealityBasis(), empty());
+	}
+
+	@Test
+	public void testLineSameRaysForAllEngines() {
+		// The rays are those of the pointed part orthogonal to the line (0, 1, 1), whichever engine is used
+		List<ExtremalRayEngine> engines = Arrays.asList(PolyhedralCone.DEFAULT_ENGINE,
+				new DoubleDescriptionEngine(), new PolcoEngine(PolcoEngine.ArithmeticMode.FAST));
+		for (ExtremalRayEngine engine : engines) {
+			PolyhedralCone cone = new PolyhedralCone(3);
+			cone.setEngine(engine);
+			cone.addInequality(1, 0, 0);
+			cone.addInequality(1, 1, -1);
+			assertThat(cone.findExtremalRays(), containsInAnyOrder(
+						Arrays.asList(TWO, ONE.negate(), ONE),
+						Arrays.asList(ZERO, ONE, ONE.negate())));
+		}
+	}
+
+	@Test
+	public void testEliminateAllVariables() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addEquation(1, 0);
+		cone.addEquation(0, 1);
+		cone.addInequality(1, 1);
+
+		assertThat(cone.findExtremalRays(), empty());
+	}
+
+	static private PolyhedralCone createBlockCone() {
+		// The variables x[0], x[2] and x[1], x[3] do not share any constraint
+		PolyhedralCone cone = new PolyhedralCone(4);
+		cone.addInequality(1, 0, 0, 0);
+		cone.addInequality(1, 0, -1, 0);
+		cone.addInequality(0, 0, 1, 0);
+		cone.addInequality(0, 0, 0, 1);
+		cone.addInequality(0, 2, 0, -1);
+		return cone;
+	}
+
+	@Test
+	public void testBlockDecomposition() {
+		PolyhedralCone cone = createBlockCone();
+		cone.normalize();
+		assertThat(new BlockDecomposition(cone).getNumberOfBlocks(), equalTo(2));
+
+		for (ExtremalRayEngine engine : Arrays.asList(new DoubleDescriptionEngine(), new PolcoEngine())) {
+			cone = createBlockCone();
+			cone.setEngine(engine);
+			assertThat(cone.findExtremalRays(), containsInAnyOrder(
+						Arrays.asList(ONE, ZERO, ZERO, ZERO),
+						Arrays.asList(ONE, ZERO, ONE, ZERO),
+						Arrays.asList(ZERO, ONE, ZERO, ZERO),
+						Arrays.asList(ZERO, ONE, ZERO, TWO)));
+		}
+	}
+
+	@Test
+	public void testBlockDecompositionWithBudget() {
+		assertThat(createBlockCone().findExtremalRays(new Budget().setMaxRays(100)),
+				equalTo(createBlockCone().findExtremalRays()));
+	}
+
+	@Test
+	public void testBlockDecompositionWithLine() {
+		// The block of x[0] and x[1] contains the line (1, 1, 0)
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, -1, 0);
+		cone.addInequality(0, 0, 1);
+		assertThat(new BlockDecomposition(cone).enumerate(new BudgetMonitor(Budget.UNLIMITED), new RayList()),
+				is(false));
+	}
 }
 
 // vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
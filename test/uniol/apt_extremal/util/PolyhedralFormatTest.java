@@ -0,0 +1,147 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings("unchecked")
+public class PolyhedralFormatTest {
+	private final static BigInteger ZERO = BigInteger.ZERO;
+	private final static BigInteger ONE = BigInteger.ONE;
+
+	static private PolyhedralCone createCone() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addEquation(1, -1, 0);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 0, 1);
+		cone.addInequality(2, 0, -1);
+		return cone;
+	}
+
+	@Test
+	public void testWriteHRepresentation() throws IOException {
+		StringWriter writer = new StringWriter();
+		PolyhedralFormat.writeHRepresentation(writer, createCone());
+		assertThat(writer.toString(), equalTo("H-representation\n"
+					+ "linearity 1 1\n"
+					+ "begin\n"
+					+ " 4 4 integer\n"
+					+ " 0 1 -1 0\n"
+					+ " 0 1 0 0\n"
+					+ " 0 0 0 1\n"
+					+ " 0 2 0 -1\n"
+					+ "end\n"));
+	}
+
+	@Test
+	public void testHRepresentationRoundTrip() throws IOException {
+		PolyhedralCone cone = createCone();
+		StringWriter writer = new StringWriter();
+		PolyhedralFormat.writeHRepresentation(writer, cone);
+		PolyhedralCone read = PolyhedralFormat.readHRepresentation(new StringReader(writer.toString()));
+		assertThat(read.getCanonicalHash(), equalTo(cone.getCanonicalHash()));
+	}
+
+	@Test
+	public void testReadRationalHRepresentation() throws IOException {
+		String input = "* a cone in the format of cdd\n"
+			+ "example\n"
+			+ "H-representation\n"
+			+ "begin\n"
+			+ " 2 3 rational\n"
+			+ " 0 1/2 -1/3\n"
+			+ " 0 0\n"
+			+ "   1\n"
+			+ "end\n"
+			+ "incidence\n";
+		PolyhedralCone cone = PolyhedralFormat.readHRepresentation(new StringReader(input));
+		assertThat(cone.getNumberOfVariables(), equalTo(2));
+		assertThat(cone.getEquations(), empty());
+		assertThat(cone.getInequalities(), contains(ConstraintRow.of(3, -2), ConstraintRow.of(0, 1)));
+	}
+
+	@Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*not homogeneous")
+	public void testReadPolyhedron() throws IOException {
+		String input = "H-representation\nbegin\n 1 3 integer\n 1 1 0\nend\n";
+		PolyhedralFormat.readHRepresentation(new StringReader(input));
+	}
+
+	@Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Expected 2 rows, but got 1")
+	public void testReadWrongNumberOfRows() throws IOException {
+		String input = "H-representation\nbegin\n 2 3 integer\n 0 1 0\nend\n";
+		PolyhedralFormat.readHRepresentation(new StringReader(input));
+	}
+
+	@Test
+	public void testVRepresentationRoundTrip() throws IOException {
+		Set<List<BigInteger>> rays = createCone().findExtremalRays();
+		StringWriter writer = new StringWriter();
+		PolyhedralFormat.writeVRepresentation(writer, 3, rays);
+		assertThat(writer.toString(), startsWith("V-representation\nbegin\n 3 4 integer\n 1 0 0 0\n"));
+		assertThat(PolyhedralFormat.readVRepresentation(new StringReader(writer.toString())), equalTo(rays));
+	}
+
+	@Test
+	public void testReadLrsOutput() throws IOException {
+		// lrs does not know the number of rays in advance
+		String input = "V-representation\n"
+			+ "begin\n"
+			+ "***** 3 rational\n"
+			+ " 1 0 0\n"
+			+ " 0 2/3 0\n"
+			+ " 0 1 1\n"
+			+ "end\n";
+		assertThat(PolyhedralFormat.readVRepresentation(new StringReader(input)), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO),
+					Arrays.asList(ONE, ONE)));
+	}
+
+	@Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*vertex other than.*")
+	public void testReadPolytope() throws IOException {
+		String input = "V-representation\nbegin\n 1 3 integer\n 1 1 0\nend\n";
+		PolyhedralFormat.readVRepresentation(new StringReader(input));
+	}
+
+	@Test
+	public void testBinaryConeRoundTrip() throws IOException {
+		PolyhedralCone cone = createCone();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryFormat.writeCone(new DataOutputStream(bytes), cone);
+		PolyhedralCone read = BinaryFormat.readCone(new DataInputStream(
+					new ByteArrayInputStream(bytes.toByteArray())));
+		assertThat(read.getCanonicalHash(), equalTo(cone.getCanonicalHash()));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
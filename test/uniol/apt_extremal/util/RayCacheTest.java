@@ -0,0 +1,189 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings("unchecked")
+public class RayCacheTest {
+	private final static BigInteger ZERO = BigInteger.ZERO;
+	private final static BigInteger ONE = BigInteger.ONE;
+
+	private Path directory;
+
+	// Engine that counts how often it is asked for rays
+	static private class CountingEngine implements ExtremalRayEngine {
+		private final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public Set<List<BigInteger>> findExtremalRays(PolyhedralCone cone) {
+			calls.incrementAndGet();
+			return new DoubleDescriptionEngine().findExtremalRays(cone);
+		}
+	}
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("raycache");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream)
+				Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+
+	static private PolyhedralCone createCone(CountingEngine engine, RayCache cache, boolean reversed) {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.setEngine(engine);
+		cone.setRayCache(cache);
+		// All constraints share variables, so that the engine sees the cone as a whole and not block by block
+		if (reversed) {
+			cone.addInequality(2, 2, -2);
+			cone.addInequality(0, 1, 0);
+			cone.addInequality(1, 0, 0);
+		} else {
+			cone.addInequality(1, 0, 0);
+			cone.addInequality(0, 1, 0);
+			cone.addInequality(1, 1, -1);
+		}
+		return cone;
+	}
+
+	// A cone with the independent blocks {x_0, x_2} and {x_1}
+	static private PolyhedralCone createBlockCone(RayCache cache) {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.setRayCache(cache);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(1, 0, -1);
+		return cone;
+	}
+
+	static private int countFiles(Path directory) throws IOException {
+		int result = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream)
+				result++;
+		}
+		return result;
+	}
+
+	@Test
+	public void testMissThenHit() throws IOException {
+		CountingEngine engine = new CountingEngine();
+		RayCache cache = new RayCache(directory, Long.MAX_VALUE);
+		Set<List<BigInteger>> rays = createCone(engine, cache, false).findExtremalRays();
+		assertThat(cache.getMisses(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(0L));
+
+		assertThat(createCone(engine, cache, false).findExtremalRays(), equalTo(rays));
+		assertThat(cache.getMisses(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(1L));
+		assertThat(engine.calls.get(), equalTo(1));
+	}
+
+	@Test
+	public void testSharedBetweenInstances() throws IOException {
+		CountingEngine engine = new CountingEngine();
+		Set<List<BigInteger>> rays = createCone(engine, new RayCache(directory, Long.MAX_VALUE), false)
+			.findExtremalRays();
+
+		RayCache cache = new RayCache(directory, Long.MAX_VALUE);
+		assertThat(createCone(engine, cache, true).findExtremalRays(), equalTo(rays));
+		assertThat(cache.getHits(), equalTo(1L));
+		assertThat(engine.calls.get(), equalTo(1));
+	}
+
+	@Test
+	public void testSeparateBlocks() throws IOException {
+		// The cache stores the rays of the whole cone, even though its blocks are enumerated separately
+		RayCache cache = new RayCache(directory, Long.MAX_VALUE);
+		Set<List<BigInteger>> rays = createBlockCone(cache).findExtremalRays();
+		assertThat(rays, containsInAnyOrder(
+					Arrays.asList(ZERO, ONE, ZERO),
+					Arrays.asList(ZERO, ZERO, ONE.negate()),
+					Arrays.asList(ONE, ZERO, ONE)));
+		assertThat(cache.getMisses(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(0L));
+		assertThat(countFiles(directory), equalTo(1));
+
+		assertThat(new RayCache(directory, Long.MAX_VALUE).get(createBlockCone(null)), equalTo(rays));
+		assertThat(createBlockCone(cache).findExtremalRays(), equalTo(rays));
+		assertThat(cache.getMisses(), equalTo(1L));
+		assertThat(cache.getHits(), equalTo(1L));
+	}
+
+	@Test
+	public void testCanonicalHashIgnoresOrderAndScaling() {
+		CountingEngine engine = new CountingEngine();
+		assertThat(createCone(engine, null, true).getCanonicalHash(),
+				equalTo(createCone(engine, null, false).getCanonicalHash()));
+
+		PolyhedralCone other = new PolyhedralCone(3);
+		other.addInequality(1, 0, 0);
+		assertThat(other.getCanonicalHash(), not(equalTo(createCone(engine, null, false).getCanonicalHash())));
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		CountingEngine engine = new CountingEngine();
+		RayCache cache = new RayCache(directory, 1);
+		createCone(engine, cache, false).findExtremalRays();
+		assertThat(countFiles(directory), equalTo(0));
+		createCone(engine, cache, false).findExtremalRays();
+		assertThat(cache.getHits(), equalTo(0L));
+		assertThat(engine.calls.get(), equalTo(2));
+	}
+
+	@Test
+	public void testCorruptFileIsMiss() throws IOException {
+		CountingEngine engine = new CountingEngine();
+		RayCache cache = new RayCache(directory, Long.MAX_VALUE);
+		Set<List<BigInteger>> rays = createCone(engine, cache, false).findExtremalRays();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream)
+				Files.write(file, new byte[] { 1, 2, 3 });
+		}
+
+		assertThat(createCone(engine, cache, false).findExtremalRays(), equalTo(rays));
+		assertThat(cache.getMisses(), equalTo(2L));
+		assertThat(engine.calls.get(), equalTo(2));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
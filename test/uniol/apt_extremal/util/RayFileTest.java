@@ -0,0 +1,137 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RayFileTest {
+	private Path file;
+
+	static private class RayList implements RayConsumer {
+		private final List<List<BigInteger>> rays = new ArrayList<>();
+
+		@Override
+		public void accept(List<BigInteger> ray) {
+			rays.add(ray);
+		}
+	}
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		file = Files.createTempFile("rays", ".bin");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	static private List<List<BigInteger>> createRays(int count) {
+		List<List<BigInteger>> result = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			result.add(Arrays.asList(BigInteger.valueOf(i), BigInteger.ONE.shiftLeft(i).negate(),
+						BigInteger.ZERO));
+		return result;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		List<List<BigInteger>> rays = createRays(100);
+		try (RayFileWriter writer = new RayFileWriter(file, 3)) {
+			for (List<BigInteger> ray : rays)
+				writer.accept(ray);
+			assertThat(writer.getNumberOfRays(), equalTo(100L));
+		}
+
+		// A tiny window makes rays cross the boundaries between the mapped parts of the file
+		try (RayFileReader reader = new RayFileReader(file, 7)) {
+			assertThat(reader.getNumberOfVariables(), equalTo(3));
+			assertThat(reader.getNumberOfRays(), equalTo(100L));
+			RayList list = new RayList();
+			reader.readRays(list);
+			assertThat(list.rays, equalTo(rays));
+
+			// Reading again starts from the beginning
+			list = new RayList();
+			reader.readRays(list);
+			assertThat(list.rays, hasSize(100));
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		new RayFileWriter(file, 5).close();
+		try (RayFileReader reader = new RayFileReader(file)) {
+			assertThat(reader.getNumberOfVariables(), equalTo(5));
+			RayList list = new RayList();
+			reader.readRays(list);
+			assertThat(list.rays, empty());
+		}
+	}
+
+	@Test
+	public void testStreamEnumeration() throws IOException {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(0, 0, 1);
+		try (RayFileWriter writer = new RayFileWriter(file, 3)) {
+			cone.findExtremalRays(writer);
+		}
+		try (RayFileReader reader = new RayFileReader(file)) {
+			RayList list = new RayList();
+			reader.readRays(list);
+			assertThat(list.rays, containsInAnyOrder(cone.findExtremalRays().toArray()));
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void testNotARayFile() throws IOException {
+		Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17 });
+		new RayFileReader(file).close();
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void testTruncated() throws IOException {
+		try (RayFileWriter writer = new RayFileWriter(file, 3)) {
+			for (List<BigInteger> ray : createRays(10))
+				writer.accept(ray);
+		}
+		byte[] content = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(content, content.length - 3));
+		try (RayFileReader reader = new RayFileReader(file)) {
+			reader.readRays(new RayList());
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
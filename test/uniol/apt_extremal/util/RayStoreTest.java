@@ -0,0 +1,150 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RayStoreTest {
+	private Path directory;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("raystore");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+		Files.delete(directory);
+	}
+
+	static private List<BigInteger> ray(long... entries) {
+		List<BigInteger> result = new ArrayList<>();
+		for (long entry : entries)
+			result.add(BigInteger.valueOf(entry));
+		return result;
+	}
+
+	static private List<List<BigInteger>> readAll(RayStore store) throws IOException {
+		List<List<BigInteger>> result = new ArrayList<>();
+		RayStore.Cursor cursor = store.cursor();
+		while (cursor.hasNext())
+			result.add(cursor.next());
+		return result;
+	}
+
+	@Test
+	public void testDeduplicationAndNormalization() throws IOException {
+		try (RayStore store = new RayStore(3)) {
+			assertThat(store.add(ray(2, 0, -4)), is(true));
+			assertThat(store.add(ray(1, 0, -2)), is(false));
+			assertThat(store.add(ray(0, 1, 0)), is(true));
+			store.accept(ray(0, 3, 0));
+			assertThat(store.size(), equalTo(2));
+			assertThat(store.getSpilledBytes(), equalTo(0L));
+			assertThat(readAll(store), contains(ray(1, 0, -2), ray(0, 1, 0)));
+		}
+	}
+
+	@Test
+	public void testLargeEntries() throws IOException {
+		BigInteger big = BigInteger.ONE.shiftLeft(100).add(BigInteger.ONE);
+		List<BigInteger> first = Arrays.asList(big, big.negate(), BigInteger.valueOf(Long.MIN_VALUE));
+		List<BigInteger> second = ray(Long.MAX_VALUE, -31, 32);
+		try (RayStore store = new RayStore(3)) {
+			store.accept(first);
+			store.accept(second);
+			store.accept(first);
+			assertThat(readAll(store), contains(first, second));
+		}
+	}
+
+	@Test
+	public void testSpilling() throws IOException {
+		List<List<BigInteger>> rays = new ArrayList<>();
+		try (RayStore store = new RayStore(4, 64, directory, 4)) {
+			for (int i = 0; i < 100; i++) {
+				List<BigInteger> ray = ray(i, 1, -i, i * 1000);
+				rays.add(ray);
+				store.accept(ray);
+				store.accept(ray);
+			}
+			assertThat(store.size(), equalTo(100));
+			// Four chunks of 16 bytes stay in memory
+			assertThat(store.getSpilledBytes(), equalTo(store.getEncodedBytes() - 64));
+			assertThat(readAll(store), equalTo(rays));
+			assertThat(readAll(store), equalTo(rays));
+		}
+	}
+
+	@Test
+	public void testSpilledBytesOfSmallStore() throws IOException {
+		try (RayStore store = new RayStore(3, 0, directory)) {
+			store.accept(ray(1, 0, -2));
+			assertThat(store.getEncodedBytes(), greaterThan(0L));
+			assertThat(store.getSpilledBytes(), equalTo(store.getEncodedBytes()));
+		}
+	}
+
+	@Test
+	public void testStreamingEnumeration() throws IOException {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(1, 1, -1);
+		cone.addInequality(0, 0, 1);
+		try (RayStore store = new RayStore(3, 0, directory)) {
+			cone.findExtremalRays(store);
+			RayCollector collector = new RayCollector();
+			store.replay(collector);
+			assertThat(collector.getRays(), equalTo(cone.findExtremalRays()));
+		}
+	}
+
+	@Test(expectedExceptions = ConcurrentModificationException.class)
+	public void testModificationDuringIteration() throws IOException {
+		try (RayStore store = new RayStore(2)) {
+			store.accept(ray(1, 0));
+			RayStore.Cursor cursor = store.cursor();
+			store.accept(ray(0, 1));
+			cursor.next();
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testWrongDimension() {
+		new RayStore(2).accept(ray(1, 0, 0));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,195 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import static uniol.apt_extremal.util.TestCones.*;
+
+public class ReverseSearchEngineTest {
+	static private List<List<BigInteger>> collect(ReverseSearchEngine engine, PolyhedralCone cone) {
+		final List<List<BigInteger>> rays = new ArrayList<>();
+		engine.findExtremalRays(cone, new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				rays.add(ray);
+			}
+		});
+		return rays;
+	}
+
+	@Test
+	public void testCubeCone() {
+		List<List<BigInteger>> rays = collect(new ReverseSearchEngine(), createCubeCone(5));
+		assertThat(rays, hasSize(32));
+		assertThat(new HashSet<>(rays),
+				equalTo(new DoubleDescriptionEngine().findExtremalRays(createCubeCone(5))));
+	}
+
+	@Test
+	public void testDegenerateCone() {
+		List<List<BigInteger>> rays = collect(new ReverseSearchEngine(), createCrossCone(4));
+		assertThat(rays, hasSize(8));
+		assertThat(new HashSet<>(rays),
+				equalTo(new DoubleDescriptionEngine().findExtremalRays(createCrossCone(4))));
+	}
+
+	@Test
+	public void testEquations() {
+		PolyhedralCone cone = createCubeCone(3);
+		cone.addEquation(0, 1, 1, 1);
+		List<List<BigInteger>> rays = collect(new ReverseSearchEngine(), cone);
+		assertThat(new HashSet<>(rays), equalTo(new DoubleDescriptionEngine().findExtremalRays(cone)));
+		assertThat(rays, hasSize(6));
+	}
+
+	@Test
+	public void testSingleRay() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, 0);
+		cone.addEquation(1, -2);
+		assertThat(new ReverseSearchEngine().findExtremalRays(cone),
+				contains(Arrays.asList(BigInteger.valueOf(2), BigInteger.ONE)));
+	}
+
+	@Test
+	public void testTrivialCone() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, 0);
+		cone.addInequality(0, 1);
+		cone.addInequality(-1, -1);
+		assertThat(new ReverseSearchEngine().findExtremalRays(cone), empty());
+
+		cone = new PolyhedralCone(2);
+		cone.addEquation(1, 0);
+		cone.addEquation(0, 1);
+		assertThat(new ReverseSearchEngine().findExtremalRays(cone), empty());
+	}
+
+	@Test
+	public void testConeWithLine() {
+		// x_1 is not constrained at all, so this cone is left to the double description method
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, 0);
+		assertThat(new ReverseSearchEngine().findExtremalRays(cone),
+				equalTo(new DoubleDescriptionEngine().findExtremalRays(cone)));
+	}
+
+	@Test
+	public void testRandomCones() {
+		Random random = new Random(42);
+		ReverseSearchEngine engine = new ReverseSearchEngine(new ForkJoinPool(4));
+		for (int iteration = 0; iteration < 100; iteration++) {
+			int numVariables = 2 + random.nextInt(5);
+			PolyhedralCone cone = new PolyhedralCone(numVariables);
+			for (int i = 0; i < numVariables; i++) {
+				int[] row = new int[numVariables];
+				row[i] = 1;
+				cone.addInequality(row);
+			}
+			for (int i = random.nextInt(8); i > 0; i--) {
+				int[] row = new int[numVariables];
+				for (int j = 0; j < numVariables; j++)
+					row[j] = random.nextInt(5) - 2;
+				cone.addInequality(row);
+			}
+			List<List<BigInteger>> rays = collect(engine, cone);
+			Set<List<BigInteger>> expected = new DoubleDescriptionEngine().findExtremalRays(cone);
+			assertThat(cone.toString(), new HashSet<>(rays), equalTo(expected));
+			assertThat(cone.toString(), rays, hasSize(expected.size()));
+		}
+	}
+
+	@Test
+	public void testPolyhedralCone() {
+		PolyhedralCone cone = createCrossCone(3);
+		cone.setEngine(new ReverseSearchEngine());
+		assertThat(cone.findExtremalRays(), equalTo(new DoubleDescriptionEngine().findExtremalRays(cone)));
+	}
+
+	@Test
+	public void testWorkerProcesses() {
+		try (WorkerPoolEngine pool = new WorkerPoolEngine(1, 64 * 1024 * 1024,
+					WorkerPoolEngine.Algorithm.REVERSE_SEARCH)) {
+			PolyhedralCone cone = createCubeCone(4);
+			cone.setEngine(pool);
+			assertThat(cone.findExtremalRays(), hasSize(16));
+		}
+	}
+
+	@Test
+	public void testInterrupt() {
+		final Thread thread = Thread.currentThread();
+		final List<List<BigInteger>> rays = new ArrayList<>();
+		try {
+			new ReverseSearchEngine().findExtremalRays(createCubeCone(10), new RayConsumer() {
+				@Override
+				public void accept(List<BigInteger> ray) {
+					rays.add(ray);
+					thread.interrupt();
+				}
+			});
+			throw new AssertionError("The search should be interrupted");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), equalTo(BudgetExceededException.Reason.INTERRUPTED));
+		} finally {
+			Thread.interrupted();
+		}
+		assertThat(rays.size(), lessThan(1024));
+	}
+
+	@Test
+	public void testRayLimit() {
+		PolyhedralCone cone = createCubeCone(6);
+		cone.setEngine(new ReverseSearchEngine());
+		Set<List<BigInteger>> rays = cone.findExtremalRays(new Budget().setMaxRays(5)
+				.setPartialResultAllowed(true));
+		assertThat(cone.isResultPartial(), is(true));
+		// Unlike the intermediate rays of the double description method, these are all extremal
+		assertThat(rays, hasSize(5));
+		assertThat(rays, everyItem(isIn(createCubeCone(6).findExtremalRays())));
+	}
+
+	@Test
+	public void testTimeLimit() {
+		PolyhedralCone cone = createCubeCone(12);
+		cone.setEngine(new ReverseSearchEngine());
+		try {
+			cone.findExtremalRays(new Budget().setTimeLimit(50, TimeUnit.MILLISECONDS));
+			throw new AssertionError("The time limit should be exceeded");
+		} catch (BudgetExceededException e) {
+			assertThat(e.getReason(), equalTo(BudgetExceededException.Reason.TIME));
+		}
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,149 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings("unchecked")
+public class SmallConeSolverTest {
+	private final static BigInteger ZERO = BigInteger.ZERO;
+	private final static BigInteger ONE = BigInteger.ONE;
+
+	static private Set<List<BigInteger>> solve(PolyhedralCone cone) {
+		cone.normalize();
+		RayCollector collector = new RayCollector();
+		assertThat(SmallConeSolver.enumerate(cone, collector), is(true));
+		return collector.getRays();
+	}
+
+	static private Set<List<BigInteger>> solveWithEngine(PolyhedralCone cone) {
+		return new DoubleDescriptionEngine().findExtremalRays(cone);
+	}
+
+	@Test
+	public void testHalfLine() {
+		PolyhedralCone cone = new PolyhedralCone(1);
+		cone.addInequality(-3);
+		assertThat(solve(cone), contains(Arrays.asList(BigInteger.valueOf(-1))));
+	}
+
+	@Test
+	public void testPlanarCone() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, 2);
+		cone.addInequality(3, -1);
+		cone.addInequality(1, 0);
+		assertThat(solve(cone), equalTo(solveWithEngine(cone)));
+		assertThat(solve(cone), hasSize(2));
+	}
+
+	@Test
+	public void testDegenerateCone() {
+		// The cone {x | x_0 >= |x_1| + |x_2| + |x_3|} over the octahedron; each ray lies on four facets
+		PolyhedralCone cone = new PolyhedralCone(4);
+		for (int signs = 0; signs < 8; signs++)
+			cone.addInequality(1, (signs & 1) == 0 ? 1 : -1, (signs & 2) == 0 ? 1 : -1,
+					(signs & 4) == 0 ? 1 : -1);
+		assertThat(solve(cone), hasSize(6));
+		assertThat(solve(cone), equalTo(solveWithEngine(cone)));
+	}
+
+	@Test
+	public void testZeroCone() {
+		PolyhedralCone cone = new PolyhedralCone(2);
+		cone.addInequality(1, 0);
+		cone.addInequality(0, 1);
+		cone.addInequality(-1, -1);
+		assertThat(solve(cone), empty());
+	}
+
+	@Test
+	public void testRandomCones() {
+		Random random = new Random(25);
+		for (int i = 0; i < 300; i++) {
+			int numVariables = 1 + random.nextInt(SmallConeSolver.MAX_VARIABLES);
+			PolyhedralCone cone = new PolyhedralCone(numVariables);
+			for (int j = 0; j < numVariables; j++) {
+				int[] row = new int[numVariables];
+				row[j] = 1;
+				cone.addInequality(row);
+			}
+			for (int r = random.nextInt(8); r > 0; r--) {
+				int[] row = new int[numVariables];
+				for (int j = 0; j < numVariables; j++)
+					row[j] = random.nextInt(11) - 5;
+				cone.addInequality(row);
+			}
+			// Opposite inequalities become an equation, which the solver leaves to the engines
+			cone.normalize();
+			if (!cone.getEquations().isEmpty())
+				continue;
+			assertThat(cone.toString(), solve(cone), equalTo(solveWithEngine(cone)));
+		}
+	}
+
+	@Test
+	public void testDeclined() {
+		RayCollector collector = new RayCollector();
+		PolyhedralCone wide = new PolyhedralCone(SmallConeSolver.MAX_VARIABLES + 1);
+		wide.addInequality(1, 0, 0, 0, 0, 0);
+		assertThat(SmallConeSolver.enumerate(wide, collector), is(false));
+
+		PolyhedralCone large = new PolyhedralCone(2);
+		large.addInequality(1, 0);
+		large.addInequality(1, 1024);
+		assertThat(SmallConeSolver.enumerate(large, collector), is(false));
+
+		PolyhedralCone withEquation = new PolyhedralCone(2);
+		withEquation.addInequality(1, 0);
+		withEquation.addEquation(1, 1);
+		assertThat(SmallConeSolver.enumerate(withEquation, collector), is(false));
+
+		PolyhedralCone many = new PolyhedralCone(5);
+		for (int i = 0; i < 40; i++)
+			many.addInequality(1, i, 0, 0, 0);
+		assertThat(SmallConeSolver.enumerate(many, collector), is(false));
+
+		assertThat(collector.getRays(), empty());
+	}
+
+	@Test
+	public void testThroughPolyhedralCone() {
+		// The equation is removed and the free variable x_3 is split off before the cone reaches the solver
+		PolyhedralCone cone = new PolyhedralCone(4);
+		cone.addInequality(1, 0, 0, 0);
+		cone.addInequality(0, 1, 0, 0);
+		cone.addInequality(0, 0, 1, 0);
+		cone.addEquation(1, 1, -1, 0);
+		assertThat(cone.findExtremalRays(), containsInAnyOrder(
+					Arrays.asList(ONE, ZERO, ONE, ZERO),
+					Arrays.asList(ZERO, ONE, ONE, ZERO)));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
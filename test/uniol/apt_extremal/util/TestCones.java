@@ -0,0 +1,86 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+// Cones with a known number of extremal rays that are shared by several tests
+class TestCones {
+	private TestCones() {
+	}
+
+	// The cone {x | x_0 >= s_1 x_1 + ... + s_n x_n for all signs s_i} over the cross-polytope. Each of its 2n
+	// extremal rays is zero in all but one of the variables x_1, ..., x_n and lies on 2^(n-1) facets, so all of
+	// them are degenerate.
+	static PolyhedralCone createCrossCone(int n) {
+		PolyhedralCone cone = new PolyhedralCone(n + 1);
+		for (int signs = 0; signs < 1 << n; signs++) {
+			int[] row = new int[n + 1];
+			row[0] = 1;
+			for (int i = 0; i < n; i++)
+				row[i + 1] = (signs & (1 << i)) == 0 ? -1 : 1;
+			cone.addInequality(row);
+		}
+		return cone;
+	}
+
+	static PolyhedralCone createCrossCone(int n, ExtremalRayEngine engine) {
+		PolyhedralCone cone = createCrossCone(n);
+		cone.setEngine(engine);
+		return cone;
+	}
+
+	// The cone {x | x_0 >= |x_i| for all i} over the cube. Its 2^n extremal rays are non-zero everywhere.
+	static PolyhedralCone createCubeCone(int n) {
+		PolyhedralCone cone = new PolyhedralCone(n + 1);
+		for (int i = 0; i < n; i++) {
+			int[] row = new int[n + 1];
+			row[0] = 1;
+			row[i + 1] = 1;
+			cone.addInequality(row);
+			row[i + 1] = -1;
+			cone.addInequality(row);
+		}
+		return cone;
+	}
+
+	static PolyhedralCone createCubeCone(int n, ExtremalRayEngine engine) {
+		PolyhedralCone cone = createCubeCone(n);
+		cone.setEngine(engine);
+		return cone;
+	}
+
+	// The cone {x | 2 x_i >= x_j for all i, j} of vectors whose entries differ by at most a factor of two. It has
+	// 2^n - 2 extremal rays.
+	static PolyhedralCone createRatioCone(int n, ExtremalRayEngine engine) {
+		PolyhedralCone cone = new PolyhedralCone(n);
+		cone.setEngine(engine);
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++) {
+				if (i == j)
+					continue;
+				int[] row = new int[n];
+				row[i] = 2;
+				row[j] = -1;
+				cone.addInequality(row);
+			}
+		return cone;
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
@@ -0,0 +1,127 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SuppressWarnings("unchecked")
+public class VariableSymmetryTest {
+	static private BigInteger[] vector(int... entries) {
+		BigInteger[] result = new BigInteger[entries.length];
+		for (int i = 0; i < entries.length; i++)
+			result[i] = BigInteger.valueOf(entries[i]);
+		return result;
+	}
+
+	static private List<List<BigInteger>> expand(VariableSymmetry symmetry, BigInteger[] representative) {
+		final List<List<BigInteger>> result = new ArrayList<>();
+		symmetry.expandOrbit(representative, new RayConsumer() {
+			@Override
+			public void accept(List<BigInteger> ray) {
+				result.add(ray);
+			}
+		});
+		return result;
+	}
+
+	// The variables 1 and 2 can be interchanged
+	static private PolyhedralCone createCone() {
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addInequality(1, 0, 0);
+		cone.addInequality(0, 1, 0);
+		cone.addInequality(0, 0, 1);
+		cone.addInequality(1, -1, -1);
+		return cone;
+	}
+
+	@Test
+	public void testDetect() {
+		VariableSymmetry symmetry = VariableSymmetry.detect(createCone(),
+				new int[][] { { 0 }, { 1 }, { 2 } });
+		assertThat(symmetry.isTrivial(), is(false));
+		assertThat(symmetry.getClasses(), contains(equalTo(new int[][] { { 1 }, { 2 } })));
+	}
+
+	@Test
+	public void testDetectModuloEquations() {
+		// Swapping variables 1 and 2 maps the first inequality to x[0] - x[2] >= 0, which is equivalent to it
+		// because of the equation
+		PolyhedralCone cone = new PolyhedralCone(3);
+		cone.addEquation(0, 1, -1);
+		cone.addInequality(1, -1, 0);
+		VariableSymmetry symmetry = VariableSymmetry.detect(cone, new int[][] { { 1 }, { 2 } });
+		assertThat(symmetry.isTrivial(), is(false));
+	}
+
+	@Test
+	public void testDetectNothing() {
+		PolyhedralCone cone = createCone();
+		cone.addInequality(0, 2, -1);
+		VariableSymmetry symmetry = VariableSymmetry.detect(cone, new int[][] { { 0 }, { 1 }, { 2 } });
+		assertThat(symmetry.isTrivial(), is(true));
+	}
+
+	@Test
+	public void testOrbits() {
+		VariableSymmetry symmetry = VariableSymmetry.detect(createCone(),
+				new int[][] { { 0 }, { 1 }, { 2 } });
+		assertThat(symmetry.canonicalize(vector(1, 1, 0)), equalTo(vector(1, 0, 1)));
+		assertThat(symmetry.canonicalize(vector(1, 0, 1)), equalTo(vector(1, 0, 1)));
+		assertThat(expand(symmetry, vector(1, 0, 1)), containsInAnyOrder(
+					Arrays.asList(vector(1, 0, 1)), Arrays.asList(vector(1, 1, 0))));
+		assertThat(expand(symmetry, vector(1, 0, 0)), contains(Arrays.asList(vector(1, 0, 0))));
+	}
+
+	@Test
+	public void testEnumerateOrbits() {
+		// Three interchangeable events with two variables each, like in the impure cones of the front-ends
+		PolyhedralCone cone = new PolyhedralCone(7);
+		PolyhedralCone expected = new PolyhedralCone(7);
+		for (int i = 0; i < 7; i++) {
+			int[] row = new int[7];
+			row[i] = 1;
+			cone.addInequality(row);
+			expected.addInequality(row);
+		}
+		for (int event = 0; event < 3; event++) {
+			int[] row = new int[] { 2, 1, 1, 1, 0, 0, 0 };
+			row[1 + event] = -2;
+			row[4 + event] = 1;
+			cone.addInequality(row);
+			expected.addInequality(row);
+		}
+		VariableSymmetry symmetry = VariableSymmetry.detect(cone,
+				new int[][] { { 1, 4 }, { 2, 5 }, { 3, 6 } });
+		assertThat(symmetry.getClasses(), hasSize(1));
+		cone.setSymmetry(symmetry);
+
+		assertThat(cone.findExtremalRays(), equalTo(expected.findExtremalRays()));
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120
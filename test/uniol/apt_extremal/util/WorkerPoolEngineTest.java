@@ -0,0 +1,139 @@
+/*-
+ * APT - Analysis of Petri Nets and labeled Transition systems
+ * Copyright (C) 2017  Uli Schlachter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package uniol.apt_extremal.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import static uniol.apt_extremal.util.TestCones.*;
+
+public class WorkerPoolEngineTest {
+	static private final long HEAP = 64 * 1024 * 1024;
+
+	@Test
+	public void testSameRaysAsInProcess() {
+		try (WorkerPoolEngine engine = new WorkerPoolEngine(1, HEAP,
+					WorkerPoolEngine.Algorithm.POLCO_EXACT)) {
+			Set<List<BigInteger>> rays = createRatioCone(5, engine).findExtremalRays();
+			assertThat(rays, hasSize(30));
+			assertThat(rays, equalTo(createRatioCone(5, new DoubleDescriptionEngine()).findExtremalRays()));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(1));
+		}
+	}
+
+	@Test
+	public void testMoreThreadsThanWorkers() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (final WorkerPoolEngine engine = new WorkerPoolEngine(2, HEAP,
+					WorkerPoolEngine.Algorithm.DOUBLE_DESCRIPTION)) {
+			List<Future<Set<List<BigInteger>>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				final int numVariables = 2 + i % 4;
+				futures.add(executor.submit(new Callable<Set<List<BigInteger>>>() {
+					@Override
+					public Set<List<BigInteger>> call() {
+						return createRatioCone(numVariables, engine).findExtremalRays();
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++)
+				assertThat(futures.get(i).get(), hasSize((1 << (2 + i % 4)) - 2));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(2));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRestartAfterCrash() {
+		try (WorkerPoolEngine engine = new WorkerPoolEngine(1, 4 * 1024 * 1024,
+					WorkerPoolEngine.Algorithm.DOUBLE_DESCRIPTION)) {
+			try {
+				createRatioCone(16, engine).findExtremalRays();
+				throw new AssertionError("The worker should run out of memory");
+			} catch (WorkerFailedException e) {
+				assertThat(e.getMessage(), containsString("OutOfMemoryError"));
+			}
+			assertThat(createRatioCone(3, engine).findExtremalRays(), hasSize(6));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(2));
+		}
+	}
+
+	@Test
+	public void testBudgetInWorker() {
+		try (WorkerPoolEngine engine = new WorkerPoolEngine(1, HEAP,
+					WorkerPoolEngine.Algorithm.POLCO_EXACT)) {
+			PolyhedralCone cone = createRatioCone(5, engine);
+			Set<List<BigInteger>> rays = cone.findExtremalRays(new Budget().setMaxRays(10)
+					.setPartialResultAllowed(true));
+			assertThat(cone.isResultPartial(), is(true));
+			assertThat(rays, hasSize(10));
+			assertThat(rays, everyItem(isIn(createRatioCone(5, new DoubleDescriptionEngine())
+							.findExtremalRays())));
+			// The enumeration ran in the worker, which was killed after the tenth ray
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(1));
+
+			rays = createRatioCone(5, engine).findExtremalRays(new Budget()
+					.setTimeLimit(1, TimeUnit.HOURS));
+			assertThat(rays, hasSize(30));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(2));
+		}
+	}
+
+	@Test
+	public void testTimeLimitKillsWorker() {
+		try (WorkerPoolEngine engine = new WorkerPoolEngine(1, 256 * 1024 * 1024,
+					WorkerPoolEngine.Algorithm.DOUBLE_DESCRIPTION)) {
+			// Start the worker before the clock runs
+			assertThat(createRatioCone(3, engine).findExtremalRays(), hasSize(6));
+			long start = System.nanoTime();
+			try {
+				createRatioCone(16, engine).findExtremalRays(new Budget().setTimeLimit(200,
+							TimeUnit.MILLISECONDS));
+				throw new AssertionError("The time limit should be exceeded");
+			} catch (BudgetExceededException e) {
+				assertThat(e.getReason(), equalTo(BudgetExceededException.Reason.TIME));
+			}
+			assertThat(System.nanoTime() - start, lessThan(TimeUnit.SECONDS.toNanos(10)));
+			assertThat(createRatioCone(3, engine).findExtremalRays(), hasSize(6));
+			assertThat(engine.getNumberOfStartedWorkers(), equalTo(2));
+		}
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testClosed() {
+		WorkerPoolEngine engine = new WorkerPoolEngine(1, HEAP, WorkerPoolEngine.Algorithm.POLCO_EXACT);
+		engine.close();
+		createRatioCone(3, engine).findExtremalRays();
+	}
+}
+
+// vim: ft=java:noet:sw=8:sts=8:ts=8:tw=120